@@ -20,6 +20,7 @@ package io.fabric8.jube;
 public final class JubeZKPaths {
 
     public static final String LOCAL_NODES = "/jube/hostNodes";
+    public static final String NODE_METRICS = "/jube/nodeMetrics";
 
     private JubeZKPaths() {
         // no public ctr
@@ -15,10 +15,18 @@
  */
 package io.fabric8.jube.apimaster;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -29,9 +37,14 @@ import io.fabric8.jube.local.EntityListener;
 import io.fabric8.jube.local.EntityListenerList;
 import io.fabric8.jube.local.LocalKubernetesModel;
 import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.local.PodChanges;
 import io.fabric8.jube.local.PodCurrentContainer;
 import io.fabric8.jube.model.HostNode;
 import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.jube.model.ModelSnapshotStore;
+import io.fabric8.jube.scheduler.BatchScheduler;
+import io.fabric8.jube.scheduler.Scheduler;
+import io.fabric8.jube.scheduler.Schedulers;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.Pod;
@@ -42,10 +55,13 @@ import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.utils.Filter;
 import io.fabric8.utils.Strings;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +77,7 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
     
     private static final transient Logger LOG = LoggerFactory.getLogger(ApiMasterKubernetesModel.class);
     private static final String KUBERNETES_MODEL = "/kubernetes/model";
+    private static final long HOST_PERMIT_TIMEOUT = 30000;
     private final LocalKubernetesModel memoryModel = new LocalKubernetesModel();
     private final CuratorFramework curator;
     private final HostNodeModel hostNodeModel;
@@ -72,18 +89,63 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
     };
 
     private final TreeCache treeCache;
+    private final ModelSnapshotStore snapshotStore;
+    // the ZK versions of the entities restored from the local snapshot which have not yet been seen in ZK
+    private final Map<String, ModelSnapshotStore.Entry> restoredEntries = new ConcurrentHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+    // limits the number of concurrent remote requests to each host
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final int hostConcurrency;
+    private final Scheduler scheduler;
+    private final HostNodeClients hostNodeClients;
+    private final PodPlacementIndex placementIndex;
 
     private final EntityListenerList<Pod> podListeners = new EntityListenerList<>();
     private final EntityListenerList<ReplicationController> replicationControllerListeners = new EntityListenerList<>();
     private final EntityListenerList<Service> serviceListeners = new EntityListenerList<>();
+    private final EndpointsIndex endpointsIndex = new EndpointsIndex();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
 
     @Inject
-    public ApiMasterKubernetesModel(CuratorFramework curator, HostNodeModel hostNodeModel) throws Exception {
+    public ApiMasterKubernetesModel(CuratorFramework curator, HostNodeModel hostNodeModel,
+                                    @ConfigProperty(name = "JUBE_DATA_DIR", defaultValue = "./data")
+                                    String dataDir,
+                                    @ConfigProperty(name = "JUBE_HOST_CONCURRENCY", defaultValue = "5")
+                                    int hostConcurrency,
+                                    @ConfigProperty(name = "JUBE_SCHEDULER", defaultValue = Schedulers.LEAST_LOADED)
+                                    String schedulerName,
+                                    @ConfigProperty(name = "JUBE_HOST_CONNECT_TIMEOUT", defaultValue = "5000")
+                                    long hostConnectTimeout,
+                                    @ConfigProperty(name = "JUBE_HOST_RECEIVE_TIMEOUT", defaultValue = "60000")
+                                    long hostReceiveTimeout) throws Exception {
         this.curator = curator;
         this.hostNodeModel = hostNodeModel;
+        this.hostConcurrency = hostConcurrency;
+        this.scheduler = Schedulers.create(schedulerName);
+        LOG.info("Using scheduler: " + scheduler.getClass().getSimpleName());
+        this.hostNodeClients = new HostNodeClients(hostConnectTimeout, hostReceiveTimeout);
+        hostNodeModel.addEntityListener(hostNodeClients.getHostNodeListener());
+        this.placementIndex = new PodPlacementIndex(hostNodeModel);
+        addPodListener(placementIndex.getPodListener());
+        // endpoints only depend on the labels and IP of a pod
+        addPodListener(endpointsIndex.getPodListener(), PodChanges.LABELS | PodChanges.ADDRESS | PodChanges.READINESS);
+        addServiceListener(endpointsIndex.getServiceListener());
+        this.snapshotStore = new ModelSnapshotStore(new File(dataDir, "model"));
+        restoreSnapshot();
         this.treeCache = new TreeCache(curator, KUBERNETES_MODEL);
-        this.treeCache.start();
+        // lets add the listener before starting so we don't miss the initial events
         this.treeCache.getListenable().addListener(treeListener);
+        this.treeCache.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        treeCache.getListenable().removeListener(treeListener);
+        treeCache.close();
+        snapshotStore.close();
+        hostNodeModel.removeEntityListener(hostNodeClients.getHostNodeListener());
+        hostNodeClients.close();
     }
 
     // Add and remove listeners
@@ -93,6 +155,13 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
         podListeners.addListener(listener);
     }
 
+    /**
+     * Adds a pod listener which is only notified of changes matching the given mask of {@link PodChanges} bits
+     */
+    public void addPodListener(EntityListener<Pod> listener, int changeMask) {
+        podListeners.addListener(listener, changeMask);
+    }
+
     public void removePodListener(EntityListener<Pod> listener) {
         podListeners.removeListener(listener);
     }
@@ -113,6 +182,36 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
         serviceListeners.removeListener(listener);
     }
 
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    public EndpointsIndex getEndpointsIndex() {
+        return endpointsIndex;
+    }
+
+    public HostNodeClients getHostNodeClients() {
+        return hostNodeClients;
+    }
+
+    /**
+     * Returns the number of writes made to ZooKeeper
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent writing to ZooKeeper
+     */
+    public long getWriteNanos() {
+        return writeNanos.get();
+    }
+
+    public PodPlacementIndex getPlacementIndex() {
+        return placementIndex;
+    }
+
     // Updating API which just writes to ZK and waits for ZK watches to update in memory
     // -------------------------------------------------------------------------
     @Override
@@ -132,6 +231,60 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
         // memoryModel.updatePod(id, entity);
     }
 
+    /**
+     * Writes a pod which has been changed with the given changes. If the pod is the one held by this model then it was
+     * changed in place, so the change would not be seen when ZooKeeper echoes the write back and the pod listeners are
+     * told about it straight away.
+     */
+    public void updatePod(String id, Pod entity, int changes) {
+        updatePod(id, entity);
+        if (memoryModel.getPod(id) == entity) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Pod " + id + " changed in place " + PodChanges.toString(changes));
+            }
+            podListeners.entityChanged(id, entity, changes);
+        }
+    }
+
+    /**
+     * Writes the given pods to ZooKeeper in a single transaction
+     */
+    public void updatePods(Map<String, Pod> pods) {
+        if (pods.size() == 1) {
+            Map.Entry<String, Pod> entry = pods.entrySet().iterator().next();
+            updatePod(entry.getKey(), entry.getValue());
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            CuratorTransaction transaction = curator.inTransaction();
+            CuratorTransactionFinal operations = null;
+            for (Map.Entry<String, Pod> entry : pods.entrySet()) {
+                String path = zkPathForPod(entry.getKey());
+                byte[] data = KubernetesHelper.toJson(entry.getValue()).getBytes();
+                // the tree cache tells us if the path exists without a round trip
+                if (treeCache.getCurrentData(path) != null) {
+                    operations = transaction.setData().forPath(path, data).and();
+                } else {
+                    operations = transaction.create().forPath(path, data).and();
+                }
+                transaction = operations;
+            }
+            operations.commit();
+            recordWrite(start);
+        } catch (Exception e) {
+            // the tree cache may be out of date so lets fall back to writing them one at a time
+            LOG.warn("Failed to write " + pods.size() + " pods in a transaction so writing them individually. " + e);
+            for (Map.Entry<String, Pod> entry : pods.entrySet()) {
+                writeEntity(zkPathForPod(entry.getKey()), entry.getValue());
+            }
+            return;
+        }
+        for (Pod pod : pods.values()) {
+            updateLocalModel(pod, false);
+        }
+    }
+
     @Override
     public boolean updatePodIfNotExist(String id, Pod entity) {
         if (memoryModel.updatePodIfNotExist(id, entity)) {
@@ -287,67 +440,223 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
     public String remoteCreatePod(Pod pod) {
         Exception failed = null;
         List<HostNode> hosts = new ArrayList<>(hostNodeModel.getMap().values());
-
-        // lets try randomize the list
-        int size = hosts.size();
-        if (size <= 0) {
+        if (hosts.isEmpty()) {
             throw new IllegalStateException("No host nodes available");
         }
-        if (size == 1) {
-            HostNode hostNode = hosts.get(0);
+
+        // lets try the hosts in the order the scheduler prefers
+        hosts = scheduler.schedule(pod, hosts, this);
+
+        // lets try the hosts which are not already busy first
+        List<HostNode> busyHosts = new ArrayList<>();
+        for (HostNode hostNode : hosts) {
+            Semaphore permits = getHostPermits(hostNode);
+            if (!permits.tryAcquire()) {
+                busyHosts.add(hostNode);
+                continue;
+            }
             try {
                 return tryCreatePod(hostNode, pod);
             } catch (Exception e) {
                 failed = e;
                 LOG.error("Failed to create pod: " + getName(pod) + " on host: " + hostNode + ". " + e, e);
+            } finally {
+                permits.release();
             }
-        } else {
-            Collections.shuffle(hosts);
-            for (HostNode hostNode : hosts) {
-                try {
-                    return tryCreatePod(hostNode, pod);
-                } catch (Exception e) {
-                    failed = e;
-                    LOG.error("Failed to create pod: " + getName(pod) + " on host: " + hostNode + ". " + e, e);
+        }
+        for (HostNode hostNode : busyHosts) {
+            Semaphore permits = getHostPermits(hostNode);
+            try {
+                if (!permits.tryAcquire(HOST_PERMIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    failed = new IllegalStateException("Timed out waiting for host: " + hostNode);
+                    continue;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = e;
+                break;
+            }
+            try {
+                return tryCreatePod(hostNode, pod);
+            } catch (Exception e) {
+                failed = e;
+                LOG.error("Failed to create pod: " + getName(pod) + " on host: " + hostNode + ". " + e, e);
+            } finally {
+                permits.release();
             }
         }
         NodeHelper.setPodTerminated(pod, failed);
         return null;
     }
 
-    protected String tryCreatePod(HostNode hostNode, Pod pod) throws Exception {
+    protected String tryCreatePod(HostNode hostNode, final Pod pod) throws Exception {
         LOG.info("Attempting to create pod on host: " + hostNode.getWebUrl());
-        KubernetesExtensionsClient client = createClient(hostNode);
-        return client.createLocalPod(pod);
+        NodeHelper.getOrCreatetStatus(pod).setHostIP(hostNode.getHostName());
+        PodPlacementIndex.setHostNodeId(pod, hostNode.getId());
+        String answer = hostNodeClients.invoke(hostNode, new HostNodeClients.Request<String>() {
+            @Override
+            public String invoke(KubernetesExtensionsClient client) throws Exception {
+                return client.createLocalPod(pod);
+            }
+        });
+        placementIndex.place(getName(pod), hostNode.getId());
+        return answer;
     }
 
     public String deleteRemotePod(Pod pod) {
-        List<HostNode> hosts = new ArrayList<>(hostNodeModel.getMap().values());
+        // lets go straight to the pod's host if we know it, otherwise we have to try them all
+        List<HostNode> hosts = placementIndex.getCandidateHosts(getName(pod), pod);
+        boolean broadcast = hosts.size() > 1;
         for (HostNode hostNode : hosts) {
+            Semaphore permits = getHostPermits(hostNode);
+            try {
+                if (!permits.tryAcquire(HOST_PERMIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOG.warn("Timed out waiting to delete pod on host " + hostNode.getWebUrl());
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
             try {
                 return tryDeletePod(hostNode, pod);
             } catch (Exception e) {
-                LOG.warn("Failed to delete pod on host " + hostNode.getWebUrl() + ". Might not be on that pod ;). " + e, e);
+                if (broadcast) {
+                    LOG.debug("Failed to delete pod on host " + hostNode.getWebUrl() + ". Might not be on that host. " + e);
+                } else {
+                    LOG.warn("Failed to delete pod on host " + hostNode.getWebUrl() + ". " + e, e);
+                }
+            } finally {
+                permits.release();
             }
         }
         return null;
     }
 
     protected String tryDeletePod(HostNode hostNode, Pod pod) throws Exception {
-        String id = getName(pod);
+        final String id = getName(pod);
+        final String namespace = KubernetesHelper.getNamespace(pod);
         LOG.info("Attempting to delete pod: " + id + " on host: " + hostNode.getWebUrl());
-        KubernetesExtensionsClient client = createClient(hostNode);
-        return client.deleteLocalPod(id, KubernetesHelper.getNamespace(pod));
+        return hostNodeClients.invoke(hostNode, new HostNodeClients.Request<String>() {
+            @Override
+            public String invoke(KubernetesExtensionsClient client) throws Exception {
+                return client.deleteLocalPod(id, namespace);
+            }
+        });
     }
 
 
-    private KubernetesExtensionsClient createClient(HostNode hostNode) {
-        String webUrl = hostNode.getWebUrl();
-        if (Strings.isNullOrBlank(webUrl)) {
-            throw new IllegalArgumentException("No WebUrl so could not create client for host: " + hostNode);
+    public HostNodeModel getHostNodeModel() {
+        return hostNodeModel;
+    }
+
+    public HostNode getHostNode(String hostId) {
+        return hostNodeModel.getEntity(hostId);
+    }
+
+    /**
+     * Groups the given pods by the ID of the host they are on; pods whose host is not known are returned under the null key
+     */
+    public Map<String, List<Pod>> groupByHost(List<Pod> pods) {
+        Map<String, List<Pod>> answer = new LinkedHashMap<>();
+        for (Pod pod : pods) {
+            List<HostNode> hosts = placementIndex.getCandidateHosts(getName(pod), pod);
+            String hostId = hosts.size() == 1 ? hosts.get(0).getId() : null;
+            List<Pod> list = answer.get(hostId);
+            if (list == null) {
+                list = new ArrayList<>();
+                answer.put(hostId, list);
+            }
+            list.add(pod);
+        }
+        return answer;
+    }
+
+    /**
+     * Chooses a host for each of the given pods with the scheduler and groups the pods by the ID of the chosen host.
+     * The resources of each pod are charged to its host before the next pod is scheduled, and the pod is placed on
+     * the host straight away so that the spread scheduler counts it too.
+     */
+    public Map<String, List<Pod>> scheduleByHost(List<Pod> pods) {
+        Map<String, List<Pod>> answer = new LinkedHashMap<>();
+        BatchScheduler batch = new BatchScheduler(scheduler, new ArrayList<>(hostNodeModel.getMap().values()), this);
+        for (Pod pod : pods) {
+            HostNode hostNode = batch.schedule(pod);
+            NodeHelper.getOrCreatetStatus(pod).setHostIP(hostNode.getHostName());
+            PodPlacementIndex.setHostNodeId(pod, hostNode.getId());
+            List<Pod> list = answer.get(hostNode.getId());
+            if (list == null) {
+                list = new ArrayList<>();
+                answer.put(hostNode.getId(), list);
+            }
+            list.add(pod);
         }
-        return new KubernetesExtensionsClient(webUrl);
+        return answer;
+    }
+
+    /**
+     * Creates the given pods on the given host with a single request
+     */
+    public List<PodBatchResult> remoteCreatePods(HostNode hostNode, final List<Pod> pods) throws Exception {
+        for (Pod pod : pods) {
+            NodeHelper.getOrCreatetStatus(pod).setHostIP(hostNode.getHostName());
+            PodPlacementIndex.setHostNodeId(pod, hostNode.getId());
+        }
+        List<PodBatchResult> answer = invokeWithPermit(hostNode, new HostNodeClients.Request<List<PodBatchResult>>() {
+            @Override
+            public List<PodBatchResult> invoke(KubernetesExtensionsClient client) throws Exception {
+                return client.createLocalPods(pods);
+            }
+        });
+        for (PodBatchResult result : answer) {
+            if (result.isSuccess()) {
+                placementIndex.place(result.getId(), hostNode.getId());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Deletes the given pods from the given host with a single request; the pods must all be in the same namespace
+     */
+    public List<PodBatchResult> deleteRemotePods(HostNode hostNode, List<Pod> pods) throws Exception {
+        final List<String> ids = new ArrayList<>();
+        for (Pod pod : pods) {
+            ids.add(getName(pod));
+        }
+        final String namespace = pods.isEmpty() ? null : KubernetesHelper.getNamespace(pods.get(0));
+        LOG.info("Attempting to delete pods: " + ids + " on host: " + hostNode.getWebUrl());
+        return invokeWithPermit(hostNode, new HostNodeClients.Request<List<PodBatchResult>>() {
+            @Override
+            public List<PodBatchResult> invoke(KubernetesExtensionsClient client) throws Exception {
+                return client.deleteLocalPods(ids, namespace);
+            }
+        });
+    }
+
+    protected <T> T invokeWithPermit(HostNode hostNode, HostNodeClients.Request<T> request) throws Exception {
+        Semaphore permits = getHostPermits(hostNode);
+        if (!permits.tryAcquire(HOST_PERMIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Timed out waiting for host: " + hostNode);
+        }
+        try {
+            return hostNodeClients.invoke(hostNode, request);
+        } finally {
+            permits.release();
+        }
+    }
+
+    protected Semaphore getHostPermits(HostNode hostNode) {
+        String key = hostNode.getId();
+        Semaphore answer = hostPermits.get(key);
+        if (answer == null) {
+            Semaphore semaphore = new Semaphore(hostConcurrency);
+            answer = hostPermits.putIfAbsent(key, semaphore);
+            if (answer == null) {
+                answer = semaphore;
+            }
+        }
+        return answer;
     }
 
 
@@ -375,17 +684,24 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Writing to path: " + path + " json: " + json);
             }
+            long start = System.nanoTime();
             if (curator.checkExists().forPath(path) == null) {
                 curator.create().creatingParentsIfNeeded().forPath(path, json.getBytes());
             } else {
                 curator.setData().forPath(path, json.getBytes());
             }
+            recordWrite(start);
             updateLocalModel(entity, false);
         } catch (Exception e) {
             throw new RuntimeException("Failed to update object at path: " + path + ". " + e, e);
         }
     }
 
+    protected void recordWrite(long start) {
+        writeNanos.addAndGet(System.nanoTime() - start);
+        writeCount.incrementAndGet();
+    }
+
     protected void deleteEntity(String path) {
         try {
             Stat stat = curator.checkExists().forPath(path);
@@ -397,27 +713,77 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
         }
     }
 
+    /**
+     * Loads the local snapshot of the model so that we can serve reads straight away; the entities are then
+     * reconciled against ZooKeeper using their data version as the tree cache starts up
+     */
+    protected void restoreSnapshot() {
+        long start = System.currentTimeMillis();
+        Map<String, ModelSnapshotStore.Entry> entries;
+        try {
+            entries = snapshotStore.load();
+        } catch (Exception e) {
+            LOG.warn("Failed to load the model snapshot from " + snapshotStore + ". " + e, e);
+            return;
+        }
+        for (ModelSnapshotStore.Entry entry : entries.values()) {
+            try {
+                Object dto = KubernetesHelper.loadJson(entry.getData());
+                updateLocalModel(dto, false);
+                restoredEntries.put(entry.getPath(), entry);
+            } catch (Exception e) {
+                LOG.warn("Failed to parse the snapshot JSON at " + entry.getPath() + ". Reason: " + e, e);
+                snapshotStore.remove(entry.getPath());
+            }
+        }
+        LOG.info("Restored " + restoredEntries.size() + " entities from " + snapshotStore + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Removes any entities restored from the snapshot which no longer exist in ZooKeeper
+     */
+    protected void removeStaleRestoredEntries() {
+        for (ModelSnapshotStore.Entry entry : restoredEntries.values()) {
+            LOG.info("Removing stale entity from snapshot: " + entry.getPath());
+            snapshotStore.remove(entry.getPath());
+            try {
+                updateLocalModel(KubernetesHelper.loadJson(entry.getData()), true);
+            } catch (Exception e) {
+                LOG.warn("Failed to remove stale entity " + entry.getPath() + ". Reason: " + e, e);
+            }
+        }
+        restoredEntries.clear();
+        LOG.info("Model synchronised with ZooKeeper " + (System.currentTimeMillis() - startTime) + " ms after startup");
+    }
+
     protected void treeCacheEvent(TreeCacheEvent event) {
+        TreeCacheEvent.Type type = event.getType();
+        if (type == TreeCacheEvent.Type.INITIALIZED) {
+            removeStaleRestoredEntries();
+            return;
+        }
         ChildData childData = event.getData();
         if (childData == null) {
             return;
         }
         String path = childData.getPath();
-        TreeCacheEvent.Type type = event.getType();
         byte[] data = childData.getData();
         if (data == null || data.length == 0 || path == null) {
             return;
         }
-        if (path.startsWith(KUBERNETES_MODEL)) {
-            path = path.substring(KUBERNETES_MODEL.length());
-        }
         boolean remove = false;
         switch (type) {
         case NODE_ADDED:
         case NODE_UPDATED:
+            if (isUnchangedSinceSnapshot(path, childData)) {
+                return;
+            }
+            snapshotStore.put(path, versionOf(childData), data);
             break;
         case NODE_REMOVED:
             remove = true;
+            restoredEntries.remove(path);
+            snapshotStore.remove(path);
             break;
         default:
             return;
@@ -430,6 +796,19 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
         }
     }
 
+    /**
+     * Returns true if the node was restored from the snapshot with the same version so we can avoid parsing it again
+     */
+    protected boolean isUnchangedSinceSnapshot(String path, ChildData childData) {
+        ModelSnapshotStore.Entry restored = restoredEntries.remove(path);
+        return restored != null && restored.getVersion() == versionOf(childData) && Arrays.equals(restored.getData(), childData.getData());
+    }
+
+    protected static int versionOf(ChildData childData) {
+        Stat stat = childData.getStat();
+        return stat != null ? stat.getVersion() : -1;
+    }
+
     protected void updateLocalModel(Object dto, boolean remove) {
         if (dto instanceof Pod) {
             podChanged((Pod) dto, remove);
@@ -455,12 +834,16 @@ public class ApiMasterKubernetesModel implements KubernetesModel {
             Pod old = memoryModel.getPod(id);
             // lets only replace the Pod if it really has changed to avoid overwriting
             // pods which are being installed
-            if (NodeHelper.podHasChanged(entity, old)) {
-                if (entity.getMetadata().getUid() == null) {
-                    entity.getMetadata().setUid(getNamespace() + '/' + id);
+            if (entity.getMetadata().getUid() == null) {
+                entity.getMetadata().setUid(getNamespace() + '/' + id);
+            }
+            int changes = PodChanges.compute(old, entity);
+            if (changes != PodChanges.NONE) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Pod " + id + " changed " + PodChanges.toString(changes));
                 }
                 memoryModel.updatePod(id, entity);
-                podListeners.entityChanged(id, entity);
+                podListeners.entityChanged(id, entity, changes);
             }
         }
     }
@@ -19,20 +19,26 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.fabric8.jube.ServiceIDs;
 import io.fabric8.jube.Statuses;
+import io.fabric8.jube.autoscaler.NodeMetricsReporter;
+import io.fabric8.jube.local.ContainerStopper;
 import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.local.ProcessMetricsCollector;
 import io.fabric8.jube.local.ProcessMonitor;
+import io.fabric8.jube.metrics.NodeTimeSeries;
+import io.fabric8.jube.metrics.TimeSeriesResult;
 import io.fabric8.jube.model.HostNode;
 import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.jube.model.HostNodeReporter;
+import io.fabric8.jube.model.NodeMetricsModel;
 import io.fabric8.jube.process.Installation;
 import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.jube.process.ProcessMetrics;
+import io.fabric8.jube.process.support.ProcessLogs;
 import io.fabric8.jube.proxy.KubeProxy;
 import io.fabric8.jube.replicator.Replicator;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Container;
-import io.fabric8.kubernetes.api.model.EndpointAddress;
-import io.fabric8.kubernetes.api.model.EndpointSubset;
 import io.fabric8.kubernetes.api.model.Endpoints;
-import io.fabric8.kubernetes.api.model.EndpointsBuilder;
 import io.fabric8.kubernetes.api.model.EndpointsList;
 import io.fabric8.kubernetes.api.model.Namespace;
 import io.fabric8.kubernetes.api.model.NamespaceList;
@@ -40,7 +46,6 @@ import io.fabric8.kubernetes.api.model.Node;
 import io.fabric8.kubernetes.api.model.NodeList;
 import io.fabric8.kubernetes.api.model.NodeSpec;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
-import io.fabric8.kubernetes.api.model.ObjectReference;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.PodSpec;
@@ -58,6 +63,7 @@ import org.apache.deltaspike.core.api.config.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.validation.constraints.NotNull;
@@ -69,15 +75,24 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
@@ -109,23 +124,38 @@ public class ApiMasterService implements KubernetesExtensions {
     private final ApiMasterKubernetesModel model;
     private final Replicator replicator;
     private final ProcessMonitor processMonitor;
+    private final ContainerStopper containerStopper;
     private final KubeProxy kubeProxy;
     private final HostNodeModel hostNodeModel;
+    private final HostNodeReporter hostNodeReporter;
+    private final NodeMetricsReporter nodeMetricsReporter;
+    private final ProcessMetricsCollector processMetrics;
+    private final NodeTimeSeries timeSeries;
     private final ExecutorService localCreateThreadPool = Executors.newFixedThreadPool(10);
     private String namespace = "default";
 
     @Inject
-    public ApiMasterService(ProcessManager processManager, ApiMasterKubernetesModel model, Replicator replicator, ProcessMonitor processMonitor, KubeProxy kubeProxy, HostNodeModel hostNodeModel,
+    public ApiMasterService(ProcessManager processManager, ApiMasterKubernetesModel model, Replicator replicator, ProcessMonitor processMonitor, ContainerStopper containerStopper, KubeProxy kubeProxy, HostNodeModel hostNodeModel,
+                            NodeMetricsModel nodeMetricsModel, ProcessMetricsCollector processMetrics, NodeTimeSeries timeSeries,
                             @ConfigProperty(name = "JUBE_HOSTNAME", defaultValue = DEFAULT_HOSTNAME)
                             String hostName,
                             @ConfigProperty(name = "HTTP_PORT", defaultValue = DEFAULT_HTTP_PORT)
-                            String port) {
+                            String port,
+                            @ConfigProperty(name = "JUBE_PROCESS_DIR", defaultValue = "./processes")
+                            String processDir,
+                            @ConfigProperty(name = "JUBE_HOST_REPORT_INTERVAL", defaultValue = "10000")
+                            long hostReportInterval,
+                            @ConfigProperty(name = "AUTOSCALER_INTERVAL", defaultValue = "15000")
+                            long metricsReportInterval) {
         this.processManager = processManager;
         this.model = model;
         this.replicator = replicator;
         this.processMonitor = processMonitor;
+        this.containerStopper = containerStopper;
         this.kubeProxy = kubeProxy;
         this.hostNodeModel = hostNodeModel;
+        this.processMetrics = processMetrics;
+        this.timeSeries = timeSeries;
 
         ApiMasterService.hostName = hostName;
         ApiMasterService.port = port;
@@ -134,11 +164,22 @@ public class ApiMasterService implements KubernetesExtensions {
         node.setHostName(hostName);
         node.setWebUrl("http://" + hostName + ":" + port + "/");
         node.setId(UUID.randomUUID().toString());
+        hostNodeReporter = new HostNodeReporter(node, hostNodeModel, processManager, new File(processDir), hostReportInterval);
+        hostNodeReporter.updateUtilization(node);
         hostNodeModel.write(node);
+        hostNodeReporter.start();
+        nodeMetricsReporter = new NodeMetricsReporter(node.getId(), nodeMetricsModel, processMetrics, model, kubeProxy, metricsReportInterval);
+        nodeMetricsReporter.start();
 
         ensureModelHasKubernetesServices(hostName, port);
     }
 
+    @PreDestroy
+    public void destroy() {
+        hostNodeReporter.stop();
+        nodeMetricsReporter.stop();
+    }
+
     public static String getHostName() {
         return hostName;
     }
@@ -306,20 +347,7 @@ public class ApiMasterService implements KubernetesExtensions {
     @Override
     public EndpointsList getEndpoints(@QueryParam("namespace") String namespace) {
         EndpointsList answer = new EndpointsList();
-        List<Endpoints> list = new ArrayList<>();
-        answer.setItems(list);
-
-        ServiceList services = getServices(namespace);
-        if (services != null) {
-            List<Pod> pods = getPods(namespace).getItems();
-            List<Service> items = notNullList(services.getItems());
-            for (Service service : items) {
-                Endpoints endpoints = createEndpointsForService(service, pods);
-                if (endpoints != null) {
-                    list.add(endpoints);
-                }
-            }
-        }
+        answer.setItems(model.getEndpointsIndex().getEndpoints(namespace));
         return answer;
     }
 
@@ -382,78 +410,12 @@ public class ApiMasterService implements KubernetesExtensions {
 
     @Override
     public Endpoints endpointsForService(@NotNull String serviceId, String namespace) {
-        List<Pod> pods = podList();
-        Service service = getService(serviceId);
-        return createEndpointsForService(service, pods);
-    }
-
-    protected List<Pod> podList() {
-        PodList podList = getPods();
-        return notNullList(podList.getItems());
-    }
-
-    protected static Endpoints createEndpointsForService(Service service, List<Pod> pods) {
-        if (service == null) {
-            return null;
-        }
-        ServiceSpec serviceSpec = service.getSpec();
-        if (serviceSpec == null) {
-            return null;
-        }
-        List<EndpointAddress> addresses = new ArrayList<>();
-        String namespace = KubernetesHelper.getNamespace(service);
-        String serviceName = getName(service);
-        String qualifiedServiceName = namespace + ":" + serviceName;
-
-        List<ServicePort> ports = serviceSpec.getPorts();
-        for (ServicePort servicePort : ports) {
-            IntOrString targetPort = servicePort.getTargetPort();
-
-            Integer portNumber = KubernetesHelper.intOrStringToInteger(targetPort, qualifiedServiceName);
-            if (portNumber != null) {
-                List<Pod> podsForService = KubernetesHelper.getPodsForService(service, pods);
-                for (Pod pod : podsForService) {
-                    PodStatus currentState = pod.getStatus();
-                    if (currentState != null) {
-                        String podIP = currentState.getPodIP();
-                        if (podIP != null) {
-                            String url = podIP + ":" + portNumber;
-                            EndpointAddress address = new EndpointAddress();
-                            address.setIp(podIP);
-                            ObjectReference ref = new ObjectReference();
-                            ref.setNamespace(namespace);
-                            ref.setName(getName(pod));
-                            address.setTargetRef(ref);
-                            addresses.add(address);
-                        }
-                    }
-                }
-            }
-        }
-        EndpointSubset subset = new EndpointSubset();
-        subset.setAddresses(addresses);
-        return new EndpointsBuilder().
-                withNewMetadata().withName(serviceName).withNamespace(namespace).endMetadata().
-                addToSubsets(subset).
-                build();
+        return model.getEndpointsIndex().getEndpoints(namespace, serviceId);
     }
 
     public EndpointsList getEndpoints() {
         EndpointsList answer = new EndpointsList();
-        List<Endpoints> list = new ArrayList<>();
-        answer.setItems(list);
-
-        ServiceList services = getServices();
-        if (services != null) {
-            List<Pod> pods = podList();
-            List<Service> items = notNullList(services.getItems());
-            for (Service service : items) {
-                Endpoints endpoints = createEndpointsForService(service, pods);
-                if (endpoints != null) {
-                    list.add(endpoints);
-                }
-            }
-        }
+        answer.setItems(model.getEndpointsIndex().getEndpoints());
         return answer;
     }
 
@@ -509,6 +471,32 @@ public class ApiMasterService implements KubernetesExtensions {
         return hostNodeModel.getEntity(id);
     }
 
+    @GET
+    @Path("hostNodes/{id}/pods")
+    @Produces("application/json")
+    public PodList getHostNodePods(@PathParam("id") @NotNull String id) {
+        List<Pod> pods = new ArrayList<>();
+        for (String podId : model.getPlacementIndex().getPodIds(id)) {
+            Pod pod = model.getPod(podId);
+            if (pod != null) {
+                pods.add(pod);
+            }
+        }
+        PodList answer = new PodList();
+        answer.setItems(pods);
+        return answer;
+    }
+
+    /**
+     * Returns the latency and error counts of the requests this node has made to each host node
+     */
+    @GET
+    @Path("hostClients")
+    @Produces("application/json")
+    public Map<String, HostNodeClients.Statistics> getHostClientStatistics() {
+        return model.getHostNodeClients().getStatistics();
+    }
+
 
     // Local operations
     //-------------------------------------------------------------------------
@@ -525,6 +513,83 @@ public class ApiMasterService implements KubernetesExtensions {
 
     public String updateLocalPod(@NotNull final String podId, final Pod pod) throws Exception {
         System.out.println("Updating pod " + pod);
+        prepareLocalPod(podId, pod);
+        model.updatePod(podId, pod);
+        installLocalPod(podId, pod);
+        return getName(pod);
+    }
+
+    @POST
+    @Path("local/pods/batch")
+    @Consumes("application/json")
+    @Produces("application/json")
+    @Override
+    public List<PodBatchResult> createLocalPods(List<Pod> entities) throws Exception {
+        List<PodBatchResult> answer = new ArrayList<>();
+        Map<String, Pod> accepted = new LinkedHashMap<>();
+        for (Pod entity : entities) {
+            String id = getName(entity);
+            try {
+                id = model.getOrCreateId(id, NodeHelper.KIND_REPLICATION_CONTROLLER);
+                setName(entity, id);
+                prepareLocalPod(id, entity);
+                accepted.put(id, entity);
+                answer.add(PodBatchResult.succeeded(id));
+            } catch (Exception e) {
+                LOG.warn("Failed to create pod " + id + ". " + e, e);
+                answer.add(PodBatchResult.failed(id, e));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return answer;
+        }
+        try {
+            // lets write all the pods to ZooKeeper in one go
+            model.updatePods(accepted);
+        } catch (Exception e) {
+            LOG.warn("Failed to write pods " + accepted.keySet() + ". " + e, e);
+            for (int i = 0; i < answer.size(); i++) {
+                if (answer.get(i).isSuccess()) {
+                    answer.set(i, PodBatchResult.failed(answer.get(i).getId(), e));
+                }
+            }
+            return answer;
+        }
+        for (Map.Entry<String, Pod> entry : accepted.entrySet()) {
+            installLocalPod(entry.getKey(), entry.getValue());
+        }
+        return answer;
+    }
+
+    @POST
+    @Path("local/pods/batch/delete")
+    @Consumes("application/json")
+    @Produces("application/json")
+    @Override
+    public List<PodBatchResult> deleteLocalPods(List<String> ids, @QueryParam("namespace") final String namespace) throws Exception {
+        // lets stop all the pods concurrently
+        List<Future<?>> futures = new ArrayList<>();
+        for (String id : ids) {
+            futures.add(containerStopper.deletePodAsync(id, namespace));
+        }
+        List<PodBatchResult> answer = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            try {
+                futures.get(i).get();
+                answer.add(PodBatchResult.succeeded(id));
+            } catch (ExecutionException e) {
+                LOG.warn("Failed to delete pod " + id + ". " + e.getCause(), e.getCause());
+                answer.add(PodBatchResult.failed(id, e.getCause()));
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Defaults the namespace and marks the pod as waiting ready for it to be written to the model
+     */
+    protected void prepareLocalPod(String podId, Pod pod) {
         PodSpec desiredState = pod.getSpec();
         Objects.notNull(desiredState, "desiredState");
 
@@ -534,13 +599,17 @@ public class ApiMasterService implements KubernetesExtensions {
             getOrCreateMetadata(pod).setNamespace(DEFAULT_NAMESPACE);
         }
 
-        final PodStatus currentState = NodeHelper.getOrCreatetStatus(pod);
-        final List<Container> containers = KubernetesHelper.getContainers(pod);
-
+        NodeHelper.getOrCreatetStatus(pod);
         NodeHelper.setPodWaiting(pod);
         NodeHelper.setContainerRunningState(pod, podId, false);
+    }
 
-        model.updatePod(podId, pod);
+    /**
+     * Asynchronously installs and starts the containers of a pod which has been written to the model
+     */
+    protected void installLocalPod(final String podId, final Pod pod) {
+        final PodStatus currentState = NodeHelper.getOrCreatetStatus(pod);
+        final List<Container> containers = KubernetesHelper.getContainers(pod);
         localCreateThreadPool.submit(new Runnable() {
             @Override
             public void run() {
@@ -558,7 +627,6 @@ public class ApiMasterService implements KubernetesExtensions {
                 NodeHelper.excludeFromProcessMonitor(processMonitor, pod, task);
             }
         });
-        return getName(pod);
     }
 
 
@@ -567,7 +635,7 @@ public class ApiMasterService implements KubernetesExtensions {
     @Consumes("text/plain")
     @Override
     public String deleteLocalPod(@PathParam("id") @NotNull String id, @QueryParam("namespace") String namespace) throws Exception {
-        NodeHelper.deletePod(processManager, model, id, namespace);
+        containerStopper.deletePod(id, namespace);
         return null;
     }
 
@@ -591,8 +659,86 @@ public class ApiMasterService implements KubernetesExtensions {
 
     }
 
+    /**
+     * Returns the latest resource usage of each local process keyed by the container ID
+     */
+    @GET
+    @Path("local/metrics")
+    @Produces("application/json")
+    public Map<String, ProcessMetrics> getLocalMetrics() {
+        return processMetrics.getMetrics();
+    }
+
+    @GET
+    @Path("local/metrics/{id}")
+    @Produces("application/json")
+    public ProcessMetrics getLocalMetrics(@PathParam("id") @NotNull String id) {
+        return processMetrics.getMetrics(id);
+    }
+
+    /**
+     * Streams the output of the container of a local pod; the container can be chosen if the pod has more than one.
+     * Use <code>tail</code> to only return the last lines and <code>follow</code> to keep streaming new output.
+     */
+    @GET
+    @Path("local/pods/{id}/log")
+    @Produces("text/plain")
+    public Response getLocalPodLog(@PathParam("id") @NotNull String id, @QueryParam("container") String container,
+                                   @QueryParam("tail") Integer tail, @QueryParam("follow") final boolean follow) {
+        Installation installation = processManager.getInstallation(getLocalContainerId(id, container));
+        final File logFile = installation != null ? ProcessLogs.getLogFile(installation) : null;
+        if (logFile == null || !logFile.isFile()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        final int tailLines = tail != null ? tail : -1;
+        return Response.ok(new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                ProcessLogs.stream(logFile, tailLines, follow, out);
+            }
+        }).build();
+    }
+
+    /**
+     * Returns the names of the time series of the recent metrics of this node
+     */
+    @GET
+    @Path("local/timeseries")
+    @Produces("application/json")
+    public Set<String> getLocalTimeSeriesNames() {
+        return timeSeries.getRegistry().getNames();
+    }
+
+    /**
+     * Returns the values of a time series between the given times in millis, defaulting to the last 10 minutes
+     */
+    @GET
+    @Path("local/timeseries/{name}")
+    @Produces("application/json")
+    public TimeSeriesResult getLocalTimeSeries(@PathParam("name") @NotNull String name, @QueryParam("from") Long from,
+                                               @QueryParam("to") Long to, @QueryParam("resolution") Long resolution) {
+        return timeSeries.query(name, from, to, resolution);
+    }
+
     public ApiMasterKubernetesModel getModel() { return this.model; }
 
+    /**
+     * Returns the ID of the installation of the given container of the pod, or of its first container if none is given
+     */
+    protected String getLocalContainerId(String podId, String containerName) {
+        if (Strings.isNotBlank(containerName)) {
+            return containerName;
+        }
+        Pod pod = model.getPod(podId);
+        if (pod != null) {
+            List<Container> containers = KubernetesHelper.getContainers(pod);
+            if (containers != null && !containers.isEmpty()) {
+                return containers.get(0).getName();
+            }
+        }
+        return podId;
+    }
+
     @Override
     public String createNamespace(Namespace namespace) throws Exception {
         // TODO
@@ -0,0 +1,369 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.EntityListenerList;
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.EndpointAddress;
+import io.fabric8.kubernetes.api.model.EndpointSubset;
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.api.model.EndpointsBuilder;
+import io.fabric8.kubernetes.api.model.ObjectReference;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServicePort;
+import io.fabric8.kubernetes.api.model.ServiceSpec;
+import io.fabric8.utils.Filter;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * A materialized view of the {@link Endpoints} of each service which is maintained incrementally from pod and service
+ * events rather than being recalculated on each request. Only pods which are ready are used as endpoints.
+ * <p/>
+ * Every change increments a generation number which is used as the resource version of the changed {@link Endpoints}
+ */
+public class EndpointsIndex {
+    private static final transient Logger LOG = LoggerFactory.getLogger(EndpointsIndex.class);
+    private static final String DEFAULT_NAMESPACE = "default";
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<String, ServiceEndpoints> services = new HashMap<>();
+    private final Map<String, Pod> pods = new HashMap<>();
+    // the keys of the services each pod is currently an endpoint of
+    private final Map<String, Set<String>> podServices = new HashMap<>();
+    private final EntityListenerList<Endpoints> listeners = new EntityListenerList<>();
+
+    private final EntityListener<Pod> podListener = new EntityListener<Pod>() {
+        @Override
+        public void entityChanged(String id, Pod entity) {
+            podChanged(entity);
+        }
+
+        @Override
+        public void entityDeleted(String id, Pod entity) {
+            podDeleted(entity);
+        }
+    };
+
+    private final EntityListener<Service> serviceListener = new EntityListener<Service>() {
+        @Override
+        public void entityChanged(String id, Service entity) {
+            serviceChanged(entity);
+        }
+
+        @Override
+        public void entityDeleted(String id, Service entity) {
+            serviceDeleted(entity);
+        }
+    };
+
+    public void addListener(EntityListener<Endpoints> listener) {
+        listeners.addListener(listener);
+    }
+
+    public void removeListener(EntityListener<Endpoints> listener) {
+        listeners.removeListener(listener);
+    }
+
+    public EntityListener<Pod> getPodListener() {
+        return podListener;
+    }
+
+    public EntityListener<Service> getServiceListener() {
+        return serviceListener;
+    }
+
+    /**
+     * Returns the generation number which is incremented on every change to any endpoints
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the endpoints of all services
+     */
+    public synchronized List<Endpoints> getEndpoints() {
+        List<Endpoints> answer = new ArrayList<>();
+        for (ServiceEndpoints serviceEndpoints : services.values()) {
+            answer.add(serviceEndpoints.endpoints);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the endpoints of the services in the given namespace
+     */
+    public synchronized List<Endpoints> getEndpoints(String namespace) {
+        namespace = namespaceOrDefault(namespace);
+        List<Endpoints> answer = new ArrayList<>();
+        for (ServiceEndpoints serviceEndpoints : services.values()) {
+            if (namespace.equals(serviceEndpoints.namespace)) {
+                answer.add(serviceEndpoints.endpoints);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the endpoints of the given service or null if there is no such service.
+     * If no namespace is specified then the first service of the given name is used.
+     */
+    public synchronized Endpoints getEndpoints(String namespace, String serviceName) {
+        if (Strings.isNotBlank(namespace)) {
+            ServiceEndpoints serviceEndpoints = services.get(key(namespace, serviceName));
+            return serviceEndpoints != null ? serviceEndpoints.endpoints : null;
+        }
+        for (ServiceEndpoints serviceEndpoints : services.values()) {
+            if (serviceEndpoints.name.equals(serviceName)) {
+                return serviceEndpoints.endpoints;
+            }
+        }
+        return null;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void podChanged(Pod pod) {
+        List<Endpoints> changed = new ArrayList<>();
+        synchronized (this) {
+            String podKey = key(KubernetesHelper.getNamespace(pod), getName(pod));
+            pods.put(podKey, pod);
+            Set<String> oldServiceKeys = podServices.remove(podKey);
+            Set<String> newServiceKeys = new HashSet<>();
+            for (ServiceEndpoints serviceEndpoints : services.values()) {
+                if (serviceEndpoints.updatePod(podKey, pod)) {
+                    changed.add(serviceEndpoints.endpoints);
+                }
+                if (serviceEndpoints.addresses.containsKey(podKey)) {
+                    newServiceKeys.add(serviceEndpoints.key);
+                }
+            }
+            if (!newServiceKeys.isEmpty()) {
+                podServices.put(podKey, newServiceKeys);
+            }
+            if (LOG.isDebugEnabled() && oldServiceKeys != null && !oldServiceKeys.equals(newServiceKeys)) {
+                LOG.debug("Pod " + podKey + " moved from services " + oldServiceKeys + " to " + newServiceKeys);
+            }
+        }
+        fireChanged(changed);
+    }
+
+    protected void podDeleted(Pod pod) {
+        List<Endpoints> changed = new ArrayList<>();
+        synchronized (this) {
+            String podKey = key(KubernetesHelper.getNamespace(pod), getName(pod));
+            pods.remove(podKey);
+            Set<String> serviceKeys = podServices.remove(podKey);
+            if (serviceKeys != null) {
+                for (String serviceKey : serviceKeys) {
+                    ServiceEndpoints serviceEndpoints = services.get(serviceKey);
+                    if (serviceEndpoints != null && serviceEndpoints.removePod(podKey)) {
+                        changed.add(serviceEndpoints.endpoints);
+                    }
+                }
+            }
+        }
+        fireChanged(changed);
+    }
+
+    protected void serviceChanged(Service service) {
+        Endpoints endpoints;
+        synchronized (this) {
+            ServiceEndpoints old = services.remove(key(KubernetesHelper.getNamespace(service), getName(service)));
+            if (old != null) {
+                removeServiceFromPods(old);
+            }
+            ServiceEndpoints serviceEndpoints = new ServiceEndpoints(service);
+            services.put(serviceEndpoints.key, serviceEndpoints);
+            for (Map.Entry<String, Pod> entry : pods.entrySet()) {
+                String podKey = entry.getKey();
+                List<EndpointAddress> addresses = serviceEndpoints.createAddresses(entry.getValue());
+                if (addresses != null) {
+                    serviceEndpoints.addresses.put(podKey, addresses);
+                    Set<String> serviceKeys = podServices.get(podKey);
+                    if (serviceKeys == null) {
+                        serviceKeys = new HashSet<>();
+                        podServices.put(podKey, serviceKeys);
+                    }
+                    serviceKeys.add(serviceEndpoints.key);
+                }
+            }
+            serviceEndpoints.rebuild();
+            endpoints = serviceEndpoints.endpoints;
+        }
+        listeners.entityChanged(getName(endpoints), endpoints);
+    }
+
+    protected void serviceDeleted(Service service) {
+        ServiceEndpoints old;
+        synchronized (this) {
+            old = services.remove(key(KubernetesHelper.getNamespace(service), getName(service)));
+            if (old != null) {
+                removeServiceFromPods(old);
+                generation.incrementAndGet();
+            }
+        }
+        if (old != null) {
+            listeners.entityDeleted(old.name, old.endpoints);
+        }
+    }
+
+    protected void removeServiceFromPods(ServiceEndpoints serviceEndpoints) {
+        for (String podKey : serviceEndpoints.addresses.keySet()) {
+            Set<String> serviceKeys = podServices.get(podKey);
+            if (serviceKeys != null) {
+                serviceKeys.remove(serviceEndpoints.key);
+                if (serviceKeys.isEmpty()) {
+                    podServices.remove(podKey);
+                }
+            }
+        }
+    }
+
+    protected void fireChanged(List<Endpoints> changed) {
+        for (Endpoints endpoints : changed) {
+            listeners.entityChanged(getName(endpoints), endpoints);
+        }
+    }
+
+    protected static String namespaceOrDefault(String namespace) {
+        return Strings.isNotBlank(namespace) ? namespace : DEFAULT_NAMESPACE;
+    }
+
+    protected static String key(String namespace, String name) {
+        return namespaceOrDefault(namespace) + "/" + name;
+    }
+
+    /**
+     * The current endpoints of a single service
+     */
+    protected class ServiceEndpoints {
+        private final String key;
+        private final String namespace;
+        private final String name;
+        private final Filter<Pod> filter;
+        private final List<Integer> portNumbers = new ArrayList<>();
+        // the addresses of each pod keyed by pod key, sorted so that the endpoints are stable
+        private final Map<String, List<EndpointAddress>> addresses = new TreeMap<>();
+        private Endpoints endpoints;
+
+        public ServiceEndpoints(Service service) {
+            this.namespace = namespaceOrDefault(KubernetesHelper.getNamespace(service));
+            this.name = getName(service);
+            this.key = key(namespace, name);
+            ServiceSpec spec = service.getSpec();
+            Map<String, String> selector = spec != null ? spec.getSelector() : null;
+            this.filter = selector != null && !selector.isEmpty() ? KubernetesHelper.createPodFilter(selector) : null;
+            if (spec != null && spec.getPorts() != null) {
+                for (ServicePort servicePort : spec.getPorts()) {
+                    Integer portNumber = KubernetesHelper.intOrStringToInteger(servicePort.getTargetPort(), namespace + ":" + name);
+                    if (portNumber != null) {
+                        portNumbers.add(portNumber);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Updates the addresses of the given pod returning true if the endpoints have changed
+         */
+        public boolean updatePod(String podKey, Pod pod) {
+            List<EndpointAddress> newAddresses = createAddresses(pod);
+            List<EndpointAddress> oldAddresses = newAddresses != null ? addresses.put(podKey, newAddresses) : addresses.remove(podKey);
+            if (oldAddresses == null ? newAddresses == null : sameAddresses(oldAddresses, newAddresses)) {
+                return false;
+            }
+            rebuild();
+            return true;
+        }
+
+        public boolean removePod(String podKey) {
+            if (addresses.remove(podKey) != null) {
+                rebuild();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the addresses for the pod if it is an endpoint of this service or null if it is not
+         */
+        public List<EndpointAddress> createAddresses(Pod pod) {
+            if (filter == null || portNumbers.isEmpty() || !namespace.equals(namespaceOrDefault(KubernetesHelper.getNamespace(pod))) || !filter.matches(pod)) {
+                return null;
+            }
+            PodStatus status = pod.getStatus();
+            String podIP = status != null ? status.getPodIP() : null;
+            if (podIP == null || !NodeHelper.isPodReady(pod)) {
+                return null;
+            }
+            List<EndpointAddress> answer = new ArrayList<>();
+            // we add an address per service port
+            for (int i = 0, size = portNumbers.size(); i < size; i++) {
+                EndpointAddress address = new EndpointAddress();
+                address.setIp(podIP);
+                ObjectReference ref = new ObjectReference();
+                ref.setNamespace(namespace);
+                ref.setName(getName(pod));
+                address.setTargetRef(ref);
+                answer.add(address);
+            }
+            return answer;
+        }
+
+        public void rebuild() {
+            List<EndpointAddress> allAddresses = new ArrayList<>();
+            for (List<EndpointAddress> list : addresses.values()) {
+                allAddresses.addAll(list);
+            }
+            EndpointSubset subset = new EndpointSubset();
+            subset.setAddresses(allAddresses);
+            endpoints = new EndpointsBuilder().
+                    withNewMetadata().withName(name).withNamespace(namespace).withResourceVersion("" + generation.incrementAndGet()).endMetadata().
+                    addToSubsets(subset).
+                    build();
+        }
+
+        private boolean sameAddresses(List<EndpointAddress> a, List<EndpointAddress> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            // all the addresses of a pod share the same IP and pod name
+            EndpointAddress first = a.get(0);
+            EndpointAddress second = b.get(0);
+            return Strings.isNotBlank(first.getIp()) && first.getIp().equals(second.getIp())
+                    && first.getTargetRef().getName().equals(second.getTargetRef().getName());
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.utils.Objects;
+import io.fabric8.utils.Strings;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the {@link KubernetesExtensionsClient} instances used to talk to each {@link HostNode} so that remote
+ * pod requests reuse the client proxies and their persistent HTTP connections rather than creating new ones each time.
+ * <p/>
+ * The clients of a host are discarded when the host's web URL changes or the host goes away. The latency and
+ * errors of the requests to each host are recorded.
+ */
+public class HostNodeClients {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HostNodeClients.class);
+
+    private final long connectionTimeout;
+    private final long receiveTimeout;
+    private final ConcurrentMap<String, HostClients> clients = new ConcurrentHashMap<>();
+    private final EntityListener<HostNode> hostNodeListener = new EntityListener<HostNode>() {
+        @Override
+        public void entityChanged(String id, HostNode entity) {
+            HostClients hostClients = clients.get(id);
+            if (hostClients != null && !Objects.equal(hostClients.getWebUrl(), entity.getWebUrl())) {
+                invalidate(id);
+            }
+        }
+
+        @Override
+        public void entityDeleted(String id, HostNode entity) {
+            invalidate(id);
+        }
+    };
+
+    public HostNodeClients(long connectionTimeout, long receiveTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        this.receiveTimeout = receiveTimeout;
+    }
+
+    /**
+     * A request made to a host using one of its clients
+     */
+    public interface Request<T> {
+        T invoke(KubernetesExtensionsClient client) throws Exception;
+    }
+
+    /**
+     * Invokes the request with a client for the given host which no other thread is using, recording its latency
+     */
+    public <T> T invoke(HostNode hostNode, Request<T> request) throws Exception {
+        HostClients hostClients = getHostClients(hostNode);
+        KubernetesExtensionsClient client = hostClients.borrow();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T answer = request.invoke(client);
+            failed = false;
+            return answer;
+        } finally {
+            hostClients.getStatistics().requestCompleted(System.nanoTime() - start, failed);
+            hostClients.release(client);
+        }
+    }
+
+    /**
+     * Discards the clients of the given host
+     */
+    public void invalidate(String hostId) {
+        HostClients hostClients = clients.remove(hostId);
+        if (hostClients != null) {
+            LOG.debug("Discarding the clients for host " + hostId + " at " + hostClients.getWebUrl());
+            hostClients.close();
+        }
+    }
+
+    public void close() {
+        for (String hostId : clients.keySet()) {
+            invalidate(hostId);
+        }
+    }
+
+    /**
+     * Returns the listener which discards the clients of hosts which change their URL or go away
+     */
+    public EntityListener<HostNode> getHostNodeListener() {
+        return hostNodeListener;
+    }
+
+    /**
+     * Returns the request statistics for each host ID
+     */
+    public Map<String, Statistics> getStatistics() {
+        Map<String, Statistics> answer = new TreeMap<>();
+        for (Map.Entry<String, HostClients> entry : clients.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return answer;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected HostClients getHostClients(HostNode hostNode) {
+        String webUrl = hostNode.getWebUrl();
+        if (Strings.isNullOrBlank(webUrl)) {
+            throw new IllegalArgumentException("No WebUrl so could not create client for host: " + hostNode);
+        }
+        String key = hostNode.getId();
+        HostClients answer = clients.get(key);
+        if (answer != null && !webUrl.equals(answer.getWebUrl())) {
+            // we may not have had the change event yet
+            clients.remove(key, answer);
+            answer.close();
+            answer = null;
+        }
+        if (answer == null) {
+            HostClients hostClients = new HostClients(webUrl);
+            answer = clients.putIfAbsent(key, hostClients);
+            if (answer == null) {
+                answer = hostClients;
+            }
+        }
+        return answer;
+    }
+
+    protected KubernetesExtensionsClient createClient(String webUrl) {
+        KubernetesExtensionsClient client = new KubernetesExtensionsClient(webUrl);
+        HTTPConduit conduit = WebClient.getConfig(client.getExtensions()).getHttpConduit();
+        HTTPClientPolicy policy = conduit.getClient();
+        if (policy == null) {
+            policy = new HTTPClientPolicy();
+            conduit.setClient(policy);
+        }
+        policy.setConnection(ConnectionType.KEEP_ALIVE);
+        policy.setConnectionTimeout(connectionTimeout);
+        policy.setReceiveTimeout(receiveTimeout);
+        return client;
+    }
+
+    /**
+     * The idle clients of a host; a CXF client proxy is not safe to use from multiple threads at once so each
+     * request borrows its own client
+     */
+    protected class HostClients {
+        private final String webUrl;
+        private final BlockingQueue<KubernetesExtensionsClient> idle = new LinkedBlockingQueue<>();
+        private final Statistics statistics = new Statistics();
+        private volatile boolean closed;
+
+        public HostClients(String webUrl) {
+            this.webUrl = webUrl;
+        }
+
+        public String getWebUrl() {
+            return webUrl;
+        }
+
+        public Statistics getStatistics() {
+            return statistics;
+        }
+
+        public KubernetesExtensionsClient borrow() {
+            KubernetesExtensionsClient answer = idle.poll();
+            if (answer == null) {
+                answer = createClient(webUrl);
+            }
+            return answer;
+        }
+
+        public void release(KubernetesExtensionsClient client) {
+            if (closed || !idle.offer(client)) {
+                closeClient(client);
+            }
+        }
+
+        public void close() {
+            closed = true;
+            KubernetesExtensionsClient client;
+            while ((client = idle.poll()) != null) {
+                closeClient(client);
+            }
+        }
+
+        protected void closeClient(KubernetesExtensionsClient client) {
+            try {
+                WebClient.client(client.getExtensions()).close();
+            } catch (Exception e) {
+                LOG.debug("Failed to close client for " + webUrl + ". " + e, e);
+            }
+        }
+    }
+
+    /**
+     * The request latency and error counts of a host
+     */
+    public static class Statistics {
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+        private volatile long lastLatency;
+
+        public void requestCompleted(long nanos, boolean failed) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            requestCount.incrementAndGet();
+            if (failed) {
+                errorCount.incrementAndGet();
+            }
+            totalLatency.addAndGet(millis);
+            lastLatency = millis;
+            long max;
+            do {
+                max = maxLatency.get();
+            } while (millis > max && !maxLatency.compareAndSet(max, millis));
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{requests=" + getRequestCount() + ", errors=" + getErrorCount() + ", averageLatency=" + getAverageLatency()
+                    + ", maxLatency=" + getMaxLatency() + "}";
+        }
+
+        public long getRequestCount() {
+            return requestCount.get();
+        }
+
+        public long getErrorCount() {
+            return errorCount.get();
+        }
+
+        public long getLastLatency() {
+            return lastLatency;
+        }
+
+        public long getMaxLatency() {
+            return maxLatency.get();
+        }
+
+        public long getAverageLatency() {
+            long count = requestCount.get();
+            return count > 0 ? totalLatency.get() / count : 0;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.fabric8.jube.apimaster;
 
+import java.util.List;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -22,6 +23,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 
 import io.fabric8.kubernetes.api.Kubernetes;
@@ -46,4 +48,22 @@ public interface KubernetesExtensions extends Kubernetes {
     @Consumes("text/plain")
     String deleteLocalPod(@PathParam("id") @NotNull String id, @QueryParam("namespace") String namespace) throws Exception;
 
+    /**
+     * Creates the given pods on this node returning the result for each pod in the same order
+     */
+    @POST
+    @Path("local/pods/batch")
+    @Consumes("application/json")
+    @Produces("application/json")
+    List<PodBatchResult> createLocalPods(List<Pod> entities) throws Exception;
+
+    /**
+     * Deletes the pods with the given IDs from this node returning the result for each pod in the same order
+     */
+    @POST
+    @Path("local/pods/batch/delete")
+    @Consumes("application/json")
+    @Produces("application/json")
+    List<PodBatchResult> deleteLocalPods(List<String> ids, @QueryParam("namespace") String namespace) throws Exception;
+
 }
@@ -15,6 +15,8 @@
  */
 package io.fabric8.jube.apimaster;
 
+import java.util.List;
+
 import io.fabric8.kubernetes.api.KubernetesClient;
 import io.fabric8.kubernetes.api.KubernetesFactory;
 import io.fabric8.kubernetes.api.model.Pod;
@@ -75,4 +77,12 @@ public class KubernetesExtensionsClient extends KubernetesClient implements Kube
     public String deleteLocalPod(@NotNull String id, String namespace) throws Exception {
         return getExtensions().deleteLocalPod(id, namespace);
     }
+
+    public List<PodBatchResult> createLocalPods(List<Pod> entities) throws Exception {
+        return getExtensions().createLocalPods(entities);
+    }
+
+    public List<PodBatchResult> deleteLocalPods(List<String> ids, String namespace) throws Exception {
+        return getExtensions().deleteLocalPods(ids, namespace);
+    }
 }
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+/**
+ * The result of creating or deleting one pod in a batch request
+ */
+public class PodBatchResult {
+    private String id;
+    private boolean success;
+    private String error;
+
+    public PodBatchResult() {
+    }
+
+    public PodBatchResult(String id, boolean success, String error) {
+        this.id = id;
+        this.success = success;
+        this.error = error;
+    }
+
+    public static PodBatchResult succeeded(String id) {
+        return new PodBatchResult(id, true, null);
+    }
+
+    public static PodBatchResult failed(String id, Throwable e) {
+        return new PodBatchResult(id, false, String.valueOf(e));
+    }
+
+    @Override
+    public String toString() {
+        return "PodBatchResult{id='" + id + "', success=" + success + (error != null ? ", error='" + error + "'" : "") + "}";
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.utils.Strings;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
+
+/**
+ * An index of which {@link HostNode} each pod was created on so that requests for a pod can go straight to its host.
+ * <p/>
+ * The host node ID is stored as an annotation on the pod when it is created; for pods without the annotation the
+ * host is found from the pod's host IP.
+ */
+public class PodPlacementIndex {
+    public static final String HOST_NODE_ANNOTATION = "jube.fabric8.io/hostNode";
+
+    private final HostNodeModel hostNodeModel;
+    private final Map<String, String> podHosts = new HashMap<>();
+    private final Map<String, Set<String>> hostPods = new HashMap<>();
+    private final EntityListener<Pod> podListener = new EntityListener<Pod>() {
+        @Override
+        public void entityChanged(String id, Pod entity) {
+            String hostId = getHostNodeId(entity);
+            if (hostId == null) {
+                HostNode hostNode = findHostByName(getHostIP(entity));
+                hostId = hostNode != null ? hostNode.getId() : null;
+            }
+            if (hostId != null) {
+                place(id, hostId);
+            }
+        }
+
+        @Override
+        public void entityDeleted(String id, Pod entity) {
+            remove(id);
+        }
+    };
+
+    public PodPlacementIndex(HostNodeModel hostNodeModel) {
+        this.hostNodeModel = hostNodeModel;
+    }
+
+    public static String getHostNodeId(Pod pod) {
+        ObjectMeta metadata = pod.getMetadata();
+        Map<String, String> annotations = metadata != null ? metadata.getAnnotations() : null;
+        return annotations != null ? annotations.get(HOST_NODE_ANNOTATION) : null;
+    }
+
+    public static void setHostNodeId(Pod pod, String hostId) {
+        ObjectMeta metadata = getOrCreateMetadata(pod);
+        Map<String, String> annotations = metadata.getAnnotations();
+        if (annotations == null) {
+            annotations = new HashMap<>();
+            metadata.setAnnotations(annotations);
+        }
+        annotations.put(HOST_NODE_ANNOTATION, hostId);
+    }
+
+    public EntityListener<Pod> getPodListener() {
+        return podListener;
+    }
+
+    /**
+     * Records that the given pod is on the given host
+     */
+    public synchronized void place(String podId, String hostId) {
+        String oldHostId = podHosts.put(podId, hostId);
+        if (oldHostId != null && !oldHostId.equals(hostId)) {
+            removeHostPod(oldHostId, podId);
+        }
+        Set<String> podIds = hostPods.get(hostId);
+        if (podIds == null) {
+            podIds = new HashSet<>();
+            hostPods.put(hostId, podIds);
+        }
+        podIds.add(podId);
+    }
+
+    public synchronized void remove(String podId) {
+        String hostId = podHosts.remove(podId);
+        if (hostId != null) {
+            removeHostPod(hostId, podId);
+        }
+    }
+
+    /**
+     * Returns the ID of the host the given pod is on or null if it is not known
+     */
+    public synchronized String getHostId(String podId) {
+        return podHosts.get(podId);
+    }
+
+    /**
+     * Returns the IDs of the pods on the given host
+     */
+    public synchronized Set<String> getPodIds(String hostId) {
+        Set<String> podIds = hostPods.get(hostId);
+        return podIds != null ? new HashSet<>(podIds) : Collections.<String>emptySet();
+    }
+
+    /**
+     * Returns the IDs of the hosts which have pods
+     */
+    public synchronized Set<String> getHostIds() {
+        return new HashSet<>(hostPods.keySet());
+    }
+
+    /**
+     * Returns the hosts the given pod may be on; just its own host if that is known otherwise all the hosts
+     */
+    public List<HostNode> getCandidateHosts(String podId, Pod pod) {
+        String hostId = getHostId(podId);
+        if (hostId == null && pod != null) {
+            hostId = getHostNodeId(pod);
+        }
+        HostNode hostNode = hostId != null ? hostNodeModel.getEntity(hostId) : null;
+        if (hostNode == null && pod != null) {
+            hostNode = findHostByName(getHostIP(pod));
+        }
+        if (hostNode != null) {
+            return Collections.singletonList(hostNode);
+        }
+        return new ArrayList<>(hostNodeModel.getMap().values());
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    private void removeHostPod(String hostId, String podId) {
+        Set<String> podIds = hostPods.get(hostId);
+        if (podIds != null) {
+            podIds.remove(podId);
+            if (podIds.isEmpty()) {
+                hostPods.remove(hostId);
+            }
+        }
+    }
+
+    /**
+     * Returns the host with the given name or null if there is not exactly one such host
+     */
+    protected HostNode findHostByName(String hostName) {
+        if (Strings.isNullOrBlank(hostName)) {
+            return null;
+        }
+        HostNode answer = null;
+        for (HostNode hostNode : hostNodeModel.getMap().values()) {
+            if (hostName.equals(hostNode.getHostName())) {
+                if (answer != null) {
+                    // several nodes on the same host so we can't tell which one
+                    return null;
+                }
+                answer = hostNode;
+            }
+        }
+        return answer;
+    }
+
+    private static String getHostIP(Pod pod) {
+        PodStatus status = pod.getStatus();
+        return status != null ? status.getHostIP() : null;
+    }
+}
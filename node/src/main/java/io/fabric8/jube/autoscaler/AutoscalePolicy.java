@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.autoscaler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Decides how many replicas an autoscaled replication controller should have.
+ * <p/>
+ * The raw recommendation is the current replicas scaled by the ratio of the observed metric to its target, ignoring
+ * ratios within the tolerance. Recommendations are stabilized so that we only scale up if every recommendation in the
+ * scale up window wanted more replicas, and only scale down to the highest recommendation in the scale down window.
+ * A cooldown after each change stops the replicas flapping while new pods start.
+ */
+public class AutoscalePolicy {
+    private final double tolerance;
+    private final long scaleUpWindow;
+    private final long scaleDownWindow;
+    private final long scaleUpCooldown;
+    private final long scaleDownCooldown;
+    private final Deque<Recommendation> history = new ArrayDeque<>();
+    private long lastScaleTime = -1;
+
+    public AutoscalePolicy(double tolerance, long scaleUpWindow, long scaleDownWindow, long scaleUpCooldown, long scaleDownCooldown) {
+        this.tolerance = tolerance;
+        this.scaleUpWindow = scaleUpWindow;
+        this.scaleDownWindow = scaleDownWindow;
+        this.scaleUpCooldown = scaleUpCooldown;
+        this.scaleDownCooldown = scaleDownCooldown;
+    }
+
+    /**
+     * Returns the number of replicas the controller should have
+     *
+     * @param spec        the autoscaling targets
+     * @param current     the current number of replicas
+     * @param cpu         the total CPU used by the pods as a percentage of one core
+     * @param connections the total number of active connections to the pods
+     * @param now         the current time in milliseconds
+     */
+    public synchronized int desiredReplicas(AutoscaleSpec spec, int current, double cpu, long connections, long now) {
+        int raw = recommend(spec, current, cpu, connections);
+        history.addLast(new Recommendation(now, raw));
+        long oldest = now - Math.max(scaleUpWindow, scaleDownWindow);
+        while (!history.isEmpty() && history.peekFirst().time < oldest) {
+            history.removeFirst();
+        }
+
+        int desired = current;
+        if (current < spec.getMinReplicas() || current > spec.getMaxReplicas()) {
+            // always honour the bounds straight away
+            desired = clamp(spec, current);
+        } else if (raw > current) {
+            int lowest = raw;
+            for (Recommendation recommendation : history) {
+                if (recommendation.time >= now - scaleUpWindow) {
+                    lowest = Math.min(lowest, recommendation.replicas);
+                }
+            }
+            if (lowest > current && isCooledDown(now, scaleUpCooldown)) {
+                desired = lowest;
+            }
+        } else if (raw < current) {
+            int highest = raw;
+            for (Recommendation recommendation : history) {
+                if (recommendation.time >= now - scaleDownWindow) {
+                    highest = Math.max(highest, recommendation.replicas);
+                }
+            }
+            if (highest < current && isCooledDown(now, scaleDownCooldown)) {
+                desired = highest;
+            }
+        }
+        if (desired != current) {
+            lastScaleTime = now;
+        }
+        return desired;
+    }
+
+    /**
+     * Returns the replicas needed to bring the metrics back to their targets, ignoring any history
+     */
+    public int recommend(AutoscaleSpec spec, int current, double cpu, long connections) {
+        if (current <= 0) {
+            return clamp(spec, spec.getMinReplicas());
+        }
+        int answer = -1;
+        if (spec.getTargetCpu() > 0) {
+            answer = Math.max(answer, scale(current, cpu / current / spec.getTargetCpu()));
+        }
+        if (spec.getTargetConnections() > 0) {
+            answer = Math.max(answer, scale(current, connections / (double) current / spec.getTargetConnections()));
+        }
+        return clamp(spec, answer < 0 ? current : answer);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected int scale(int current, double ratio) {
+        if (Math.abs(ratio - 1.0) <= tolerance) {
+            return current;
+        }
+        // lets not round up rounding errors
+        return (int) Math.ceil(current * ratio - 1e-9);
+    }
+
+    protected boolean isCooledDown(long now, long cooldown) {
+        return lastScaleTime < 0 || now - lastScaleTime >= cooldown;
+    }
+
+    protected static int clamp(AutoscaleSpec spec, int replicas) {
+        return Math.max(spec.getMinReplicas(), Math.min(spec.getMaxReplicas(), replicas));
+    }
+
+    private static final class Recommendation {
+        private final long time;
+        private final int replicas;
+
+        private Recommendation(long time, int replicas) {
+            this.time = time;
+            this.replicas = replicas;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.autoscaler;
+
+import java.util.Map;
+
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * The autoscaling targets of a replication controller which are configured via annotations on the controller
+ */
+public class AutoscaleSpec {
+    public static final String PREFIX = "jube.fabric8.io/autoscale-";
+    public static final String MIN_REPLICAS = PREFIX + "min-replicas";
+    public static final String MAX_REPLICAS = PREFIX + "max-replicas";
+    /**
+     * The target CPU usage of each pod as a percentage of one core
+     */
+    public static final String TARGET_CPU = PREFIX + "target-cpu";
+    /**
+     * The target number of active proxy connections to each pod
+     */
+    public static final String TARGET_CONNECTIONS = PREFIX + "target-connections";
+    /**
+     * The service whose connections are counted; defaults to the name of the replication controller
+     */
+    public static final String SERVICE = PREFIX + "service";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(AutoscaleSpec.class);
+
+    private final int minReplicas;
+    private final int maxReplicas;
+    private final double targetCpu;
+    private final double targetConnections;
+    private final String service;
+
+    public AutoscaleSpec(int minReplicas, int maxReplicas, double targetCpu, double targetConnections, String service) {
+        this.minReplicas = minReplicas;
+        this.maxReplicas = maxReplicas;
+        this.targetCpu = targetCpu;
+        this.targetConnections = targetConnections;
+        this.service = service;
+    }
+
+    /**
+     * Returns the autoscaling spec of the given replication controller or null if it is not autoscaled
+     */
+    public static AutoscaleSpec fromReplicationController(ReplicationController replicationController) {
+        ObjectMeta metadata = replicationController.getMetadata();
+        Map<String, String> annotations = metadata != null ? metadata.getAnnotations() : null;
+        if (annotations == null || !annotations.containsKey(MAX_REPLICAS)) {
+            return null;
+        }
+        String name = getName(replicationController);
+        try {
+            int minReplicas = Integer.parseInt(getOrDefault(annotations, MIN_REPLICAS, "1"));
+            int maxReplicas = Integer.parseInt(annotations.get(MAX_REPLICAS));
+            double targetCpu = Double.parseDouble(getOrDefault(annotations, TARGET_CPU, "0"));
+            double targetConnections = Double.parseDouble(getOrDefault(annotations, TARGET_CONNECTIONS, "0"));
+            String service = getOrDefault(annotations, SERVICE, name);
+            if (maxReplicas < minReplicas || (targetCpu <= 0 && targetConnections <= 0)) {
+                LOG.warn("Ignoring invalid autoscale annotations on replication controller " + name + ": " + annotations);
+                return null;
+            }
+            return new AutoscaleSpec(minReplicas, maxReplicas, targetCpu, targetConnections, service);
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid autoscale annotations on replication controller " + name + ". " + e);
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AutoscaleSpec{replicas=" + minReplicas + ".." + maxReplicas + ", targetCpu=" + targetCpu
+                + ", targetConnections=" + targetConnections + ", service='" + service + "'}";
+    }
+
+    public int getMinReplicas() {
+        return minReplicas;
+    }
+
+    public int getMaxReplicas() {
+        return maxReplicas;
+    }
+
+    public double getTargetCpu() {
+        return targetCpu;
+    }
+
+    public double getTargetConnections() {
+        return targetConnections;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    private static String getOrDefault(Map<String, String> annotations, String key, String defaultValue) {
+        String answer = annotations.get(key);
+        return Strings.isNotBlank(answer) ? answer.trim() : defaultValue;
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.autoscaler;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.model.NodeMetrics;
+import io.fabric8.jube.model.NodeMetricsModel;
+import io.fabric8.jube.replicator.Replicator;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
+import io.fabric8.utils.Filters;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * Adjusts the replicas of the replication controllers which have autoscale annotations (see {@link AutoscaleSpec})
+ * using the pod CPU and proxy connection metrics published by each host node.
+ * <p/>
+ * Every node runs the autoscaler but it only changes the replicas while enabled by the master {@link Replicator}.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=Autoscaler", description = "Adjusts the replicas of the autoscaled replication controllers")
+public class Autoscaler {
+    public static final double TOLERANCE = 0.1;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(Autoscaler.class);
+
+    private final ApiMasterKubernetesModel model;
+    private final NodeMetricsModel metricsModel;
+    private final long interval;
+    private final long scaleUpWindow;
+    private final long scaleDownWindow;
+    private final long scaleUpCooldown;
+    private final long scaleDownCooldown;
+    private final Map<String, AutoscalePolicy> policies = new ConcurrentHashMap<>();
+    private final AtomicLong scaleUpCount = new AtomicLong();
+    private final AtomicLong scaleDownCount = new AtomicLong();
+    private volatile boolean enabled;
+    private Timer timer;
+
+    @Inject
+    public Autoscaler(ApiMasterKubernetesModel model,
+                      NodeMetricsModel metricsModel,
+                      @ConfigProperty(name = "AUTOSCALER_INTERVAL", defaultValue = "15000")
+                      long interval,
+                      @ConfigProperty(name = "AUTOSCALER_SCALE_UP_WINDOW", defaultValue = "30000")
+                      long scaleUpWindow,
+                      @ConfigProperty(name = "AUTOSCALER_SCALE_DOWN_WINDOW", defaultValue = "300000")
+                      long scaleDownWindow,
+                      @ConfigProperty(name = "AUTOSCALER_SCALE_UP_COOLDOWN", defaultValue = "60000")
+                      long scaleUpCooldown,
+                      @ConfigProperty(name = "AUTOSCALER_SCALE_DOWN_COOLDOWN", defaultValue = "300000")
+                      long scaleDownCooldown) {
+        this.model = model;
+        this.metricsModel = metricsModel;
+        this.interval = interval;
+        this.scaleUpWindow = scaleUpWindow;
+        this.scaleDownWindow = scaleDownWindow;
+        this.scaleUpCooldown = scaleUpCooldown;
+        this.scaleDownCooldown = scaleDownCooldown;
+        start();
+    }
+
+    public synchronized void start() {
+        if (timer == null && interval > 0) {
+            timer = new Timer("Jube autoscaler", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    if (enabled) {
+                        try {
+                            autoscale();
+                        } catch (Exception e) {
+                            LOG.warn("Failed to autoscale. " + e, e);
+                        }
+                    }
+                }
+            }, interval, interval);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables autoscaling; such as when this node becomes or stops being the master
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            // the next master starts with its own history
+            policies.clear();
+        }
+    }
+
+    @JmxManaged(description = "The number of times the replicas of a replication controller have been increased")
+    public long getScaleUpCount() {
+        return scaleUpCount.get();
+    }
+
+    @JmxManaged(description = "The number of times the replicas of a replication controller have been decreased")
+    public long getScaleDownCount() {
+        return scaleDownCount.get();
+    }
+
+    @JmxManaged(description = "The number of replication controllers being autoscaled")
+    public int getAutoscaledCount() {
+        return policies.size();
+    }
+
+    public void autoscale() {
+        long now = System.currentTimeMillis();
+        Collection<NodeMetrics> metrics = getRecentMetrics(now);
+        Set<String> autoscaled = new HashSet<>();
+        for (Map.Entry<String, ReplicationController> entry : model.getReplicationControllerMap().entrySet()) {
+            String rcID = entry.getKey();
+            ReplicationController replicationController = entry.getValue();
+            AutoscaleSpec spec = AutoscaleSpec.fromReplicationController(replicationController);
+            ReplicationControllerSpec rcSpec = replicationController.getSpec();
+            if (spec == null || rcSpec == null) {
+                continue;
+            }
+            autoscaled.add(rcID);
+            autoscale(rcID, replicationController, rcSpec, spec, metrics, now);
+        }
+        policies.keySet().retainAll(autoscaled);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void autoscale(String rcID, ReplicationController replicationController, ReplicationControllerSpec rcSpec,
+                             AutoscaleSpec spec, Collection<NodeMetrics> metrics, long now) {
+        Set<String> podIds = new HashSet<>();
+        for (Pod pod : Filters.filter(model.getPods(rcSpec.getSelector()), Replicator.podHasNotTerminated())) {
+            podIds.add(getName(pod));
+        }
+        double cpu = 0;
+        long connections = 0;
+        for (NodeMetrics nodeMetrics : metrics) {
+            for (String podId : podIds) {
+                Double podCpu = nodeMetrics.getPodCpu().get(podId);
+                if (podCpu != null) {
+                    cpu += podCpu;
+                }
+            }
+            Long serviceConnections = nodeMetrics.getServiceConnections().get(spec.getService());
+            if (serviceConnections != null) {
+                connections += serviceConnections;
+            }
+        }
+
+        AutoscalePolicy policy = policies.get(rcID);
+        if (policy == null) {
+            policy = new AutoscalePolicy(TOLERANCE, scaleUpWindow, scaleDownWindow, scaleUpCooldown, scaleDownCooldown);
+            policies.put(rcID, policy);
+        }
+        Integer replicas = rcSpec.getReplicas();
+        int current = replicas != null ? replicas : 0;
+        int desired = policy.desiredReplicas(spec, current, cpu, connections, now);
+        if (desired != current) {
+            LOG.info("Autoscaling replication controller " + rcID + " from " + current + " to " + desired + " replicas with " + podIds.size()
+                    + " pods using " + Math.round(cpu) + "% CPU and " + connections + " connections; " + spec);
+            if (desired > current) {
+                scaleUpCount.incrementAndGet();
+            } else {
+                scaleDownCount.incrementAndGet();
+            }
+            rcSpec.setReplicas(desired);
+            model.updateReplicationController(rcID, replicationController);
+        }
+    }
+
+    /**
+     * Returns the metrics of the nodes which have reported recently
+     */
+    protected Collection<NodeMetrics> getRecentMetrics(long now) {
+        Collection<NodeMetrics> answer = metricsModel.getMap().values();
+        for (Iterator<NodeMetrics> iter = answer.iterator(); iter.hasNext();) {
+            if (now - iter.next().getTimestamp() > 3 * interval) {
+                iter.remove();
+            }
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.autoscaler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.google.common.collect.ImmutableMap;
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.local.PodCurrentContainer;
+import io.fabric8.jube.local.ProcessMetricsCollector;
+import io.fabric8.jube.model.NodeMetrics;
+import io.fabric8.jube.model.NodeMetricsModel;
+import io.fabric8.jube.process.ProcessMetrics;
+import io.fabric8.jube.proxy.KubeProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * Periodically publishes the CPU used by each local pod and the active connections of each service proxy on this
+ * node so that the autoscaler can use them
+ */
+public class NodeMetricsReporter {
+    private static final transient Logger LOG = LoggerFactory.getLogger(NodeMetricsReporter.class);
+
+    private final String nodeId;
+    private final NodeMetricsModel metricsModel;
+    private final ProcessMetricsCollector processMetrics;
+    private final KubernetesModel model;
+    private final KubeProxy kubeProxy;
+    private final long reportInterval;
+    private Timer timer;
+
+    public NodeMetricsReporter(String nodeId, NodeMetricsModel metricsModel, ProcessMetricsCollector processMetrics, KubernetesModel model,
+                               KubeProxy kubeProxy, long reportInterval) {
+        this.nodeId = nodeId;
+        this.metricsModel = metricsModel;
+        this.processMetrics = processMetrics;
+        this.model = model;
+        this.kubeProxy = kubeProxy;
+        this.reportInterval = reportInterval;
+    }
+
+    public synchronized void start() {
+        if (timer == null && reportInterval > 0) {
+            timer = new Timer("Jube node metrics reporter", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        report();
+                    } catch (Exception e) {
+                        LOG.warn("Failed to report node metrics. " + e, e);
+                    }
+                }
+            }, reportInterval, reportInterval);
+        }
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    public void report() {
+        metricsModel.write(collect());
+    }
+
+    public NodeMetrics collect() {
+        long now = System.currentTimeMillis();
+        NodeMetrics answer = new NodeMetrics();
+        answer.setId(nodeId);
+        answer.setTimestamp(now);
+        answer.setPodCpu(collectPodCpu());
+        answer.setServiceConnections(kubeProxy.getActiveConnections());
+        return answer;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected Map<String, Double> collectPodCpu() {
+        Map<String, Double> answer = new HashMap<>();
+        ImmutableMap<String, PodCurrentContainer> podContainers = model.getPodRunningContainers(model);
+        for (Map.Entry<String, ProcessMetrics> entry : processMetrics.getMetrics().entrySet()) {
+            PodCurrentContainer podContainer = podContainers.get(entry.getKey());
+            double cpu = entry.getValue().getCpuPercent();
+            if (podContainer != null && cpu >= 0) {
+                // lets add up the containers of each pod
+                String podId = getName(podContainer.getPod());
+                Double total = answer.get(podId);
+                answer.put(podId, (total != null ? total : 0) + cpu);
+            }
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.process.Installation;
+import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.jube.process.support.ProcessTerminator;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops the containers of deleted pods.
+ * <p/>
+ * All the containers are stopped concurrently. Each one is sent SIGTERM and then SIGKILL if it has not exited within the
+ * grace period; exits are detected by the {@link ProcessMonitor}'s exit watcher rather than by polling each process.
+ * Once a container has stopped it is uninstalled in the background.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=ContainerStopper", description = "Stops the containers of deleted pods")
+public class ContainerStopper {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ContainerStopper.class);
+
+    private final KubernetesModel model;
+    private final ProcessManager processManager;
+    private final ProcessMonitor processMonitor;
+    private final ProcessTerminator terminator;
+    private final long gracePeriod;
+    private final ExecutorService stopThreadPool = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-container-stop-%s").build());
+    private final ExecutorService uninstallThread = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-container-uninstall-%s").build());
+    private final AtomicInteger stopping = new AtomicInteger();
+
+    @Inject
+    public ContainerStopper(ApiMasterKubernetesModel model,
+                            ProcessManager processManager,
+                            ProcessMonitor processMonitor,
+                            @ConfigProperty(name = "JUBE_STOP_GRACE_PERIOD", defaultValue = "" + ProcessTerminator.DEFAULT_GRACE_PERIOD)
+                            long gracePeriod) {
+        this.model = model;
+        this.processManager = processManager;
+        this.processMonitor = processMonitor;
+        this.terminator = new ProcessTerminator(processMonitor.getExitWatcher());
+        this.gracePeriod = gracePeriod;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        stopThreadPool.shutdownNow();
+        uninstallThread.shutdown();
+    }
+
+    /**
+     * Deletes the pod from the model then stops its containers, returning once they have all stopped
+     */
+    public void deletePod(String podId, String namespace) throws Exception {
+        try {
+            deletePodAsync(podId, namespace).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the pod from the model then stops its containers, returning a future which completes once they have all stopped
+     */
+    public Future<Object> deletePodAsync(final String podId, final String namespace) {
+        return stopThreadPool.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Pod pod = model.deletePod(podId, namespace);
+                if (pod != null) {
+                    stopContainers(NodeHelper.getOrCreatePodDesiredContainers(pod));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stops the given containers concurrently, returning once they have all stopped
+     */
+    public void stopContainers(List<Container> containers) throws InterruptedException {
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (Container container : containers) {
+            final String containerName = container.getName();
+            final Installation installation = processManager.getInstallation(containerName);
+            if (installation == null) {
+                LOG.info("Cannot delete non existing container: {}", containerName);
+                continue;
+            }
+            futures.add(stopThreadPool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return stopContainer(installation);
+                }
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                LOG.warn("Error during stopping container. This exception is ignored", e.getCause());
+            }
+        }
+    }
+
+    @JmxManaged(description = "The number of containers currently being stopped")
+    public int getStoppingCount() {
+        return stopping.get();
+    }
+
+    @JmxManaged(description = "The number of containers which had to be killed as they did not stop within the grace period")
+    public int getKilledCount() {
+        return terminator.getKilledCount();
+    }
+
+    @JmxManaged(description = "The millis to wait for a container to stop before killing it")
+    public long getGracePeriod() {
+        return gracePeriod;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected boolean stopContainer(final Installation installation) throws InterruptedException {
+        final String containerName = installation.getId();
+        long start = System.currentTimeMillis();
+        boolean stopped;
+        processMonitor.cancelRestart(containerName);
+        stopping.incrementAndGet();
+        try {
+            stopped = terminator.terminate(installation, gracePeriod);
+        } finally {
+            stopping.decrementAndGet();
+        }
+        LOG.info("Stopped container: {} in {} millis", containerName, System.currentTimeMillis() - start);
+
+        uninstallThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LOG.info("Uninstalling container: {}", containerName);
+                    processManager.uninstall(installation);
+                } catch (Exception e) {
+                    LOG.warn("Error during uninstalling container: " + containerName + ". This exception is ignored", e);
+                }
+            }
+        });
+        return stopped;
+    }
+}
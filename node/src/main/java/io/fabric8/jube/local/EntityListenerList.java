@@ -15,36 +15,66 @@
  */
 package io.fabric8.jube.local;
 
-import io.fabric8.kubernetes.api.model.Pod;
-
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Allows listeners to be added and removed
+ * Allows listeners to be added and removed.
+ * <p/>
+ * Listeners can be registered with a mask of the changes they are interested in (such as the {@link PodChanges} bits)
+ * so that they are not notified of changes they would ignore.
  */
 public class EntityListenerList<T> implements EntityListener<T> {
-    private List<EntityListener<T>> listeners = new CopyOnWriteArrayList<>();
+    public static final int ALL_CHANGES = -1;
+
+    private List<Registration<T>> listeners = new CopyOnWriteArrayList<>();
 
     public void addListener(EntityListener<T> listener) {
-        listeners.add(listener);
+        addListener(listener, ALL_CHANGES);
+    }
+
+    public void addListener(EntityListener<T> listener, int changeMask) {
+        listeners.add(new Registration<>(listener, changeMask));
     }
 
     public void removeListener(EntityListener<T> listener) {
-        listeners.remove(listener);
+        for (Registration<T> registration : listeners) {
+            if (registration.listener == listener) {
+                listeners.remove(registration);
+            }
+        }
     }
 
     @Override
     public void entityChanged(String id, T entity) {
-        for (EntityListener<T> listener : listeners) {
-            listener.entityChanged(id, entity);
+        entityChanged(id, entity, ALL_CHANGES);
+    }
+
+    /**
+     * Notifies only those listeners whose change mask matches the given changes
+     */
+    public void entityChanged(String id, T entity, int changes) {
+        for (Registration<T> registration : listeners) {
+            if ((registration.changeMask & changes) != 0) {
+                registration.listener.entityChanged(id, entity);
+            }
         }
     }
 
     @Override
     public void entityDeleted(String id, T entity) {
-        for (EntityListener<T> listener : listeners) {
-            listener.entityDeleted(id, entity);
+        for (Registration<T> registration : listeners) {
+            registration.listener.entityDeleted(id, entity);
+        }
+    }
+
+    private static final class Registration<T> {
+        private final EntityListener<T> listener;
+        private final int changeMask;
+
+        private Registration(EntityListener<T> listener, int changeMask) {
+            this.listener = listener;
+            this.changeMask = changeMask;
         }
     }
 }
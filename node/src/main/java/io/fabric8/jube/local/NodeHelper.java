@@ -20,20 +20,23 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.ImmutableSet;
 import io.fabric8.jube.KubernetesModel;
 import io.fabric8.jube.Statuses;
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
 import io.fabric8.jube.apimaster.ApiMasterService;
 import io.fabric8.jube.process.InstallOptions;
 import io.fabric8.jube.process.Installation;
 import io.fabric8.jube.process.ProcessController;
 import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.jube.process.config.ResourceLimits;
+import io.fabric8.jube.scheduler.ResourceRequests;
 import io.fabric8.jube.util.ImageMavenCoords;
 import io.fabric8.jube.util.InstallHelper;
 import io.fabric8.kubernetes.api.KubernetesHelper;
@@ -50,6 +53,8 @@ import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.utils.Objects;
@@ -69,9 +74,6 @@ public final class NodeHelper {
     public static final String KIND_REPLICATION_CONTROLLER = "ReplicationController";
     public static final String KIND_SERVICE = "SERVICE";
 
-    // use 60 second stop timeout by default
-    private static final int STOP_TIMEOUT = 60;
-
     private static final transient Logger LOG = LoggerFactory.getLogger(NodeHelper.class);
 
     private NodeHelper() {
@@ -236,6 +238,31 @@ public final class NodeHelper {
         return answer;
     }
 
+    /**
+     * Returns the CPU and memory limits of the container, with its CPU request used to weight its share of the CPU,
+     * or null if it has none
+     */
+    public static ResourceLimits createResourceLimits(Container container) {
+        ResourceRequirements resources = container.getResources();
+        if (resources == null) {
+            return null;
+        }
+        Map<String, Quantity> limits = resources.getLimits();
+        Map<String, Quantity> requests = resources.getRequests();
+        long cpuLimit = limits != null ? ResourceRequests.parseCpuMillis(getAmount(limits.get("cpu"))) : 0;
+        long memoryLimit = limits != null ? ResourceRequests.parseMemory(getAmount(limits.get("memory"))) : 0;
+        long cpuRequest = requests != null ? ResourceRequests.parseCpuMillis(getAmount(requests.get("cpu"))) : 0;
+        if (cpuRequest <= 0) {
+            cpuRequest = cpuLimit;
+        }
+        ResourceLimits answer = new ResourceLimits(cpuLimit, cpuRequest, memoryLimit);
+        return answer.isEmpty() ? null : answer;
+    }
+
+    protected static String getAmount(Quantity quantity) {
+        return quantity != null ? quantity.getAmount() : null;
+    }
+
     protected static void createContainer(ProcessManager processManager, KubernetesModel model, Container container, Pod pod, PodStatus currentState) throws Exception {
         String containerName = container.getName();
         String image = container.getImage();
@@ -249,8 +276,9 @@ public final class NodeHelper {
         // now lets copy in the service env vars...
         appendServiceEnvironmentVariables(envVarMap, model);
         LOG.info("Env variables are: {}", envVarMap);
+        ResourceLimits limits = createResourceLimits(container);
         InstallOptions.InstallOptionsBuilder builder = new InstallOptions.InstallOptionsBuilder().
-                url(mavenUrl).environment(envVarMap);
+                url(mavenUrl).environment(envVarMap).limits(limits);
         if (Strings.isNotBlank(containerName)) {
             builder = builder.name(containerName).id(containerName);
         }
@@ -265,7 +293,7 @@ public final class NodeHelper {
                 mavenUrl = ImageMavenCoords.dockerImageToMavenURL(image, true);
                 Objects.notNull(mavenUrl, "mavenUrl");
                 builder = new InstallOptions.InstallOptionsBuilder().
-                        url(mavenUrl).environment(envVarMap);
+                        url(mavenUrl).environment(envVarMap).limits(limits);
                 if (Strings.isNotBlank(containerName)) {
                     builder = builder.name(containerName).id(containerName);
                 }
@@ -403,93 +431,6 @@ public final class NodeHelper {
         }
     }
 
-    public static void deleteContainers(ProcessManager processManager, KubernetesModel model, Pod pod, PodStatus currentState, List<Container> desiredContainers) throws Exception {
-        for (Container container : desiredContainers) {
-            deleteContainer(processManager, model, container, pod, currentState);
-        }
-    }
-
-    protected static void deleteContainer(ProcessManager processManager, KubernetesModel model, Container container, Pod pod, PodStatus currentState) throws Exception {
-        String containerName = container.getName();
-        Installation installation = processManager.getInstallation(containerName);
-        if (installation == null) {
-            LOG.info("Cannot delete non existing container: {}", containerName);
-            return;
-        }
-
-        ProcessController controller = installation.getController();
-
-        boolean kill = false;
-
-        // try graceful to stop first, then kill afterwards
-        // as the controller may issue a command that stops asynchronously, we need to check if the pid is alive
-        // until its graceful shutdown, before we go harder and try to kill it
-        try {
-            LOG.info("Stopping container: {}", containerName);
-            controller.stop();
-        } catch (Exception e) {
-            kill = true;
-            LOG.warn("Error during stopping container: " + containerName + ". This exception is ignored", e);
-        }
-
-        // if the process was alive then kill is not needed
-        boolean stopped = false;
-        for (int i = 0; i < STOP_TIMEOUT; i++) {
-            if (i > 0) {
-                LOG.info("Waiting for {} seconds to graceful stop container: {}", i, containerName);
-            }
-            // check if the process has been stopped graceful
-            if (!safeCheckIsAlive(installation)) {
-                stopped = true;
-                break;
-            } else {
-                // wait 1 sec
-                Thread.sleep(1000);
-            }
-        }
-        if (!stopped) {
-            LOG.warn("Cannot graceful stop container: {} after {} seconds. Will now forcibly shutdown the container.", containerName, STOP_TIMEOUT);
-        }
-
-        // if we did not stop graceful then do a kill
-        if (kill || !stopped) {
-            try {
-                LOG.info("Killing container: {}", containerName);
-                controller.kill();
-            } catch (Exception e) {
-                LOG.warn("Error during killing container: " + containerName + ". This exception is ignored", e);
-            }
-        }
-
-        try {
-            LOG.info("Uninstalling container: {}", containerName);
-            controller.uninstall();
-        } catch (Exception e) {
-            LOG.warn("Error during uninstalling container: " + containerName + ". This exception is ignored", e);
-        }
-
-        try {
-            LOG.info("Deleting pod: {}", getName(pod));
-            model.deletePod(getName(pod), KubernetesHelper.getNamespace(pod));
-        } catch (Exception e) {
-            // ignore
-            LOG.warn("Error during deleting pod: " + getName(pod) + ". This exception is ignored", e);
-        }
-
-        LOG.info("Deleted container: {} done", containerName);
-    }
-
-    private static boolean safeCheckIsAlive(Installation installation) {
-        Long pid = 0L;
-        try {
-            pid = installation.getActivePid();
-        } catch (Exception e) {
-            // ignore, but force a pid value so we run for the timeout duration
-        }
-        return pid != null && pid.longValue() > 0;
-    }
-
-
     public static void containerAlive(Pod pod, String id, boolean alive) {
         PodStatus currentState = getOrCreatetStatus(pod);
         if (alive) {
@@ -504,6 +445,10 @@ public final class NodeHelper {
             }
         }
         setContainerRunningState(pod, id, alive);
+        // containers with a readiness probe are only ready once the probe succeeds
+        if (!alive || !hasReadinessProbe(pod, id)) {
+            setReady(pod, id, alive);
+        }
     }
 
     protected static boolean isWaiting(List<ContainerStatus> containerStatuses) {
@@ -526,6 +471,79 @@ public final class NodeHelper {
         }
     }
 
+    /**
+     * Sets the number of times the given container has been restarted
+     */
+    public static void setRestartCount(Pod pod, String id, int restartCount) {
+        getOrCreateContainerInfo(pod, id).setRestartCount(restartCount);
+    }
+
+    /**
+     * Sets whether the given container is ready to be used as a service endpoint
+     */
+    public static void setReady(Pod pod, String id, boolean ready) {
+        getOrCreateContainerInfo(pod, id).setReady(ready);
+    }
+
+    /**
+     * Returns true if the given container of the pod has a readiness probe
+     */
+    public static boolean hasReadinessProbe(Pod pod, String id) {
+        PodSpec spec = pod.getSpec();
+        List<Container> containers = spec != null ? spec.getContainers() : null;
+        Container container = containers != null ? findContainer(containers, id) : null;
+        return container != null && container.getReadinessProbe() != null;
+    }
+
+    /**
+     * Returns true if the pod has container statuses and they are all ready. A running container whose readiness has
+     * not been recorded, such as one created before readiness was tracked, is ready if it has no readiness probe
+     */
+    public static boolean isPodReady(Pod pod) {
+        PodStatus status = pod.getStatus();
+        List<ContainerStatus> containerStatuses = status != null ? status.getContainerStatuses() : null;
+        if (containerStatuses == null || containerStatuses.isEmpty()) {
+            return false;
+        }
+        PodSpec spec = pod.getSpec();
+        List<Container> containers = spec != null && spec.getContainers() != null ? spec.getContainers() : new ArrayList<Container>();
+        // the pod wide status without a container ID is only used if there are no container statuses
+        boolean hasContainerIDs = false;
+        for (ContainerStatus containerStatus : containerStatuses) {
+            if (containerStatus.getContainerID() != null) {
+                hasContainerIDs = true;
+                break;
+            }
+        }
+        for (ContainerStatus containerStatus : containerStatuses) {
+            if (hasContainerIDs && containerStatus.getContainerID() == null) {
+                continue;
+            }
+            if (!isContainerReady(containerStatus, containers)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static boolean isContainerReady(ContainerStatus containerStatus, List<Container> containers) {
+        Boolean ready = containerStatus.getReady();
+        if (ready != null) {
+            return ready.booleanValue();
+        }
+        ContainerState state = containerStatus.getState();
+        if (state == null || state.getRunning() == null) {
+            return false;
+        }
+        String containerID = containerStatus.getContainerID();
+        for (Container container : containers) {
+            if ((containerID == null || containerID.equals(container.getName())) && container.getReadinessProbe() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static Container addOrUpdateDesiredContainer(Pod pod, String containerName, Container container) {
         List<Container> containers = getOrCreatePodDesiredContainers(pod);
         Container oldContainer = findContainer(containers, containerName);
@@ -540,6 +558,9 @@ public final class NodeHelper {
         newContainer.setEnv(container.getEnv());
         newContainer.setImage(container.getImage());
         newContainer.setPorts(container.getPorts());
+        newContainer.setResources(container.getResources());
+        newContainer.setReadinessProbe(container.getReadinessProbe());
+        newContainer.setLivenessProbe(container.getLivenessProbe());
         newContainer.setVolumeMounts(container.getVolumeMounts());
         newContainer.setWorkingDir(container.getWorkingDir());
         newContainer.getAdditionalProperties().putAll(container.getAdditionalProperties());
@@ -578,41 +599,40 @@ public final class NodeHelper {
         return currentState;
     }
 
-    public static void deletePod(ProcessManager processManager, KubernetesModel model, String podId, String namespace) throws Exception {
-        Pod pod = model.deletePod(podId, namespace);
-        if (pod != null) {
-            List<Container> desiredContainers = NodeHelper.getOrCreatePodDesiredContainers(pod);
-            NodeHelper.deleteContainers(processManager, model, pod, NodeHelper.getOrCreatetStatus(pod), desiredContainers);
-        }
-    }
-
     /**
      * Performs a block of code and updates the pod model if its updated
      */
     public static void podTransaction(KubernetesModel model, Pod pod, Runnable task) {
-        String oldJson = getPodJson(pod);
+        Pod old = copyPod(pod);
         task.run();
-        String newJson = getPodJson(pod);
-
-        // lets only update the model if we've really changed the pod
-        if (!java.util.Objects.equals(oldJson, newJson)) {
-            model.updatePod(getName(pod), pod);
-        }
+        updatePodIfChanged(model, pod, old);
     }
 
     /**
      * Performs a block of code and updates the pod model if its updated
      */
     public static <T> T podTransaction(KubernetesModel model, Pod pod, Callable<T> task) throws Exception {
-        String oldJson = getPodJson(pod);
+        Pod old = copyPod(pod);
         T answer = task.call();
-        String newJson = getPodJson(pod);
+        updatePodIfChanged(model, pod, old);
+        return answer;
+    }
 
+    /**
+     * Updates the pod model if the pod has changed since the given copy of it was taken
+     */
+    protected static void updatePodIfChanged(KubernetesModel model, Pod pod, Pod old) {
         // lets only update the model if we've really changed the pod
-        if (!java.util.Objects.equals(oldJson, newJson)) {
+        int changes = PodChanges.compute(old, pod);
+        if (changes == PodChanges.NONE) {
+            return;
+        }
+        if (model instanceof ApiMasterKubernetesModel) {
+            // the pod may be the one held by the model, in which case the listeners must be told what changed now
+            ((ApiMasterKubernetesModel) model).updatePod(getName(pod), pod, changes);
+        } else {
             model.updatePod(getName(pod), pod);
         }
-        return answer;
     }
 
 
@@ -643,25 +663,17 @@ public final class NodeHelper {
     }
 
 
-    protected static String getPodJson(Pod pod) {
-        try {
-            return KubernetesHelper.toJson(pod);
-        } catch (JsonProcessingException e) {
-            LOG.warn("Could not convert pod to json: " + e, e);
-            return null;
-        }
-    }
-
     /**
-     * Returns true if there has been a change in the JSON of the given entity
+     * Returns a deep copy of the pod, or null if it could not be copied, so that it can be changed without changing
+     * the pod held by the model; listeners are only told about changes between the model's pod and the new one
      */
-    public static boolean podHasChanged(Pod currentEntity, Pod oldEntity) {
-        if (currentEntity == null || oldEntity == null) {
-            return true;
+    public static Pod copyPod(Pod pod) {
+        try {
+            return (Pod) KubernetesHelper.loadJson(KubernetesHelper.toJson(pod).getBytes());
+        } catch (IOException e) {
+            LOG.warn("Could not copy pod " + getName(pod) + ": " + e, e);
+            return null;
         }
-        String oldJson = getPodJson(oldEntity);
-        String newJson = getPodJson(currentEntity);
-        return !java.util.Objects.equals(oldJson, newJson);
     }
 
     public static void setPodTerminated(Pod pod, Exception failed) {
@@ -674,17 +686,10 @@ public final class NodeHelper {
     }
 
     public static void setPodTerminated(PodStatus podStatus, String message) {
-        List<ContainerStatus> containerStatuses = podStatus.getContainerStatuses();
-        if (containerStatuses == null) {
-            containerStatuses = new ArrayList<ContainerStatus>();
-            podStatus.setContainerStatuses(containerStatuses);
-        }
-        containerStatuses.clear();
         ContainerStatus status = new ContainerStatusBuilder().withNewState().
                 withNewTermination().withMessage(message).withFinishedAt(createAtString()).endTermination().endState().
                 build();
-        containerStatuses.add(status);
-        podStatus.setContainerStatuses(containerStatuses);
+        setPodStatus(podStatus, status);
     }
 
     public static String createAtString() {
@@ -692,17 +697,10 @@ public final class NodeHelper {
     }
 
     public static void setPodRunning(PodStatus podStatus) {
-        List<ContainerStatus> containerStatuses = podStatus.getContainerStatuses();
-        if (containerStatuses == null) {
-            containerStatuses = new ArrayList<ContainerStatus>();
-            podStatus.setContainerStatuses(containerStatuses);
-        }
-        containerStatuses.clear();
         ContainerStatus status = new ContainerStatusBuilder().withNewState().
                 withNewRunning().withStartedAt(createAtString()).endRunning().endState().
                 build();
-        containerStatuses.add(status);
-        podStatus.setContainerStatuses(containerStatuses);
+        setPodStatus(podStatus, status);
     }
 
     public static void setPodWaiting(Pod pod) {
@@ -715,16 +713,28 @@ public final class NodeHelper {
     }
 
     public static void setPodWaiting(PodStatus podStatus, String reason) {
+        ContainerStatus status = new ContainerStatusBuilder().withNewState().
+                withNewWaiting().withReason(reason).endWaiting().endState().
+                build();
+        setPodStatus(podStatus, status);
+    }
+
+    /**
+     * Replaces the pod wide status (the one without a container ID) keeping the status of each container
+     * so that their readiness, restart counts and resource usage survive each scan
+     */
+    protected static void setPodStatus(PodStatus podStatus, ContainerStatus status) {
         List<ContainerStatus> containerStatuses = podStatus.getContainerStatuses();
         if (containerStatuses == null) {
             containerStatuses = new ArrayList<ContainerStatus>();
             podStatus.setContainerStatuses(containerStatuses);
         }
-        containerStatuses.clear();
-        ContainerStatus status = new ContainerStatusBuilder().withNewState().
-                withNewWaiting().withReason(reason).endWaiting().endState().
-                build();
-        containerStatuses.add(status);
-        podStatus.setContainerStatuses(containerStatuses);
+        Iterator<ContainerStatus> iter = containerStatuses.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getContainerID() == null) {
+                iter.remove();
+            }
+        }
+        containerStatuses.add(0, status);
     }
 }
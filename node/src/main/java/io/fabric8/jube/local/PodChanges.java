@@ -0,0 +1,275 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.model.ContainerState;
+import io.fabric8.kubernetes.api.model.ContainerStateRunning;
+import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
+import io.fabric8.kubernetes.api.model.ContainerStateWaiting;
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bit mask describing which aspects of a {@link Pod} have changed so that listeners can ignore the changes they are
+ * not interested in
+ */
+public final class PodChanges {
+    /**
+     * The labels of the pod have changed
+     */
+    public static final int LABELS = 1;
+    /**
+     * The host IP, pod IP or container ports have changed
+     */
+    public static final int ADDRESS = 1 << 1;
+    /**
+     * The state of the containers or the pod phase have changed
+     */
+    public static final int CONTAINER_STATE = 1 << 2;
+    /**
+     * The spec of the pod has changed
+     */
+    public static final int SPEC = 1 << 3;
+    /**
+     * Anything else has changed such as annotations or conditions
+     */
+    public static final int OTHER = 1 << 4;
+    /**
+     * The pod has become ready or stopped being ready to be used as a service endpoint
+     */
+    public static final int READINESS = 1 << 5;
+
+    public static final int NONE = 0;
+    public static final int ALL = LABELS | ADDRESS | CONTAINER_STATE | SPEC | OTHER | READINESS;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(PodChanges.class);
+
+    private PodChanges() {
+        // utility class
+    }
+
+    /**
+     * Returns the mask of changes between the old and new versions of a pod; a missing old pod is treated as {@link #ALL}
+     * <p/>
+     * The labels, addresses, container states and the main fields of the containers are compared directly. The pods
+     * are only serialized to find changes to the remaining fields, such as annotations or volumes, when none of those
+     * have changed.
+     */
+    public static int compute(Pod oldPod, Pod newPod) {
+        if (oldPod == null || newPod == null) {
+            return ALL;
+        }
+        if (oldPod == newPod) {
+            return NONE;
+        }
+        int answer = NONE;
+        ObjectMeta oldMetadata = oldPod.getMetadata();
+        ObjectMeta newMetadata = newPod.getMetadata();
+        if (!equal(oldMetadata != null ? oldMetadata.getLabels() : null, newMetadata != null ? newMetadata.getLabels() : null)) {
+            answer |= LABELS;
+        }
+        PodStatus oldStatus = oldPod.getStatus();
+        PodStatus newStatus = newPod.getStatus();
+        List<Container> oldContainers = containers(oldPod.getSpec());
+        List<Container> newContainers = containers(newPod.getSpec());
+        if (!equal(oldStatus != null ? oldStatus.getHostIP() : null, newStatus != null ? newStatus.getHostIP() : null)
+                || !equal(oldStatus != null ? oldStatus.getPodIP() : null, newStatus != null ? newStatus.getPodIP() : null)
+                || !sameContainerPorts(oldContainers, newContainers)) {
+            answer |= ADDRESS;
+        }
+        if (!equal(oldStatus != null ? oldStatus.getPhase() : null, newStatus != null ? newStatus.getPhase() : null)
+                || !sameContainerStatuses(oldStatus != null ? oldStatus.getContainerStatuses() : null, newStatus != null ? newStatus.getContainerStatuses() : null)) {
+            answer |= CONTAINER_STATE;
+        }
+        if (NodeHelper.isPodReady(oldPod) != NodeHelper.isPodReady(newPod)) {
+            answer |= READINESS;
+        }
+        if (!sameContainers(oldContainers, newContainers)) {
+            answer |= SPEC;
+        }
+        if (answer == NONE && !equal(toJson(oldPod), toJson(newPod))) {
+            answer |= equal(toJson(oldPod.getSpec()), toJson(newPod.getSpec())) ? OTHER : SPEC;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns true if any of the changes are in the given mask
+     */
+    public static boolean matches(int changes, int mask) {
+        return (changes & mask) != 0;
+    }
+
+    public static String toString(int changes) {
+        StringBuilder builder = new StringBuilder("[");
+        append(builder, changes, LABELS, "labels");
+        append(builder, changes, ADDRESS, "address");
+        append(builder, changes, CONTAINER_STATE, "containerState");
+        append(builder, changes, SPEC, "spec");
+        append(builder, changes, OTHER, "other");
+        append(builder, changes, READINESS, "readiness");
+        return builder.append("]").toString();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    private static void append(StringBuilder builder, int changes, int mask, String name) {
+        if (matches(changes, mask)) {
+            if (builder.length() > 1) {
+                builder.append(",");
+            }
+            builder.append(name);
+        }
+    }
+
+    private static List<Container> containers(PodSpec spec) {
+        List<Container> answer = spec != null ? spec.getContainers() : null;
+        return answer != null ? answer : Collections.<Container>emptyList();
+    }
+
+    private static boolean sameContainers(List<Container> oldContainers, List<Container> newContainers) {
+        if (oldContainers.size() != newContainers.size()) {
+            return false;
+        }
+        for (int i = 0, size = oldContainers.size(); i < size; i++) {
+            Container oldContainer = oldContainers.get(i);
+            Container newContainer = newContainers.get(i);
+            if (!equal(oldContainer.getName(), newContainer.getName())
+                    || !equal(oldContainer.getImage(), newContainer.getImage())
+                    || !equal(oldContainer.getCommand(), newContainer.getCommand())
+                    || !equal(oldContainer.getArgs(), newContainer.getArgs())
+                    || !equal(oldContainer.getWorkingDir(), newContainer.getWorkingDir())
+                    || !sameEnv(oldContainer.getEnv(), newContainer.getEnv())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameEnv(List<EnvVar> oldEnv, List<EnvVar> newEnv) {
+        int size = oldEnv != null ? oldEnv.size() : 0;
+        if (size != (newEnv != null ? newEnv.size() : 0)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!equal(oldEnv.get(i).getName(), newEnv.get(i).getName()) || !equal(oldEnv.get(i).getValue(), newEnv.get(i).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameContainerPorts(List<Container> oldContainers, List<Container> newContainers) {
+        if (oldContainers.size() != newContainers.size()) {
+            return false;
+        }
+        for (int i = 0, size = oldContainers.size(); i < size; i++) {
+            List<ContainerPort> oldPorts = oldContainers.get(i).getPorts();
+            List<ContainerPort> newPorts = newContainers.get(i).getPorts();
+            int portCount = oldPorts != null ? oldPorts.size() : 0;
+            if (portCount != (newPorts != null ? newPorts.size() : 0)) {
+                return false;
+            }
+            for (int j = 0; j < portCount; j++) {
+                ContainerPort oldPort = oldPorts.get(j);
+                ContainerPort newPort = newPorts.get(j);
+                if (!equal(oldPort.getName(), newPort.getName())
+                        || !equal(oldPort.getContainerPort(), newPort.getContainerPort())
+                        || !equal(oldPort.getHostPort(), newPort.getHostPort())
+                        || !equal(oldPort.getHostIP(), newPort.getHostIP())
+                        || !equal(oldPort.getProtocol(), newPort.getProtocol())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameContainerStatuses(List<ContainerStatus> oldStatuses, List<ContainerStatus> newStatuses) {
+        int size = oldStatuses != null ? oldStatuses.size() : 0;
+        if (size != (newStatuses != null ? newStatuses.size() : 0)) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            ContainerStatus oldStatus = oldStatuses.get(i);
+            ContainerStatus newStatus = newStatuses.get(i);
+            if (!equal(oldStatus.getName(), newStatus.getName())
+                    || !equal(oldStatus.getContainerID(), newStatus.getContainerID())
+                    || !equal(oldStatus.getReady(), newStatus.getReady())
+                    || !equal(oldStatus.getRestartCount(), newStatus.getRestartCount())
+                    || !equal(oldStatus.getImage(), newStatus.getImage())
+                    || !sameState(oldStatus.getState(), newStatus.getState())
+                    || !sameState(oldStatus.getLastState(), newStatus.getLastState())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameState(ContainerState oldState, ContainerState newState) {
+        if (oldState == null || newState == null) {
+            return oldState == newState;
+        }
+        ContainerStateRunning oldRunning = oldState.getRunning();
+        ContainerStateRunning newRunning = newState.getRunning();
+        if (oldRunning == null ? newRunning != null : newRunning == null || !equal(oldRunning.getStartedAt(), newRunning.getStartedAt())) {
+            return false;
+        }
+        ContainerStateWaiting oldWaiting = oldState.getWaiting();
+        ContainerStateWaiting newWaiting = newState.getWaiting();
+        if (oldWaiting == null ? newWaiting != null : newWaiting == null || !equal(oldWaiting.getReason(), newWaiting.getReason())) {
+            return false;
+        }
+        ContainerStateTerminated oldTerminated = oldState.getTermination();
+        ContainerStateTerminated newTerminated = newState.getTermination();
+        if (oldTerminated == null || newTerminated == null) {
+            return oldTerminated == newTerminated;
+        }
+        return equal(oldTerminated.getExitCode(), newTerminated.getExitCode())
+                && equal(oldTerminated.getMessage(), newTerminated.getMessage())
+                && equal(oldTerminated.getFinishedAt(), newTerminated.getFinishedAt());
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return KubernetesHelper.toJson(value);
+        } catch (JsonProcessingException e) {
+            LOG.warn("Could not convert to json: " + e, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.process.Installation;
+import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.model.ExecAction;
+import io.fabric8.kubernetes.api.model.HTTPGetAction;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Probe;
+import io.fabric8.kubernetes.api.model.TCPSocketAction;
+import io.fabric8.kubernetes.api.model.util.IntOrString;
+import io.fabric8.utils.Strings;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the readiness and liveness probes of the local containers.
+ * <p/>
+ * A single scheduler thread looks for the containers due a probe every period and hands the probes to a fixed size
+ * pool so that slow probes cannot use more than a bounded number of threads; a container never has more than one
+ * probe in flight. The readiness of each container is written into the <code>ready</code> flag of its status so that
+ * only ready pods are used as service endpoints. A container which fails its liveness probe too many times in a row
+ * is killed so that the {@link ProcessMonitor} restarts it.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=ProbeRunner", description = "Runs the readiness and liveness probes of the local containers")
+public class ProbeRunner {
+    public static final long DEFAULT_PERIOD = 10000;
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final String PROBE_LOG_FILE = "probe.log";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProbeRunner.class);
+    private static final long DEFAULT_TIMEOUT = 1000;
+    private static final long EXEC_POLL_MILLIS = 50;
+    private static final String DEFAULT_HOST = "localhost";
+
+    private final KubernetesModel model;
+    private final ProcessManager processManager;
+    private final long period;
+    private final int failureThreshold;
+    private final Map<String, ProbeState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicInteger killedCount = new AtomicInteger();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-probe-scheduler-%s").build());
+    private final ExecutorService probeThreadPool;
+
+    @Inject
+    public ProbeRunner(ApiMasterKubernetesModel model,
+                       ProcessManager processManager,
+                       @ConfigProperty(name = "JUBE_PROBE_PERIOD", defaultValue = "" + DEFAULT_PERIOD)
+                       long period,
+                       @ConfigProperty(name = "JUBE_PROBE_THREADS", defaultValue = "" + DEFAULT_THREADS)
+                       int threads,
+                       @ConfigProperty(name = "JUBE_PROBE_FAILURE_THRESHOLD", defaultValue = "" + DEFAULT_FAILURE_THRESHOLD)
+                       int failureThreshold) {
+        this.model = model;
+        this.processManager = processManager;
+        this.period = period;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.probeThreadPool = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-probe-%s").build());
+
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkContainers();
+                } catch (Throwable e) {
+                    LOG.warn("Failed to check the container probes. " + e, e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        probeThreadPool.shutdownNow();
+    }
+
+    /**
+     * Returns true if the given container of the pod is ready; a container without a readiness probe is always ready
+     */
+    public boolean isReady(Pod pod, String id) {
+        Container container = NodeHelper.findContainer(NodeHelper.getOrCreatePodDesiredContainers(pod), id);
+        if (container == null || container.getReadinessProbe() == null) {
+            return true;
+        }
+        ProbeState state = states.get(id);
+        return state != null && state.ready;
+    }
+
+    @JmxManaged(description = "The millis between the probes of each container")
+    public long getPeriod() {
+        return period;
+    }
+
+    @JmxManaged(description = "The number of consecutive liveness probe failures after which a container is killed")
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    @JmxManaged(description = "The number of containers which have probes")
+    public int getProbedContainerCount() {
+        return states.size();
+    }
+
+    @JmxManaged(description = "The number of probes currently running")
+    public int getRunningCount() {
+        return runningCount.get();
+    }
+
+    @JmxManaged(description = "The number of containers killed as they failed their liveness probe")
+    public int getKilledCount() {
+        return killedCount.get();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void checkContainers() {
+        ImmutableMap<String, PodCurrentContainer> podRunningContainers = model.getPodRunningContainers(model);
+        states.keySet().retainAll(podRunningContainers.keySet());
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PodCurrentContainer> entry : podRunningContainers.entrySet()) {
+            String id = entry.getKey();
+            Container container = NodeHelper.findContainer(NodeHelper.getOrCreatePodDesiredContainers(entry.getValue().getPod()), id);
+            Installation installation = processManager.getInstallation(id);
+            if (container == null || installation == null
+                    || (container.getReadinessProbe() == null && container.getLivenessProbe() == null)) {
+                states.remove(id);
+                continue;
+            }
+            ProbeState state = states.get(id);
+            if (state == null) {
+                state = new ProbeState();
+                states.put(id, state);
+            }
+            Long pid = null;
+            try {
+                pid = installation.getActivePid();
+            } catch (IOException e) {
+                LOG.debug("Failed to access pid for " + id + ". " + e, e);
+            }
+            if (pid == null || pid.longValue() <= 0) {
+                state.pid = 0;
+                updateReadiness(id, state, false);
+                continue;
+            }
+            if (state.pid != pid.longValue()) {
+                // the process has been started or restarted
+                state.pid = pid.longValue();
+                state.startTime = now;
+                state.livenessFailures = 0;
+                updateReadiness(id, state, false);
+            }
+            if (state.running.compareAndSet(false, true)) {
+                try {
+                    probeThreadPool.execute(createProbeTask(id, state, container, installation));
+                } catch (RejectedExecutionException e) {
+                    // we are shutting down
+                    state.running.set(false);
+                }
+            }
+        }
+    }
+
+    protected Runnable createProbeTask(final String id, final ProbeState state, final Container container, final Installation installation) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                runningCount.incrementAndGet();
+                try {
+                    long running = System.currentTimeMillis() - state.startTime;
+                    Probe readinessProbe = container.getReadinessProbe();
+                    if (readinessProbe != null && running >= getInitialDelay(readinessProbe)) {
+                        updateReadiness(id, state, runProbe(readinessProbe, container, installation));
+                    }
+                    Probe livenessProbe = container.getLivenessProbe();
+                    if (livenessProbe != null && running >= getInitialDelay(livenessProbe)) {
+                        if (runProbe(livenessProbe, container, installation)) {
+                            state.livenessFailures = 0;
+                        } else if (++state.livenessFailures >= failureThreshold) {
+                            LOG.warn("Killing container " + id + " as it failed its liveness probe " + state.livenessFailures + " times");
+                            state.livenessFailures = 0;
+                            killedCount.incrementAndGet();
+                            installation.getController().kill();
+                        }
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Failed to probe container " + id + ". " + e, e);
+                } finally {
+                    runningCount.decrementAndGet();
+                    state.running.set(false);
+                }
+            }
+        };
+    }
+
+    protected void updateReadiness(String id, ProbeState state, final boolean ready) {
+        if (state.ready == ready) {
+            return;
+        }
+        state.ready = ready;
+        LOG.info("Container " + id + " is " + (ready ? "ready" : "not ready"));
+        PodCurrentContainer podCurrentContainer = model.getPodRunningContainers(model).get(id);
+        if (podCurrentContainer != null) {
+            final Pod pod = podCurrentContainer.getPod();
+            NodeHelper.podTransaction(model, pod, new Runnable() {
+                @Override
+                public void run() {
+                    NodeHelper.setReady(pod, id, ready);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the given probe returning true if it succeeded
+     */
+    protected boolean runProbe(Probe probe, Container container, Installation installation) throws IOException, InterruptedException {
+        long timeout = getTimeout(probe);
+        ExecAction exec = probe.getExec();
+        if (exec != null) {
+            return checkExec(installation.getInstallDir(), installation.getEnvironment(), exec.getCommand(), timeout);
+        }
+        HTTPGetAction httpGet = probe.getHttpGet();
+        if (httpGet != null) {
+            String host = Strings.isNotBlank(httpGet.getHost()) ? httpGet.getHost() : DEFAULT_HOST;
+            String path = Strings.isNotBlank(httpGet.getPath()) ? httpGet.getPath() : "/";
+            if (!path.startsWith("/")) {
+                path = "/" + path;
+            }
+            return checkHttp(new URL("http", host, resolvePort(container, httpGet.getPort()), path), timeout);
+        }
+        TCPSocketAction tcpSocket = probe.getTcpSocket();
+        if (tcpSocket != null) {
+            return checkTcp(DEFAULT_HOST, resolvePort(container, tcpSocket.getPort()), timeout);
+        }
+        // a probe without an action always succeeds
+        return true;
+    }
+
+    /**
+     * Returns the port the process listens on for the given probe port; as the processes listen on the host ports
+     * of their containers a container port number or name is converted to its host port
+     */
+    protected static int resolvePort(Container container, IntOrString port) throws IOException {
+        if (port == null) {
+            throw new IOException("No port for probe of container " + container.getName());
+        }
+        List<ContainerPort> ports = container.getPorts();
+        String name = port.getStrVal();
+        Integer number = port.getIntVal();
+        if (Strings.isNotBlank(name) && number == null) {
+            try {
+                number = Integer.parseInt(name);
+            } catch (NumberFormatException e) {
+                // its a port name
+            }
+        }
+        if (ports != null) {
+            for (ContainerPort containerPort : ports) {
+                boolean matches = number != null
+                        ? number.equals(containerPort.getContainerPort())
+                        : name != null && name.equals(containerPort.getName());
+                if (matches) {
+                    Integer hostPort = containerPort.getHostPort();
+                    return hostPort != null && hostPort.intValue() > 0 ? hostPort : containerPort.getContainerPort();
+                }
+            }
+        }
+        if (number == null) {
+            throw new IOException("No port called " + name + " in container " + container.getName());
+        }
+        return number;
+    }
+
+    protected static boolean checkTcp(String host, int port, long timeout) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), (int) timeout);
+            return true;
+        } catch (IOException e) {
+            LOG.debug("TCP probe of " + host + ":" + port + " failed. " + e);
+            return false;
+        }
+    }
+
+    protected static boolean checkHttp(URL url, long timeout) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout((int) timeout);
+            connection.setReadTimeout((int) timeout);
+            connection.setInstanceFollowRedirects(false);
+            int status = connection.getResponseCode();
+            return status >= 200 && status < 400;
+        } catch (IOException e) {
+            LOG.debug("HTTP probe of " + url + " failed. " + e);
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Runs the command in the install directory with the environment of the process, returning true if it exits with
+     * 0 before the timeout. The output of the last command is kept in {@link #PROBE_LOG_FILE}
+     */
+    protected static boolean checkExec(File directory, Map<String, String> environment, List<String> command, long timeout) throws IOException, InterruptedException {
+        if (command == null || command.isEmpty()) {
+            throw new IOException("No command for exec probe");
+        }
+        ProcessBuilder builder = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).
+                redirectOutput(new File(directory, PROBE_LOG_FILE));
+        if (environment != null) {
+            builder.environment().putAll(environment);
+        }
+        Process process = builder.start();
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            while (true) {
+                try {
+                    return process.exitValue() == 0;
+                } catch (IllegalThreadStateException e) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        LOG.debug("Exec probe " + command + " timed out after " + timeout + " millis");
+                        return false;
+                    }
+                    Thread.sleep(EXEC_POLL_MILLIS);
+                }
+            }
+        } finally {
+            process.destroy();
+        }
+    }
+
+    protected static long getInitialDelay(Probe probe) {
+        Long seconds = probe.getInitialDelaySeconds();
+        return seconds != null && seconds.longValue() > 0 ? TimeUnit.SECONDS.toMillis(seconds) : 0;
+    }
+
+    protected static long getTimeout(Probe probe) {
+        Long seconds = probe.getTimeoutSeconds();
+        return seconds != null && seconds.longValue() > 0 ? TimeUnit.SECONDS.toMillis(seconds) : DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * The probe state of a single container
+     */
+    protected static class ProbeState {
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile long pid;
+        private volatile long startTime;
+        private volatile boolean ready;
+        private volatile int livenessFailures;
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.collect.ImmutableMap;
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.process.Installation;
+import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.jube.process.ProcessMetrics;
+import io.fabric8.jube.process.support.CgroupStats;
+import io.fabric8.jube.process.support.ProcessTable;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically samples the CPU, memory, threads, open files and IO of every local process and its child processes,
+ * together with the throttling and OOM counters of the cgroup of processes with resource limits.
+ * <p/>
+ * Each sample reads <code>/proc</code> in a single pass for all the installations. The latest samples are available
+ * via JMX and REST, and are written into the <code>resourceUsage</code> property of each container status less often
+ * so that we do not write every pod to ZooKeeper on every sample.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=ProcessMetrics", description = "The resources used by the local processes")
+public class ProcessMetricsCollector {
+    public static final String RESOURCE_USAGE = "resourceUsage";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcessMetricsCollector.class);
+
+    private final KubernetesModel model;
+    private final ProcessManager processManager;
+    private final long pollTime;
+    private final long statusUpdateTime;
+    private final Map<String, ProcessMetrics> metrics = new ConcurrentHashMap<>();
+    private final Timer timer = new Timer("Jube process metrics", true);
+    private long lastStatusUpdate;
+
+    @Inject
+    public ProcessMetricsCollector(ApiMasterKubernetesModel model,
+                                   ProcessManager processManager,
+                                   @ConfigProperty(name = "processMetrics_pollTime", defaultValue = "10000")
+                                   long pollTime,
+                                   @ConfigProperty(name = "processMetrics_statusUpdateTime", defaultValue = "60000")
+                                   long statusUpdateTime) {
+        this.model = model;
+        this.processManager = processManager;
+        this.pollTime = pollTime;
+        this.statusUpdateTime = statusUpdateTime;
+
+        if (pollTime > 0) {
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        collect();
+                    } catch (Exception e) {
+                        LOG.warn("Failed to collect process metrics. " + e, e);
+                    }
+                }
+            }, pollTime, pollTime);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.cancel();
+    }
+
+    /**
+     * Samples the resources used by all the local processes
+     */
+    public synchronized void collect() {
+        long now = System.currentTimeMillis();
+        ProcessTable processTable = new ProcessTable();
+        if (!processTable.isSupported()) {
+            return;
+        }
+        ImmutableMap<String, Installation> installations = processManager.listInstallationMap();
+        for (Map.Entry<String, Installation> entry : installations.entrySet()) {
+            String id = entry.getKey();
+            ProcessMetrics sample = null;
+            try {
+                Installation installation = entry.getValue();
+                Long pid = installation.getActivePid(processTable);
+                if (pid != null) {
+                    sample = processTable.getProcessTreeMetrics(pid);
+                }
+                if (sample != null && installation.getController() != null) {
+                    sample.setCgroup(installation.getController().getCgroupStats());
+                }
+            } catch (IOException e) {
+                LOG.debug("Failed to access pid for " + id + ". " + e);
+            }
+            if (sample == null) {
+                metrics.remove(id);
+                continue;
+            }
+            sample.setTimestamp(now);
+            ProcessMetrics previous = metrics.get(id);
+            // the CPU time drops when a child process exits so we skip that sample
+            if (previous != null && previous.getPid() == sample.getPid() && now > previous.getTimestamp()
+                    && sample.getCpuTime() >= previous.getCpuTime()) {
+                sample.setCpuPercent((sample.getCpuTime() - previous.getCpuTime()) * 100.0 / (now - previous.getTimestamp()));
+            }
+            metrics.put(id, sample);
+        }
+        metrics.keySet().retainAll(installations.keySet());
+
+        if (statusUpdateTime > 0 && now - lastStatusUpdate >= statusUpdateTime) {
+            lastStatusUpdate = now;
+            updateContainerStatuses();
+        }
+    }
+
+    /**
+     * Returns the latest metrics of each local process keyed by the container ID
+     */
+    public Map<String, ProcessMetrics> getMetrics() {
+        return Collections.unmodifiableMap(new HashMap<>(metrics));
+    }
+
+    /**
+     * Returns the latest metrics for the given container ID or null if it is not running
+     */
+    public ProcessMetrics getMetrics(String id) {
+        return metrics.get(id);
+    }
+
+    public long getPollTime() {
+        return pollTime;
+    }
+
+    @JmxManaged(description = "The number of local processes being sampled")
+    public int getSampledProcessCount() {
+        return metrics.size();
+    }
+
+    @JmxManaged(description = "The CPU used by all the local processes as a percentage of one core")
+    public double getTotalCpuPercent() {
+        double answer = 0;
+        for (ProcessMetrics sample : metrics.values()) {
+            if (sample.getCpuPercent() > 0) {
+                answer += sample.getCpuPercent();
+            }
+        }
+        return answer;
+    }
+
+    @JmxManaged(description = "The resident memory in bytes of all the local processes")
+    public long getTotalRssBytes() {
+        long answer = 0;
+        for (ProcessMetrics sample : metrics.values()) {
+            answer += sample.getRssBytes();
+        }
+        return answer;
+    }
+
+    @JmxManaged(description = "The threads of all the local processes")
+    public int getTotalThreads() {
+        int answer = 0;
+        for (ProcessMetrics sample : metrics.values()) {
+            answer += sample.getThreads();
+        }
+        return answer;
+    }
+
+    @JmxManaged(description = "The open file descriptors of all the local processes")
+    public int getTotalOpenFiles() {
+        int answer = 0;
+        for (ProcessMetrics sample : metrics.values()) {
+            answer += sample.getOpenFiles();
+        }
+        return answer;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void updateContainerStatuses() {
+        ImmutableMap<String, PodCurrentContainer> podRunningContainers = model.getPodRunningContainers(model);
+        for (Map.Entry<String, ProcessMetrics> entry : metrics.entrySet()) {
+            final PodCurrentContainer podCurrentContainer = podRunningContainers.get(entry.getKey());
+            if (podCurrentContainer == null || podCurrentContainer.getCurrentContainer() == null) {
+                continue;
+            }
+            final Map<String, Object> usage = toResourceUsage(entry.getValue());
+            NodeHelper.podTransaction(model, podCurrentContainer.getPod(), new Runnable() {
+                @Override
+                public void run() {
+                    podCurrentContainer.getCurrentContainer().getAdditionalProperties().put(RESOURCE_USAGE, usage);
+                }
+            });
+        }
+    }
+
+    protected static Map<String, Object> toResourceUsage(ProcessMetrics sample) {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        if (sample.getCpuPercent() >= 0) {
+            // lets round so the status does not change on every tiny fluctuation
+            answer.put("cpuPercent", Math.round(sample.getCpuPercent() * 10) / 10.0);
+        }
+        answer.put("rssBytes", sample.getRssBytes());
+        answer.put("threads", sample.getThreads());
+        answer.put("openFiles", sample.getOpenFiles());
+        answer.put("processes", sample.getProcessCount());
+        answer.put("readBytes", sample.getReadBytes());
+        answer.put("writeBytes", sample.getWriteBytes());
+        CgroupStats cgroup = sample.getCgroup();
+        if (cgroup != null) {
+            answer.put("cpuThrottledPeriods", cgroup.getThrottledPeriods());
+            answer.put("cpuThrottledMicros", cgroup.getThrottledMicros());
+            answer.put("oomKills", cgroup.getOomKills());
+        }
+        return answer;
+    }
+}
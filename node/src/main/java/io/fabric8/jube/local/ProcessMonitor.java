@@ -22,45 +22,85 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.jube.KubernetesModel;
 import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
 import io.fabric8.jube.process.Installation;
 import io.fabric8.jube.process.ProcessManager;
+import io.fabric8.jube.process.support.ProcessExitWatcher;
+import io.fabric8.jube.process.support.ProcessTable;
 import io.fabric8.jube.replicator.Replicator;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Monitors the current local processes and updates the local model to indicate started or stopped processes
+ * Monitors the current local processes and updates the local model to indicate started or stopped processes.
+ * <p/>
+ * Process exits are picked up as they happen by a {@link ProcessExitWatcher}; the periodic scan of all installations
+ * is only a safety net which starts watching new processes and reconciles anything the watcher could not see.
+ * <p/>
+ * When a container's process dies and the pod's restart policy allows it, the existing installation is started again
+ * in place with an exponential backoff between restarts; while waiting the container is shown as
+ * {@link #CRASH_LOOP_BACK_OFF}.
  */
 @Singleton
 public class ProcessMonitor {
     private static final transient Logger LOG = LoggerFactory.getLogger(Replicator.class);
+    private static final long REQUESTED_SCAN_DELAY = 500;
+
+    public static final String CRASH_LOOP_BACK_OFF = "CrashLoopBackOff";
+    public static final String RESTART_POLICY_NEVER = "Never";
 
     private final KubernetesModel model;
     private final ProcessManager processManager;
+    private final ProbeRunner probeRunner;
     private final long pollTime;
     private Timer timer = new Timer();
     private Set<String> excludedPodIds = new CopyOnWriteArraySet<>();
+    private final ProcessExitWatcher exitWatcher = new ProcessExitWatcher();
+    private final AtomicBoolean scanRequested = new AtomicBoolean();
+    private final RestartBackoff restartBackoff;
+    private final ScheduledExecutorService restartExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-process-restart-%s").build());
 
     @Inject
     public ProcessMonitor(ApiMasterKubernetesModel model,
                           ProcessManager processManager,
-                          @ConfigProperty(name = "processMonitor_pollTime", defaultValue = "2000")
-                          long pollTime) {
+                          ProbeRunner probeRunner,
+                          @ConfigProperty(name = "processMonitor_pollTime", defaultValue = "30000")
+                          long pollTime,
+                          @ConfigProperty(name = "processMonitor_restartBackoff", defaultValue = "" + RestartBackoff.DEFAULT_INITIAL_DELAY)
+                          long restartBackoff,
+                          @ConfigProperty(name = "processMonitor_maxRestartBackoff", defaultValue = "" + RestartBackoff.DEFAULT_MAX_DELAY)
+                          long maxRestartBackoff) {
         this.model = model;
         this.processManager = processManager;
+        this.probeRunner = probeRunner;
         this.pollTime = pollTime;
+        this.restartBackoff = new RestartBackoff(restartBackoff, maxRestartBackoff, RestartBackoff.DEFAULT_RESET_AFTER);
 
         System.out.println("Starting the process monitor with poll time: " + pollTime);
 
+        exitWatcher.addListener(new ProcessExitWatcher.Listener() {
+            @Override
+            public void processExited(String id, long pid) {
+                onProcessExited(id, pid);
+            }
+        });
+
         TimerTask timerTask = new TimerTask() {
             @Override
             public void run() {
@@ -71,10 +111,43 @@ public class ProcessMonitor {
         timer.schedule(timerTask, pollTime, pollTime);
     }
 
-    protected void processMonitor() {
+    /**
+     * Requests a scan of the local processes soon rather than waiting for the next poll; requests are coalesced
+     * so that a burst of pod creations results in a single scan
+     */
+    public void requestScan() {
+        if (scanRequested.compareAndSet(false, true)) {
+            try {
+                timer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        scanRequested.set(false);
+                        processMonitor();
+                    }
+                }, REQUESTED_SCAN_DELAY);
+            } catch (IllegalStateException e) {
+                // the timer has been cancelled as we are shutting down
+                scanRequested.set(false);
+            }
+        }
+    }
+
+    protected void onProcessExited(final String id, long pid) {
+        if (excludedPodIds.contains(id)) {
+            return;
+        }
+        PodCurrentContainer podCurrentContainer = model.getPodRunningContainers(model).get(id);
+        if (podCurrentContainer != null) {
+            updateContainerState(id, podCurrentContainer, false);
+        }
+    }
+
+    protected synchronized void processMonitor() {
         ImmutableMap<String, Installation> map = processManager.listInstallationMap();
         ImmutableSet<Map.Entry<String, Installation>> entries = map.entrySet();
         ImmutableMap<String, PodCurrentContainer> podRunningContainers = model.getPodRunningContainers(model);
+        // lets check all the processes against a single view of /proc
+        ProcessTable processTable = new ProcessTable();
 
         for (Map.Entry<String, Installation> entry : entries) {
             final String id = entry.getKey();
@@ -84,11 +157,19 @@ public class ProcessMonitor {
             Installation installation = entry.getValue();
             Long pid = null;
             try {
-                pid = installation.getActivePid();
+                pid = installation.getActivePid(processTable);
             } catch (IOException e) {
                 LOG.warn("Failed to access pid for " + id + ". " + e, e);
             }
             final boolean alive = pid != null && pid.longValue() > 0;
+            if (alive) {
+                Long watchedPid = exitWatcher.getWatchedPid(id);
+                if (watchedPid == null || watchedPid.longValue() != pid.longValue()) {
+                    exitWatcher.watch(id, pid);
+                }
+            } else {
+                exitWatcher.unwatch(id);
+            }
 
             final PodCurrentContainer podCurrentContainer = podRunningContainers.get(id);
             if (podCurrentContainer == null) {
@@ -96,18 +177,96 @@ public class ProcessMonitor {
                 if (installDir.exists()) {
                     LOG.debug("No pod container for id: " + id);
                 } else {
+                    exitWatcher.unwatch(id);
+                    restartBackoff.remove(id);
                     processManager.uninstall(installation);
                 }
             } else {
-                // lets mark the container as running or not...
-                NodeHelper.podTransaction(model, podCurrentContainer.getPod(), new Runnable() {
-                    @Override
-                    public void run() {
-                        podCurrentContainer.containerAlive(id, alive);
-                    }
-                });
+                updateContainerState(id, podCurrentContainer, alive);
+            }
+        }
+    }
+
+    /**
+     * Marks the container as running or not and whether it is ready, scheduling a restart of a dead container if its pod's restart policy allows
+     */
+    protected void updateContainerState(final String id, final PodCurrentContainer podCurrentContainer, final boolean alive) {
+        final Pod pod = podCurrentContainer.getPod();
+        final boolean restart = !alive && isRestartable(pod);
+        if (restart) {
+            long delay = restartBackoff.exited(id, System.currentTimeMillis());
+            if (delay >= 0) {
+                scheduleRestart(id, delay);
             }
         }
+        final int restartCount = restartBackoff.getRestartCount(id);
+        final boolean ready = alive && probeRunner.isReady(pod, id);
+        NodeHelper.podTransaction(model, pod, new Runnable() {
+            @Override
+            public void run() {
+                if (restart) {
+                    NodeHelper.setPodWaiting(NodeHelper.getOrCreatetStatus(pod), CRASH_LOOP_BACK_OFF);
+                    NodeHelper.setContainerRunningState(pod, id, false);
+                } else {
+                    podCurrentContainer.containerAlive(id, alive);
+                }
+                NodeHelper.setRestartCount(pod, id, restartCount);
+                NodeHelper.setReady(pod, id, ready);
+            }
+        });
+    }
+
+    /**
+     * Returns true if the pod's containers should be restarted when they exit. As the exit codes of the daemonized
+     * processes are not visible a restart policy of <code>OnFailure</code> is treated like <code>Always</code>
+     */
+    protected boolean isRestartable(Pod pod) {
+        PodSpec spec = pod.getSpec();
+        String restartPolicy = spec != null ? spec.getRestartPolicy() : null;
+        return !RESTART_POLICY_NEVER.equalsIgnoreCase(restartPolicy);
+    }
+
+    protected void scheduleRestart(final String id, long delay) {
+        LOG.info("Restarting container " + id + " in " + delay + " millis");
+        try {
+            restartExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    restartContainer(id);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // we are shutting down
+            restartBackoff.cancelled(id);
+        }
+    }
+
+    protected void restartContainer(String id) {
+        Installation installation = processManager.getInstallation(id);
+        if (installation == null || excludedPodIds.contains(id) || model.getPodRunningContainers(model).get(id) == null) {
+            // the container has been deleted or is being created or stopped
+            restartBackoff.remove(id);
+            return;
+        }
+        try {
+            Long pid = installation.getActivePid();
+            if (pid == null || pid.longValue() <= 0) {
+                installation.getController().start();
+            }
+            restartBackoff.restarted(id, System.currentTimeMillis());
+        } catch (Exception e) {
+            LOG.warn("Failed to restart container " + id + ". " + e, e);
+            restartBackoff.cancelled(id);
+        }
+        // lets start watching the restarted process and update its state straight away
+        requestScan();
+    }
+
+    /**
+     * Cancels any pending restart of the given container such as when it is being stopped
+     */
+    public void cancelRestart(String id) {
+        restartBackoff.remove(id);
     }
 
     @PreDestroy
@@ -116,12 +275,35 @@ public class ProcessMonitor {
             timer.purge();
             timer.cancel();
         }
+        exitWatcher.shutdown();
+        restartExecutor.shutdownNow();
     }
 
     public long getPollTime() {
         return pollTime;
     }
 
+    /**
+     * Returns the number of processes currently being watched for exits
+     */
+    public int getWatchedProcessCount() {
+        return exitWatcher.getWatchedCount();
+    }
+
+    /**
+     * Returns the number of times the given container has been restarted by this node
+     */
+    public int getRestartCount(String id) {
+        return restartBackoff.getRestartCount(id);
+    }
+
+    /**
+     * Returns the watcher which detects when the local processes exit
+     */
+    public ProcessExitWatcher getExitWatcher() {
+        return exitWatcher;
+    }
+
     public KubernetesModel getModel() {
         return model;
     }
@@ -132,5 +314,7 @@ public class ProcessMonitor {
 
     public void removeExcludedPodId(String podId) {
         excludedPodIds.remove(podId);
+        // lets start watching the newly created process straight away
+        requestScan();
     }
 }
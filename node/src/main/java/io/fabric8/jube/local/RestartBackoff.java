@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the restarts of each local container so that a container which keeps crashing is restarted with an
+ * exponentially increasing delay, which is reset once the container has run for a while.
+ */
+public class RestartBackoff {
+    public static final long DEFAULT_INITIAL_DELAY = 1000;
+    public static final long DEFAULT_MAX_DELAY = 5 * 60 * 1000;
+    public static final long DEFAULT_RESET_AFTER = 10 * 60 * 1000;
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final long resetAfter;
+    private final Map<String, State> states = new HashMap<>();
+
+    public RestartBackoff() {
+        this(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, DEFAULT_RESET_AFTER);
+    }
+
+    public RestartBackoff(long initialDelay, long maxDelay, long resetAfter) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.resetAfter = resetAfter;
+    }
+
+    /**
+     * Records that the container has exited, returning how long to wait before restarting it or -1 if a restart is
+     * already pending
+     */
+    public synchronized long exited(String id, long now) {
+        State state = getOrCreateState(id);
+        if (state.pending) {
+            return -1;
+        }
+        if (state.lastStart > 0 && now - state.lastStart >= resetAfter) {
+            // it ran long enough to not be crashing
+            state.failures = 0;
+        }
+        state.failures++;
+        state.pending = true;
+        long delay = initialDelay;
+        for (int i = 1; i < state.failures && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+        state.nextRestart = now + delay;
+        return delay;
+    }
+
+    /**
+     * Records that the container has been restarted
+     */
+    public synchronized void restarted(String id, long now) {
+        State state = getOrCreateState(id);
+        state.pending = false;
+        state.restartCount++;
+        state.lastStart = now;
+    }
+
+    /**
+     * Records that the restart could not be done, such as the container having been deleted, so that another can be scheduled
+     */
+    public synchronized void cancelled(String id) {
+        State state = states.get(id);
+        if (state != null) {
+            state.pending = false;
+        }
+    }
+
+    public synchronized void remove(String id) {
+        states.remove(id);
+    }
+
+    public synchronized boolean isPending(String id) {
+        State state = states.get(id);
+        return state != null && state.pending;
+    }
+
+    public synchronized int getRestartCount(String id) {
+        State state = states.get(id);
+        return state != null ? state.restartCount : 0;
+    }
+
+    /**
+     * Returns the number of times the container has exited without running long enough for its backoff to be reset
+     */
+    public synchronized int getFailureCount(String id) {
+        State state = states.get(id);
+        return state != null ? state.failures : 0;
+    }
+
+    /**
+     * Returns the time in millis the container is due to be restarted or 0 if no restart is pending
+     */
+    public synchronized long getNextRestartTime(String id) {
+        State state = states.get(id);
+        return state != null && state.pending ? state.nextRestart : 0;
+    }
+
+    public synchronized int size() {
+        return states.size();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected State getOrCreateState(String id) {
+        State state = states.get(id);
+        if (state == null) {
+            state = new State();
+            states.put(id, state);
+        }
+        return state;
+    }
+
+    private static class State {
+        private int restartCount;
+        private int failures;
+        private boolean pending;
+        private long lastStart;
+        private long nextRestart;
+    }
+}
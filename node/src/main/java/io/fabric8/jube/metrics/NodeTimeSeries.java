@@ -0,0 +1,193 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.local.ProcessMetricsCollector;
+import io.fabric8.jube.process.ProcessMetrics;
+import io.fabric8.jube.proxy.KubeProxy;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the recent history of the metrics of this node every second into a {@link TimeSeriesRegistry}:
+ * <ul>
+ * <li><code>process.[id].cpu</code> and <code>process.[id].rss</code> for each local process; these only get a value each time
+ * the {@link ProcessMetricsCollector} samples the processes, every 10 seconds by default</li>
+ * <li><code>service.[id].bytesPerSecond</code> and <code>service.[id].connections</code> for each service proxy</li>
+ * <li><code>zookeeper.writeLatency</code> for the average time in millis of the model writes to ZooKeeper</li>
+ * </ul>
+ * Time series which have not been recorded to for 24 hours are removed.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=TimeSeries", description = "The recent history of the metrics of this node")
+public class NodeTimeSeries {
+    public static final String ZOOKEEPER_WRITE_LATENCY = "zookeeper.writeLatency";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(NodeTimeSeries.class);
+    private static final long RETENTION = TimeSeries.MINUTE_SLOTS * TimeSeries.MINUTE;
+
+    private final TimeSeriesRegistry registry = new TimeSeriesRegistry();
+    private final ProcessMetricsCollector processMetrics;
+    private final KubeProxy kubeProxy;
+    private final ApiMasterKubernetesModel model;
+    private final Timer timer = new Timer("Jube time series", true);
+    // lets keep the series of each source so we don't have to build their names on every sample
+    private final Map<String, TimeSeries[]> processSeries = new HashMap<>();
+    private final Map<String, TimeSeries[]> serviceSeries = new HashMap<>();
+    private final Map<String, Long> serviceBytes = new HashMap<>();
+    private long lastServiceSample;
+    private long lastWriteCount;
+    private long lastWriteNanos;
+    private long lastExpiry;
+
+    @Inject
+    public NodeTimeSeries(ProcessMetricsCollector processMetrics, KubeProxy kubeProxy, ApiMasterKubernetesModel model) {
+        this.processMetrics = processMetrics;
+        this.kubeProxy = kubeProxy;
+        this.model = model;
+        this.lastWriteCount = model.getWriteCount();
+        this.lastWriteNanos = model.getWriteNanos();
+
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    sample(System.currentTimeMillis());
+                } catch (Exception e) {
+                    LOG.warn("Failed to sample the node metrics. " + e, e);
+                }
+            }
+        }, TimeSeries.SECOND, TimeSeries.SECOND);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.cancel();
+    }
+
+    public TimeSeriesRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the values of the given time series between the given times, or null if there is no such time series.
+     * If no resolution is given then 1 second values are used if they cover the range and 1 minute values otherwise.
+     */
+    public TimeSeriesResult query(String name, Long from, Long to, Long resolution) {
+        TimeSeries series = registry.get(name);
+        if (series == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long end = to != null ? to : now;
+        long start = from != null ? from : end - TimeSeries.SECOND_SLOTS * TimeSeries.SECOND;
+        if (resolution == null) {
+            resolution = start >= now - TimeSeries.SECOND_SLOTS * TimeSeries.SECOND ? TimeSeries.SECOND : TimeSeries.MINUTE;
+        }
+        return series.query(start, end, resolution);
+    }
+
+    @JmxManaged(description = "The number of time series being kept")
+    public int getTimeSeriesCount() {
+        return registry.size();
+    }
+
+    @JmxManaged(description = "The memory in bytes used by the time series buffers")
+    public long getMemoryBytes() {
+        return registry.getMemoryBytes();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected synchronized void sample(long now) {
+        sampleProcesses();
+        sampleServices(now);
+        sampleZooKeeper(now);
+        if (now - lastExpiry >= TimeSeries.MINUTE) {
+            lastExpiry = now;
+            registry.expire(now - RETENTION);
+            processSeries.clear();
+            serviceSeries.clear();
+        }
+    }
+
+    protected void sampleProcesses() {
+        Map<String, ProcessMetrics> metrics = processMetrics.getMetrics();
+        for (Map.Entry<String, ProcessMetrics> entry : metrics.entrySet()) {
+            String id = entry.getKey();
+            ProcessMetrics sample = entry.getValue();
+            TimeSeries[] series = processSeries.get(id);
+            if (series == null) {
+                series = new TimeSeries[]{registry.getOrCreate("process." + id + ".cpu"), registry.getOrCreate("process." + id + ".rss")};
+                processSeries.put(id, series);
+            }
+            // the processes are sampled less often than we are so lets only record new samples
+            if (sample.getTimestamp() > series[1].getLastTime()) {
+                if (sample.getCpuPercent() >= 0) {
+                    series[0].record(sample.getTimestamp(), sample.getCpuPercent());
+                }
+                series[1].record(sample.getTimestamp(), sample.getRssBytes());
+            }
+        }
+        processSeries.keySet().retainAll(metrics.keySet());
+    }
+
+    protected void sampleServices(long now) {
+        Map<String, Long> bytes = kubeProxy.getBytesProxied();
+        Map<String, Long> connections = kubeProxy.getActiveConnections();
+        long elapsed = now - lastServiceSample;
+        for (Map.Entry<String, Long> entry : bytes.entrySet()) {
+            String id = entry.getKey();
+            TimeSeries[] series = serviceSeries.get(id);
+            if (series == null) {
+                series = new TimeSeries[]{registry.getOrCreate("service." + id + ".bytesPerSecond"), registry.getOrCreate("service." + id + ".connections")};
+                serviceSeries.put(id, series);
+            }
+            Long previous = serviceBytes.put(id, entry.getValue());
+            if (previous != null && entry.getValue() >= previous && elapsed > 0) {
+                series[0].record(now, (entry.getValue() - previous) * 1000.0 / elapsed);
+            }
+            Long active = connections.get(id);
+            series[1].record(now, active != null ? active : 0);
+        }
+        serviceBytes.keySet().retainAll(bytes.keySet());
+        serviceSeries.keySet().retainAll(bytes.keySet());
+        lastServiceSample = now;
+    }
+
+    protected void sampleZooKeeper(long now) {
+        long count = model.getWriteCount();
+        long nanos = model.getWriteNanos();
+        if (count > lastWriteCount) {
+            double latency = (nanos - lastWriteNanos) / 1000000.0 / (count - lastWriteCount);
+            registry.getOrCreate(ZOOKEEPER_WRITE_LATENCY).record(now, latency);
+        }
+        lastWriteCount = count;
+        lastWriteNanos = nanos;
+    }
+}
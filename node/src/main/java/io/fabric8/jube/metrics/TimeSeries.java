@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed size history of a single metric kept in primitive ring buffers.
+ * <p/>
+ * Values are kept at 1 second resolution for the last 10 minutes and are downsampled to the average of each minute
+ * for the last 24 hours. The buffers are allocated up front so recording a value never allocates; seconds and minutes
+ * without a value are held as NaN.
+ */
+public class TimeSeries {
+    public static final int SECOND_SLOTS = 600;
+    public static final int MINUTE_SLOTS = 1440;
+    public static final long SECOND = 1000;
+    public static final long MINUTE = 60 * SECOND;
+
+    private final String name;
+    private final double[] seconds = new double[SECOND_SLOTS];
+    private final double[] minutes = new double[MINUTE_SLOTS];
+    private long lastTime = -1;
+    private long lastSecond = -1;
+    private long currentMinute = -1;
+    private double minuteSum;
+    private int minuteCount;
+
+    public TimeSeries(String name) {
+        this.name = name;
+        Arrays.fill(seconds, Double.NaN);
+        Arrays.fill(minutes, Double.NaN);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeries(" + name + ")";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the time of the last recorded value or -1 if nothing has been recorded
+     */
+    public synchronized long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Records the value at the given time; values older than the last recorded second are ignored and
+     * a later value in the same second replaces the earlier one
+     */
+    public synchronized void record(long time, double value) {
+        long second = time / SECOND;
+        if (second < lastSecond || Double.isNaN(value)) {
+            return;
+        }
+        if (second == lastSecond) {
+            // lets replace the value for this second in the minute average too
+            double previous = seconds[slot(second, SECOND_SLOTS)];
+            if (!Double.isNaN(previous)) {
+                minuteSum -= previous;
+                minuteCount--;
+            }
+        } else {
+            clear(seconds, lastSecond, second);
+            lastSecond = second;
+        }
+        seconds[slot(second, SECOND_SLOTS)] = value;
+        lastTime = time;
+
+        long minute = time / MINUTE;
+        if (minute != currentMinute) {
+            if (currentMinute >= 0) {
+                minutes[slot(currentMinute, MINUTE_SLOTS)] = minuteCount > 0 ? minuteSum / minuteCount : Double.NaN;
+            }
+            clear(minutes, currentMinute, minute);
+            currentMinute = minute;
+            minuteSum = 0;
+            minuteCount = 0;
+        }
+        minuteSum += value;
+        minuteCount++;
+    }
+
+    /**
+     * Returns the values between the given times at the given resolution of either {@link #SECOND} or {@link #MINUTE};
+     * the minute values include the average of the current minute so far
+     */
+    public synchronized TimeSeriesResult query(long from, long to, long resolution) {
+        List<Long> times = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        if (lastSecond >= 0) {
+            if (resolution < MINUTE) {
+                resolution = SECOND;
+                long start = Math.max(from / SECOND, lastSecond - SECOND_SLOTS + 1);
+                long end = Math.min(to / SECOND, lastSecond);
+                for (long second = start; second <= end; second++) {
+                    add(times, values, second * SECOND, seconds[slot(second, SECOND_SLOTS)]);
+                }
+            } else {
+                resolution = MINUTE;
+                long start = Math.max(from / MINUTE, currentMinute - MINUTE_SLOTS + 1);
+                long end = Math.min(to / MINUTE, currentMinute - 1);
+                for (long minute = start; minute <= end; minute++) {
+                    add(times, values, minute * MINUTE, minutes[slot(minute, MINUTE_SLOTS)]);
+                }
+                if (currentMinute >= start && currentMinute <= to / MINUTE && minuteCount > 0) {
+                    add(times, values, currentMinute * MINUTE, minuteSum / minuteCount);
+                }
+            }
+        }
+        return new TimeSeriesResult(name, resolution, times, values);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * Clears the slots after the last one written up to and including the new one, which never has to
+     * touch more slots than the buffer holds
+     */
+    protected static void clear(double[] buffer, long last, long next) {
+        long start = last < 0 ? next : Math.max(last + 1, next - buffer.length + 1);
+        for (long i = start; i <= next; i++) {
+            buffer[slot(i, buffer.length)] = Double.NaN;
+        }
+    }
+
+    protected static int slot(long index, int size) {
+        return (int) (index % size);
+    }
+
+    protected static void add(List<Long> times, List<Double> values, long time, double value) {
+        if (!Double.isNaN(value)) {
+            times.add(time);
+            values.add(value);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.metrics;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link TimeSeries} kept by a node keyed by name
+ */
+public class TimeSeriesRegistry {
+    /**
+     * The memory used by the buffers of each time series
+     */
+    public static final long SERIES_BYTES = (TimeSeries.SECOND_SLOTS + TimeSeries.MINUTE_SLOTS) * 8L;
+
+    private final ConcurrentMap<String, TimeSeries> series = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the time series with the given name, creating it if it does not exist
+     */
+    public TimeSeries getOrCreate(String name) {
+        TimeSeries answer = series.get(name);
+        if (answer == null) {
+            answer = new TimeSeries(name);
+            TimeSeries old = series.putIfAbsent(name, answer);
+            if (old != null) {
+                answer = old;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the time series with the given name or null if there is none
+     */
+    public TimeSeries get(String name) {
+        return series.get(name);
+    }
+
+    public Set<String> getNames() {
+        return new TreeSet<>(series.keySet());
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    /**
+     * Returns the memory used by the buffers of all the time series
+     */
+    public long getMemoryBytes() {
+        return series.size() * SERIES_BYTES;
+    }
+
+    /**
+     * Removes the time series which have not had a value recorded since the given time
+     */
+    public void expire(long before) {
+        for (Iterator<TimeSeries> iter = series.values().iterator(); iter.hasNext();) {
+            if (iter.next().getLastTime() < before) {
+                iter.remove();
+            }
+        }
+    }
+}
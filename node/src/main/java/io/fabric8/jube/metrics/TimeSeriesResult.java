@@ -0,0 +1,54 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.metrics;
+
+import java.util.List;
+
+/**
+ * The values of a {@link TimeSeries} over a range of time
+ */
+public class TimeSeriesResult {
+    private final String name;
+    private final long resolution;
+    private final List<Long> times;
+    private final List<Double> values;
+
+    public TimeSeriesResult(String name, long resolution, List<Long> times, List<Double> values) {
+        this.name = name;
+        this.resolution = resolution;
+        this.times = times;
+        this.values = values;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the time in millis covered by each value
+     */
+    public long getResolution() {
+        return resolution;
+    }
+
+    public List<Long> getTimes() {
+        return times;
+    }
+
+    public List<Double> getValues() {
+        return values;
+    }
+}
@@ -15,13 +15,24 @@
  */
 package io.fabric8.jube.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /**
- * Represents a local host node
+ * Represents a local host node along with its capacity and current utilization
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class HostNode {
     private String id;
     private String hostName;
     private String webUrl;
+    private int cpuCores;
+    private double loadAverage;
+    private long memoryTotal;
+    private long memoryFree;
+    private long diskFree;
+    private int processCount;
+    private long lastUpdated;
 
     @Override
     public String toString() {
@@ -29,9 +40,22 @@ public class HostNode {
                 + "id='" + id + '\''
                 + ", hostName='" + hostName + '\''
                 + ", webUrl='" + webUrl + '\''
+                + ", cpuCores=" + cpuCores
+                + ", loadAverage=" + loadAverage
+                + ", memoryFree=" + memoryFree + "/" + memoryTotal
+                + ", diskFree=" + diskFree
+                + ", processCount=" + processCount
                 + '}';
     }
 
+    /**
+     * Returns true if this node has reported its capacity
+     */
+    @JsonIgnore
+    public boolean hasCapacity() {
+        return cpuCores > 0 && memoryTotal > 0;
+    }
+
     public String getId() {
         return id;
     }
@@ -55,4 +79,66 @@ public class HostNode {
     public void setWebUrl(String webUrl) {
         this.webUrl = webUrl;
     }
+
+    public int getCpuCores() {
+        return cpuCores;
+    }
+
+    public void setCpuCores(int cpuCores) {
+        this.cpuCores = cpuCores;
+    }
+
+    /**
+     * Returns the system load average for the last minute or a negative value if its not available
+     */
+    public double getLoadAverage() {
+        return loadAverage;
+    }
+
+    public void setLoadAverage(double loadAverage) {
+        this.loadAverage = loadAverage;
+    }
+
+    public long getMemoryTotal() {
+        return memoryTotal;
+    }
+
+    public void setMemoryTotal(long memoryTotal) {
+        this.memoryTotal = memoryTotal;
+    }
+
+    public long getMemoryFree() {
+        return memoryFree;
+    }
+
+    public void setMemoryFree(long memoryFree) {
+        this.memoryFree = memoryFree;
+    }
+
+    /**
+     * Returns the usable disk space in bytes under the process directory
+     */
+    public long getDiskFree() {
+        return diskFree;
+    }
+
+    public void setDiskFree(long diskFree) {
+        this.diskFree = diskFree;
+    }
+
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    public void setProcessCount(int processCount) {
+        this.processCount = processCount;
+    }
+
+    public long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(long lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
 }
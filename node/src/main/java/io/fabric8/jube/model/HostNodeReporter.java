@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.model;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import io.fabric8.jube.process.ProcessManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically publishes the capacity and utilization of this node into its ephemeral {@link HostNode} entry.
+ * <p/>
+ * To avoid hammering ZooKeeper the entry is only written when the utilization has changed significantly or the
+ * last write is older than the maximum report age.
+ */
+public class HostNodeReporter {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HostNodeReporter.class);
+    private static final double MEMORY_CHANGE_THRESHOLD = 0.05;
+    private static final double LOAD_CHANGE_THRESHOLD = 0.5;
+
+    private final HostNode hostNode;
+    private final HostNodeModel hostNodeModel;
+    private final ProcessManager processManager;
+    private final File processDir;
+    private final long pollTime;
+    private final long maxReportAge;
+    private final Timer timer = new Timer("jube-host-node-reporter", true);
+
+    public HostNodeReporter(HostNode hostNode, HostNodeModel hostNodeModel, ProcessManager processManager, File processDir, long pollTime) {
+        this.hostNode = hostNode;
+        this.hostNodeModel = hostNodeModel;
+        this.processManager = processManager;
+        this.processDir = processDir;
+        this.pollTime = pollTime;
+        this.maxReportAge = pollTime * 6;
+    }
+
+    public void start() {
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    report();
+                } catch (Exception e) {
+                    LOG.warn("Failed to report host node utilization: " + e, e);
+                }
+            }
+        }, pollTime, pollTime);
+    }
+
+    public void stop() {
+        timer.cancel();
+    }
+
+    /**
+     * Updates the host node with the current utilization, returning true if it was written to ZooKeeper
+     */
+    public synchronized boolean report() {
+        HostNode current = new HostNode();
+        updateUtilization(current);
+        if (!hasChanged(hostNode, current) && current.getLastUpdated() - hostNode.getLastUpdated() < maxReportAge) {
+            return false;
+        }
+        hostNode.setCpuCores(current.getCpuCores());
+        hostNode.setLoadAverage(current.getLoadAverage());
+        hostNode.setMemoryTotal(current.getMemoryTotal());
+        hostNode.setMemoryFree(current.getMemoryFree());
+        hostNode.setDiskFree(current.getDiskFree());
+        hostNode.setProcessCount(current.getProcessCount());
+        hostNode.setLastUpdated(current.getLastUpdated());
+        hostNodeModel.write(hostNode);
+        return true;
+    }
+
+    /**
+     * Populates the capacity and utilization of this host
+     */
+    public void updateUtilization(HostNode node) {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        node.setCpuCores(Runtime.getRuntime().availableProcessors());
+        node.setLoadAverage(os.getSystemLoadAverage());
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean sunOs = (com.sun.management.OperatingSystemMXBean) os;
+            node.setMemoryTotal(sunOs.getTotalPhysicalMemorySize());
+            node.setMemoryFree(sunOs.getFreePhysicalMemorySize());
+        }
+        File dir = processDir.exists() ? processDir : processDir.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            node.setDiskFree(dir.getUsableSpace());
+        }
+        node.setProcessCount(processManager.listInstallations().size());
+        node.setLastUpdated(System.currentTimeMillis());
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected static boolean hasChanged(HostNode old, HostNode current) {
+        return old.getCpuCores() != current.getCpuCores()
+                || old.getProcessCount() != current.getProcessCount()
+                || old.getMemoryTotal() != current.getMemoryTotal()
+                || Math.abs(old.getLoadAverage() - current.getLoadAverage()) >= LOAD_CHANGE_THRESHOLD
+                || changedBy(old.getMemoryFree(), current.getMemoryFree(), MEMORY_CHANGE_THRESHOLD)
+                || changedBy(old.getDiskFree(), current.getDiskFree(), MEMORY_CHANGE_THRESHOLD);
+    }
+
+    protected static boolean changedBy(long oldValue, long newValue, double fraction) {
+        if (oldValue == 0) {
+            return newValue != 0;
+        }
+        return Math.abs(newValue - oldValue) >= Math.abs(oldValue) * fraction;
+    }
+}
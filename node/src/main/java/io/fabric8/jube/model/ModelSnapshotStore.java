@@ -0,0 +1,380 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.fabric8.utils.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a compact local copy of the ZooKeeper model on disk so that a node can restart warm.
+ * <p/>
+ * The store is a snapshot file of every ZooKeeper path together with its data version, plus an append only
+ * journal of changes since the snapshot which is written through a memory mapped file. When the journal is full
+ * the current state is written as a new snapshot and the journal is started again.
+ */
+public class ModelSnapshotStore implements Closeable {
+    public static final String SNAPSHOT_FILE = "model.snapshot";
+    public static final String JOURNAL_FILE = "model.journal";
+    public static final int DEFAULT_JOURNAL_SIZE = 16 * 1024 * 1024;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ModelSnapshotStore.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int SNAPSHOT_MAGIC = 0x4a554245;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    // the journal starts with the generation of the snapshot it applies to
+    private static final int JOURNAL_HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4 + 2 + 4;
+    private static final int ZERO_CHUNK_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final File snapshotFile;
+    private final File journalFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private int journalSize;
+    private long generation;
+    private RandomAccessFile journalAccess;
+    private MappedByteBuffer journal;
+
+    public ModelSnapshotStore(File directory) {
+        this(directory, DEFAULT_JOURNAL_SIZE);
+    }
+
+    public ModelSnapshotStore(File directory, int journalSize) {
+        this.directory = directory;
+        this.journalSize = journalSize;
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.journalFile = new File(directory, JOURNAL_FILE);
+    }
+
+    @Override
+    public String toString() {
+        return "ModelSnapshotStore(" + directory + ")";
+    }
+
+    /**
+     * Loads the snapshot and replays the journal, returning the entries keyed by ZooKeeper path.
+     * Must be invoked before the store is written to.
+     */
+    public synchronized Map<String, Entry> load() throws IOException {
+        directory.mkdirs();
+        entries.clear();
+        generation = 0;
+        if (snapshotFile.exists()) {
+            try {
+                readSnapshot();
+            } catch (IOException e) {
+                LOG.warn("Ignoring corrupt model snapshot " + snapshotFile + ". " + e, e);
+                entries.clear();
+            }
+        }
+        openJournal();
+        return Collections.unmodifiableMap(new HashMap<>(entries));
+    }
+
+    /**
+     * Records that the given path now has the given data and version
+     */
+    public synchronized void put(String path, int version, byte[] data) {
+        Entry entry = new Entry(path, version, data);
+        entries.put(path, entry);
+        append(OP_PUT, entry);
+    }
+
+    /**
+     * Records that the given path has been removed
+     */
+    public synchronized void remove(String path) {
+        if (entries.remove(path) != null) {
+            append(OP_REMOVE, new Entry(path, -1, new byte[0]));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Writes the current state as a new snapshot and starts a new, empty journal
+     */
+    public synchronized void compact() throws IOException {
+        generation++;
+        writeSnapshot();
+        closeJournal();
+        if (!journalFile.delete() && journalFile.exists()) {
+            throw new IOException("Could not delete journal " + journalFile);
+        }
+        openJournal();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (journal != null) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write model snapshot on close " + this + ". " + e, e);
+        } finally {
+            closeJournal();
+        }
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void append(byte op, Entry entry) {
+        if (journal == null) {
+            return;
+        }
+        byte[] pathBytes = entry.getPath().getBytes(UTF8);
+        byte[] data = entry.getData();
+        int length = RECORD_OVERHEAD + pathBytes.length + data.length;
+        try {
+            // always leave room for the zero length terminator after the record
+            if (journal.position() + length + 4 > journal.capacity()) {
+                if (length + 4 + JOURNAL_HEADER_SIZE > journalSize) {
+                    journalSize = Math.max(journalSize * 2, length + 4 + JOURNAL_HEADER_SIZE);
+                }
+                // the entry is already in the entries map so will be in the snapshot
+                compact();
+                return;
+            }
+            int start = journal.position();
+            journal.position(start + 4);
+            journal.put(op);
+            journal.putInt(entry.getVersion());
+            journal.putShort((short) pathBytes.length);
+            journal.put(pathBytes);
+            journal.putInt(data.length);
+            journal.put(data);
+            int end = journal.position();
+            // write the length last so a partially written record is never replayed
+            journal.putInt(start, length);
+            journal.position(end);
+        } catch (IOException e) {
+            LOG.warn("Failed to append to model journal " + journalFile + ". " + e, e);
+        }
+    }
+
+    protected void openJournal() throws IOException {
+        boolean exists = journalFile.exists();
+        long fileSize = exists ? journalFile.length() : 0;
+        journalAccess = new RandomAccessFile(journalFile, "rw");
+        int capacity = (int) Math.max(journalSize, fileSize);
+        journal = journalAccess.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        long journalGeneration = exists && fileSize >= JOURNAL_HEADER_SIZE ? journal.getLong(0) : -1;
+        if (journalGeneration == generation) {
+            int count = replayJournal();
+            LOG.info("Replayed " + count + " journal record(s) from " + journalFile);
+        } else {
+            if (exists) {
+                LOG.info("Ignoring journal " + journalFile + " with generation " + journalGeneration
+                        + " as the snapshot has generation " + generation);
+                zero(0, capacity);
+            }
+            journal.putLong(0, generation);
+            journal.position(JOURNAL_HEADER_SIZE);
+        }
+    }
+
+    protected int replayJournal() {
+        int count = 0;
+        journal.position(JOURNAL_HEADER_SIZE);
+        while (journal.position() + 4 <= journal.capacity()) {
+            int start = journal.position();
+            int length = journal.getInt(start);
+            if (length < RECORD_OVERHEAD || start + length > journal.capacity()) {
+                break;
+            }
+            journal.position(start + 4);
+            byte op = journal.get();
+            int version = journal.getInt();
+            byte[] pathBytes = new byte[journal.getShort() & 0xffff];
+            journal.get(pathBytes);
+            byte[] data = new byte[journal.getInt()];
+            journal.get(data);
+            String path = new String(pathBytes, UTF8);
+            if (op == OP_PUT) {
+                entries.put(path, new Entry(path, version, data));
+            } else if (op == OP_REMOVE) {
+                entries.remove(path);
+            }
+            journal.position(start + length);
+            count++;
+        }
+        // lets zero out anything after the last complete record in case we crashed mid write
+        zero(journal.position(), journal.capacity());
+        return count;
+    }
+
+    protected void zero(int from, int to) {
+        byte[] zeros = new byte[ZERO_CHUNK_SIZE];
+        int position = journal.position();
+        journal.position(from);
+        for (int i = from; i < to; i += zeros.length) {
+            journal.put(zeros, 0, Math.min(zeros.length, to - i));
+        }
+        journal.position(position);
+    }
+
+    protected void closeJournal() {
+        if (journal != null) {
+            journal.force();
+            unmap(journal);
+            journal = null;
+        }
+        Closeables.closeQuietly(journalAccess);
+        journalAccess = null;
+    }
+
+    /**
+     * Releases the mapping of the journal now rather than whenever the buffer is garbage collected, so that
+     * each compaction doesn't leave the old journal mapped. The buffer must not be used afterwards.
+     */
+    protected static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // before Java 9 the buffer has its own cleaner
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            LOG.debug("Could not unmap the model journal so it will be unmapped when garbage collected. " + e);
+        }
+    }
+
+    protected void readSnapshot() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+        try {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a model snapshot file");
+            }
+            int format = in.readInt();
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported model snapshot format " + format);
+            }
+            generation = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                int version = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                entries.put(path, new Entry(path, version, data));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated model snapshot " + snapshotFile, e);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    protected void writeSnapshot() throws IOException {
+        File tmpFile = new File(directory, SNAPSHOT_FILE + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(generation);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.getPath());
+                out.writeInt(entry.getVersion());
+                out.writeInt(entry.getData().length);
+                out.write(entry.getData());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            Closeables.closeQuietly(out);
+        }
+        java.nio.file.Files.move(tmpFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Represents the data and version of a single ZooKeeper path
+     */
+    public static class Entry {
+        private final String path;
+        private final int version;
+        private final byte[] data;
+
+        public Entry(String path, int version, byte[] data) {
+            this.path = path;
+            this.version = version;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{path='" + path + "', version=" + version + "}";
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The metrics a host node collects about its local pods and service proxies
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NodeMetrics {
+    private String id;
+    private long timestamp;
+    private Map<String, Double> podCpu = new HashMap<>();
+    private Map<String, Long> serviceConnections = new HashMap<>();
+
+    @Override
+    public String toString() {
+        return "NodeMetrics{id='" + id + "', timestamp=" + timestamp + ", podCpu=" + podCpu + ", serviceConnections=" + serviceConnections + '}';
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the time the metrics were collected
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the CPU used by each local pod as a percentage of one core
+     */
+    public Map<String, Double> getPodCpu() {
+        return podCpu;
+    }
+
+    public void setPodCpu(Map<String, Double> podCpu) {
+        this.podCpu = podCpu;
+    }
+
+    /**
+     * Returns the number of active connections through this node's proxy for each service
+     */
+    public Map<String, Long> getServiceConnections() {
+        return serviceConnections;
+    }
+
+    public void setServiceConnections(Map<String, Long> serviceConnections) {
+        this.serviceConnections = serviceConnections;
+    }
+}
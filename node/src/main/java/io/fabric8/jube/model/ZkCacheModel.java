@@ -118,7 +118,9 @@ public class ZkCacheModel<T> {
     protected void doWriteEntity(String path, Object entity) {
         try {
             String json = KubernetesHelper.toJson(entity);
-            System.out.println("Writing to path: " + path + " createMode: " + createMode + " json: " + json);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Writing to path: " + path + " createMode: " + createMode + " json: " + json);
+            }
             if (curator.checkExists().forPath(path) == null) {
                 curator.create().withMode(createMode).forPath(path, json.getBytes());
             } else {
@@ -17,6 +17,7 @@ package io.fabric8.jube.proxy;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,7 @@ import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.jube.ServiceIDs;
 import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
 import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.PodChanges;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServicePort;
@@ -51,6 +53,7 @@ public class KubeProxy {
         this.model = model;
         this.vertx = DefaultVertxFactory.newVertx();
 
+        // the proxy only depends on the labels, addresses, ports and readiness of a pod so lets ignore other container state changes
         model.addPodListener(new EntityListener<Pod>() {
             @Override
             public void entityChanged(String id, Pod entity) {
@@ -67,7 +70,7 @@ public class KubeProxy {
                     service.entityDeleted(id, entity);
                 }
             }
-        });
+        }, PodChanges.LABELS | PodChanges.ADDRESS | PodChanges.SPEC | PodChanges.READINESS);
 
         model.addServiceListener(new EntityListener<Service>() {
             @Override
@@ -120,4 +123,30 @@ public class KubeProxy {
     protected Collection<ServiceProxy> getServices() {
         return serviceMap.values();
     }
+
+    /**
+     * Returns the number of active connections being proxied for each service name
+     */
+    public Map<String, Long> getActiveConnections() {
+        Map<String, Long> answer = new HashMap<>();
+        for (ServiceProxy serviceProxy : serviceMap.values()) {
+            String name = serviceProxy.getService().getId();
+            Long count = answer.get(name);
+            answer.put(name, (count != null ? count : 0L) + serviceProxy.getActiveConnections());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the total number of bytes proxied for each service name
+     */
+    public Map<String, Long> getBytesProxied() {
+        Map<String, Long> answer = new HashMap<>();
+        for (ServiceProxy serviceProxy : serviceMap.values()) {
+            String name = serviceProxy.getService().getId();
+            Long count = answer.get(name);
+            answer.put(name, (count != null ? count : 0L) + serviceProxy.getBytesProxied());
+        }
+        return answer;
+    }
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.Multimaps;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
 import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.NodeHelper;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.Service;
@@ -40,7 +41,7 @@ import org.slf4j.LoggerFactory;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
 
 /**
- * Represents a running service
+ * Represents a running service whose endpoints are the matching pods which are ready
  */
 public class ServiceInstance implements EntityListener<Pod> {
     private static final transient Logger LOG = LoggerFactory.getLogger(ServiceInstance.class);
@@ -101,7 +102,10 @@ public class ServiceInstance implements EntityListener<Pod> {
 
     @Override
     public void entityChanged(String podId, Pod pod) {
-        if (filter.matches(pod)) {
+        if (!filter.matches(pod) || !NodeHelper.isPodReady(pod)) {
+            // lets stop sending requests to pods which are no longer ready
+            containerServices.removeAll(podId);
+        } else {
             try {
                 List<ContainerService> services = new ArrayList<>();
                 for (ServicePort port : servicePorts) {
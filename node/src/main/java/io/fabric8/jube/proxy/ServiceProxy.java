@@ -21,10 +21,8 @@ import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.ServicePort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.net.NetServer;
-import org.vertx.java.core.net.NetSocket;
 
 /**
  * Represents a Kubernetes proxy for a single service on a single port
@@ -36,7 +34,7 @@ public class ServiceProxy implements EntityListener<Pod> {
     private final ServiceInstance service;
     private final int port;
     private final ServicePort servicePort;
-    private final Handler<NetSocket> handler;
+    private final ServiceProxyHandler handler;
     private String host;
     private NetServer server;
 
@@ -107,4 +105,12 @@ public class ServiceProxy implements EntityListener<Pod> {
     public ServiceInstance getService() {
         return service;
     }
+
+    public long getActiveConnections() {
+        return handler.getActiveConnections();
+    }
+
+    public long getBytesProxied() {
+        return handler.getBytesProxied();
+    }
 }
@@ -43,6 +43,9 @@ public class ServiceProxyHandler implements Handler<NetSocket> {
     private final ServicePort servicePort;
     private final LoadBalancer loadBalancer;
     private final AtomicLong failedConnectionAttempts = new AtomicLong();
+    private final AtomicLong activeConnections = new AtomicLong();
+    private final AtomicLong totalConnections = new AtomicLong();
+    private final AtomicLong bytesProxied = new AtomicLong();
 
     public ServiceProxyHandler(Vertx vertx, ServiceInstance service, ServicePort servicePort, LoadBalancer loadBalancer) {
         this.vertx = vertx;
@@ -95,6 +98,7 @@ public class ServiceProxyHandler implements Handler<NetSocket> {
                                     if (!closed) {
                                         LOG.info(String.format("Disconnected client '%s' from service '%s' at %s:%d.", clientSocket.remoteAddress(), service, host, port));
                                         closed = true;
+                                        activeConnections.decrementAndGet();
                                         clientSocket.close();
                                         serverSocket.close();
                                     }
@@ -106,8 +110,10 @@ public class ServiceProxyHandler implements Handler<NetSocket> {
                             clientSocket.endHandler(endHandler);
                             clientSocket.exceptionHandler(endHandler);
 
-                            Pump.createPump(logging(clientSocket, "From " + clientSocket.remoteAddress()), serverSocket).start();
-                            Pump.createPump(logging(serverSocket, "To " + clientSocket.remoteAddress()), clientSocket).start();
+                            activeConnections.incrementAndGet();
+                            totalConnections.incrementAndGet();
+                            Pump.createPump(counting(logging(clientSocket, "From " + clientSocket.remoteAddress())), serverSocket).start();
+                            Pump.createPump(counting(logging(serverSocket, "To " + clientSocket.remoteAddress())), clientSocket).start();
                             clientSocket.resume();
 
                             LOG.info(String.format("Connected client '%s' to service '%s' at %s:%d.", clientSocket.remoteAddress(), service, host, port));
@@ -121,6 +127,70 @@ public class ServiceProxyHandler implements Handler<NetSocket> {
         handleConnectFailure(clientSocket, String.format("Client '%s' could not be routed: No service implementation available for '%s'.", clientSocket.remoteAddress(), service));
     }
 
+    /**
+     * Returns the number of client connections currently being proxied
+     */
+    public long getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public long getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public long getFailedConnectionAttempts() {
+        return failedConnectionAttempts.get();
+    }
+
+    /**
+     * Returns the total number of bytes proxied in either direction
+     */
+    public long getBytesProxied() {
+        return bytesProxied.get();
+    }
+
+    private ReadStream<?> counting(final ReadStream<?> stream) {
+        return new ReadStream<Object>() {
+
+            @Override
+            public Object endHandler(Handler<Void> handler) {
+                stream.endHandler(handler);
+                return this;
+            }
+
+            @Override
+            public Object exceptionHandler(Handler handler) {
+                stream.exceptionHandler(handler);
+                return this;
+            }
+
+            @Override
+            public Object dataHandler(final Handler<Buffer> handler) {
+                stream.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer event) {
+                        bytesProxied.addAndGet(event.length());
+                        handler.handle(event);
+                    }
+                });
+                return this;
+            }
+
+            @Override
+            public Object pause() {
+                stream.pause();
+                return this;
+            }
+
+            @Override
+            public Object resume() {
+                stream.resume();
+                return this;
+            }
+
+        };
+    }
+
     private ReadStream<?> logging(final ReadStream<?> stream, final String prefix) {
         if (true) { // set to false to enable proxy data logging..
             return stream;
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * An immutable consistent hash ring which maps keys onto a set of members so that adding or removing a member only
+ * moves the keys of that member
+ */
+public class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 100;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final SortedMap<Long, String> ring = new TreeMap<>();
+    private final TreeSet<String> members;
+
+    public ConsistentHashRing(Collection<String> members) {
+        this(members, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        this.members = new TreeSet<>(members);
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Returns the member which owns the given key or null if there are no members
+     */
+    public String getOwner(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = ring.tailMap(hash(key));
+        Map.Entry<Long, String> entry = tail.isEmpty() ? null : tail.entrySet().iterator().next();
+        return entry != null ? entry.getValue() : ring.get(ring.firstKey());
+    }
+
+    public TreeSet<String> getMembers() {
+        return new TreeSet<>(members);
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + members;
+    }
+
+    protected static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, UTF8).asLong();
+    }
+}
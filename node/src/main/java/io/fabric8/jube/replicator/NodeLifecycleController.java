@@ -0,0 +1,196 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.kubernetes.api.PodStatusType;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getPodStatus;
+
+/**
+ * Watches for {@link HostNode}s going away; if a host does not come back within the grace period all of its pods are
+ * marked as failed in a single ZooKeeper transaction so that their replication controllers recreate them elsewhere.
+ * <p/>
+ * Only the master evicts pods but every node tracks the hosts so that a new master can take over straight away.
+ */
+@Singleton
+@MBean(objectName = "io.fabric8.jube:type=NodeLifecycleController", description = "Evicts the pods of lost host nodes")
+public class NodeLifecycleController {
+    public static final String FAILED_PHASE = "Failed";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(NodeLifecycleController.class);
+
+    private final ApiMasterKubernetesModel model;
+    private final HostNodeModel hostNodeModel;
+    private final long gracePeriod;
+    private final Timer timer = new Timer("Jube node lifecycle", true);
+    private final ConcurrentMap<String, TimerTask> pendingEvictions = new ConcurrentHashMap<>();
+    private final AtomicLong evictedHostCount = new AtomicLong();
+    private final AtomicLong evictedPodCount = new AtomicLong();
+    private volatile boolean enabled;
+    private volatile long lastRecoveryTime;
+    private final EntityListener<HostNode> hostNodeListener = new EntityListener<HostNode>() {
+        @Override
+        public void entityChanged(String id, HostNode entity) {
+            TimerTask task = pendingEvictions.remove(id);
+            if (task != null) {
+                LOG.info("Host node " + id + " came back within the grace period");
+                task.cancel();
+            }
+        }
+
+        @Override
+        public void entityDeleted(String id, HostNode entity) {
+            LOG.info("Host node " + id + " has gone away; evicting its pods in " + gracePeriod + " millis unless it comes back");
+            scheduleEviction(id, System.currentTimeMillis());
+        }
+    };
+
+    @Inject
+    public NodeLifecycleController(ApiMasterKubernetesModel model,
+                                   @ConfigProperty(name = "JUBE_NODE_GRACE_PERIOD", defaultValue = "10000")
+                                   long gracePeriod) {
+        this.model = model;
+        this.hostNodeModel = model.getHostNodeModel();
+        this.gracePeriod = gracePeriod;
+        hostNodeModel.addEntityListener(hostNodeListener);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        hostNodeModel.removeEntityListener(hostNodeListener);
+        timer.cancel();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables evictions; such as when this node becomes or stops being the master
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            // lets check for hosts which went away while another node was the master
+            long now = System.currentTimeMillis();
+            for (String hostId : model.getPlacementIndex().getHostIds()) {
+                if (hostNodeModel.getEntity(hostId) == null && !pendingEvictions.containsKey(hostId)) {
+                    scheduleEviction(hostId, now);
+                }
+            }
+        }
+    }
+
+    @JmxManaged(description = "The number of lost host nodes whose pods have been marked as failed")
+    public long getEvictedHostCount() {
+        return evictedHostCount.get();
+    }
+
+    @JmxManaged(description = "The number of pods marked as failed because their host node was lost")
+    public long getEvictedPodCount() {
+        return evictedPodCount.get();
+    }
+
+    /**
+     * Returns the time in milliseconds between the last evicted host going away and its pods being marked as failed
+     */
+    @JmxManaged(description = "The milliseconds between the last lost host node going away and its pods being marked as failed")
+    public long getLastRecoveryTime() {
+        return lastRecoveryTime;
+    }
+
+    /**
+     * Marks all the pods of the given host as failed, returning the number of pods
+     */
+    public int evict(String hostId) {
+        Map<String, Pod> failedPods = new HashMap<>();
+        for (String podId : model.getPlacementIndex().getPodIds(hostId)) {
+            Pod current = model.getPod(podId);
+            // lets change a copy so the model sees the change when ZooKeeper tells us about it and notifies the replicators
+            Pod pod = current != null && getPodStatus(current) != PodStatusType.ERROR ? NodeHelper.copyPod(current) : null;
+            if (pod != null) {
+                PodStatus status = NodeHelper.getOrCreatetStatus(pod);
+                NodeHelper.setPodTerminated(status, "Host node " + hostId + " was lost");
+                // the phase is what the replicators use to decide if a pod has terminated
+                status.setPhase(FAILED_PHASE);
+                failedPods.put(podId, pod);
+            }
+        }
+        if (!failedPods.isEmpty()) {
+            LOG.info("Marking " + failedPods.size() + " pod(s) on lost host node " + hostId + " as failed");
+            model.updatePods(failedPods);
+        }
+        return failedPods.size();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void scheduleEviction(final String hostId, final long lostTime) {
+        TimerTask task = new TimerTask() {
+            @Override
+            public void run() {
+                if (!pendingEvictions.remove(hostId, this)) {
+                    return;
+                }
+                if (hostNodeModel.getEntity(hostId) != null) {
+                    return;
+                }
+                if (!enabled) {
+                    LOG.debug("Not evicting the pods of host node " + hostId + " as we are not the master");
+                    return;
+                }
+                try {
+                    int count = evict(hostId);
+                    evictedHostCount.incrementAndGet();
+                    evictedPodCount.addAndGet(count);
+                    lastRecoveryTime = System.currentTimeMillis() - lostTime;
+                } catch (Exception e) {
+                    LOG.warn("Failed to evict the pods of host node " + hostId + " so will retry. " + e, e);
+                    scheduleEviction(hostId, lostTime);
+                }
+            }
+        };
+        TimerTask oldTask = pendingEvictions.put(hostId, task);
+        if (oldTask != null) {
+            oldTask.cancel();
+        }
+        timer.schedule(task, gracePeriod);
+    }
+}
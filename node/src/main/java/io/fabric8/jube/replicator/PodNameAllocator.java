@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Allocates the numeric suffixes used to name the pods of a replication controller.
+ * <p/>
+ * Each replication controller has a counter in ZooKeeper; a replicator reserves a range of numbers from the counter
+ * with a single conditional write and then hands them out locally without any further round trips, so names are
+ * unique across the cluster and allocating one is constant time.
+ */
+public class PodNameAllocator {
+    public static final String KUBERNETES_REPLICATOR_COUNTERS = "/kubernetes/replicatorCounters";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(PodNameAllocator.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final CuratorFramework curator;
+    private final int rangeSize;
+    private final Map<String, Range> ranges = new HashMap<>();
+
+    public PodNameAllocator(CuratorFramework curator, int rangeSize) {
+        this.curator = curator;
+        this.rangeSize = Math.max(1, rangeSize);
+    }
+
+    /**
+     * Returns the next number for the given replication controller, reserving a new range from ZooKeeper
+     * if the local range has been used up
+     */
+    public long next(String rcID) throws Exception {
+        Range range;
+        synchronized (ranges) {
+            range = ranges.get(rcID);
+            if (range == null) {
+                range = new Range();
+                ranges.put(rcID, range);
+            }
+        }
+        synchronized (range) {
+            if (range.next > range.end) {
+                long end = reserve(rcID);
+                range.next = end - rangeSize + 1;
+                range.end = end;
+            }
+            return range.next++;
+        }
+    }
+
+    /**
+     * Forgets the local range of a replication controller, such as when it moves to another replicator
+     */
+    public void forget(String rcID) {
+        synchronized (ranges) {
+            ranges.remove(rcID);
+        }
+    }
+
+    /**
+     * Removes the counter of a deleted replication controller
+     */
+    public void delete(String rcID) {
+        forget(rcID);
+        try {
+            curator.delete().forPath(zkPathForCounter(rcID));
+        } catch (KeeperException.NoNodeException e) {
+            // already gone
+        } catch (Exception e) {
+            LOG.warn("Failed to delete the pod name counter of replication controller " + rcID + ". " + e, e);
+        }
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * Atomically adds the range size to the counter returning the last number in the reserved range
+     */
+    protected long reserve(String rcID) throws Exception {
+        String path = zkPathForCounter(rcID);
+        while (true) {
+            Stat stat = new Stat();
+            long current;
+            try {
+                byte[] data = curator.getData().storingStatIn(stat).forPath(path);
+                current = data != null && data.length > 0 ? Long.parseLong(new String(data, UTF8)) : 0;
+            } catch (KeeperException.NoNodeException e) {
+                try {
+                    curator.create().creatingParentsIfNeeded().forPath(path, toBytes(rangeSize));
+                    return rangeSize;
+                } catch (KeeperException.NodeExistsException e2) {
+                    // another replicator created it first so lets try again
+                    continue;
+                }
+            }
+            long end = current + rangeSize;
+            try {
+                curator.setData().withVersion(stat.getVersion()).forPath(path, toBytes(end));
+                return end;
+            } catch (KeeperException.BadVersionException e) {
+                LOG.debug("Concurrent update of the pod name counter of " + rcID + " so retrying");
+            }
+        }
+    }
+
+    protected String zkPathForCounter(String rcID) {
+        return KUBERNETES_REPLICATOR_COUNTERS + "/" + rcID;
+    }
+
+    private static byte[] toBytes(long value) {
+        return Long.toString(value).getBytes(UTF8);
+    }
+
+    private static final class Range {
+        private long next = 1;
+        private long end;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A keyed work queue which de-duplicates requests for the same key and rate limits how often each key is processed.
+ * <p/>
+ * A key is never processed concurrently; if it is enqueued while being processed it is processed again afterwards.
+ * A key which fails is retried after the retry delay, which doubles for each failure in a row up to the maximum.
+ */
+public class ReconcileQueue {
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+    public static final long DEFAULT_MAX_RETRY_DELAY = 5 * 60 * 1000;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ReconcileQueue.class);
+
+    private final Handler handler;
+    private final long minInterval;
+    private final long retryDelay;
+    private final long maxRetryDelay;
+    private final ScheduledExecutorService executor;
+    // the keys waiting to be processed with the time they were first enqueued
+    private final Map<String, Long> pending = new HashMap<>();
+    private final Set<String> running = new HashSet<>();
+    private final Set<String> dirty = new HashSet<>();
+    private final Map<String, Long> lastRunTimes = new HashMap<>();
+    // the number of times in a row each key has failed and the earliest time it is retried
+    private final Map<String, Integer> failures = new HashMap<>();
+    private final Map<String, Long> retryTimes = new HashMap<>();
+    // the keys which no longer exist whose state is removed once they have been processed
+    private final Set<String> forgotten = new HashSet<>();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private volatile long lastLatency;
+    private volatile long maxLatency;
+
+    /**
+     * Processes a single key from the queue
+     */
+    public interface Handler {
+        void reconcile(String key) throws Exception;
+    }
+
+    public ReconcileQueue(String name, long minInterval, int threads, Handler handler) {
+        this(name, minInterval, threads, DEFAULT_RETRY_DELAY, DEFAULT_MAX_RETRY_DELAY, handler);
+    }
+
+    public ReconcileQueue(String name, long minInterval, int threads, long retryDelay, long maxRetryDelay, Handler handler) {
+        this.handler = handler;
+        this.minInterval = minInterval;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        this.executor = Executors.newScheduledThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-" + name + "-%s").build());
+    }
+
+    /**
+     * Requests that the given key is processed, unless it is already waiting to be processed
+     */
+    public synchronized void enqueue(String key) {
+        // the key exists again
+        forgotten.remove(key);
+        schedule(key);
+    }
+
+    /**
+     * Removes any rate limiting and retry state for a key which no longer exists; if the key is waiting
+     * or being processed its state is removed once it has been processed
+     */
+    public synchronized void forget(String key) {
+        if (pending.containsKey(key) || running.contains(key)) {
+            forgotten.add(key);
+        } else {
+            removeState(key);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Returns the number of keys whose last run time is kept to rate limit them
+     */
+    public synchronized int getTrackedKeyCount() {
+        return lastRunTimes.size();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * Returns the time in millis between a key being enqueued and it being processed for the last key processed
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public long getAverageLatency() {
+        long count = processedCount.get();
+        return count > 0 ? totalLatency.get() / count : 0;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected synchronized void schedule(String key) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (pending.containsKey(key)) {
+            deduplicatedCount.incrementAndGet();
+            return;
+        }
+        if (running.contains(key)) {
+            dirty.add(key);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        pending.put(key, now);
+        Long lastRun = lastRunTimes.get(key);
+        long runAt = lastRun != null ? lastRun + minInterval : now;
+        Long retryAt = retryTimes.get(key);
+        if (retryAt != null) {
+            runAt = Math.max(runAt, retryAt);
+        }
+        executor.schedule(createTask(key), Math.max(0, runAt - now), TimeUnit.MILLISECONDS);
+    }
+
+    protected Runnable createTask(final String key) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                process(key);
+            }
+        };
+    }
+
+    protected void process(String key) {
+        Long enqueueTime;
+        synchronized (this) {
+            enqueueTime = pending.remove(key);
+            running.add(key);
+        }
+        long start = System.currentTimeMillis();
+        if (enqueueTime != null) {
+            long latency = start - enqueueTime;
+            lastLatency = latency;
+            if (latency > maxLatency) {
+                maxLatency = latency;
+            }
+            totalLatency.addAndGet(latency);
+        }
+        boolean failed = false;
+        try {
+            handler.reconcile(key);
+        } catch (Throwable e) {
+            failed = true;
+            failedCount.incrementAndGet();
+            LOG.warn("Failed to reconcile " + key + ". " + e, e);
+        } finally {
+            processedCount.incrementAndGet();
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                running.remove(key);
+                lastRunTimes.put(key, now);
+                if (failed) {
+                    Integer count = failures.get(key);
+                    count = count != null ? count + 1 : 1;
+                    failures.put(key, count);
+                    retryTimes.put(key, now + getRetryDelay(count));
+                } else {
+                    failures.remove(key);
+                    retryTimes.remove(key);
+                }
+                if (dirty.remove(key) || failed) {
+                    schedule(key);
+                } else if (forgotten.remove(key)) {
+                    removeState(key);
+                }
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Reconciled " + key + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Returns the delay before retrying a key which has failed the given number of times in a row
+     */
+    protected long getRetryDelay(int failureCount) {
+        long answer = retryDelay;
+        for (int i = 1; i < failureCount && answer < maxRetryDelay; i++) {
+            answer *= 2;
+        }
+        return Math.min(answer, maxRetryDelay);
+    }
+
+    protected void removeState(String key) {
+        lastRunTimes.remove(key);
+        failures.remove(key);
+        retryTimes.remove(key);
+    }
+}
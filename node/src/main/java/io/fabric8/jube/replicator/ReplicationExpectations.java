@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the pod creates and deletes a replicator has requested but not yet observed in the model so that they are
+ * not requested again while they are in flight.
+ * <p/>
+ * Expectations which are not observed within the timeout are dropped so that a lost request is eventually retried.
+ */
+public class ReplicationExpectations {
+    private final long timeout;
+    private final Map<String, Expectation> creates = new HashMap<>();
+    private final Map<String, Expectation> deletes = new HashMap<>();
+
+    public ReplicationExpectations(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public synchronized void expectCreate(String rcID, String podId) {
+        creates.put(podId, new Expectation(rcID, System.currentTimeMillis() + timeout));
+    }
+
+    public synchronized void expectDelete(String rcID, String podId) {
+        deletes.put(podId, new Expectation(rcID, System.currentTimeMillis() + timeout));
+    }
+
+    /**
+     * Invoked when a pod has been seen in the model so that any pending create is satisfied
+     */
+    public synchronized void creationObserved(String podId) {
+        creates.remove(podId);
+    }
+
+    /**
+     * Invoked when a pod has been removed from the model so that any pending delete is satisfied
+     */
+    public synchronized void deletionObserved(String podId) {
+        creates.remove(podId);
+        deletes.remove(podId);
+    }
+
+    /**
+     * Invoked when a create request failed so that it is no longer expected
+     */
+    public synchronized void creationFailed(String podId) {
+        creates.remove(podId);
+    }
+
+    /**
+     * Invoked when a delete request failed so that it is no longer expected
+     */
+    public synchronized void deletionFailed(String podId) {
+        deletes.remove(podId);
+    }
+
+    /**
+     * Returns the IDs of the pods of the given controller which we expect to be created
+     */
+    public synchronized Set<String> getPendingCreates(String rcID) {
+        return pending(creates, rcID);
+    }
+
+    /**
+     * Returns the IDs of the pods of the given controller which we expect to be deleted
+     */
+    public synchronized Set<String> getPendingDeletes(String rcID) {
+        return pending(deletes, rcID);
+    }
+
+    /**
+     * Removes all the expectations of a controller
+     */
+    public synchronized void forget(String rcID) {
+        remove(creates, rcID);
+        remove(deletes, rcID);
+    }
+
+    public synchronized int size() {
+        return creates.size() + deletes.size();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    private Set<String> pending(Map<String, Expectation> map, String rcID) {
+        long now = System.currentTimeMillis();
+        Set<String> answer = new HashSet<>();
+        for (Iterator<Map.Entry<String, Expectation>> iter = map.entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<String, Expectation> entry = iter.next();
+            Expectation expectation = entry.getValue();
+            if (expectation.expires <= now) {
+                iter.remove();
+            } else if (expectation.rcID.equals(rcID)) {
+                answer.add(entry.getKey());
+            }
+        }
+        return answer;
+    }
+
+    private void remove(Map<String, Expectation> map, String rcID) {
+        for (Iterator<Expectation> iter = map.values().iterator(); iter.hasNext();) {
+            if (iter.next().rcID.equals(rcID)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static final class Expectation {
+        private final String rcID;
+        private final long expires;
+
+        private Expectation(String rcID, long expires) {
+            this.rcID = rcID;
+            this.expires = expires;
+        }
+    }
+}
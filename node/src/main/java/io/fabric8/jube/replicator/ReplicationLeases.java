@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ephemeral ZooKeeper leases which ensure that a replication controller is only reconciled by one replicator at a time
+ * while ownership is handed over between replicators
+ */
+public class ReplicationLeases {
+    public static final String KUBERNETES_REPLICATOR_LEASES = "/kubernetes/replicatorLeases";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ReplicationLeases.class);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final CuratorFramework curator;
+    private final String nodeId;
+    private final Set<String> heldLeases = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public ReplicationLeases(CuratorFramework curator, String nodeId) {
+        this.curator = curator;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Tries to acquire the lease for the given replication controller returning true if this node now holds it
+     */
+    public boolean acquire(String rcID) throws Exception {
+        if (heldLeases.contains(rcID)) {
+            return true;
+        }
+        String path = zkPathForLease(rcID);
+        try {
+            curator.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, nodeId.getBytes(UTF8));
+        } catch (KeeperException.NodeExistsException e) {
+            String holder = getHolder(rcID);
+            if (!nodeId.equals(holder)) {
+                LOG.debug("Replication controller " + rcID + " is still leased by " + holder);
+                return false;
+            }
+        }
+        heldLeases.add(rcID);
+        return true;
+    }
+
+    /**
+     * Releases the lease for the given replication controller if this node holds it
+     */
+    public void release(String rcID) {
+        if (!heldLeases.remove(rcID)) {
+            return;
+        }
+        String path = zkPathForLease(rcID);
+        try {
+            if (nodeId.equals(getHolder(rcID))) {
+                curator.delete().forPath(path);
+            }
+        } catch (KeeperException.NoNodeException e) {
+            // already gone
+        } catch (Exception e) {
+            LOG.warn("Failed to release the lease on replication controller " + rcID + ". " + e, e);
+        }
+    }
+
+    public boolean isHeld(String rcID) {
+        return heldLeases.contains(rcID);
+    }
+
+    public Set<String> getHeldLeases() {
+        return Collections.unmodifiableSet(heldLeases);
+    }
+
+    /**
+     * Forgets all the leases; such as when our ZooKeeper session has expired and our ephemeral nodes are gone
+     */
+    public void clear() {
+        heldLeases.clear();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected String getHolder(String rcID) throws Exception {
+        try {
+            byte[] data = curator.getData().forPath(zkPathForLease(rcID));
+            return data != null ? new String(data, UTF8) : null;
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        }
+    }
+
+    protected String zkPathForLease(String rcID) {
+        return KUBERNETES_REPLICATOR_LEASES + "/" + rcID;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the progress of the pod creations and deletions requested for a replication controller
+ */
+public class ReplicationProgress {
+    private final String id;
+    private final AtomicInteger requestedCreates = new AtomicInteger();
+    private final AtomicInteger completedCreates = new AtomicInteger();
+    private final AtomicInteger failedCreates = new AtomicInteger();
+    private final AtomicInteger requestedDeletes = new AtomicInteger();
+    private final AtomicInteger completedDeletes = new AtomicInteger();
+    private final AtomicInteger failedDeletes = new AtomicInteger();
+
+    public ReplicationProgress(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationProgress{"
+                + "id='" + id + '\''
+                + ", creates=" + completedCreates + "/" + requestedCreates
+                + ", failedCreates=" + failedCreates
+                + ", deletes=" + completedDeletes + "/" + requestedDeletes
+                + ", failedDeletes=" + failedDeletes
+                + '}';
+    }
+
+    public void createRequested() {
+        requestedCreates.incrementAndGet();
+    }
+
+    public void createCompleted(boolean success) {
+        completedCreates.incrementAndGet();
+        if (!success) {
+            failedCreates.incrementAndGet();
+        }
+    }
+
+    public void deleteRequested() {
+        requestedDeletes.incrementAndGet();
+    }
+
+    public void deleteCompleted(boolean success) {
+        completedDeletes.incrementAndGet();
+        if (!success) {
+            failedDeletes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of creates and deletes which have been requested but not yet completed
+     */
+    public int getInFlight() {
+        return requestedCreates.get() - completedCreates.get() + requestedDeletes.get() - completedDeletes.get();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getRequestedCreates() {
+        return requestedCreates.get();
+    }
+
+    public int getCompletedCreates() {
+        return completedCreates.get();
+    }
+
+    public int getFailedCreates() {
+        return failedCreates.get();
+    }
+
+    public int getRequestedDeletes() {
+        return requestedDeletes.get();
+    }
+
+    public int getCompletedDeletes() {
+        return completedDeletes.get();
+    }
+
+    public int getFailedDeletes() {
+        return failedDeletes.get();
+    }
+}
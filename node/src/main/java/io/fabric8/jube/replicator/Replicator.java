@@ -15,25 +15,38 @@
  */
 package io.fabric8.jube.replicator;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.groups.Group;
 import io.fabric8.groups.GroupListener;
 import io.fabric8.groups.internal.ZooKeeperGroup;
 import io.fabric8.jube.KubernetesModel;
 import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
-import io.fabric8.jube.apimaster.ApiMasterService;
+import io.fabric8.jube.autoscaler.Autoscaler;
+import io.fabric8.jube.apimaster.PodBatchResult;
+import io.fabric8.jube.local.EntityListener;
 import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.local.PodChanges;
+import io.fabric8.jube.model.HostNode;
 import io.fabric8.jube.process.ProcessManager;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.PodStatusType;
@@ -43,7 +56,6 @@ import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
 import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
 import io.fabric8.kubernetes.api.model.PodStatus;
 import io.fabric8.kubernetes.api.model.Container;
-import io.fabric8.kubernetes.api.model.ContainerStatus;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.utils.Closeables;
@@ -53,6 +65,8 @@ import io.fabric8.utils.Objects;
 import io.hawt.util.Strings;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.deltaspike.core.api.jmx.JmxManaged;
+import org.apache.deltaspike.core.api.jmx.MBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,8 +77,16 @@ import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
 
 /**
  * Monitors the status of the current replication controllers and pods and chooses to start new pods if there are not enough replicas
+ * <p/>
+ * Replication controllers are reconciled via a {@link ReconcileQueue} whenever they or their pods change, with a slow
+ * periodic resync of all controllers as a safety net.
+ * <p/>
+ * The replication controllers are shared out between the live replicators using a {@link ConsistentHashRing} of their
+ * node IDs; a replicator must hold the {@link ReplicationLeases lease} of a controller before reconciling it so that
+ * a controller is never reconciled by two replicators while ownership is handed over.
  */
 @Singleton
+@MBean(objectName = "io.fabric8.jube:type=Replicator", description = "Reconciles the replication controllers")
 public class Replicator {
     private static final transient Logger LOG = LoggerFactory.getLogger(Replicator.class);
 
@@ -74,9 +96,27 @@ public class Replicator {
     private final ApiMasterKubernetesModel model;
     private final ProcessManager processManager;
     private final long pollTime;
-    private final Timer timer = new Timer();
+    private final long resyncTime;
+    private final Timer timer = new Timer("jube-replicator-resync", true);
     private final GroupListener<ReplicatorNode> groupListener;
+    private final ReconcileQueue queue;
+    // the replication controllers which each pod was last selected by
+    private final Map<String, Set<String>> podControllers = new ConcurrentHashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ReplicationLeases leases;
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(Collections.<String>emptyList());
+    // creates and deletes are performed concurrently up to the maximum concurrency across all controllers
+    private final ExecutorService podExecutor;
+    private final Map<String, ReplicationProgress> progressMap = new ConcurrentHashMap<>();
+    private final ReplicationExpectations expectations;
+    private final PodNameAllocator nameAllocator;
+    private final NodeLifecycleController nodeLifecycleController;
+    private final Autoscaler autoscaler;
+    private final EntityListener<Pod> expectationsListener;
+    private final EntityListener<ReplicationController> replicationControllerListener;
+    private final EntityListener<Pod> podListener;
     private ZooKeeperGroup<ReplicatorNode> group;
+    private TimerTask resyncTask;
     private AtomicBoolean timerEnabled = new AtomicBoolean(false);
     private AtomicBoolean master = new AtomicBoolean(false);
 
@@ -84,14 +124,89 @@ public class Replicator {
     public Replicator(CuratorFramework curator,
                       ApiMasterKubernetesModel model,
                       ProcessManager processManager,
-                      @ConfigProperty(name = "REPLICATOR_POLL_TIME", defaultValue = "2000")
-                      long pollTime) {
+                      NodeLifecycleController nodeLifecycleController,
+                      Autoscaler autoscaler,
+                      @ConfigProperty(name = "REPLICATOR_POLL_TIME", defaultValue = "500")
+                      long pollTime,
+                      @ConfigProperty(name = "REPLICATOR_RESYNC_TIME", defaultValue = "30000")
+                      long resyncTime,
+                      @ConfigProperty(name = "REPLICATOR_MAX_CONCURRENCY", defaultValue = "20")
+                      int maxConcurrency,
+                      @ConfigProperty(name = "REPLICATOR_EXPECTATION_TIMEOUT", defaultValue = "60000")
+                      long expectationTimeout,
+                      @ConfigProperty(name = "REPLICATOR_NAME_RANGE", defaultValue = "100")
+                      int nameRange) {
         this.curator = curator;
         this.model = model;
         this.processManager = processManager;
+        this.nodeLifecycleController = nodeLifecycleController;
+        this.autoscaler = autoscaler;
         this.pollTime = pollTime;
+        this.resyncTime = resyncTime;
 
-        System.out.println("Starting the replicator with poll time: " + pollTime);
+        System.out.println("Starting the replicator " + nodeId + " with poll time: " + pollTime + " and resync time: " + resyncTime);
+
+        leases = new ReplicationLeases(curator, nodeId);
+        expectations = new ReplicationExpectations(expectationTimeout);
+        nameAllocator = new PodNameAllocator(curator, nameRange);
+
+        podExecutor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-replicator-pods-%s").build());
+        queue = new ReconcileQueue("replicator", pollTime, 1, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                Replicator.this.reconcile(key);
+            }
+        });
+        replicationControllerListener = new EntityListener<ReplicationController>() {
+            @Override
+            public void entityChanged(String id, ReplicationController entity) {
+                if (isResponsibleFor(id)) {
+                    queue.enqueue(id);
+                }
+            }
+
+            @Override
+            public void entityDeleted(String id, ReplicationController entity) {
+                if (isResponsibleFor(id)) {
+                    // the reconcile will release the lease
+                    queue.enqueue(id);
+                }
+                queue.forget(id);
+                progressMap.remove(id);
+                expectations.forget(id);
+                if (isOwner(id)) {
+                    nameAllocator.delete(id);
+                } else {
+                    nameAllocator.forget(id);
+                }
+            }
+        };
+        podListener = new EntityListener<Pod>() {
+            @Override
+            public void entityChanged(String id, Pod entity) {
+                podChanged(id, entity, false);
+            }
+
+            @Override
+            public void entityDeleted(String id, Pod entity) {
+                podChanged(id, entity, true);
+            }
+        };
+        expectationsListener = new EntityListener<Pod>() {
+            @Override
+            public void entityChanged(String id, Pod entity) {
+                expectations.creationObserved(id);
+            }
+
+            @Override
+            public void entityDeleted(String id, Pod entity) {
+                expectations.deletionObserved(id);
+            }
+        };
+        model.addReplicationControllerListener(replicationControllerListener);
+        model.addPodListener(expectationsListener);
+        // we only care about which controllers select a pod and whether it has terminated
+        model.addPodListener(podListener, PodChanges.LABELS | PodChanges.CONTAINER_STATE);
 
         group = new ZooKeeperGroup<ReplicatorNode>(curator, KUBERNETES_REPLICATOR, ReplicatorNode.class);
         groupListener = new GroupListener<ReplicatorNode>() {
@@ -111,22 +226,32 @@ public class Replicator {
     @PreDestroy
     public void destroy() {
         disableTimer();
+        model.removeReplicationControllerListener(replicationControllerListener);
+        model.removePodListener(podListener);
+        model.removePodListener(expectationsListener);
         group.remove(groupListener);
         Closeables.closeQuietly(group);
         group = null;
-        disableTimer();
+        timer.cancel();
+        queue.shutdown();
+        podExecutor.shutdownNow();
+        for (String rcID : leases.getHeldLeases()) {
+            leases.release(rcID);
+        }
     }
 
     public boolean isMaster() {
-        return group.isMaster() && master.get();
+        ZooKeeperGroup<ReplicatorNode> currentGroup = group;
+        return currentGroup != null && currentGroup.isMaster() && master.get();
     }
 
     public void enableMaster() {
         if (master.compareAndSet(false, true)) {
-            enableTimer();
             LOG.info("Replicator is the master");
             System.out.println("====== Replicator is the master");
             group.update(createState());
+            nodeLifecycleController.setEnabled(true);
+            autoscaler.setEnabled(true);
         }
     }
 
@@ -134,15 +259,21 @@ public class Replicator {
         if (master.compareAndSet(true, false)) {
             LOG.info("Replicator is not the master");
             System.out.println("====== Replicator is NOT the master");
+            nodeLifecycleController.setEnabled(false);
+            autoscaler.setEnabled(false);
             group.update(createState());
-            disableTimer();
         }
     }
 
     protected void onGroupEvent(Group<ReplicatorNode> group, GroupListener.GroupEvent event) {
         switch (event) {
         case CONNECTED:
+            // our ephemeral leases may have been lost if our session expired so lets acquire them again
+            leases.clear();
+            updateRing(group);
+            break;
         case CHANGED:
+            updateRing(group);
             if (isValid()) {
                 try {
                     if (group.isMaster()) {
@@ -159,55 +290,161 @@ public class Replicator {
             }
             break;
         case DISCONNECTED:
+            // lets stop reconciling until we are connected again
+            ring = new ConsistentHashRing(Collections.<String>emptyList());
+            break;
         default:
         }
     }
 
+    /**
+     * Rebuilds the hash ring from the current members of the group and enqueues the controllers we now own or need
+     * to hand over
+     */
+    protected void updateRing(Group<ReplicatorNode> group) {
+        Set<String> members = new HashSet<>();
+        try {
+            for (ReplicatorNode node : group.members().values()) {
+                if (node != null && node.getNodeId() != null) {
+                    members.add(node.getNodeId());
+                }
+            }
+        } catch (IllegalStateException e) {
+            // not connected
+            return;
+        }
+        if (!members.equals(ring.getMembers())) {
+            ring = new ConsistentHashRing(members);
+            LOG.info("Replicator " + nodeId + " rebalancing over " + ring);
+            try {
+                autoScale();
+            } catch (Exception e) {
+                LOG.warn("Failed to rebalance the replication controllers: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Returns true if this replicator owns the given replication controller according to the hash ring
+     */
+    public boolean isOwner(String rcID) {
+        return nodeId.equals(ring.getOwner(rcID));
+    }
+
+    /**
+     * Returns true if this replicator owns the controller or still holds its lease and so needs to hand it over
+     */
+    protected boolean isResponsibleFor(String rcID) {
+        return isOwner(rcID) || leases.isHeld(rcID);
+    }
+
     protected boolean isValid() {
         return true;
     }
 
 
+    /**
+     * Enqueues all the replication controllers to be reconciled
+     */
     protected void autoScale() throws Exception {
-        if (!isMaster()) {
-            return;
+        Set<String> rcIDs = new HashSet<>(model.getReplicationControllerMap().keySet());
+        rcIDs.addAll(leases.getHeldLeases());
+        for (String rcID : rcIDs) {
+            if (isResponsibleFor(rcID)) {
+                queue.enqueue(rcID);
+            }
         }
-        ImmutableSet<Map.Entry<String, ReplicationController>> entries = model.getReplicationControllerMap().entrySet();
-        for (Map.Entry<String, ReplicationController> entry : entries) {
-            String rcID = entry.getKey();
-            ReplicationController replicationController = entry.getValue();
-            PodTemplateSpec podTemplateSpec = NodeHelper.getPodTemplateSpec(replicationController);
-            if (podTemplateSpec == null) {
-                LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing PodTemplate.PodStatus!");
-                continue;
+    }
+
+    /**
+     * Enqueues the replication controllers which select the pod now or selected it before
+     */
+    protected void podChanged(String podId, Pod pod, boolean removed) {
+        Set<String> owners = new HashSet<>();
+        for (Map.Entry<String, ReplicationController> entry : model.getReplicationControllerMap().entrySet()) {
+            ReplicationControllerSpec spec = entry.getValue().getSpec();
+            Map<String, String> selector = spec != null ? spec.getSelector() : null;
+            if (selector != null && !selector.isEmpty() && KubernetesHelper.createPodFilter(selector).matches(pod)) {
+                owners.add(entry.getKey());
             }
-            int replicaCount = 0;
-            ReplicationControllerSpec spec = replicationController.getSpec();
-            if (spec != null) {
-                Integer replicas = spec.getReplicas();
-                if (replicas != null && replicas > 0) {
-                    replicaCount = replicas;
-                }
+        }
+        Set<String> oldOwners;
+        if (removed) {
+            oldOwners = podControllers.remove(podId);
+        } else {
+            oldOwners = podControllers.put(podId, owners);
+        }
+        if (oldOwners != null) {
+            owners.addAll(oldOwners);
+        }
+        for (String rcID : owners) {
+            if (isResponsibleFor(rcID)) {
+                queue.enqueue(rcID);
             }
-            ReplicationControllerStatus currentState = NodeHelper.getOrCreatetStatus(replicationController);
-            Map<String, String> replicaSelector = spec.getSelector();
-            ImmutableList<Pod> allPods = model.getPods(replicaSelector);
-            List<Pod> pods = Filters.filter(allPods, podHasNotTerminated());
-
-            int currentSize = pods.size();
-            Integer currentSizeInt = new Integer(currentSize);
-            if (!Objects.equal(currentSizeInt, currentState.getReplicas())) {
-                currentState.setReplicas(currentSizeInt);
-                model.updateReplicationController(rcID, replicationController);
+        }
+    }
+
+    /**
+     * Creates or deletes pods so that the given replication controller has the desired number of replicas
+     */
+    protected void reconcile(String rcID) throws Exception {
+        ReplicationController replicationController = model.getReplicationControllerMap().get(rcID);
+        if (!isOwner(rcID) || replicationController == null) {
+            // lets hand over the controller once our in flight creates and deletes have completed
+            ReplicationProgress progress = progressMap.get(rcID);
+            if (leases.isHeld(rcID) && (progress == null || progress.getInFlight() <= 0)) {
+                LOG.info("Replicator " + nodeId + " handing over replication controller " + rcID);
+                leases.release(rcID);
+                nameAllocator.forget(rcID);
+            }
+            return;
+        }
+        if (!leases.acquire(rcID)) {
+            // the previous owner has not handed over yet so lets try again shortly
+            queue.enqueue(rcID);
+            return;
+        }
+        PodTemplateSpec podTemplateSpec = NodeHelper.getPodTemplateSpec(replicationController);
+        if (podTemplateSpec == null) {
+            LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing PodTemplate.PodStatus!");
+            return;
+        }
+        int replicaCount = 0;
+        ReplicationControllerSpec spec = replicationController.getSpec();
+        if (spec != null) {
+            Integer replicas = spec.getReplicas();
+            if (replicas != null && replicas > 0) {
+                replicaCount = replicas;
             }
-            int createCount = replicaCount - currentSize;
-            if (createCount > 0) {
-                pods = createMissingContainers(replicationController, podTemplateSpec, spec, createCount, pods);
-            } else if (createCount < 0) {
-                int deleteCount = Math.abs(createCount);
-                pods = deleteContainers(pods, deleteCount);
+        }
+        ReplicationControllerStatus currentState = NodeHelper.getOrCreatetStatus(replicationController);
+        Map<String, String> replicaSelector = spec.getSelector();
+        ImmutableList<Pod> allPods = model.getPods(replicaSelector);
+        List<Pod> pods = Lists.newArrayList(Filters.filter(allPods, podHasNotTerminated()));
+        // pods we have asked to be created or deleted but not yet seen in ZooKeeper are counted via the expectations
+        Set<String> pendingCreates = expectations.getPendingCreates(rcID);
+        Set<String> pendingDeletes = expectations.getPendingDeletes(rcID);
+        for (int i = pods.size() - 1; i >= 0; i--) {
+            String podId = getName(pods.get(i));
+            if (pendingCreates.contains(podId) || pendingDeletes.contains(podId)) {
+                pods.remove(i);
             }
         }
+
+        int currentSize = pods.size();
+        Integer currentSizeInt = new Integer(currentSize);
+        if (!Objects.equal(currentSizeInt, currentState.getReplicas())) {
+            currentState.setReplicas(currentSizeInt);
+            model.updateReplicationController(rcID, replicationController);
+        }
+        // desired - (observed + expected)
+        int createCount = replicaCount - (currentSize + pendingCreates.size());
+        if (createCount > 0) {
+            pods = createMissingContainers(replicationController, podTemplateSpec, spec, createCount, pods);
+        } else if (createCount < 0) {
+            int deleteCount = Math.abs(createCount);
+            pods = deleteContainers(rcID, pods, deleteCount);
+        }
     }
 
     /**
@@ -245,22 +482,183 @@ public class Replicator {
     }
 
 
-    private ImmutableList<Pod> deleteContainers(List<Pod> pods, int deleteCount) throws Exception {
+    private ImmutableList<Pod> deleteContainers(String rcID, List<Pod> pods, int deleteCount) throws Exception {
         List<Pod> list = Lists.newArrayList(pods);
+        List<Pod> removePods = new ArrayList<>();
         for (int i = 0, size = list.size(); i < deleteCount && i < size; i++) {
-            Pod removePod = list.remove(size - i - 1);
-            String id = getName(removePod);
-            model.deleteRemotePod(removePod);
+            removePods.add(list.remove(size - i - 1));
+        }
+        // lets send one request to each host for all of its pods
+        for (Map.Entry<String, List<Pod>> entry : model.groupByHost(removePods).entrySet()) {
+            HostNode hostNode = entry.getKey() != null ? model.getHostNode(entry.getKey()) : null;
+            List<Pod> hostPods = entry.getValue();
+            if (hostNode != null && hostPods.size() > 1) {
+                deleteRemotePodsAsync(rcID, hostNode, hostPods);
+            } else {
+                for (Pod pod : hostPods) {
+                    deleteRemotePodAsync(rcID, pod);
+                }
+            }
         }
         return ImmutableList.copyOf(list);
     }
 
+    protected void deleteRemotePodsAsync(final String rcID, final HostNode hostNode, final List<Pod> pods) {
+        final ReplicationProgress progress = getOrCreateProgress(rcID);
+        for (Pod pod : pods) {
+            expectations.expectDelete(rcID, getName(pod));
+            progress.deleteRequested();
+        }
+        podExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Set<String> deleted = new HashSet<>();
+                try {
+                    for (PodBatchResult result : model.deleteRemotePods(hostNode, pods)) {
+                        if (result.isSuccess()) {
+                            deleted.add(result.getId());
+                        } else {
+                            LOG.warn("Failed to delete pod " + result.getId() + " for replication controller " + rcID + ". " + result.getError());
+                        }
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Failed to delete pods on host " + hostNode.getWebUrl() + " for replication controller " + rcID + ". " + e, e);
+                } finally {
+                    for (Pod pod : pods) {
+                        String id = getName(pod);
+                        boolean success = deleted.contains(id);
+                        if (!success) {
+                            expectations.deletionFailed(id);
+                        }
+                        progress.deleteCompleted(success);
+                    }
+                    podRequestCompleted(progress);
+                }
+            }
+        });
+    }
+
+    protected void deleteRemotePodAsync(final String rcID, final Pod pod) {
+        final String id = getName(pod);
+        final ReplicationProgress progress = getOrCreateProgress(rcID);
+        expectations.expectDelete(rcID, id);
+        progress.deleteRequested();
+        podExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    model.deleteRemotePod(pod);
+                    success = true;
+                } catch (Exception e) {
+                    LOG.warn("Failed to delete pod " + id + " for replication controller " + rcID + ". " + e, e);
+                } finally {
+                    if (!success) {
+                        expectations.deletionFailed(id);
+                    }
+                    progress.deleteCompleted(success);
+                    podRequestCompleted(progress);
+                }
+            }
+        });
+    }
+
+    protected void createRemotePodAsync(final String rcID, final Pod pod) {
+        final ReplicationProgress progress = getOrCreateProgress(rcID);
+        final String id = getName(pod);
+        expectations.expectCreate(rcID, id);
+        progress.createRequested();
+        podExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = false;
+                try {
+                    success = model.remoteCreatePod(pod) != null;
+                } catch (Exception e) {
+                    LOG.warn("Failed to create pod " + id + " for replication controller " + rcID + ". " + e, e);
+                    NodeHelper.setPodTerminated(pod, e);
+                } finally {
+                    if (!success) {
+                        expectations.creationFailed(id);
+                    }
+                    progress.createCompleted(success);
+                    podRequestCompleted(progress);
+                }
+            }
+        });
+    }
+
+    protected void createRemotePodsAsync(final String rcID, final HostNode hostNode, final List<Pod> pods) {
+        final ReplicationProgress progress = getOrCreateProgress(rcID);
+        for (Pod pod : pods) {
+            expectations.expectCreate(rcID, getName(pod));
+            progress.createRequested();
+        }
+        podExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> errors = new HashMap<>();
+                Set<String> created = new HashSet<>();
+                String failure = "Failed";
+                try {
+                    for (PodBatchResult result : model.remoteCreatePods(hostNode, pods)) {
+                        if (result.isSuccess()) {
+                            created.add(result.getId());
+                        } else {
+                            errors.put(result.getId(), result.getError());
+                            LOG.warn("Failed to create pod " + result.getId() + " for replication controller " + rcID + ". " + result.getError());
+                        }
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Failed to create pods on host " + hostNode.getWebUrl() + " for replication controller " + rcID + ". " + e, e);
+                    failure = e.getMessage();
+                } finally {
+                    for (Pod pod : pods) {
+                        String id = getName(pod);
+                        boolean success = created.contains(id);
+                        if (!success) {
+                            expectations.creationFailed(id);
+                            String error = errors.get(id);
+                            NodeHelper.setPodTerminated(NodeHelper.getOrCreatetStatus(pod), error != null ? error : failure);
+                        }
+                        progress.createCompleted(success);
+                    }
+                    podRequestCompleted(progress);
+                }
+            }
+        });
+    }
+
+    protected void podRequestCompleted(ReplicationProgress progress) {
+        if (progress.getInFlight() <= 0) {
+            LOG.info("Completed " + progress);
+            // lets check the replication controller now its requests have completed
+            queue.enqueue(progress.getId());
+        }
+    }
+
+    protected ReplicationProgress getOrCreateProgress(String rcID) {
+        ReplicationProgress answer = progressMap.get(rcID);
+        if (answer == null || answer.getInFlight() <= 0) {
+            // lets start a new batch of requests
+            answer = new ReplicationProgress(rcID);
+            progressMap.put(rcID, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the progress of the most recent batch of creates and deletes for the given replication controller
+     */
+    public ReplicationProgress getProgress(String rcID) {
+        return progressMap.get(rcID);
+    }
+
 
     protected ImmutableList<Pod> createMissingContainers(ReplicationController replicationController, PodTemplateSpec podTemplateSpec,
                                                                ReplicationControllerSpec replicationControllerSpec, int createCount, List<Pod> pods) throws Exception {
-        // TODO this is a hack ;) needs replacing with the real host we're creating on
-        String host = ApiMasterService.getHostName();
         List<Pod> list = Lists.newArrayList(pods);
+        List<Pod> newPods = new ArrayList<>();
         for (int i = 0; i < createCount; i++) {
             Pod pod = new Pod();
             pod.setKind(NodeHelper.KIND_POD);
@@ -268,44 +666,81 @@ public class Replicator {
             createNewId(replicationController, pod);
             list.add(pod);
 
-            List<Container> containers = KubernetesHelper.getContainers(podTemplateSpec);
-            for (Container container : containers) {
-                String containerName = getName(pod) + "-" + container.getName();
-
-                ContainerStatus containerInfo = NodeHelper.getOrCreateContainerInfo(pod, containerName);
-                PodStatus currentState = pod.getStatus();
-                Objects.notNull(currentState, "currentState");
-                currentState.setHostIP(host);
-
-                String image = container.getImage();
-                if (Strings.isBlank(image)) {
-                    LOG.warn("Missing image for " + containerName + " so cannot create it!");
-                    continue;
-                }
-                NodeHelper.addOrUpdateDesiredContainer(pod, containerName, container);
-            }
+            addTemplateContainers(pod, KubernetesHelper.getContainers(podTemplateSpec));
             PodTemplateSpec podTemplate = replicationControllerSpec.getTemplate();
             if (podTemplate != null) {
                 getOrCreateMetadata(pod).setLabels(KubernetesHelper.getLabels(podTemplate.getMetadata()));
             }
-            // TODO should we update the pod now we've updated it?
-            List<Container> desiredContainers = NodeHelper.getOrCreatePodDesiredContainers(pod);
-            model.remoteCreatePod(pod);
+            newPods.add(pod);
         }
+        createPods(getName(replicationController), newPods);
         return ImmutableList.copyOf(list);
     }
 
+    private void createPods(String rcID, List<Pod> pods) {
+        if (pods.size() <= 1) {
+            for (Pod pod : pods) {
+                createRemotePodAsync(rcID, pod);
+            }
+            return;
+        }
+        // lets send one request to each host for all of the pods scheduled on it
+        Map<String, List<Pod>> podsByHost;
+        try {
+            podsByHost = model.scheduleByHost(pods);
+        } catch (Exception e) {
+            LOG.warn("Failed to schedule pods for replication controller " + rcID + " so creating them one at a time. " + e, e);
+            for (Pod pod : pods) {
+                createRemotePodAsync(rcID, pod);
+            }
+            return;
+        }
+        for (Map.Entry<String, List<Pod>> entry : podsByHost.entrySet()) {
+            HostNode hostNode = model.getHostNode(entry.getKey());
+            List<Pod> hostPods = entry.getValue();
+            if (hostNode != null && hostPods.size() > 1) {
+                createRemotePodsAsync(rcID, hostNode, hostPods);
+            } else {
+                for (Pod pod : hostPods) {
+                    createRemotePodAsync(rcID, pod);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a container to the pod for each of the template's containers, named after the pod
+     */
+    protected static void addTemplateContainers(Pod pod, List<Container> containers) {
+        for (Container container : containers) {
+            String containerName = getName(pod) + "-" + container.getName();
+
+            // the host IP is set when the scheduler chooses the host we're creating on
+            NodeHelper.getOrCreateContainerInfo(pod, containerName);
+
+            String image = container.getImage();
+            if (Strings.isBlank(image)) {
+                LOG.warn("Missing image for " + containerName + " so cannot create it!");
+                continue;
+            }
+            NodeHelper.addOrUpdateDesiredContainer(pod, containerName, container);
+        }
+    }
+
     protected String createNewId(ReplicationController replicationController, Pod pod) {
         String id = getName(replicationController);
         if (Strings.isNotBlank(id)) {
-            id += "-";
-            int idx = 1;
-            while (true) {
-                String anId = id + (idx++);
-                if (model.updatePodIfNotExist(anId, pod)) {
-                    setName(pod, anId);
-                    return null;
+            try {
+                while (true) {
+                    // numbers are unique across the cluster but lets skip any names left over from before the counter existed
+                    String anId = id + "-" + nameAllocator.next(id);
+                    if (model.updatePodIfNotExist(anId, pod)) {
+                        setName(pod, anId);
+                        return null;
+                    }
                 }
+            } catch (Exception e) {
+                LOG.warn("Failed to allocate a pod name for replication controller " + id + " so using a generated ID. " + e, e);
             }
         }
         id = model.createID(NodeHelper.KIND_POD);
@@ -315,10 +750,10 @@ public class Replicator {
 
     protected void enableTimer() {
         if (timerEnabled.compareAndSet(false, true)) {
-            TimerTask timerTask = new TimerTask() {
+            resyncTask = new TimerTask() {
                 @Override
                 public void run() {
-                    LOG.debug("Replicator Timer");
+                    LOG.debug("Replicator resync");
                     try {
                         autoScale();
                     } catch (Exception e) {
@@ -328,18 +763,22 @@ public class Replicator {
                     }
                 }
             };
-            timer.schedule(timerTask, this.pollTime, this.pollTime);
+            // lets resync straight away in case we've just become the master
+            timer.schedule(resyncTask, 0, this.resyncTime);
         }
     }
 
     protected void disableTimer() {
         System.out.println("disabling the Replicator timer!");
-        timer.cancel();
+        if (resyncTask != null) {
+            resyncTask.cancel();
+            resyncTask = null;
+        }
         timerEnabled.set(false);
     }
 
     private ReplicatorNode createState() {
-        ReplicatorNode state = new ReplicatorNode();
+        ReplicatorNode state = new ReplicatorNode(nodeId);
         return state;
     }
 
@@ -347,6 +786,78 @@ public class Replicator {
         return pollTime;
     }
 
+    public long getResyncTime() {
+        return resyncTime;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @JmxManaged(description = "The IDs of the live replicators sharing the replication controllers")
+    public String getReplicatorMembers() {
+        return ring.getMembers().toString();
+    }
+
+    @JmxManaged(description = "The number of replication controllers this replicator currently holds the lease for")
+    public int getLeasedReplicationControllerCount() {
+        return leases.getHeldLeases().size();
+    }
+
+    @JmxManaged(description = "The number of replication controllers waiting to be reconciled")
+    public int getQueueDepth() {
+        return queue.getQueueDepth();
+    }
+
+    @JmxManaged(description = "The number of reconciles performed")
+    public long getReconcileCount() {
+        return queue.getProcessedCount();
+    }
+
+    @JmxManaged(description = "The number of reconciles which failed")
+    public long getFailedReconcileCount() {
+        return queue.getFailedCount();
+    }
+
+    @JmxManaged(description = "The number of reconcile requests merged into an already queued request")
+    public long getDeduplicatedReconcileCount() {
+        return queue.getDeduplicatedCount();
+    }
+
+    @JmxManaged(description = "The number of pod creates and deletes which have been requested but not yet seen in the model")
+    public int getPendingExpectationCount() {
+        return expectations.size();
+    }
+
+    @JmxManaged(description = "The number of pod creates and deletes in progress")
+    public int getPodRequestsInFlight() {
+        int answer = 0;
+        for (ReplicationProgress progress : progressMap.values()) {
+            answer += progress.getInFlight();
+        }
+        return answer;
+    }
+
+    @JmxManaged(description = "The progress of the latest creates and deletes of each replication controller")
+    public String getReplicationProgress() {
+        return progressMap.values().toString();
+    }
+
+    @JmxManaged(description = "The time in millis between the last reconcile being requested and it starting")
+    public long getLastReconcileLatency() {
+        return queue.getLastLatency();
+    }
+
+    @JmxManaged(description = "The maximum time in millis between a reconcile being requested and it starting")
+    public long getMaxReconcileLatency() {
+        return queue.getMaxLatency();
+    }
+
+    @JmxManaged(description = "The average time in millis between a reconcile being requested and it starting")
+    public long getAverageReconcileLatency() {
+        return queue.getAverageLatency();
+    }
+
     public KubernetesModel getModel() {
         return model;
     }
@@ -18,9 +18,28 @@ package io.fabric8.jube.replicator;
 import io.fabric8.groups.NodeState;
 
 public class ReplicatorNode extends NodeState {
+    private String nodeId;
+
+    public ReplicatorNode() {
+    }
+
+    public ReplicatorNode(String nodeId) {
+        this.nodeId = nodeId;
+    }
 
     @Override
     public String toString() {
-        return "ReplicatorNode()";
+        return "ReplicatorNode(" + nodeId + ")";
+    }
+
+    /**
+     * Returns the unique ID of the replicator used to share out the replication controllers
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
     }
 }
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Pod;
+
+/**
+ * Chooses hosts for a batch of pods one at a time. The hosts only report their capacity every so often, so each pod
+ * is charged against the host it is given, using default requests for a pod which requests nothing, so that a
+ * {@link ScoringScheduler} doesn't put the whole batch on the host which scored best for the first pod.
+ */
+public class BatchScheduler {
+    private final Scheduler scheduler;
+    private final List<HostNode> hosts;
+    private final KubernetesModel model;
+    private final Map<String, ResourceRequests> assigned = new HashMap<>();
+
+    public BatchScheduler(Scheduler scheduler, List<HostNode> hosts, KubernetesModel model) {
+        if (hosts.isEmpty()) {
+            throw new IllegalStateException("No host nodes available");
+        }
+        this.scheduler = scheduler;
+        this.hosts = new ArrayList<>(hosts);
+        this.model = model;
+    }
+
+    /**
+     * Returns the host for the next pod in the batch
+     */
+    public HostNode schedule(Pod pod) {
+        List<HostNode> ordered;
+        if (scheduler instanceof ScoringScheduler) {
+            ordered = ((ScoringScheduler) scheduler).schedule(pod, hosts, model, assigned);
+        } else {
+            ordered = scheduler.schedule(pod, hosts, model);
+        }
+        HostNode answer = ordered.get(0);
+        String id = answer.getId();
+        assigned.put(id, ResourceRequests.forPod(pod).withDefaults().plus(assigned.get(id)));
+        return answer;
+    }
+}
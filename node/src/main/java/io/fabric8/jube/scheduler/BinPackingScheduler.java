@@ -0,0 +1,31 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Pod;
+
+/**
+ * Prefers the most utilized hosts which can still fit the pod so that other hosts are kept free for large pods
+ */
+public class BinPackingScheduler extends ScoringScheduler {
+
+    @Override
+    protected double score(Pod pod, ResourceRequests requests, HostNode host, KubernetesModel model) {
+        return 2 - freeCpuFraction(requests, host) - freeMemoryFraction(requests, host);
+    }
+}
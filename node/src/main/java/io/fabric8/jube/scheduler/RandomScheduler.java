@@ -0,0 +1,37 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Pod;
+
+/**
+ * Tries the hosts in a random order
+ */
+public class RandomScheduler implements Scheduler {
+
+    @Override
+    public List<HostNode> schedule(Pod pod, List<HostNode> hosts, KubernetesModel model) {
+        List<HostNode> answer = new ArrayList<>(hosts);
+        Collections.shuffle(answer);
+        return answer;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import io.fabric8.utils.Strings;
+
+/**
+ * The total CPU and memory requested by the containers of a pod; using the limits if no requests are specified
+ */
+public class ResourceRequests {
+    /**
+     * The CPU and memory assumed for a pod which doesn't request any when spreading a batch of pods over the hosts
+     */
+    public static final long DEFAULT_CPU_MILLIS = 100;
+    public static final long DEFAULT_MEMORY = 200L << 20;
+
+    private final long cpuMillis;
+    private final long memory;
+
+    public ResourceRequests(long cpuMillis, long memory) {
+        this.cpuMillis = cpuMillis;
+        this.memory = memory;
+    }
+
+    public static ResourceRequests forPod(Pod pod) {
+        long cpuMillis = 0;
+        long memory = 0;
+        PodSpec spec = pod.getSpec();
+        List<Container> containers = spec != null ? spec.getContainers() : null;
+        if (containers != null) {
+            for (Container container : containers) {
+                ResourceRequirements resources = container.getResources();
+                if (resources != null) {
+                    Map<String, Quantity> requests = resources.getRequests();
+                    if (requests == null || requests.isEmpty()) {
+                        requests = resources.getLimits();
+                    }
+                    if (requests != null) {
+                        cpuMillis += parseCpuMillis(amount(requests.get("cpu")));
+                        memory += parseMemory(amount(requests.get("memory")));
+                    }
+                }
+            }
+        }
+        return new ResourceRequests(cpuMillis, memory);
+    }
+
+    /**
+     * Parses a CPU quantity such as <code>2</code>, <code>0.5</code> or <code>500m</code> into millicores
+     */
+    public static long parseCpuMillis(String text) {
+        if (Strings.isNullOrBlank(text)) {
+            return 0;
+        }
+        text = text.trim();
+        try {
+            if (text.endsWith("m")) {
+                return Long.parseLong(text.substring(0, text.length() - 1));
+            }
+            return (long) (Double.parseDouble(text) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses a memory quantity such as <code>512Mi</code>, <code>1G</code> or <code>1048576</code> into bytes
+     */
+    public static long parseMemory(String text) {
+        if (Strings.isNullOrBlank(text)) {
+            return 0;
+        }
+        text = text.trim();
+        String[] suffixes = {"Ki", "Mi", "Gi", "Ti", "K", "M", "G", "T"};
+        long[] multipliers = {1L << 10, 1L << 20, 1L << 30, 1L << 40, 1000L, 1000L * 1000, 1000L * 1000 * 1000, 1000L * 1000 * 1000 * 1000};
+        try {
+            for (int i = 0; i < suffixes.length; i++) {
+                if (text.endsWith(suffixes[i])) {
+                    double value = Double.parseDouble(text.substring(0, text.length() - suffixes[i].length()));
+                    return (long) (value * multipliers[i]);
+                }
+            }
+            return (long) Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the sum of these requests and the given requests, which may be null
+     */
+    public ResourceRequests plus(ResourceRequests other) {
+        if (other == null) {
+            return this;
+        }
+        return new ResourceRequests(cpuMillis + other.cpuMillis, memory + other.memory);
+    }
+
+    /**
+     * Returns these requests with the defaults used for any resource which is not requested
+     */
+    public ResourceRequests withDefaults() {
+        return new ResourceRequests(cpuMillis > 0 ? cpuMillis : DEFAULT_CPU_MILLIS, memory > 0 ? memory : DEFAULT_MEMORY);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceRequests{cpuMillis=" + cpuMillis + ", memory=" + memory + '}';
+    }
+
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    public long getMemory() {
+        return memory;
+    }
+
+    private static String amount(Quantity quantity) {
+        return quantity != null ? quantity.getAmount() : null;
+    }
+}
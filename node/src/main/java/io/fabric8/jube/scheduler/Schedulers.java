@@ -0,0 +1,51 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+/**
+ * Factory methods for the available {@link Scheduler} implementations
+ */
+public final class Schedulers {
+    public static final String LEAST_LOADED = "least-loaded";
+    public static final String BIN_PACKING = "bin-packing";
+    public static final String SPREAD = "spread";
+    public static final String RANDOM = "random";
+
+    private Schedulers() {
+        // utility class
+    }
+
+    /**
+     * Creates the scheduler of the given name, which can also be the class name of a custom {@link Scheduler}
+     */
+    public static Scheduler create(String name) {
+        if (name == null || name.trim().isEmpty() || LEAST_LOADED.equals(name)) {
+            return new LeastLoadedScheduler();
+        } else if (BIN_PACKING.equals(name)) {
+            return new BinPackingScheduler();
+        } else if (SPREAD.equals(name)) {
+            return new SpreadScheduler();
+        } else if (RANDOM.equals(name)) {
+            return new RandomScheduler();
+        }
+        try {
+            Class<?> clazz = Schedulers.class.getClassLoader().loadClass(name);
+            return (Scheduler) clazz.newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unknown scheduler: " + name + ". " + e, e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Pod;
+
+/**
+ * A base class for schedulers which score each host and try the highest scoring hosts first.
+ * Hosts with equal scores are tried in a random order.
+ */
+public abstract class ScoringScheduler implements Scheduler {
+
+    @Override
+    public List<HostNode> schedule(Pod pod, List<HostNode> hosts, KubernetesModel model) {
+        return schedule(pod, hosts, model, Collections.<String, ResourceRequests>emptyMap());
+    }
+
+    /**
+     * Returns the given hosts in the order in which they should be tried for the given pod, treating the resources
+     * already assigned to each host ID as in use since the hosts' capacity was last reported
+     */
+    public List<HostNode> schedule(Pod pod, List<HostNode> hosts, KubernetesModel model, Map<String, ResourceRequests> assigned) {
+        ResourceRequests podRequests = ResourceRequests.forPod(pod);
+        List<HostNode> answer = new ArrayList<>(hosts);
+        Collections.shuffle(answer);
+        final Map<HostNode, Double> scores = new HashMap<>();
+        for (HostNode host : answer) {
+            ResourceRequests requests = podRequests.plus(assigned.get(host.getId()));
+            double score = host.hasCapacity() ? score(pod, requests, host, model) : 0;
+            // lets try hosts which can't fit the pod last
+            if (host.hasCapacity() && !fits(requests, host)) {
+                score -= 1000;
+            }
+            scores.put(host, score);
+        }
+        Collections.sort(answer, new Comparator<HostNode>() {
+            @Override
+            public int compare(HostNode o1, HostNode o2) {
+                return Double.compare(scores.get(o2), scores.get(o1));
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * Returns true if the host has enough free memory for the requested resources
+     */
+    public static boolean fits(ResourceRequests requests, HostNode host) {
+        return requests.getMemory() <= host.getMemoryFree();
+    }
+
+    /**
+     * Returns the fraction of the CPU of the host which is free, based on its load average, after the requests are added
+     */
+    public static double freeCpuFraction(ResourceRequests requests, HostNode host) {
+        double cores = host.getCpuCores();
+        double load = Math.max(0, host.getLoadAverage()) + requests.getCpuMillis() / 1000.0;
+        return Math.max(0, (cores - load) / cores);
+    }
+
+    /**
+     * Returns the fraction of the memory of the host which is free after the requests are added
+     */
+    public static double freeMemoryFraction(ResourceRequests requests, HostNode host) {
+        return Math.max(0, (double) (host.getMemoryFree() - requests.getMemory()) / host.getMemoryTotal());
+    }
+
+    /**
+     * Returns the score of the host which has reported its capacity; higher scores are tried first
+     */
+    protected abstract double score(Pod pod, ResourceRequests requests, HostNode host, KubernetesModel model);
+}
@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.Map;
+
+import io.fabric8.jube.KubernetesModel;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.utils.Objects;
+
+/**
+ * Prefers the hosts running the fewest pods with the same labels (such as the other replicas of a replication
+ * controller) using the load of the hosts to break ties
+ */
+public class SpreadScheduler extends LeastLoadedScheduler {
+
+    @Override
+    protected double score(Pod pod, ResourceRequests requests, HostNode host, KubernetesModel model) {
+        Map<String, String> labels = KubernetesHelper.getLabels(pod.getMetadata());
+        int siblings = 0;
+        if (labels != null && !labels.isEmpty()) {
+            for (Pod other : model.getPods(labels)) {
+                PodStatus status = other.getStatus();
+                if (other != pod && status != null && Objects.equal(host.getHostName(), status.getHostIP())) {
+                    siblings++;
+                }
+            }
+        }
+        // each sibling outweighs any difference in load
+        return super.score(pod, requests, host, model) - siblings * 10;
+    }
+}
@@ -168,7 +168,30 @@ public class WatchWebSocket {
                     break;
                 case "endpoints":
                     objs = this.service.getEndpoints(namespace);
-                    // TODO add listener
+                    final String endpointsNamespace = namespace;
+                    this.listener = new EntityListener<Endpoints>() {
+                        @Override
+                        public void entityChanged(String id, Endpoints entity) {
+                            if (endpointsNamespace.equals(KubernetesHelper.getNamespace(entity))) {
+                                Map<String, Object> msg = getModifiedMessage(entity);
+                                sendAsJson(msg);
+                            }
+                        }
+                        @Override
+                        public void entityDeleted(String id, Endpoints entity) {
+                            if (endpointsNamespace.equals(KubernetesHelper.getNamespace(entity))) {
+                                Map<String, Object> msg = getDeletedMessage(entity);
+                                sendAsJson(msg);
+                            }
+                        }
+                    };
+                    this.model.getEndpointsIndex().addListener(this.listener);
+                    this.removeListenerFunction = new RemoveListener() {
+                        @Override
+                        public void doRemove() {
+                            model.getEndpointsIndex().removeListener(listener);
+                        }
+                    };
                     break;
                 default:
                     session.close(0, "Unsupported object type: " + type);
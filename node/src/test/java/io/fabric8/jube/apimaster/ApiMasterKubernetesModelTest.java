@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.local.PodChanges;
+import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.jube.scheduler.Schedulers;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.utils.Closeables;
+import io.fabric8.utils.Files;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ApiMasterKubernetesModelTest {
+
+    protected TestingServer server;
+    protected CuratorFramework curator;
+    protected ApiMasterKubernetesModel model;
+    protected File dataDir;
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = new File(System.getProperty("basedir", "."), "target/test-data/" + getClass().getSimpleName() + "-" + System.nanoTime());
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+                .retryPolicy(new RetryOneTime(100)).sessionTimeoutMs(5000).build();
+        curator.start();
+        curator.blockUntilConnected();
+        model = new ApiMasterKubernetesModel(curator, new HostNodeModel(curator), dataDir.getPath(), 5, Schedulers.LEAST_LOADED, 1000, 1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (model != null) {
+            model.destroy();
+        }
+        Closeables.closeQuietly(curator);
+        Closeables.closeQuietly(server);
+        Files.recursiveDelete(dataDir);
+    }
+
+    @Test
+    public void testReadinessChangedInPlaceNotifiesListeners() throws Exception {
+        final List<String> ready = new CopyOnWriteArrayList<>();
+        model.addPodListener(new EntityListener<Pod>() {
+            @Override
+            public void entityChanged(String id, Pod entity) {
+                if (NodeHelper.isPodReady(entity)) {
+                    ready.add(id);
+                }
+            }
+
+            @Override
+            public void entityDeleted(String id, Pod entity) {
+            }
+        }, PodChanges.READINESS);
+
+        Pod pod = new Pod();
+        setName(pod, "pod-1");
+        Container container = new Container();
+        container.setName("pod-1-c");
+        NodeHelper.getOrCreatePodDesiredContainers(pod).add(container);
+        model.updatePod("pod-1", pod);
+        long timeout = System.currentTimeMillis() + 30000;
+        while (model.getPod("pod-1") == null) {
+            assertTrue("Timed out waiting for the pod", System.currentTimeMillis() < timeout);
+            Thread.sleep(50);
+        }
+        assertTrue(ready.isEmpty());
+
+        // lets change the pod held by the model as the process monitor and probes do
+        final Pod modelPod = model.getPod("pod-1");
+        assertFalse(NodeHelper.isPodReady(modelPod));
+        NodeHelper.podTransaction(model, modelPod, new Runnable() {
+            @Override
+            public void run() {
+                NodeHelper.containerAlive(modelPod, "pod-1-c", true);
+            }
+        });
+        assertEquals(1, ready.size());
+        assertEquals("pod-1", ready.get(0));
+    }
+}
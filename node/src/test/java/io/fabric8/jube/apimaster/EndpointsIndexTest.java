@@ -0,0 +1,206 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.kubernetes.api.model.EndpointAddress;
+import io.fabric8.kubernetes.api.model.Endpoints;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServicePort;
+import io.fabric8.kubernetes.api.model.ServiceSpec;
+import io.fabric8.kubernetes.api.model.util.IntOrString;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class EndpointsIndexTest {
+
+    protected EndpointsIndex index;
+    protected List<String> changed;
+    protected List<String> deleted;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new EndpointsIndex();
+        changed = new CopyOnWriteArrayList<>();
+        deleted = new CopyOnWriteArrayList<>();
+        index.addListener(new EntityListener<Endpoints>() {
+            @Override
+            public void entityChanged(String id, Endpoints entity) {
+                changed.add(id);
+            }
+
+            @Override
+            public void entityDeleted(String id, Endpoints entity) {
+                deleted.add(id);
+            }
+        });
+    }
+
+    @Test
+    public void testReadyPodIsAddedAsEndpoint() throws Exception {
+        index.getServiceListener().entityChanged("foo", createService("foo", "foo"));
+        changed.clear();
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+
+        assertEquals(Collections.singletonList("foo"), changed);
+        assertEquals(Collections.singletonList("10.0.0.1"), getIps("foo"));
+        assertEquals("pod-1", getAddresses("foo").get(0).getTargetRef().getName());
+    }
+
+    @Test
+    public void testPodIsOnlyAnEndpointWhileReady() throws Exception {
+        index.getServiceListener().entityChanged("foo", createService("foo", "foo"));
+        changed.clear();
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", false));
+        assertTrue("A pod which is not ready should not change the endpoints", changed.isEmpty());
+        assertTrue(getIps("foo").isEmpty());
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+        assertEquals(Collections.singletonList("10.0.0.1"), getIps("foo"));
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", false));
+        assertTrue(getIps("foo").isEmpty());
+        assertEquals(2, changed.size());
+    }
+
+    @Test
+    public void testRelabelledPodMovesBetweenServices() throws Exception {
+        index.getServiceListener().entityChanged("foo", createService("foo", "foo"));
+        index.getServiceListener().entityChanged("bar", createService("bar", "bar"));
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+        changed.clear();
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "bar", "10.0.0.1", true));
+
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains("foo"));
+        assertTrue(changed.contains("bar"));
+        assertTrue(getIps("foo").isEmpty());
+        assertEquals(Collections.singletonList("10.0.0.1"), getIps("bar"));
+    }
+
+    @Test
+    public void testDeletedPodIsRemoved() throws Exception {
+        index.getServiceListener().entityChanged("foo", createService("foo", "foo"));
+        Pod pod1 = createPod("pod-1", "foo", "10.0.0.1", true);
+        index.getPodListener().entityChanged("pod-1", pod1);
+        index.getPodListener().entityChanged("pod-2", createPod("pod-2", "foo", "10.0.0.2", true));
+        assertEquals(2, getIps("foo").size());
+        changed.clear();
+
+        index.getPodListener().entityDeleted("pod-1", pod1);
+
+        assertEquals(Collections.singletonList("foo"), changed);
+        assertEquals(Collections.singletonList("10.0.0.2"), getIps("foo"));
+
+        index.getServiceListener().entityDeleted("foo", createService("foo", "foo"));
+        assertEquals(Collections.singletonList("foo"), deleted);
+        assertNull(index.getEndpoints("default", "foo"));
+    }
+
+    @Test
+    public void testResourceVersionFollowsTheGeneration() throws Exception {
+        index.getServiceListener().entityChanged("foo", createService("foo", "foo"));
+        long generation = index.getGeneration();
+        assertEquals("" + generation, getResourceVersion("foo"));
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+        assertTrue(index.getGeneration() > generation);
+        generation = index.getGeneration();
+        assertEquals("" + generation, getResourceVersion("foo"));
+
+        // an update which does not change the addresses keeps the endpoints as they are
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+        assertEquals(generation, index.getGeneration());
+        assertEquals("" + generation, getResourceVersion("foo"));
+
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.9", true));
+        assertTrue(index.getGeneration() > generation);
+        assertEquals("" + index.getGeneration(), getResourceVersion("foo"));
+        assertEquals(Collections.singletonList("10.0.0.9"), getIps("foo"));
+    }
+
+    @Test
+    public void testServiceWithoutSelectorHasNoAddresses() throws Exception {
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "foo", "10.0.0.1", true));
+
+        index.getServiceListener().entityChanged("external", createService("external", null));
+
+        assertNotNull(index.getEndpoints("default", "external"));
+        assertTrue(getIps("external").isEmpty());
+    }
+
+    protected List<EndpointAddress> getAddresses(String serviceName) {
+        Endpoints endpoints = index.getEndpoints("default", serviceName);
+        assertNotNull("Should have endpoints for " + serviceName, endpoints);
+        return endpoints.getSubsets().get(0).getAddresses();
+    }
+
+    protected List<String> getIps(String serviceName) {
+        List<String> answer = new ArrayList<>();
+        for (EndpointAddress address : getAddresses(serviceName)) {
+            answer.add(address.getIp());
+        }
+        return answer;
+    }
+
+    protected String getResourceVersion(String serviceName) {
+        return index.getEndpoints("default", serviceName).getMetadata().getResourceVersion();
+    }
+
+    protected static Service createService(String name, String app) {
+        Service service = new Service();
+        setName(service, name);
+        ServiceSpec spec = new ServiceSpec();
+        if (app != null) {
+            spec.setSelector(Collections.singletonMap("app", app));
+        }
+        ServicePort servicePort = new ServicePort();
+        IntOrString port = new IntOrString();
+        port.setIntVal(8080);
+        servicePort.setTargetPort(port);
+        spec.setPorts(Collections.singletonList(servicePort));
+        service.setSpec(spec);
+        return service;
+    }
+
+    protected static Pod createPod(String name, String app, String podIP, boolean ready) {
+        Pod pod = new Pod();
+        setName(pod, name);
+        getOrCreateMetadata(pod).setLabels(Collections.singletonMap("app", app));
+        NodeHelper.getOrCreatetStatus(pod).setPodIP(podIP);
+        NodeHelper.containerAlive(pod, name + "-c", ready);
+        return pod;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.fabric8.jube.model.HostNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class HostNodeClientsTest {
+
+    protected List<String> createdUrls;
+    protected HostNodeClients clients;
+
+    @Before
+    public void setUp() throws Exception {
+        createdUrls = new CopyOnWriteArrayList<>();
+        clients = new HostNodeClients(1000, 1000) {
+            @Override
+            protected KubernetesExtensionsClient createClient(String webUrl) {
+                createdUrls.add(webUrl);
+                return new KubernetesExtensionsClient();
+            }
+        };
+    }
+
+    @Test
+    public void testReleasedClientIsReused() throws Exception {
+        HostNode host = createHostNode("host-1", "http://host-1:8585");
+        KubernetesExtensionsClient first = clients.invoke(host, new EchoRequest());
+        KubernetesExtensionsClient second = clients.invoke(host, new EchoRequest());
+
+        assertSame(first, second);
+        assertEquals(1, createdUrls.size());
+        assertEquals(2, clients.getStatistics().get("host-1").getRequestCount());
+    }
+
+    @Test
+    public void testConcurrentRequestsBorrowTheirOwnClients() throws Exception {
+        final HostNode host = createHostNode("host-1", "http://host-1:8585");
+        final KubernetesExtensionsClient[] nested = new KubernetesExtensionsClient[1];
+        KubernetesExtensionsClient outer = clients.invoke(host, new HostNodeClients.Request<KubernetesExtensionsClient>() {
+            @Override
+            public KubernetesExtensionsClient invoke(KubernetesExtensionsClient client) throws Exception {
+                // the outer client is still borrowed so the nested request needs another
+                nested[0] = clients.invoke(host, new EchoRequest());
+                return client;
+            }
+        });
+        assertNotSame(outer, nested[0]);
+        assertEquals(2, createdUrls.size());
+
+        // both are idle again so no more are created
+        clients.invoke(host, new EchoRequest());
+        clients.invoke(host, new EchoRequest());
+        assertEquals(2, createdUrls.size());
+    }
+
+    @Test
+    public void testFailedRequestIsRecorded() throws Exception {
+        HostNode host = createHostNode("host-1", "http://host-1:8585");
+        try {
+            clients.invoke(host, new HostNodeClients.Request<Object>() {
+                @Override
+                public Object invoke(KubernetesExtensionsClient client) throws Exception {
+                    throw new IOException("Connection refused");
+                }
+            });
+            fail("Should have thrown the exception of the request");
+        } catch (IOException e) {
+            // expected
+        }
+        HostNodeClients.Statistics statistics = clients.getStatistics().get("host-1");
+        assertEquals(1, statistics.getRequestCount());
+        assertEquals(1, statistics.getErrorCount());
+
+        // the client is still released for the next request
+        clients.invoke(host, new EchoRequest());
+        assertEquals(1, createdUrls.size());
+    }
+
+    @Test
+    public void testClientsAreEvictedWhenHostChangesOrGoesAway() throws Exception {
+        HostNode host = createHostNode("host-1", "http://host-1:8585");
+        KubernetesExtensionsClient first = clients.invoke(host, new EchoRequest());
+
+        // other changes to the host keep the clients
+        host.setLoadAverage(2.0);
+        clients.getHostNodeListener().entityChanged("host-1", host);
+        assertSame(first, clients.invoke(host, new EchoRequest()));
+
+        HostNode moved = createHostNode("host-1", "http://host-1:9595");
+        clients.getHostNodeListener().entityChanged("host-1", moved);
+        assertFalse(clients.getStatistics().containsKey("host-1"));
+        assertNotSame(first, clients.invoke(moved, new EchoRequest()));
+        assertEquals("http://host-1:9595", createdUrls.get(createdUrls.size() - 1));
+
+        clients.getHostNodeListener().entityDeleted("host-1", moved);
+        assertTrue(clients.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testClientsAreReplacedWhenUrlChangesBeforeTheEvent() throws Exception {
+        KubernetesExtensionsClient first = clients.invoke(createHostNode("host-1", "http://host-1:8585"), new EchoRequest());
+        KubernetesExtensionsClient second = clients.invoke(createHostNode("host-1", "http://host-1:9595"), new EchoRequest());
+        assertNotSame(first, second);
+        assertEquals(2, createdUrls.size());
+        assertEquals(1, clients.getStatistics().get("host-1").getRequestCount());
+    }
+
+    protected static HostNode createHostNode(String id, String webUrl) {
+        HostNode hostNode = new HostNode();
+        hostNode.setId(id);
+        hostNode.setWebUrl(webUrl);
+        return hostNode;
+    }
+
+    /**
+     * Returns the client it was invoked with
+     */
+    protected static class EchoRequest implements HostNodeClients.Request<KubernetesExtensionsClient> {
+        @Override
+        public KubernetesExtensionsClient invoke(KubernetesExtensionsClient client) throws Exception {
+            return client;
+        }
+    }
+}
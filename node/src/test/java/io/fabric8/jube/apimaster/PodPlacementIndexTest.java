@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.apimaster;
+
+import java.util.Collections;
+import java.util.List;
+
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.utils.Closeables;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class PodPlacementIndexTest {
+
+    protected TestingServer server;
+    protected CuratorFramework curator;
+    protected HostNodeModel hostNodeModel;
+    protected PodPlacementIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+                .retryPolicy(new RetryOneTime(100)).sessionTimeoutMs(5000).build();
+        curator.start();
+        curator.blockUntilConnected();
+        hostNodeModel = new HostNodeModel(curator);
+        hostNodeModel.write(createHostNode("node-a", "host-a"));
+        hostNodeModel.write(createHostNode("node-b", "host-b"));
+        hostNodeModel.write(createHostNode("node-c1", "host-c"));
+        hostNodeModel.write(createHostNode("node-c2", "host-c"));
+        long timeout = System.currentTimeMillis() + 30000;
+        while (hostNodeModel.getMap().size() < 4) {
+            assertTrue("Timed out waiting for the host nodes", System.currentTimeMillis() < timeout);
+            Thread.sleep(50);
+        }
+        index = new PodPlacementIndex(hostNodeModel);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Closeables.closeQuietly(curator);
+        Closeables.closeQuietly(server);
+    }
+
+    @Test
+    public void testAnnotationIsUsedBeforeHostName() throws Exception {
+        // the annotation wins even though the host IP is the name of another host
+        Pod pod = createPod("pod-1", "node-a", "host-b");
+        index.getPodListener().entityChanged("pod-1", pod);
+
+        assertEquals("node-a", index.getHostId("pod-1"));
+        assertEquals(Collections.singleton("pod-1"), index.getPodIds("node-a"));
+        assertTrue(index.getPodIds("node-b").isEmpty());
+        assertEquals("node-a", getOnlyCandidate("pod-1", pod));
+    }
+
+    @Test
+    public void testHostNameIsUsedWithoutAnnotation() throws Exception {
+        Pod pod = createPod("pod-1", null, "host-b");
+        index.getPodListener().entityChanged("pod-1", pod);
+
+        assertEquals("node-b", index.getHostId("pod-1"));
+        assertEquals("node-b", getOnlyCandidate("pod-1", pod));
+
+        // a pod which has not been indexed yet is still found from its host IP
+        Pod other = createPod("pod-2", null, "host-a");
+        assertEquals("node-a", getOnlyCandidate("pod-2", other));
+    }
+
+    @Test
+    public void testSharedHostNameIsNotUsed() throws Exception {
+        Pod pod = createPod("pod-1", null, "host-c");
+        index.getPodListener().entityChanged("pod-1", pod);
+
+        assertNull(index.getHostId("pod-1"));
+        assertEquals(4, index.getCandidateHosts("pod-1", pod).size());
+        assertEquals(4, index.getCandidateHosts("pod-3", null).size());
+    }
+
+    @Test
+    public void testPodIsMovedAndRemoved() throws Exception {
+        index.getPodListener().entityChanged("pod-1", createPod("pod-1", "node-a", null));
+        index.getPodListener().entityChanged("pod-2", createPod("pod-2", "node-a", null));
+        assertEquals(Collections.singleton("node-a"), index.getHostIds());
+
+        Pod moved = createPod("pod-1", "node-b", null);
+        index.getPodListener().entityChanged("pod-1", moved);
+        assertEquals("node-b", index.getHostId("pod-1"));
+        assertEquals(Collections.singleton("pod-2"), index.getPodIds("node-a"));
+
+        index.getPodListener().entityDeleted("pod-2", createPod("pod-2", "node-a", null));
+        assertNull(index.getHostId("pod-2"));
+        assertEquals(Collections.singleton("node-b"), index.getHostIds());
+    }
+
+    protected String getOnlyCandidate(String podId, Pod pod) {
+        List<HostNode> candidates = index.getCandidateHosts(podId, pod);
+        assertEquals("Candidates " + candidates, 1, candidates.size());
+        return candidates.get(0).getId();
+    }
+
+    protected static HostNode createHostNode(String id, String hostName) {
+        HostNode answer = new HostNode();
+        answer.setId(id);
+        answer.setHostName(hostName);
+        answer.setWebUrl("http://" + hostName + ":8585/" + id);
+        return answer;
+    }
+
+    protected static Pod createPod(String id, String hostId, String hostIP) {
+        Pod pod = new Pod();
+        setName(pod, id);
+        if (hostId != null) {
+            PodPlacementIndex.setHostNodeId(pod, hostId);
+        }
+        if (hostIP != null) {
+            NodeHelper.getOrCreatetStatus(pod).setHostIP(hostIP);
+        }
+        return pod;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.autoscaler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ */
+public class AutoscalePolicyTest {
+    protected AutoscaleSpec cpuSpec = new AutoscaleSpec(2, 10, 50, 0, "cheese");
+
+    @Test
+    public void testRecommendation() throws Exception {
+        AutoscalePolicy policy = new AutoscalePolicy(0.1, 0, 0, 0, 0);
+        // 4 pods using 100% in total against a target of 50% each
+        assertEquals(2, policy.recommend(cpuSpec, 4, 100, 0));
+        // within the tolerance
+        assertEquals(4, policy.recommend(cpuSpec, 4, 210, 0));
+        assertEquals(6, policy.recommend(cpuSpec, 4, 300, 0));
+        // bounded by the max replicas
+        assertEquals(10, policy.recommend(cpuSpec, 4, 2000, 0));
+        // bounded by the min replicas
+        assertEquals(2, policy.recommend(cpuSpec, 4, 0, 0));
+
+        // the highest of the metrics wins
+        AutoscaleSpec bothSpec = new AutoscaleSpec(1, 10, 50, 100, "cheese");
+        assertEquals(8, policy.recommend(bothSpec, 4, 100, 800));
+    }
+
+    @Test
+    public void testScaleUpStabilizationAndCooldown() throws Exception {
+        AutoscalePolicy policy = new AutoscalePolicy(0.1, 1000, 0, 5000, 0);
+        assertEquals(4, policy.desiredReplicas(cpuSpec, 4, 200, 0, 0));
+
+        // a spike must last the whole stabilization window
+        assertEquals(4, policy.desiredReplicas(cpuSpec, 4, 400, 0, 500));
+        assertEquals(4, policy.desiredReplicas(cpuSpec, 4, 400, 0, 1000));
+        assertEquals(8, policy.desiredReplicas(cpuSpec, 4, 400, 0, 1600));
+
+        // then we wait for the cooldown before scaling again
+        assertEquals(8, policy.desiredReplicas(cpuSpec, 8, 800, 0, 3000));
+        assertEquals(8, policy.desiredReplicas(cpuSpec, 8, 800, 0, 4000));
+        assertEquals(10, policy.desiredReplicas(cpuSpec, 8, 800, 0, 6700));
+    }
+
+    @Test
+    public void testScaleDownUsesHighestRecentRecommendation() throws Exception {
+        AutoscalePolicy policy = new AutoscalePolicy(0.1, 0, 1000, 0, 0);
+        assertEquals(8, policy.desiredReplicas(cpuSpec, 8, 400, 0, 0));
+        assertEquals(8, policy.desiredReplicas(cpuSpec, 8, 300, 0, 500));
+        // the recommendation of 6 at 500 is still within the window
+        assertEquals(6, policy.desiredReplicas(cpuSpec, 8, 100, 0, 1200));
+        assertEquals(2, policy.desiredReplicas(cpuSpec, 6, 50, 0, 2500));
+    }
+
+    @Test
+    public void testBoundsAppliedImmediately() throws Exception {
+        AutoscalePolicy policy = new AutoscalePolicy(0.1, 60000, 60000, 60000, 60000);
+        assertEquals(2, policy.desiredReplicas(cpuSpec, 0, 0, 0, 0));
+        assertEquals(10, policy.desiredReplicas(cpuSpec, 20, 1000, 0, 1));
+    }
+}
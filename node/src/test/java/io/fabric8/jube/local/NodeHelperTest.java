@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerStatus;
+import io.fabric8.kubernetes.api.model.ContainerStatusBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Probe;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class NodeHelperTest {
+
+    @Test
+    public void testRunningContainerWithoutProbeIsReady() throws Exception {
+        Pod pod = createPod("a", false);
+        assertFalse("no status yet", NodeHelper.isPodReady(pod));
+
+        NodeHelper.containerAlive(pod, "a", true);
+        assertTrue(NodeHelper.isPodReady(pod));
+
+        NodeHelper.containerAlive(pod, "a", false);
+        assertFalse(NodeHelper.isPodReady(pod));
+    }
+
+    @Test
+    public void testContainerWithProbeIsReadyOnceProbed() throws Exception {
+        Pod pod = createPod("a", true);
+        NodeHelper.containerAlive(pod, "a", true);
+        assertFalse(NodeHelper.isPodReady(pod));
+
+        NodeHelper.setReady(pod, "a", true);
+        assertTrue(NodeHelper.isPodReady(pod));
+    }
+
+    @Test
+    public void testRunningStatusWithoutReadyFlagIsReady() throws Exception {
+        Pod pod = createPod("a", false);
+        ContainerStatus status = new ContainerStatusBuilder().withNewState().withNewRunning().endRunning().endState().build();
+        NodeHelper.getOrCreateContainerStatuses(pod).add(status);
+        assertTrue(NodeHelper.isPodReady(pod));
+
+        NodeHelper.getOrCreatePodDesiredContainers(pod).get(0).setReadinessProbe(new Probe());
+        assertFalse(NodeHelper.isPodReady(pod));
+    }
+
+    @Test
+    public void testReadinessIsPerContainer() throws Exception {
+        Pod pod = createPod("a", true);
+        Container b = new Container();
+        b.setName("b");
+        b.setReadinessProbe(new Probe());
+        NodeHelper.getOrCreatePodDesiredContainers(pod).add(b);
+
+        NodeHelper.setReady(pod, "a", true);
+        NodeHelper.setReady(pod, "b", false);
+        assertEquals(Boolean.TRUE, NodeHelper.getOrCreateContainerInfo(pod, "a").getReady());
+        assertEquals(Boolean.FALSE, NodeHelper.getOrCreateContainerInfo(pod, "b").getReady());
+        assertFalse(NodeHelper.isPodReady(pod));
+
+        NodeHelper.setReady(pod, "b", true);
+        assertTrue(NodeHelper.isPodReady(pod));
+    }
+
+    @Test
+    public void testRestartCountIsPerContainer() throws Exception {
+        Pod pod = createPod("a", false);
+        NodeHelper.setRestartCount(pod, "a", 3);
+        NodeHelper.setRestartCount(pod, "b", 1);
+        assertEquals(Integer.valueOf(3), NodeHelper.getOrCreateContainerInfo(pod, "a").getRestartCount());
+        assertEquals(Integer.valueOf(1), NodeHelper.getOrCreateContainerInfo(pod, "b").getRestartCount());
+    }
+
+    @Test
+    public void testContainerStatusSurvivesScans() throws Exception {
+        Pod pod = createPod("a", true);
+        NodeHelper.containerAlive(pod, "a", true);
+        ContainerStatus status = NodeHelper.getOrCreateContainerInfo(pod, "a");
+        status.getAdditionalProperties().put(ProcessMetricsCollector.RESOURCE_USAGE, "usage");
+        NodeHelper.setReady(pod, "a", true);
+        NodeHelper.setRestartCount(pod, "a", 2);
+
+        NodeHelper.containerAlive(pod, "a", true);
+        assertEquals(2, NodeHelper.getOrCreateContainerStatuses(pod).size());
+        status = NodeHelper.getOrCreateContainerInfo(pod, "a");
+        assertEquals("usage", status.getAdditionalProperties().get(ProcessMetricsCollector.RESOURCE_USAGE));
+        assertEquals(Boolean.TRUE, status.getReady());
+        assertEquals(Integer.valueOf(2), status.getRestartCount());
+        assertTrue(NodeHelper.isPodReady(pod));
+    }
+
+    protected static Pod createPod(String containerName, boolean readinessProbe) {
+        Pod pod = new Pod();
+        setName(pod, "pod");
+        Container container = new Container();
+        container.setName(containerName);
+        if (readinessProbe) {
+            container.setReadinessProbe(new Probe());
+        }
+        NodeHelper.getOrCreatePodDesiredContainers(pod).add(container);
+        return pod;
+    }
+}
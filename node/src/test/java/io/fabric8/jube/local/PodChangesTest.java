@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.util.Collections;
+
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerPort;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Probe;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class PodChangesTest {
+
+    @Test
+    public void testMissingPodIsAllChanges() throws Exception {
+        assertEquals(PodChanges.ALL, PodChanges.compute(null, createPod()));
+        assertEquals(PodChanges.ALL, PodChanges.compute(createPod(), null));
+    }
+
+    @Test
+    public void testCopyHasNoChanges() throws Exception {
+        Pod pod = createPod();
+        assertEquals(PodChanges.NONE, PodChanges.compute(pod, pod));
+        assertEquals(PodChanges.NONE, PodChanges.compute(pod, NodeHelper.copyPod(pod)));
+    }
+
+    @Test
+    public void testLabels() throws Exception {
+        Pod pod = createPod();
+        Pod changed = NodeHelper.copyPod(pod);
+        getOrCreateMetadata(changed).setLabels(Collections.singletonMap("app", "bar"));
+        assertEquals(PodChanges.LABELS, PodChanges.compute(pod, changed));
+    }
+
+    @Test
+    public void testAddress() throws Exception {
+        Pod pod = createPod();
+        Pod changed = NodeHelper.copyPod(pod);
+        NodeHelper.getOrCreatetStatus(changed).setPodIP("10.0.0.2");
+        assertEquals(PodChanges.ADDRESS, PodChanges.compute(pod, changed));
+
+        changed = NodeHelper.copyPod(pod);
+        NodeHelper.getOrCreatetStatus(changed).setHostIP("192.168.0.2");
+        assertEquals(PodChanges.ADDRESS, PodChanges.compute(pod, changed));
+
+        changed = NodeHelper.copyPod(pod);
+        getContainer(changed).getPorts().get(0).setContainerPort(9090);
+        assertEquals(PodChanges.ADDRESS, PodChanges.compute(pod, changed));
+    }
+
+    @Test
+    public void testContainerState() throws Exception {
+        Pod pod = createPod();
+        Pod changed = NodeHelper.copyPod(pod);
+        NodeHelper.setRestartCount(changed, "app", 1);
+        assertEquals(PodChanges.CONTAINER_STATE, PodChanges.compute(pod, changed));
+
+        changed = NodeHelper.copyPod(pod);
+        NodeHelper.getOrCreatetStatus(changed).setPhase("Failed");
+        assertEquals(PodChanges.CONTAINER_STATE, PodChanges.compute(pod, changed));
+    }
+
+    @Test
+    public void testReadiness() throws Exception {
+        Pod pod = createPod();
+        assertFalse(NodeHelper.isPodReady(pod));
+        Pod changed = NodeHelper.copyPod(pod);
+        NodeHelper.setReady(changed, "app", true);
+        assertTrue(NodeHelper.isPodReady(changed));
+
+        int changes = PodChanges.compute(pod, changed);
+        assertTrue(PodChanges.matches(changes, PodChanges.READINESS));
+        // the ready flag is part of the container status
+        assertEquals(PodChanges.READINESS | PodChanges.CONTAINER_STATE, changes);
+        assertEquals("[containerState,readiness]", PodChanges.toString(changes));
+    }
+
+    @Test
+    public void testSpec() throws Exception {
+        Pod pod = createPod();
+        Pod changed = NodeHelper.copyPod(pod);
+        getContainer(changed).setImage("fabric8/app:2.0");
+        assertEquals(PodChanges.SPEC, PodChanges.compute(pod, changed));
+
+        // fields which are not compared directly are found by comparing the json
+        changed = NodeHelper.copyPod(pod);
+        getContainer(changed).setLivenessProbe(new Probe());
+        assertEquals(PodChanges.SPEC, PodChanges.compute(pod, changed));
+    }
+
+    @Test
+    public void testOther() throws Exception {
+        Pod pod = createPod();
+        Pod changed = NodeHelper.copyPod(pod);
+        getOrCreateMetadata(changed).setAnnotations(Collections.singletonMap("foo", "bar"));
+        assertEquals(PodChanges.OTHER, PodChanges.compute(pod, changed));
+        assertFalse(PodChanges.matches(PodChanges.OTHER, PodChanges.LABELS | PodChanges.ADDRESS | PodChanges.READINESS));
+    }
+
+    protected static Container getContainer(Pod pod) {
+        return NodeHelper.getOrCreatePodDesiredContainers(pod).get(0);
+    }
+
+    protected static Pod createPod() {
+        Pod pod = new Pod();
+        setName(pod, "pod-1");
+        getOrCreateMetadata(pod).setLabels(Collections.singletonMap("app", "foo"));
+        Container container = new Container();
+        container.setName("app");
+        container.setImage("fabric8/app:1.0");
+        ContainerPort port = new ContainerPort();
+        port.setName("http");
+        port.setContainerPort(8080);
+        container.setPorts(Collections.singletonList(port));
+        // with a readiness probe the running container is not ready until probed
+        container.setReadinessProbe(new Probe());
+        NodeHelper.getOrCreatePodDesiredContainers(pod).add(container);
+        NodeHelper.getOrCreatetStatus(pod).setPodIP("10.0.0.1");
+        NodeHelper.getOrCreatetStatus(pod).setHostIP("192.168.0.1");
+        NodeHelper.containerAlive(pod, "app", true);
+        return pod;
+    }
+}
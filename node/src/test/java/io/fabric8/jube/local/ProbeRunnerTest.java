@@ -0,0 +1,57 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeRunnerTest {
+
+    protected File directory = new File(System.getProperty("basedir", "."), "target/test-data/" + getClass().getSimpleName() + "-" + System.nanoTime());
+
+    @Test
+    public void shouldProbeTcpPort() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+            assertTrue(ProbeRunner.checkTcp("localhost", port, 1000));
+        }
+        assertFalse(ProbeRunner.checkTcp("localhost", port, 1000));
+    }
+
+    @Test
+    public void shouldProbeWithCommand() throws Exception {
+        directory.mkdirs();
+        assertTrue(ProbeRunner.checkExec(directory, Collections.singletonMap("PROBE", "ok"), Arrays.asList("sh", "-c", "test \"$PROBE\" = ok"), 5000));
+        assertFalse(ProbeRunner.checkExec(directory, null, Arrays.asList("sh", "-c", "exit 1"), 5000));
+        assertTrue(new File(directory, ProbeRunner.PROBE_LOG_FILE).exists());
+    }
+
+    @Test
+    public void shouldFailCommandWhichTimesOut() throws Exception {
+        directory.mkdirs();
+        long start = System.currentTimeMillis();
+        assertFalse(ProbeRunner.checkExec(directory, null, Arrays.asList("sleep", "10"), 200));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}
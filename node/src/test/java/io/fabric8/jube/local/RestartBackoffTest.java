@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.local;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RestartBackoffTest {
+
+    protected RestartBackoff backoff = new RestartBackoff(1000, 10000, 60000);
+
+    @Test
+    public void shouldDoubleDelayUntilMax() throws Exception {
+        long now = 1000000;
+        long[] expected = {1000, 2000, 4000, 8000, 10000, 10000};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("restart " + i, expected[i], backoff.exited("a", now));
+            assertTrue(backoff.isPending("a"));
+            now += expected[i];
+            backoff.restarted("a", now);
+            now += 10;
+        }
+        assertEquals(expected.length, backoff.getRestartCount("a"));
+        assertEquals(0, backoff.getRestartCount("b"));
+    }
+
+    @Test
+    public void shouldNotScheduleTwice() throws Exception {
+        assertEquals(1000, backoff.exited("a", 0));
+        assertEquals(-1, backoff.exited("a", 100));
+        assertEquals(1000, backoff.getNextRestartTime("a"));
+
+        backoff.cancelled("a");
+        assertFalse(backoff.isPending("a"));
+        assertEquals(0, backoff.getNextRestartTime("a"));
+        assertEquals(2000, backoff.exited("a", 200));
+    }
+
+    @Test
+    public void shouldResetAfterRunningLongEnough() throws Exception {
+        backoff.exited("a", 0);
+        backoff.restarted("a", 1000);
+        assertEquals(2000, backoff.exited("a", 2000));
+        backoff.restarted("a", 4000);
+
+        assertEquals(1000, backoff.exited("a", 4000 + 60000));
+        assertEquals(1, backoff.getFailureCount("a"));
+        assertEquals(2, backoff.getRestartCount("a"));
+
+        backoff.remove("a");
+        assertEquals(0, backoff.size());
+        assertEquals(0, backoff.getRestartCount("a"));
+    }
+}
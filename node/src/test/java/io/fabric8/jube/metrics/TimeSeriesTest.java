@@ -0,0 +1,88 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeSeriesTest extends Assert {
+    private static final long START = 1000L * TimeSeries.MINUTE;
+
+    @Test
+    public void shouldKeepSecondValues() throws Exception {
+        TimeSeries series = new TimeSeries("test");
+        series.record(START, 1);
+        series.record(START + 1500, 2);
+        // a later value in the same second replaces the earlier one
+        series.record(START + 1900, 3);
+        // older values are ignored
+        series.record(START, 10);
+        series.record(START + 5000, 4);
+
+        TimeSeriesResult result = series.query(START, START + 10000, TimeSeries.SECOND);
+        assertEquals(TimeSeries.SECOND, result.getResolution());
+        assertEquals(3, result.getValues().size());
+        assertEquals(START + 1000, result.getTimes().get(1).longValue());
+        assertEquals(3, result.getValues().get(1), 0.001);
+        assertEquals(START + 5000, result.getTimes().get(2).longValue());
+        assertEquals(START + 5000, series.getLastTime());
+    }
+
+    @Test
+    public void shouldOnlyKeepTheLastTenMinutesOfSeconds() throws Exception {
+        TimeSeries series = new TimeSeries("test");
+        for (int i = 0; i < 2 * TimeSeries.SECOND_SLOTS; i++) {
+            series.record(START + i * TimeSeries.SECOND, i);
+        }
+        TimeSeriesResult result = series.query(0, Long.MAX_VALUE, TimeSeries.SECOND);
+        assertEquals(TimeSeries.SECOND_SLOTS, result.getValues().size());
+        assertEquals(TimeSeries.SECOND_SLOTS, result.getValues().get(0), 0.001);
+        assertEquals(2 * TimeSeries.SECOND_SLOTS - 1, result.getValues().get(TimeSeries.SECOND_SLOTS - 1), 0.001);
+    }
+
+    @Test
+    public void shouldDownsampleToMinuteAverages() throws Exception {
+        TimeSeries series = new TimeSeries("test");
+        for (int i = 0; i < 60; i++) {
+            series.record(START + i * TimeSeries.SECOND, 10);
+        }
+        series.record(START + TimeSeries.MINUTE, 20);
+        series.record(START + TimeSeries.MINUTE + TimeSeries.SECOND, 40);
+        // a gap of a few minutes
+        series.record(START + 5 * TimeSeries.MINUTE, 100);
+
+        TimeSeriesResult result = series.query(START, START + 10 * TimeSeries.MINUTE, TimeSeries.MINUTE);
+        assertEquals(TimeSeries.MINUTE, result.getResolution());
+        assertEquals(3, result.getValues().size());
+        assertEquals(10, result.getValues().get(0), 0.001);
+        assertEquals(30, result.getValues().get(1), 0.001);
+        // the current minute so far
+        assertEquals(START + 5 * TimeSeries.MINUTE, result.getTimes().get(2).longValue());
+        assertEquals(100, result.getValues().get(2), 0.001);
+    }
+
+    @Test
+    public void shouldClearOldValuesAfterALongGap() throws Exception {
+        TimeSeries series = new TimeSeries("test");
+        series.record(START, 1);
+        series.record(START + 2 * TimeSeries.MINUTE_SLOTS * TimeSeries.MINUTE, 2);
+
+        assertEquals(1, series.query(0, Long.MAX_VALUE, TimeSeries.SECOND).getValues().size());
+        TimeSeriesResult minutes = series.query(0, Long.MAX_VALUE, TimeSeries.MINUTE);
+        assertEquals(1, minutes.getValues().size());
+        assertEquals(2, minutes.getValues().get(0), 0.001);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.model;
+
+import java.io.File;
+import java.util.Map;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.utils.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ModelSnapshotStoreTest {
+
+    private static Logger LOG = LoggerFactory.getLogger(ModelSnapshotStoreTest.class);
+
+    protected File dataDir;
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = new File(System.getProperty("basedir", "."), "target/test-data/" + getClass().getSimpleName() + "-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.recursiveDelete(dataDir);
+    }
+
+    @Test
+    public void testJournalReplayedWithoutClose() throws Exception {
+        ModelSnapshotStore store = new ModelSnapshotStore(dataDir, 64 * 1024);
+        assertTrue(store.load().isEmpty());
+        store.put("/kubernetes/model/pod-a", 1, "a1".getBytes());
+        store.put("/kubernetes/model/pod-b", 1, "b1".getBytes());
+        store.put("/kubernetes/model/pod-a", 2, "a2".getBytes());
+        store.remove("/kubernetes/model/pod-b");
+
+        // simulate a crash by not closing the first store
+        ModelSnapshotStore restarted = new ModelSnapshotStore(dataDir, 64 * 1024);
+        Map<String, ModelSnapshotStore.Entry> entries = restarted.load();
+        assertEquals(1, entries.size());
+        ModelSnapshotStore.Entry entry = entries.get("/kubernetes/model/pod-a");
+        assertNotNull(entry);
+        assertEquals(2, entry.getVersion());
+        assertArrayEquals("a2".getBytes(), entry.getData());
+        assertFalse(entries.containsKey("/kubernetes/model/pod-b"));
+        restarted.close();
+    }
+
+    @Test
+    public void testCompactsWhenJournalIsFull() throws Exception {
+        ModelSnapshotStore store = new ModelSnapshotStore(dataDir, 1024);
+        store.load();
+        for (int i = 0; i < 100; i++) {
+            store.put("/kubernetes/model/pod-" + i, i, ("data-" + i).getBytes());
+        }
+        assertTrue("should have compacted the journal", store.getGeneration() > 0);
+
+        ModelSnapshotStore restarted = new ModelSnapshotStore(dataDir, 1024);
+        Map<String, ModelSnapshotStore.Entry> entries = restarted.load();
+        assertEquals(100, entries.size());
+        assertEquals(42, entries.get("/kubernetes/model/pod-42").getVersion());
+        restarted.close();
+        store.close();
+    }
+
+    @Test
+    public void testLoadTimeOfSnapshotAndJournal() throws Exception {
+        int podCount = Integer.parseInt(System.getProperty("jube.benchmark.pods", "10000"));
+        ModelSnapshotStore store = new ModelSnapshotStore(dataDir);
+        store.load();
+        for (int i = 0; i < podCount; i++) {
+            Pod pod = new Pod();
+            setName(pod, "pod-" + i);
+            // lets put half the pods in the snapshot and half in the journal
+            store.put("/kubernetes/model/pod-" + i, i, KubernetesHelper.toJson(pod).getBytes());
+            if (i == podCount / 2) {
+                store.compact();
+            }
+        }
+
+        // this only times reading the store and parsing its pods; not the rest of a node restart
+        long start = System.currentTimeMillis();
+        ModelSnapshotStore reloaded = new ModelSnapshotStore(dataDir);
+        Map<String, ModelSnapshotStore.Entry> entries = reloaded.load();
+        long loaded = System.currentTimeMillis();
+        for (ModelSnapshotStore.Entry entry : entries.values()) {
+            assertTrue(KubernetesHelper.loadJson(entry.getData()) instanceof Pod);
+        }
+        long parsed = System.currentTimeMillis();
+        LOG.info("Loaded " + entries.size() + " pods from the snapshot and journal in " + (loaded - start)
+                + " ms and parsed them in " + (parsed - loaded) + " ms");
+        assertEquals(podCount, entries.size());
+        assertEquals(1, reloaded.getGeneration());
+        // the first pod comes from the snapshot and the last from the journal
+        assertEquals(0, entries.get("/kubernetes/model/pod-0").getVersion());
+        assertEquals(podCount - 1, entries.get("/kubernetes/model/pod-" + (podCount - 1)).getVersion());
+        reloaded.close();
+    }
+}
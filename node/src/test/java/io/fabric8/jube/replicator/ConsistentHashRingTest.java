@@ -0,0 +1,102 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEY_COUNT = 10000;
+
+    @Test
+    public void testEmptyRingHasNoOwner() throws Exception {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.<String>emptyList());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.getOwner("rc-1"));
+    }
+
+    @Test
+    public void testKeysAreBalancedOverMembers() throws Exception {
+        List<String> members = Arrays.asList("node-1", "node-2", "node-3", "node-4", "node-5");
+        ConsistentHashRing ring = new ConsistentHashRing(members);
+        Map<String, Integer> counts = new HashMap<>();
+        for (String owner : getOwners(ring).values()) {
+            Integer count = counts.get(owner);
+            counts.put(owner, count != null ? count + 1 : 1);
+        }
+        assertEquals(members.size(), counts.size());
+        int mean = KEY_COUNT / members.size();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            int count = entry.getValue();
+            assertTrue(entry.getKey() + " owns " + count + " keys when the mean is " + mean, count > mean / 2 && count < mean * 3 / 2);
+        }
+    }
+
+    @Test
+    public void testJoiningMemberOnlyTakesKeys() throws Exception {
+        Map<String, String> before = getOwners(new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4")));
+        Map<String, String> after = getOwners(new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4", "node-5")));
+        int moved = 0;
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            String oldOwner = before.get(entry.getKey());
+            if (!oldOwner.equals(entry.getValue())) {
+                assertEquals("keys should only move to the new member", "node-5", entry.getValue());
+                moved++;
+            }
+        }
+        // the new member should take about a fifth of the keys
+        assertTrue("moved " + moved + " keys", moved > 0 && moved < KEY_COUNT * 2 / 5);
+    }
+
+    @Test
+    public void testLeavingMemberOnlyGivesUpItsKeys() throws Exception {
+        Map<String, String> before = getOwners(new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-3", "node-4", "node-5")));
+        Map<String, String> after = getOwners(new ConsistentHashRing(Arrays.asList("node-1", "node-2", "node-4", "node-5")));
+        int moved = 0;
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            String oldOwner = before.get(entry.getKey());
+            if (!oldOwner.equals(entry.getValue())) {
+                assertEquals("only the keys of the member which left should move", "node-3", oldOwner);
+                moved++;
+            } else {
+                assertFalse("the keys of the member which left should all move", "node-3".equals(oldOwner));
+            }
+        }
+        assertTrue("moved " + moved + " keys", moved > 0 && moved < KEY_COUNT * 2 / 5);
+    }
+
+    protected static Map<String, String> getOwners(ConsistentHashRing ring) {
+        Map<String, String> answer = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; i++) {
+            String key = "default/rc-" + i;
+            answer.put(key, ring.getOwner(key));
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import io.fabric8.jube.apimaster.ApiMasterKubernetesModel;
+import io.fabric8.jube.apimaster.PodPlacementIndex;
+import io.fabric8.jube.local.EntityListener;
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.jube.model.HostNodeModel;
+import io.fabric8.jube.scheduler.Schedulers;
+import io.fabric8.kubernetes.api.PodStatusType;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.utils.Closeables;
+import io.fabric8.utils.Files;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getPodStatus;
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs two host nodes against a local ZooKeeper and measures how long it takes for the pods of a host which goes
+ * away to be marked as failed
+ */
+public class NodeLifecycleControllerTest {
+
+    private static Logger LOG = LoggerFactory.getLogger(NodeLifecycleControllerTest.class);
+
+    protected TestingServer server;
+    protected CuratorFramework masterCurator;
+    protected CuratorFramework lostCurator;
+    protected ApiMasterKubernetesModel model;
+    protected NodeLifecycleController controller;
+    protected ReconcileQueue queue;
+    protected File dataDir;
+
+    @Before
+    public void setUp() throws Exception {
+        dataDir = new File(System.getProperty("basedir", "."), "target/test-data/" + getClass().getSimpleName() + "-" + System.nanoTime());
+        server = new TestingServer();
+        masterCurator = createCurator();
+        lostCurator = createCurator();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.shutdown();
+        }
+        if (controller != null) {
+            controller.destroy();
+        }
+        if (model != null) {
+            model.destroy();
+        }
+        Closeables.closeQuietly(lostCurator);
+        Closeables.closeQuietly(masterCurator);
+        Closeables.closeQuietly(server);
+        Files.recursiveDelete(dataDir);
+    }
+
+    @Test
+    public void testPodsFailedWhenHostNodeLost() throws Exception {
+        int podCount = 10;
+        long gracePeriod = 500;
+
+        final HostNodeModel masterHostNodes = new HostNodeModel(masterCurator);
+        masterHostNodes.write(createHostNode("master"));
+        HostNodeModel lostHostNodes = new HostNodeModel(lostCurator);
+        lostHostNodes.write(createHostNode("lost"));
+
+        model = new ApiMasterKubernetesModel(masterCurator, masterHostNodes, dataDir.getPath(), 5, Schedulers.LEAST_LOADED, 1000, 1000);
+        controller = new NodeLifecycleController(model, gracePeriod);
+        controller.setEnabled(true);
+
+        // lets enqueue the replication controller of each failed pod as the replicator does
+        final Set<String> reconciled = new CopyOnWriteArraySet<>();
+        queue = new ReconcileQueue("test", 0, 1, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                reconciled.add(key);
+            }
+        });
+        model.addPodListener(new EntityListener<Pod>() {
+            @Override
+            public void entityChanged(String id, Pod entity) {
+                if (getPodStatus(entity) == PodStatusType.ERROR) {
+                    queue.enqueue("rc-" + id);
+                }
+            }
+
+            @Override
+            public void entityDeleted(String id, Pod entity) {
+            }
+        });
+
+        for (int i = 0; i < podCount; i++) {
+            Pod pod = new Pod();
+            String id = "pod-" + i;
+            setName(pod, id);
+            pod.setSpec(new PodSpec());
+            PodPlacementIndex.setHostNodeId(pod, i % 2 == 0 ? "lost" : "master");
+            model.updatePod(id, pod);
+        }
+        waitFor("the pods to be placed", new Condition() {
+            @Override
+            public boolean matches() {
+                return model.getPlacementIndex().getPodIds("lost").size() == 5 && masterHostNodes.getEntity("lost") != null;
+            }
+        });
+
+        // lets lose the second node; closing its session removes its ephemeral host node
+        long start = System.currentTimeMillis();
+        lostCurator.close();
+        lostCurator = null;
+
+        waitFor("the pods of the lost host to fail", new Condition() {
+            @Override
+            public boolean matches() {
+                return countFailedPods() == 5;
+            }
+        });
+        long recovered = System.currentTimeMillis();
+        LOG.info("Marked the pods of the lost host node as failed " + (recovered - start) + " ms after it went away with a grace period of "
+                + gracePeriod + " ms");
+
+        assertEquals(5, countFailedPods());
+        assertEquals(1, controller.getEvictedHostCount());
+        assertEquals(5, controller.getEvictedPodCount());
+        assertTrue("recovery took " + (recovered - start) + " ms", recovered - start >= gracePeriod);
+
+        // the replication controllers must hear about the failed pods straight away rather than on the next resync
+        waitFor("the replication controllers of the failed pods to be reconciled", new Condition() {
+            @Override
+            public boolean matches() {
+                return reconciled.size() == 5;
+            }
+        });
+        for (int i = 0; i < podCount; i += 2) {
+            assertTrue("pod-" + i + " should have been reconciled but was " + reconciled, reconciled.contains("rc-pod-" + i));
+        }
+    }
+
+    protected int countFailedPods() {
+        int count = 0;
+        for (Pod pod : model.getPodMap().values()) {
+            if (getPodStatus(pod) == PodStatusType.ERROR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    protected CuratorFramework createCurator() throws InterruptedException {
+        CuratorFramework curator = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+                .retryPolicy(new RetryOneTime(100)).sessionTimeoutMs(5000).build();
+        curator.start();
+        curator.blockUntilConnected();
+        return curator;
+    }
+
+    protected static HostNode createHostNode(String id) {
+        HostNode answer = new HostNode();
+        answer.setId(id);
+        answer.setHostName("localhost");
+        answer.setWebUrl("http://localhost:8585/" + id);
+        return answer;
+    }
+
+    protected interface Condition {
+        boolean matches();
+    }
+
+    protected static void waitFor(String description, Condition condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 30000;
+        while (!condition.matches()) {
+            assertTrue("Timed out waiting for " + description, System.currentTimeMillis() < timeout);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.fabric8.utils.Closeables;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class PodNameAllocatorTest {
+
+    protected TestingServer server;
+    protected CuratorFramework curator;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        curator = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+                .retryPolicy(new RetryOneTime(100)).sessionTimeoutMs(5000).build();
+        curator.start();
+        curator.blockUntilConnected();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Closeables.closeQuietly(curator);
+        Closeables.closeQuietly(server);
+    }
+
+    @Test
+    public void testNextRangeIsReservedWhenRangeIsUsedUp() throws Exception {
+        PodNameAllocator allocator = new PodNameAllocator(curator, 3);
+        assertEquals(1, allocator.next("rc-1"));
+        assertEquals(2, allocator.next("rc-1"));
+        assertEquals(3, allocator.next("rc-1"));
+        assertEquals(3, readCounter(allocator, "rc-1"));
+
+        assertEquals(4, allocator.next("rc-1"));
+        assertEquals(6, readCounter(allocator, "rc-1"));
+
+        // each replication controller has its own counter
+        assertEquals(1, allocator.next("rc-2"));
+    }
+
+    @Test
+    public void testAllocatorsReserveDisjointRanges() throws Exception {
+        PodNameAllocator first = new PodNameAllocator(curator, 3);
+        PodNameAllocator second = new PodNameAllocator(curator, 3);
+        assertEquals(1, first.next("rc-1"));
+        assertEquals(4, second.next("rc-1"));
+        assertEquals(2, first.next("rc-1"));
+        assertEquals(5, second.next("rc-1"));
+
+        // a replicator which takes over a controller starts a new range
+        first.forget("rc-1");
+        assertEquals(7, first.next("rc-1"));
+    }
+
+    @Test
+    public void testConcurrentReservationsRetryOnConflict() throws Exception {
+        int threads = 8;
+        final int namesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // a range of one means every name conditionally updates the same counter
+                final PodNameAllocator allocator = new PodNameAllocator(curator, 1);
+                futures.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() throws Exception {
+                        List<Long> answer = new ArrayList<>();
+                        for (int j = 0; j < namesPerThread; j++) {
+                            answer.add(allocator.next("rc-1"));
+                        }
+                        return answer;
+                    }
+                }));
+            }
+            Set<Long> names = new HashSet<>();
+            for (Future<List<Long>> future : futures) {
+                for (Long name : future.get()) {
+                    assertTrue("Duplicate name " + name, names.add(name));
+                }
+            }
+            assertEquals(threads * namesPerThread, names.size());
+            assertEquals(threads * namesPerThread, readCounter(new PodNameAllocator(curator, 1), "rc-1"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeleteRemovesCounter() throws Exception {
+        PodNameAllocator allocator = new PodNameAllocator(curator, 10);
+        assertEquals(1, allocator.next("rc-1"));
+        allocator.delete("rc-1");
+        assertNull(curator.checkExists().forPath(allocator.zkPathForCounter("rc-1")));
+
+        assertEquals(1, allocator.next("rc-1"));
+    }
+
+    protected long readCounter(PodNameAllocator allocator, String rcID) throws Exception {
+        return Long.parseLong(new String(curator.getData().forPath(allocator.zkPathForCounter(rcID)), Charset.forName("UTF-8")));
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ReconcileQueueTest {
+
+    protected ReconcileQueue queue;
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void testDuplicateKeysAreMerged() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final List<String> reconciled = new CopyOnWriteArrayList<>();
+        queue = new ReconcileQueue("test", 0, 1, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                if (key.equals("block")) {
+                    blocked.await(10, TimeUnit.SECONDS);
+                } else {
+                    reconciled.add(key);
+                }
+                done.countDown();
+            }
+        });
+
+        // lets block the single worker thread while we enqueue the same key lots of times
+        queue.enqueue("block");
+        while (queue.getRunningCount() == 0) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue("rc1");
+        }
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(9, queue.getDeduplicatedCount());
+
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, reconciled.size());
+    }
+
+    @Test
+    public void testKeysAreRateLimited() throws Exception {
+        final List<Long> times = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        queue = new ReconcileQueue("test", 200, 1, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                times.add(System.currentTimeMillis());
+                done.countDown();
+            }
+        });
+
+        queue.enqueue("rc1");
+        while (queue.getProcessedCount() == 0) {
+            Thread.sleep(10);
+        }
+        queue.enqueue("rc1");
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue("second reconcile should be rate limited but was " + times, times.get(1) - times.get(0) >= 150);
+    }
+
+    @Test
+    public void testForgottenKeysAreRemovedAfterTheirLastRun() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        queue = new ReconcileQueue("test", 0, 1, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                blocked.await(10, TimeUnit.SECONDS);
+                done.countDown();
+            }
+        });
+
+        // lets forget the key while it is waiting to be processed, as the replicator does when a controller is deleted
+        queue.enqueue("rc1");
+        queue.forget("rc1");
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        while (queue.getRunningCount() > 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, queue.getTrackedKeyCount());
+    }
+
+    @Test
+    public void testFailuresAreRetriedWithBackoff() throws Exception {
+        final List<Long> times = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(4);
+        queue = new ReconcileQueue("test", 0, 1, 50, 1000, new ReconcileQueue.Handler() {
+            @Override
+            public void reconcile(String key) throws Exception {
+                times.add(System.currentTimeMillis());
+                done.countDown();
+                if (times.size() < 4) {
+                    throw new IllegalStateException("failure " + times.size());
+                }
+            }
+        });
+
+        queue.enqueue("rc1");
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, queue.getFailedCount());
+        // the retries should wait 50, 100 and then 200 millis
+        assertTrue("retries should back off but were " + times, times.get(2) - times.get(1) >= 90);
+        assertTrue("retries should back off but were " + times, times.get(3) - times.get(2) >= 180);
+    }
+}
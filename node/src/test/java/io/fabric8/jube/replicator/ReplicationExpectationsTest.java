@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ReplicationExpectationsTest {
+
+    @Test
+    public void testPendingUntilObserved() throws Exception {
+        ReplicationExpectations expectations = new ReplicationExpectations(60000);
+        expectations.expectCreate("rc", "rc-1");
+        expectations.expectCreate("rc", "rc-2");
+        expectations.expectDelete("rc", "rc-3");
+        expectations.expectCreate("other", "other-1");
+
+        Set<String> creates = expectations.getPendingCreates("rc");
+        assertEquals(2, creates.size());
+        assertTrue(creates.contains("rc-1"));
+        assertEquals(1, expectations.getPendingDeletes("rc").size());
+
+        expectations.creationObserved("rc-1");
+        expectations.creationFailed("rc-2");
+        expectations.deletionObserved("rc-3");
+        assertTrue(expectations.getPendingCreates("rc").isEmpty());
+        assertTrue(expectations.getPendingDeletes("rc").isEmpty());
+        assertEquals(1, expectations.size());
+
+        expectations.forget("other");
+        assertEquals(0, expectations.size());
+    }
+
+    @Test
+    public void testExpectationsExpire() throws Exception {
+        ReplicationExpectations expectations = new ReplicationExpectations(50);
+        expectations.expectCreate("rc", "rc-1");
+        expectations.expectDelete("rc", "rc-2");
+        assertEquals(1, expectations.getPendingCreates("rc").size());
+
+        Thread.sleep(100);
+        assertTrue(expectations.getPendingCreates("rc").isEmpty());
+        assertTrue(expectations.getPendingDeletes("rc").isEmpty());
+        assertEquals(0, expectations.size());
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import io.fabric8.utils.Closeables;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ReplicationLeasesTest {
+
+    protected TestingServer server;
+    protected CuratorFramework firstCurator;
+    protected CuratorFramework secondCurator;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new TestingServer();
+        firstCurator = createCurator();
+        secondCurator = createCurator();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Closeables.closeQuietly(secondCurator);
+        Closeables.closeQuietly(firstCurator);
+        Closeables.closeQuietly(server);
+    }
+
+    @Test
+    public void testLeaseIsHeldByOneReplicatorAtATime() throws Exception {
+        ReplicationLeases first = new ReplicationLeases(firstCurator, "first");
+        ReplicationLeases second = new ReplicationLeases(secondCurator, "second");
+
+        assertTrue(first.acquire("rc-1"));
+        assertTrue(first.acquire("rc-1"));
+        assertFalse(second.acquire("rc-1"));
+        assertTrue(second.acquire("rc-2"));
+
+        first.release("rc-1");
+        assertFalse(first.isHeld("rc-1"));
+        assertTrue(second.acquire("rc-1"));
+        assertFalse(first.acquire("rc-1"));
+    }
+
+    @Test
+    public void testLeaseIsReacquiredAfterClear() throws Exception {
+        ReplicationLeases first = new ReplicationLeases(firstCurator, "first");
+        assertTrue(first.acquire("rc-1"));
+
+        // our ephemeral node survived so we still hold the lease
+        first.clear();
+        assertFalse(first.isHeld("rc-1"));
+        assertTrue(first.acquire("rc-1"));
+    }
+
+    @Test
+    public void testLeaseIsFreedWhenSessionCloses() throws Exception {
+        ReplicationLeases first = new ReplicationLeases(firstCurator, "first");
+        ReplicationLeases second = new ReplicationLeases(secondCurator, "second");
+        assertTrue(first.acquire("rc-1"));
+        assertFalse(second.acquire("rc-1"));
+
+        firstCurator.close();
+        firstCurator = null;
+        assertTrue(second.acquire("rc-1"));
+    }
+
+    protected CuratorFramework createCurator() throws InterruptedException {
+        CuratorFramework curator = CuratorFrameworkFactory.builder().connectString(server.getConnectString())
+                .retryPolicy(new RetryOneTime(100)).sessionTimeoutMs(5000).build();
+        curator.start();
+        curator.blockUntilConnected();
+        return curator;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.replicator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.jube.local.NodeHelper;
+import io.fabric8.jube.process.config.ResourceLimits;
+import io.fabric8.jube.scheduler.ResourceRequests;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ExecAction;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Probe;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import io.fabric8.kubernetes.api.model.TCPSocketAction;
+import io.fabric8.kubernetes.api.model.util.IntOrString;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.setName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ */
+public class ReplicatorTest {
+
+    @Test
+    public void testTemplateResourcesAreCopiedToPod() throws Exception {
+        Container template = createTemplateContainer();
+        Map<String, Quantity> limits = new HashMap<>();
+        limits.put("cpu", createQuantity("2"));
+        limits.put("memory", createQuantity("512Mi"));
+        ResourceRequirements resources = new ResourceRequirements();
+        resources.setLimits(limits);
+        template.setResources(resources);
+
+        Pod pod = createPod(template);
+
+        Container container = NodeHelper.findContainer(NodeHelper.getOrCreatePodDesiredContainers(pod), "rc-1-app");
+        assertNotNull("Should have created the container", container);
+        ResourceLimits resourceLimits = NodeHelper.createResourceLimits(container);
+        assertNotNull("Should have resource limits", resourceLimits);
+        assertEquals(2000, resourceLimits.getCpuLimitMillis());
+        assertEquals(512L << 20, resourceLimits.getMemoryLimit());
+        assertEquals(2000, ResourceRequests.forPod(pod).getCpuMillis());
+    }
+
+    @Test
+    public void testTemplateProbesAreCopiedToPod() throws Exception {
+        Container template = createTemplateContainer();
+        Probe readinessProbe = new Probe();
+        TCPSocketAction tcpSocket = new TCPSocketAction();
+        IntOrString port = new IntOrString();
+        port.setIntVal(8080);
+        tcpSocket.setPort(port);
+        readinessProbe.setTcpSocket(tcpSocket);
+        template.setReadinessProbe(readinessProbe);
+        Probe livenessProbe = new Probe();
+        ExecAction exec = new ExecAction();
+        exec.setCommand(Arrays.asList("bin/check"));
+        livenessProbe.setExec(exec);
+        template.setLivenessProbe(livenessProbe);
+
+        Pod pod = createPod(template);
+
+        Container container = NodeHelper.findContainer(NodeHelper.getOrCreatePodDesiredContainers(pod), "rc-1-app");
+        assertNotNull("Should have created the container", container);
+        assertNotNull("Should have a readiness probe", container.getReadinessProbe());
+        assertEquals(Integer.valueOf(8080), container.getReadinessProbe().getTcpSocket().getPort().getIntVal());
+        assertNotNull("Should have a liveness probe", container.getLivenessProbe());
+        assertEquals(Arrays.asList("bin/check"), container.getLivenessProbe().getExec().getCommand());
+    }
+
+    protected static Pod createPod(Container template) {
+        Pod pod = new Pod();
+        setName(pod, "rc-1");
+        List<Container> containers = Collections.singletonList(template);
+        Replicator.addTemplateContainers(pod, containers);
+        return pod;
+    }
+
+    protected static Container createTemplateContainer() {
+        Container answer = new Container();
+        answer.setName("app");
+        answer.setImage("fabric8/app");
+        return answer;
+    }
+
+    protected static Quantity createQuantity(String amount) {
+        Quantity answer = new Quantity();
+        answer.setAmount(amount);
+        return answer;
+    }
+}
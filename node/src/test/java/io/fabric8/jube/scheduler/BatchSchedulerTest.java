@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.ResourceRequirements;
+import org.junit.Test;
+
+import static io.fabric8.jube.scheduler.ScoringSchedulerTest.createHost;
+import static org.junit.Assert.assertEquals;
+
+/**
+ */
+public class BatchSchedulerTest {
+
+    protected List<HostNode> hosts = Arrays.asList(createHost("a", 8, 1.0, 16L << 30, 8L << 30), createHost("b", 8, 1.0, 16L << 30, 8L << 30));
+
+    @Test
+    public void testDefaultSchedulerSplitsBatchOverEqualHosts() throws Exception {
+        BatchScheduler batch = new BatchScheduler(Schedulers.create(null), hosts, null);
+        Map<String, Integer> counts = schedule(batch, 10, null);
+        assertEquals(Integer.valueOf(5), counts.get("a"));
+        assertEquals(Integer.valueOf(5), counts.get("b"));
+    }
+
+    @Test
+    public void testBinPackingFillsOneHostBeforeTheNext() throws Exception {
+        BatchScheduler batch = new BatchScheduler(Schedulers.create(Schedulers.BIN_PACKING), hosts, null);
+        // each host has room for 4 of these pods
+        Map<String, Integer> counts = schedule(batch, 6, "2Gi");
+        assertEquals(Arrays.asList(2, 4), Arrays.asList(Math.min(counts.get("a"), counts.get("b")), Math.max(counts.get("a"), counts.get("b"))));
+    }
+
+    protected static Map<String, Integer> schedule(BatchScheduler batch, int podCount, String memory) {
+        Map<String, Integer> answer = new HashMap<>();
+        for (int i = 0; i < podCount; i++) {
+            String id = batch.schedule(createPod(memory)).getId();
+            Integer count = answer.get(id);
+            answer.put(id, count != null ? count + 1 : 1);
+        }
+        return answer;
+    }
+
+    protected static Pod createPod(String memory) {
+        Pod pod = new Pod();
+        if (memory != null) {
+            Quantity quantity = new Quantity();
+            quantity.setAmount(memory);
+            Map<String, Quantity> requests = new HashMap<>();
+            requests.put("memory", quantity);
+            ResourceRequirements resources = new ResourceRequirements();
+            resources.setRequests(requests);
+            Container container = new Container();
+            container.setResources(resources);
+            PodSpec spec = new PodSpec();
+            spec.setContainers(Arrays.asList(container));
+            pod.setSpec(spec);
+        }
+        return pod;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.scheduler;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.fabric8.jube.model.HostNode;
+import io.fabric8.kubernetes.api.model.Pod;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ */
+public class ScoringSchedulerTest {
+
+    protected HostNode idle = createHost("idle", 8, 0.5, 16L << 30, 12L << 30);
+    protected HostNode busy = createHost("busy", 8, 7.0, 16L << 30, 2L << 30);
+    protected HostNode unknown = new HostNode();
+
+    @Test
+    public void testParseQuantities() throws Exception {
+        assertEquals(500, ResourceRequests.parseCpuMillis("500m"));
+        assertEquals(2000, ResourceRequests.parseCpuMillis("2"));
+        assertEquals(512L << 20, ResourceRequests.parseMemory("512Mi"));
+        assertEquals(1000000000L, ResourceRequests.parseMemory("1G"));
+        assertEquals(1234, ResourceRequests.parseMemory("1234"));
+    }
+
+    @Test
+    public void testLeastLoadedPrefersIdleHosts() throws Exception {
+        List<HostNode> hosts = new LeastLoadedScheduler().schedule(new Pod(), Arrays.asList(busy, unknown, idle), null);
+        assertEquals(idle, hosts.get(0));
+        assertEquals(busy, hosts.get(1));
+        assertEquals(unknown, hosts.get(2));
+    }
+
+    @Test
+    public void testBinPackingPrefersBusyHosts() throws Exception {
+        List<HostNode> hosts = new BinPackingScheduler().schedule(new Pod(), Arrays.asList(idle, busy), null);
+        assertEquals(busy, hosts.get(0));
+        assertEquals(idle, hosts.get(1));
+    }
+
+    protected static HostNode createHost(String id, int cores, double load, long memoryTotal, long memoryFree) {
+        HostNode answer = new HostNode();
+        answer.setId(id);
+        answer.setHostName(id);
+        answer.setCpuCores(cores);
+        answer.setLoadAverage(load);
+        answer.setMemoryTotal(memoryTotal);
+        answer.setMemoryFree(memoryFree);
+        return answer;
+    }
+}
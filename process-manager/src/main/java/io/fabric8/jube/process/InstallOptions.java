@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.google.common.base.Strings;
+import io.fabric8.jube.process.config.ResourceLimits;
 import io.hawt.aether.OpenMavenURL;
 
 import static com.google.common.base.Objects.firstNonNull;
@@ -55,6 +56,7 @@ public class InstallOptions implements Serializable {
         private String[] jvmOptions = {};
         private Map<String, File> jarFiles = new HashMap<String, File>();
         private DownloadStrategy downloadStrategy;
+        private ResourceLimits limits;
 
         public T id(final String id) {
             this.id = id;
@@ -191,6 +193,15 @@ public class InstallOptions implements Serializable {
             return downloadStrategy;
         }
 
+        public ResourceLimits getLimits() {
+            return limits;
+        }
+
+        public T limits(final ResourceLimits limits) {
+            this.limits = limits;
+            return (T) this;
+        }
+
         public InstallOptionsBuilder properties(final Map<String, Object> properties) {
             this.properties = properties;
             return this;
@@ -227,7 +238,7 @@ public class InstallOptions implements Serializable {
 
         public InstallOptions build() throws MalformedURLException {
             return new InstallOptions(id, getName(), getUrl(),  offline, optionalDependencyPatterns, excludeDependencyFilterPatterns,
-                    properties, environment, jvmOptions, jarFiles, downloadStrategy);
+                    properties, environment, jvmOptions, jarFiles, downloadStrategy, limits);
         }
 
         public Map<String, File> getJarFiles() {
@@ -247,10 +258,18 @@ public class InstallOptions implements Serializable {
     private final String[] jvmOptions;
     private final Map<String, File> jarFiles;
     private final DownloadStrategy downloadStrategy;
+    private final ResourceLimits limits;
 
     public InstallOptions(String id, String name, OpenMavenURL url, boolean offline, String[] optionalDependencyPatterns,
                           String[] excludeDependencyFilterPatterns, Map<String, Object> properties, Map<String, String> environment,
                           String[] jvmOptions, Map<String, File> jarFiles, DownloadStrategy downloadStrategy) {
+        this(id, name, url, offline, optionalDependencyPatterns, excludeDependencyFilterPatterns, properties, environment,
+                jvmOptions, jarFiles, downloadStrategy, null);
+    }
+
+    public InstallOptions(String id, String name, OpenMavenURL url, boolean offline, String[] optionalDependencyPatterns,
+                          String[] excludeDependencyFilterPatterns, Map<String, Object> properties, Map<String, String> environment,
+                          String[] jvmOptions, Map<String, File> jarFiles, DownloadStrategy downloadStrategy, ResourceLimits limits) {
         this.id = id;
         this.name = name;
         this.url = url;
@@ -262,6 +281,7 @@ public class InstallOptions implements Serializable {
         this.jvmOptions = jvmOptions;
         this.jarFiles = jarFiles;
         this.downloadStrategy = downloadStrategy;
+        this.limits = limits;
     }
 
     public static InstallOptionsBuilder builder() {
@@ -277,6 +297,7 @@ public class InstallOptions implements Serializable {
                 + ", environment=" + environment
                 + ", jvmOptions=" + Arrays.toString(jvmOptions)
                 + ", jarFiles=" + jarFiles
+                + ", limits=" + limits
                 + '}';
     }
 
@@ -321,6 +342,9 @@ public class InstallOptions implements Serializable {
         if (url != null ? !url.equals(that.url) : that.url != null) {
             return false;
         }
+        if (limits != null ? !limits.equals(that.limits) : that.limits != null) {
+            return false;
+        }
 
         return true;
     }
@@ -337,6 +361,7 @@ public class InstallOptions implements Serializable {
         result = 31 * result + (environment != null ? environment.hashCode() : 0);
         result = 31 * result + (jvmOptions != null ? Arrays.hashCode(jvmOptions) : 0);
         result = 31 * result + (jarFiles != null ? jarFiles.hashCode() : 0);
+        result = 31 * result + (limits != null ? limits.hashCode() : 0);
         return result;
     }
 
@@ -383,4 +408,8 @@ public class InstallOptions implements Serializable {
     public DownloadStrategy getDownloadStrategy() {
         return downloadStrategy;
     }
+
+    public ResourceLimits getLimits() {
+        return limits;
+    }
 }
@@ -21,8 +21,11 @@ import java.io.Serializable;
 import java.util.Map;
 
 import io.fabric8.jube.process.config.ProcessConfig;
+import io.fabric8.jube.process.support.ProcessTable;
 import io.fabric8.utils.Processes;
 import io.hawt.aether.OpenMavenURL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Represents a locally installed managed process.
@@ -30,12 +33,16 @@ import io.hawt.aether.OpenMavenURL;
 public class Installation implements Serializable {
 
     private static final long serialVersionUID = 5127636210465637719L;
+    private static final transient Logger LOG = LoggerFactory.getLogger(Installation.class);
+    // allows for the coarse resolution of file times and the boot time when comparing them to process start times
+    private static final long START_TIME_SLACK = 2000;
 
     private final OpenMavenURL url;
     private final String id;
     private final File installDir;
     private final ProcessController controller;
     private final ProcessConfig config;
+    private transient volatile ProcessTable.ProcessInfo process;
 
     public Installation(OpenMavenURL url, String id, File installDir, ProcessController controller, ProcessConfig config) {
         this.url = url;
@@ -80,16 +87,51 @@ public class Installation implements Serializable {
      * @return null if the process is no longer active
      */
     public Long getActivePid() throws IOException {
+        return getActivePid(new ProcessTable());
+    }
+
+    /**
+     * Returns the PID for the process if its still active using the given table of processes, so that
+     * many installations can be checked with a single scan of <code>/proc</code>.
+     * <p/>
+     * The process must exist, not be a zombie and must be the same process we saw before; i.e. its pid
+     * has not been reused by another process after ours exited and left its pid file behind.
+     *
+     * @return null if the process is no longer active
+     */
+    public Long getActivePid(ProcessTable table) throws IOException {
         ProcessController aController = getController();
-        Long answer = null;
-        if (aController != null) {
-            answer = aController.getPid();
+        if (aController == null) {
+            return null;
+        }
+        Long answer = aController.getPid();
+        if (answer == null) {
+            process = null;
+            return null;
+        }
+        if (!table.isSupported()) {
+            return Processes.isProcessAlive(answer) ? answer : null;
         }
-        if (answer != null) {
-            if (!Processes.isProcessAlive(answer)) {
-                answer = null;
+        ProcessTable.ProcessInfo current = table.getProcess(answer);
+        if (current == null || current.isZombie()) {
+            return null;
+        }
+        ProcessTable.ProcessInfo previous = process;
+        if (previous != null && previous.getPid() == current.getPid()) {
+            if (previous.getStartTicks() != current.getStartTicks()) {
+                LOG.debug("Pid {} of {} has been reused by: {}", answer, this, table.getCommandLine(answer));
+                return null;
+            }
+        } else {
+            // the first time we see this pid so lets check it was not started after the pid file was written
+            File pidFile = aController.getPidFile();
+            long startTime = table.getStartTime(current);
+            if (pidFile != null && startTime > 0 && startTime > pidFile.lastModified() + START_TIME_SLACK) {
+                LOG.debug("Pid {} of {} is a newer process than its pid file: {}", answer, this, table.getCommandLine(answer));
+                return null;
             }
         }
+        process = current;
         return answer;
     }
 }
@@ -15,10 +15,12 @@
  */
 package io.fabric8.jube.process;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 
 import io.fabric8.jube.process.config.ProcessConfig;
+import io.fabric8.jube.process.support.CgroupStats;
 import io.fabric8.jube.process.support.command.CommandFailedException;
 
 /**
@@ -39,4 +41,14 @@ public interface ProcessController extends Serializable {
 
     Long getPid() throws IOException;
 
+    /**
+     * Returns the file the pid was read from or null if there is no pid file
+     */
+    File getPidFile() throws IOException;
+
+    /**
+     * Returns the throttling and memory counters of the cgroup limiting the process or null if it is not limited
+     */
+    CgroupStats getCgroupStats();
+
 }
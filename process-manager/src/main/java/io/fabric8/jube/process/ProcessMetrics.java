@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process;
+
+import java.io.Serializable;
+
+import io.fabric8.jube.process.support.CgroupStats;
+
+/**
+ * The resources used by a managed process and all of its child processes at a point in time
+ */
+public class ProcessMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long timestamp;
+    private long pid;
+    private int processCount;
+    private long cpuTime;
+    private double cpuPercent = -1;
+    private long rssBytes;
+    private int threads;
+    private int openFiles;
+    private long readBytes;
+    private long writeBytes;
+    private CgroupStats cgroup;
+
+    @Override
+    public String toString() {
+        return "ProcessMetrics{pid=" + pid + ", processCount=" + processCount + ", cpuPercent=" + cpuPercent
+                + ", rssBytes=" + rssBytes + ", threads=" + threads + ", openFiles=" + openFiles + "}";
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getPid() {
+        return pid;
+    }
+
+    public void setPid(long pid) {
+        this.pid = pid;
+    }
+
+    public int getProcessCount() {
+        return processCount;
+    }
+
+    public void setProcessCount(int processCount) {
+        this.processCount = processCount;
+    }
+
+    /**
+     * Returns the total user and system CPU time in millis
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public void setCpuTime(long cpuTime) {
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * Returns the CPU used since the previous sample as a percentage of one core or -1 if it is not known yet
+     */
+    public double getCpuPercent() {
+        return cpuPercent;
+    }
+
+    public void setCpuPercent(double cpuPercent) {
+        this.cpuPercent = cpuPercent;
+    }
+
+    public long getRssBytes() {
+        return rssBytes;
+    }
+
+    public void setRssBytes(long rssBytes) {
+        this.rssBytes = rssBytes;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getOpenFiles() {
+        return openFiles;
+    }
+
+    public void setOpenFiles(int openFiles) {
+        this.openFiles = openFiles;
+    }
+
+    public long getReadBytes() {
+        return readBytes;
+    }
+
+    public void setReadBytes(long readBytes) {
+        this.readBytes = readBytes;
+    }
+
+    public long getWriteBytes() {
+        return writeBytes;
+    }
+
+    public void setWriteBytes(long writeBytes) {
+        this.writeBytes = writeBytes;
+    }
+
+    /**
+     * Returns the counters of the cgroup limiting the process or null if it is not limited
+     */
+    public CgroupStats getCgroup() {
+        return cgroup;
+    }
+
+    public void setCgroup(CgroupStats cgroup) {
+        this.cgroup = cgroup;
+    }
+}
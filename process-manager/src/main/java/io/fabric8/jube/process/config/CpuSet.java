@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.config;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The CPUs dedicated to a managed process together with the NUMA nodes they belong to
+ */
+public class CpuSet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SortedSet<Integer> cpus;
+    private final SortedSet<Integer> nodes;
+
+    public CpuSet(Collection<Integer> cpus, Collection<Integer> nodes) {
+        this.cpus = Collections.unmodifiableSortedSet(new TreeSet<>(cpus));
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+    }
+
+    /**
+     * Parses the CPU and node lists in the kernel format such as <code>0-3,8-11</code>
+     */
+    public static CpuSet parse(String cpuList, String nodeList) {
+        return new CpuSet(parseList(cpuList), parseList(nodeList));
+    }
+
+    /**
+     * Parses a list in the kernel format such as <code>0-3,8,10-11</code>
+     */
+    public static SortedSet<Integer> parseList(String text) {
+        SortedSet<Integer> answer = new TreeSet<>();
+        if (text == null) {
+            return answer;
+        }
+        for (String part : text.trim().split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int idx = part.indexOf('-');
+            if (idx > 0) {
+                int from = Integer.parseInt(part.substring(0, idx).trim());
+                int to = Integer.parseInt(part.substring(idx + 1).trim());
+                for (int i = from; i <= to; i++) {
+                    answer.add(i);
+                }
+            } else {
+                answer.add(Integer.parseInt(part));
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Formats the values as a list in the kernel format such as <code>0-3,8,10-11</code>
+     */
+    public static String formatList(Collection<Integer> values) {
+        StringBuilder buffer = new StringBuilder();
+        Integer start = null;
+        Integer last = null;
+        for (Integer value : new TreeSet<>(values)) {
+            if (last != null && value == last + 1) {
+                last = value;
+                continue;
+            }
+            appendRange(buffer, start, last);
+            start = value;
+            last = value;
+        }
+        appendRange(buffer, start, last);
+        return buffer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "CpuSet{cpus=" + getCpuList() + ", nodes=" + getNodeList() + '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CpuSet that = (CpuSet) o;
+        return cpus.equals(that.cpus) && nodes.equals(that.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * cpus.hashCode() + nodes.hashCode();
+    }
+
+    public SortedSet<Integer> getCpus() {
+        return cpus;
+    }
+
+    public SortedSet<Integer> getNodes() {
+        return nodes;
+    }
+
+    public int size() {
+        return cpus.size();
+    }
+
+    /**
+     * Returns the CPUs in the format used by <code>cpuset.cpus</code> and <code>taskset -c</code>
+     */
+    public String getCpuList() {
+        return formatList(cpus);
+    }
+
+    /**
+     * Returns the NUMA nodes in the format used by <code>cpuset.mems</code>
+     */
+    public String getNodeList() {
+        return formatList(nodes);
+    }
+
+    private static void appendRange(StringBuilder buffer, Integer start, Integer last) {
+        if (start == null) {
+            return;
+        }
+        if (buffer.length() > 0) {
+            buffer.append(',');
+        }
+        buffer.append(start);
+        if (last > start) {
+            buffer.append('-').append(last);
+        }
+    }
+}
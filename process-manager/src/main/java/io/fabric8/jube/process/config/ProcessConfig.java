@@ -32,6 +32,10 @@ import io.fabric8.jube.process.support.command.CommandFailedException;
  * The configuration DTO stored as JSON so that the system can be restarted and remember how to run & control a managed process
  */
 public class ProcessConfig implements Serializable {
+    /**
+     * The file in the install directory that the output of the process commands is written to
+     */
+    public static final String LOG_FILE = "process.log";
 
     private static final long serialVersionUID = -2472076539312397232L;
 
@@ -50,6 +54,8 @@ public class ProcessConfig implements Serializable {
     private String deployPath;
     private String sharedLibraryPath;
     private File installDir;
+    private ResourceLimits limits;
+    private CpuSet cpuSet;
 
     public ProcessConfig() {
         init(null);
@@ -140,6 +146,12 @@ public class ProcessConfig implements Serializable {
         if (stopCommand != null ? !stopCommand.equals(that.stopCommand) : that.stopCommand != null) {
             return false;
         }
+        if (limits != null ? !limits.equals(that.limits) : that.limits != null) {
+            return false;
+        }
+        if (cpuSet != null ? !cpuSet.equals(that.cpuSet) : that.cpuSet != null) {
+            return false;
+        }
 
         return true;
     }
@@ -159,6 +171,8 @@ public class ProcessConfig implements Serializable {
         result = 31 * result + (installCommands != null ? installCommands.hashCode() : 0);
         result = 31 * result + (deployPath != null ? deployPath.hashCode() : 0);
         result = 31 * result + (sharedLibraryPath != null ? sharedLibraryPath.hashCode() : 0);
+        result = 31 * result + (limits != null ? limits.hashCode() : 0);
+        result = 31 * result + (cpuSet != null ? cpuSet.hashCode() : 0);
         return result;
     }
 
@@ -266,6 +280,28 @@ public class ProcessConfig implements Serializable {
         this.installCommands = installCommands;
     }
 
+    /**
+     * Returns the CPU and memory limits of the process or null if it is not limited
+     */
+    public ResourceLimits getLimits() {
+        return limits;
+    }
+
+    public void setLimits(ResourceLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Returns the CPUs dedicated to the process or null if it shares the CPUs
+     */
+    public CpuSet getCpuSet() {
+        return cpuSet;
+    }
+
+    public void setCpuSet(CpuSet cpuSet) {
+        this.cpuSet = cpuSet;
+    }
+
     public int runCommand(Executor executor, File baseDir, String... arguments) throws IOException, InterruptedException, CommandFailedException {
         // ignore empty commands
         if (arguments == null || arguments.length == 0) {
@@ -273,7 +309,7 @@ public class ProcessConfig implements Serializable {
         }
 
         System.out.println("--- running command " + Arrays.asList(arguments) + " in directory " + baseDir.getAbsolutePath());
-        Command command = new Command(arguments).setDirectory(baseDir);
+        Command command = new Command(arguments).setDirectory(baseDir).setLogFile(new File(baseDir, LOG_FILE));
         Map<String, String> environment = getEnvironment();
         if (environment != null && environment.size() > 0) {
             command = command.addEnvironment(environment);
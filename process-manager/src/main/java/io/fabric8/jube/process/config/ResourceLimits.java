@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.config;
+
+import java.io.Serializable;
+
+/**
+ * The CPU and memory a managed process may use; zero values mean no limit
+ */
+public class ResourceLimits implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long cpuLimitMillis;
+    private long cpuRequestMillis;
+    private long memoryLimit;
+
+    public ResourceLimits() {
+    }
+
+    public ResourceLimits(long cpuLimitMillis, long cpuRequestMillis, long memoryLimit) {
+        this.cpuLimitMillis = cpuLimitMillis;
+        this.cpuRequestMillis = cpuRequestMillis;
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceLimits{cpuLimitMillis=" + cpuLimitMillis + ", cpuRequestMillis=" + cpuRequestMillis + ", memoryLimit=" + memoryLimit + '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ResourceLimits that = (ResourceLimits) o;
+        return cpuLimitMillis == that.cpuLimitMillis && cpuRequestMillis == that.cpuRequestMillis && memoryLimit == that.memoryLimit;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (cpuLimitMillis ^ (cpuLimitMillis >>> 32));
+        result = 31 * result + (int) (cpuRequestMillis ^ (cpuRequestMillis >>> 32));
+        result = 31 * result + (int) (memoryLimit ^ (memoryLimit >>> 32));
+        return result;
+    }
+
+    /**
+     * Returns true if there are no limits or requests
+     */
+    public boolean isEmpty() {
+        return cpuLimitMillis <= 0 && cpuRequestMillis <= 0 && memoryLimit <= 0;
+    }
+
+    /**
+     * Returns the maximum CPU in millicores
+     */
+    public long getCpuLimitMillis() {
+        return cpuLimitMillis;
+    }
+
+    public void setCpuLimitMillis(long cpuLimitMillis) {
+        this.cpuLimitMillis = cpuLimitMillis;
+    }
+
+    /**
+     * Returns the requested CPU in millicores which is used to weight the share of the CPU when it is contended
+     */
+    public long getCpuRequestMillis() {
+        return cpuRequestMillis;
+    }
+
+    public void setCpuRequestMillis(long cpuRequestMillis) {
+        this.cpuRequestMillis = cpuRequestMillis;
+    }
+
+    /**
+     * Returns the maximum memory in bytes
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+}
@@ -24,10 +24,10 @@ import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.management.MBeanServer;
@@ -36,7 +36,6 @@ import javax.management.MalformedObjectNameException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.jube.process.DownloadStrategy;
 import io.fabric8.jube.process.InstallContext;
 import io.fabric8.jube.process.InstallOptions;
@@ -44,11 +43,18 @@ import io.fabric8.jube.process.InstallTask;
 import io.fabric8.jube.process.Installation;
 import io.fabric8.jube.process.ProcessController;
 import io.fabric8.jube.process.config.ConfigHelper;
+import io.fabric8.jube.process.config.CpuSet;
 import io.fabric8.jube.process.config.ProcessConfig;
+import io.fabric8.jube.process.config.ResourceLimits;
+import io.fabric8.jube.process.support.CgroupManager;
+import io.fabric8.jube.process.support.CpuSetAllocator;
+import io.fabric8.jube.process.support.CpuTopology;
 import io.fabric8.jube.process.support.DefaultProcessController;
+import io.fabric8.jube.process.support.command.CommandExecutor;
 import io.fabric8.jube.process.support.command.Duration;
 import io.fabric8.jube.util.FilesHelper;
 import io.fabric8.jube.util.InstallHelper;
+import io.fabric8.utils.Closeables;
 import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.Zips;
@@ -69,10 +75,21 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessManagerService.class);
     private static final String INSTALLED_BINARY = "install.bin";
+    private static final String INSTALLATION_PROPERTIES = "installation.properties";
+    private static final String PROPERTY_URL = "url";
+    private static final String PROPERTY_NAME = "name";
+    private static final String PROPERTY_ENV_PREFIX = "env.";
+    private static final String PROPERTY_CPU_LIMIT = "limits.cpu";
+    private static final String PROPERTY_CPU_REQUEST = "limits.cpuRequest";
+    private static final String PROPERTY_MEMORY_LIMIT = "limits.memory";
+    private static final String PROPERTY_CPUSET_CPUS = "cpuset.cpus";
+    private static final String PROPERTY_CPUSET_NODES = "cpuset.nodes";
     private final String remoteRepositoryUrls;
     private final AvailablePortFinder availablePortFinder;
+    private final CgroupManager cgroups;
+    private final CpuSetAllocator cpuSets;
 
-    private Executor executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-process-manager-%s").build());
+    private Executor executor;
     private File storageLocation;
     private int lastId;
     private final Duration untarTimeout = Duration.valueOf("1h");
@@ -86,11 +103,40 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
     @Inject
     public ProcessManagerService(@ConfigProperty(name = "JUBE_PROCESS_DIR", defaultValue = "./processes") String storageLocation,
                                  @ConfigProperty(name = "JUBE_REMOTE_MAVEN_REPOS", defaultValue = DEFAULT_MAVEN_REPOS) String remoteRepositoryUrls,
-                                 @ConfigProperty(name = "JUBE_PORT_START", defaultValue = "" + AvailablePortFinder.MIN_PORT_NUMBER) int minPort) throws MalformedObjectNameException, IOException {
-        this(new File(storageLocation), remoteRepositoryUrls, minPort);
+                                 @ConfigProperty(name = "JUBE_PORT_START", defaultValue = "" + AvailablePortFinder.MIN_PORT_NUMBER) int minPort,
+                                 @ConfigProperty(name = "JUBE_CGROUP_ROOT", defaultValue = CgroupManager.DEFAULT_ROOT) String cgroupRoot,
+                                 @ConfigProperty(name = "JUBE_CPU_PINNING", defaultValue = "false") boolean cpuPinning,
+                                 @ConfigProperty(name = "JUBE_RESERVED_CPUS", defaultValue = "1") int reservedCpus,
+                                 @ConfigProperty(name = "JUBE_PROCESS_THREADS", defaultValue = "" + CommandExecutor.DEFAULT_MAX_THREADS) int processThreads,
+                                 @ConfigProperty(name = "JUBE_VIRTUAL_THREADS", defaultValue = "true") boolean virtualThreads) throws MalformedObjectNameException, IOException {
+        this(new File(storageLocation), remoteRepositoryUrls, minPort, new CgroupManager(Strings.isNotBlank(cgroupRoot) ? new File(cgroupRoot) : null),
+                cpuPinning ? new CpuSetAllocator(CpuTopology.load(), reservedCpus) : null, new CommandExecutor("jube-process", processThreads, virtualThreads));
     }
 
     public ProcessManagerService(File storageLocation, String remoteRepositoryUrls, int minPort) throws MalformedObjectNameException, IOException {
+        this(storageLocation, remoteRepositoryUrls, minPort, new CgroupManager(null));
+    }
+
+    public ProcessManagerService(File storageLocation, String remoteRepositoryUrls, int minPort, CgroupManager cgroups) throws MalformedObjectNameException, IOException {
+        this(storageLocation, remoteRepositoryUrls, minPort, cgroups, null);
+    }
+
+    /**
+     * @param cpuSets used to dedicate CPUs to processes which request whole CPUs, or null if processes should share the CPUs
+     */
+    public ProcessManagerService(File storageLocation, String remoteRepositoryUrls, int minPort, CgroupManager cgroups, CpuSetAllocator cpuSets) throws MalformedObjectNameException, IOException {
+        this(storageLocation, remoteRepositoryUrls, minPort, cgroups, cpuSets, CommandExecutor.getDefault());
+    }
+
+    /**
+     * @param cpuSets used to dedicate CPUs to processes which request whole CPUs, or null if processes should share the CPUs
+     * @param executor the executor shared by all the processes to run their commands
+     */
+    public ProcessManagerService(File storageLocation, String remoteRepositoryUrls, int minPort, CgroupManager cgroups, CpuSetAllocator cpuSets,
+                                 Executor executor) throws MalformedObjectNameException, IOException {
+        this.cgroups = cgroups;
+        this.executor = executor;
+        this.cpuSets = cpuSets;
         // make sure the install directory path is absolute and compact as there can be troubles with having foo/./bar paths
         String path = FilesHelper.compactPath(storageLocation.getAbsolutePath());
         this.storageLocation = new File(path);
@@ -126,13 +172,16 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
                             // should never happen :)
                         }
                     }
-                    // TODO: we do not have the url this installation was created from
-                    OpenMavenURL url = null;
                     ProcessConfig config = ConfigHelper.loadProcessConfig(file, isWindows);
+                    OpenMavenURL url = loadInstallationMetadata(file, config);
+                    if (cpuSets != null && config.getCpuSet() != null) {
+                        cpuSets.restore(name, config.getCpuSet());
+                    }
                     createInstallation(url, name, findInstallDir(file), config);
                 }
             }
         }
+        refreshSharedCpus();
     }
 
     @Override
@@ -165,6 +214,21 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
         return listInstallationMap().keySet().size();
     }
 
+    @JmxManaged(description = "Returns the CPUs dedicated to each process")
+    public String getCpuSetAllocations() {
+        return cpuSets != null ? cpuSets.getAllocations().toString() : "{}";
+    }
+
+    @JmxManaged(description = "Returns the CPUs shared by the processes which have no dedicated CPUs")
+    public String getSharedCpus() {
+        return cpuSets != null ? CpuSet.formatList(cpuSets.getSharedCpus()) : "";
+    }
+
+    @JmxManaged(description = "Returns the statistics of the executor shared by the processes to run their commands")
+    public String getExecutorStatistics() {
+        return executor instanceof CommandExecutor ? ((CommandExecutor) executor).getStatistics().toString() : "{}";
+    }
+
     @Override
     public Installation install(final InstallOptions options, final InstallTask postInstall) throws Exception {
         @SuppressWarnings("serial")
@@ -270,11 +334,16 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
     public void uninstall(Installation installation) {
         installation.getController().uninstall();
         installations.remove(installation.getId());
+        if (cpuSets != null) {
+            cpuSets.release(installation.getId());
+            refreshSharedCpus();
+        }
     }
 
     @Override
     public ProcessConfig loadProcessConfig(File installDir, InstallOptions options) throws IOException {
         ProcessConfig config = loadControllerJson(installDir, options);
+        config.setLimits(options.getLimits());
         Map<String, String> configEnv = config.getEnvironment();
         Map<String, String> optionsEnv = options.getEnvironment();
         if (optionsEnv != null) {
@@ -286,6 +355,14 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
 
     // Properties
     //-------------------------------------------------------------------------
+    public CgroupManager getCgroupManager() {
+        return cgroups;
+    }
+
+    public CpuSetAllocator getCpuSetAllocator() {
+        return cpuSets;
+    }
+
     public File getStorageLocation() {
         return storageLocation;
     }
@@ -311,15 +388,121 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
         File installDir = createInstallDir(id);
         installDir.mkdirs();
         ProcessConfig config = loadProcessConfig(installDir, options);
+        if (cpuSets != null) {
+            config.setCpuSet(cpuSets.allocate(id, config.getLimits()));
+            refreshSharedCpus();
+        }
         InstallContext installContext = new InstallContext(installDir, false);
-        installTask.install(installContext, config, id, installDir);
-        ConfigHelper.saveProcessConfig(config, installDir);
+        try {
+            installTask.install(installContext, config, id, installDir);
+            ConfigHelper.saveProcessConfig(config, installDir);
+            saveInstallationMetadata(installDir, options.getUrl(), config);
+        } catch (Exception e) {
+            if (cpuSets != null) {
+                cpuSets.release(id);
+                refreshSharedCpus();
+            }
+            throw e;
+        }
 
         Installation installation = createInstallation(options.getUrl(), id, installDir, config);
         installation.getController().install();
         return installation;
     }
 
+    /**
+     * Confines the processes which are not pinned to the CPUs which are not dedicated to any process
+     */
+    protected void refreshSharedCpus() {
+        if (cpuSets != null && cgroups != null) {
+            cgroups.setSharedCpus(cpuSets.getSharedCpus(), cpuSets.getAllocations().keySet());
+        }
+    }
+
+    /**
+     * Writes the URL, name and environment of the installation so that we can recreate it if the node restarts
+     */
+    protected void saveInstallationMetadata(File rootDir, OpenMavenURL url, ProcessConfig config) throws IOException {
+        Properties properties = new Properties();
+        if (url != null) {
+            properties.setProperty(PROPERTY_URL, url.getMavenCoords());
+        }
+        if (config.getName() != null) {
+            properties.setProperty(PROPERTY_NAME, config.getName());
+        }
+        for (Map.Entry<String, String> entry : config.getEnvironment().entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                properties.setProperty(PROPERTY_ENV_PREFIX + entry.getKey(), entry.getValue());
+            }
+        }
+        ResourceLimits limits = config.getLimits();
+        if (limits != null) {
+            properties.setProperty(PROPERTY_CPU_LIMIT, "" + limits.getCpuLimitMillis());
+            properties.setProperty(PROPERTY_CPU_REQUEST, "" + limits.getCpuRequestMillis());
+            properties.setProperty(PROPERTY_MEMORY_LIMIT, "" + limits.getMemoryLimit());
+        }
+        CpuSet cpuSet = config.getCpuSet();
+        if (cpuSet != null) {
+            properties.setProperty(PROPERTY_CPUSET_CPUS, cpuSet.getCpuList());
+            properties.setProperty(PROPERTY_CPUSET_NODES, cpuSet.getNodeList());
+        }
+        FileOutputStream out = new FileOutputStream(new File(rootDir, INSTALLATION_PROPERTIES));
+        try {
+            properties.store(out, "Jube installation metadata");
+        } finally {
+            Closeables.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Loads the metadata of an existing installation into the given configuration, returning the URL it was installed from if known
+     */
+    protected OpenMavenURL loadInstallationMetadata(File rootDir, ProcessConfig config) {
+        File file = new File(rootDir, INSTALLATION_PROPERTIES);
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load installation metadata " + file + ". " + e, e);
+            return null;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PROPERTY_ENV_PREFIX)) {
+                config.getEnvironment().put(key.substring(PROPERTY_ENV_PREFIX.length()), properties.getProperty(key));
+            }
+        }
+        String name = properties.getProperty(PROPERTY_NAME);
+        if (Strings.isNotBlank(name)) {
+            config.setName(name);
+        }
+        if (properties.containsKey(PROPERTY_CPU_LIMIT) || properties.containsKey(PROPERTY_MEMORY_LIMIT)) {
+            try {
+                config.setLimits(new ResourceLimits(Long.parseLong(properties.getProperty(PROPERTY_CPU_LIMIT, "0")),
+                        Long.parseLong(properties.getProperty(PROPERTY_CPU_REQUEST, "0")), Long.parseLong(properties.getProperty(PROPERTY_MEMORY_LIMIT, "0"))));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Ignoring invalid resource limits in " + file + ". " + e);
+            }
+        }
+        String cpus = properties.getProperty(PROPERTY_CPUSET_CPUS);
+        if (Strings.isNotBlank(cpus)) {
+            try {
+                config.setCpuSet(CpuSet.parse(cpus, properties.getProperty(PROPERTY_CPUSET_NODES)));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Ignoring invalid cpuset in " + file + ". " + e);
+            }
+        }
+        String url = properties.getProperty(PROPERTY_URL);
+        return Strings.isNotBlank(url) ? new OpenMavenURL(url) : null;
+    }
+
     protected DownloadStrategy createDefaultDownloadStrategy() {
         return new DownloadStrategy() {
             @Override
@@ -380,7 +563,7 @@ public class ProcessManagerService implements ProcessManagerServiceMBean {
     }
 
     protected ProcessController createController(String id, ProcessConfig config, File rootDir, File installDir) {
-        return new DefaultProcessController(id, config, rootDir, installDir);
+        return new DefaultProcessController(id, config, rootDir, installDir, cgroups, executor);
     }
 
     // TODO. This is been ripped from io.fabric8.container.process.JolokiaAgentHelper.substituteEnvironmentVariableExpressions()
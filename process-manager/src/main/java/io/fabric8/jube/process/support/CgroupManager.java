@@ -0,0 +1,344 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+import io.fabric8.jube.process.config.CpuSet;
+import io.fabric8.jube.process.config.ResourceLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the {@link ResourceLimits} of managed processes using a cgroup v2 per installation.
+ * <p/>
+ * The cgroups are created under a root cgroup which must be writable by Jube, such as a subtree delegated by systemd.
+ * If cgroup v2 is not mounted or the cpu and memory controllers cannot be enabled for the root then processes are
+ * launched without limits. The cpuset controller is also enabled if possible so that processes can be pinned to CPUs;
+ * once some CPUs are dedicated the processes which are not pinned are confined to the shared CPUs which remain.
+ */
+public class CgroupManager implements Serializable {
+    public static final String DEFAULT_ROOT = "/sys/fs/cgroup/jube";
+    /**
+     * The CPU quota period in microseconds
+     */
+    public static final long CPU_PERIOD = 100000;
+
+    private static final long serialVersionUID = 1L;
+    private static final transient Logger LOG = LoggerFactory.getLogger(CgroupManager.class);
+    private static final String[] CONTROLLERS = {"cpu", "memory"};
+    private static final String CPUSET_CONTROLLER = "cpuset";
+
+    private final File root;
+    private boolean cpusetSupported;
+    private final boolean supported;
+    private String sharedCpus;
+
+    /**
+     * Creates a manager using the given root cgroup directory or a disabled manager if the root is null
+     */
+    public CgroupManager(File root) {
+        this.root = root;
+        this.supported = root != null && init();
+    }
+
+    @Override
+    public String toString() {
+        return "CgroupManager(" + root + (supported ? "" : " disabled") + ")";
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Returns true if processes can be pinned to CPUs using the cpuset controller
+     */
+    public boolean isCpusetSupported() {
+        return cpusetSupported;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    public File getCgroupDir(String id) {
+        return new File(root, id.replace('/', '_'));
+    }
+
+    /**
+     * Creates the cgroup for the given installation and applies the limits to it
+     *
+     * @return the <code>cgroup.procs</code> file to add the processes to or null if the process should not be limited
+     */
+    public File createCgroup(String id, ResourceLimits limits) {
+        if (!supported || ((limits == null || limits.isEmpty()) && getSharedCpus() == null)) {
+            return null;
+        }
+        File dir = getCgroupDir(id);
+        if (!dir.isDirectory() && !dir.mkdir()) {
+            LOG.warn("Could not create cgroup " + dir + " so " + id + " will not be limited");
+            return null;
+        }
+        if (limits == null) {
+            // only created so it can be confined to the shared CPUs
+            return new File(dir, "cgroup.procs");
+        }
+        try {
+            long cpuLimit = limits.getCpuLimitMillis();
+            write(new File(dir, "cpu.max"), (cpuLimit > 0 ? Long.toString(cpuLimit * CPU_PERIOD / 1000) : "max") + " " + CPU_PERIOD);
+            if (limits.getCpuRequestMillis() > 0) {
+                write(new File(dir, "cpu.weight"), Long.toString(toCpuWeight(limits.getCpuRequestMillis())));
+            }
+            long memoryLimit = limits.getMemoryLimit();
+            write(new File(dir, "memory.max"), memoryLimit > 0 ? Long.toString(memoryLimit) : "max");
+        } catch (IOException e) {
+            LOG.warn("Failed to apply " + limits + " to cgroup " + dir + ". " + e, e);
+        }
+        return new File(dir, "cgroup.procs");
+    }
+
+    /**
+     * Restricts the cgroup of the given installation to the given CPUs and the memory of their NUMA nodes
+     *
+     * @return true if the cpuset was applied
+     */
+    public boolean setCpuSet(String id, CpuSet cpuSet) {
+        if (!supported || !cpusetSupported) {
+            return false;
+        }
+        File dir = getCgroupDir(id);
+        try {
+            write(new File(dir, "cpuset.cpus"), cpuSet.getCpuList());
+            if (!cpuSet.getNodes().isEmpty()) {
+                write(new File(dir, "cpuset.mems"), cpuSet.getNodeList());
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to apply " + cpuSet + " to cgroup " + dir + ". " + e, e);
+            return false;
+        }
+    }
+
+    /**
+     * Confines the cgroup of the given installation to the shared CPUs; used for the processes which are not pinned
+     *
+     * @return true if the shared CPUs were applied
+     */
+    public synchronized boolean applySharedCpus(String id) {
+        if (sharedCpus == null) {
+            return false;
+        }
+        return writeCpus(getCgroupDir(id), sharedCpus);
+    }
+
+    /**
+     * Updates the CPUs shared by the processes which are not pinned and applies them to the cgroups of those
+     * processes; which should be called whenever CPUs are dedicated to a process or released
+     *
+     * @param cpus the CPUs which are not dedicated to any process
+     * @param pinnedIds the installations which have dedicated CPUs and so keep their own cpuset
+     */
+    public synchronized void setSharedCpus(SortedSet<Integer> cpus, Set<String> pinnedIds) {
+        if (!supported || !cpusetSupported) {
+            return;
+        }
+        if (cpus.isEmpty()) {
+            LOG.warn("No CPUs are left to share so the processes which are not pinned keep their current CPUs");
+            return;
+        }
+        String cpuList = CpuSet.formatList(cpus);
+        if (cpuList.equals(sharedCpus)) {
+            return;
+        }
+        sharedCpus = cpuList;
+        Set<String> pinnedNames = new HashSet<>();
+        for (String id : pinnedIds) {
+            pinnedNames.add(getCgroupDir(id).getName());
+        }
+        File[] dirs = root.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                if (dir.isDirectory() && !pinnedNames.contains(dir.getName())) {
+                    writeCpus(dir, cpuList);
+                }
+            }
+        }
+        LOG.info("Processes which are not pinned now share CPUs " + cpuList);
+    }
+
+    /**
+     * Returns the CPU list shared by the processes which are not pinned or null if they may use every CPU
+     */
+    public synchronized String getSharedCpus() {
+        return cpusetSupported ? sharedCpus : null;
+    }
+
+    /**
+     * Moves the given process into the cgroup of the given installation
+     */
+    public void addProcess(String id, long pid) throws IOException {
+        write(new File(getCgroupDir(id), "cgroup.procs"), Long.toString(pid));
+    }
+
+    /**
+     * Returns the throttling and memory counters of the cgroup of the given installation or null if it has no cgroup
+     */
+    public CgroupStats getStats(String id) {
+        if (!supported) {
+            return null;
+        }
+        File dir = getCgroupDir(id);
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        CgroupStats answer = new CgroupStats();
+        answer.setPeriods(readKey(new File(dir, "cpu.stat"), "nr_periods"));
+        answer.setThrottledPeriods(readKey(new File(dir, "cpu.stat"), "nr_throttled"));
+        answer.setThrottledMicros(readKey(new File(dir, "cpu.stat"), "throttled_usec"));
+        answer.setOomEvents(readKey(new File(dir, "memory.events"), "oom"));
+        answer.setOomKills(readKey(new File(dir, "memory.events"), "oom_kill"));
+        try {
+            answer.setMemoryCurrent(Long.parseLong(read(new File(dir, "memory.current")).trim()));
+        } catch (IOException | NumberFormatException e) {
+            // leave it as zero
+        }
+        return answer;
+    }
+
+    /**
+     * Removes the cgroup of the given installation; which only succeeds once all its processes have exited
+     */
+    public void removeCgroup(String id) {
+        if (!supported) {
+            return;
+        }
+        File dir = getCgroupDir(id);
+        if (dir.isDirectory() && !dir.delete()) {
+            LOG.warn("Could not remove cgroup " + dir + " as it may still have processes");
+        }
+    }
+
+    /**
+     * Returns a command which adds its shell to the given <code>cgroup.procs</code> file then executes the given
+     * command; so the command and every process it starts are in the cgroup from the beginning. If the shell cannot
+     * be added to the cgroup the command is still executed.
+     */
+    public static String[] wrapCommand(File procsFile, String... command) {
+        String[] answer = new String[command.length + 4];
+        answer[0] = "sh";
+        answer[1] = "-c";
+        answer[2] = "{ echo $$ > \"$0\"; } 2>/dev/null; exec \"$@\"";
+        answer[3] = procsFile.getAbsolutePath();
+        System.arraycopy(command, 0, answer, 4, command.length);
+        return answer;
+    }
+
+    /**
+     * Converts a CPU request in millicores to a cgroup v2 weight using the same mapping from CPU shares as Kubernetes
+     */
+    public static long toCpuWeight(long cpuMillis) {
+        long shares = Math.max(2, cpuMillis * 1024 / 1000);
+        return Math.min(10000, 1 + ((shares - 2) * 9999) / 262142);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected boolean init() {
+        File parent = root.getParentFile();
+        if (parent == null || !new File(parent, "cgroup.controllers").isFile()) {
+            LOG.info("cgroup v2 is not available at " + parent + " so processes will run without resource limits");
+            return false;
+        }
+        if (!root.isDirectory() && !root.mkdir()) {
+            LOG.info("Could not create cgroup " + root + " so processes will run without resource limits");
+            return false;
+        }
+        // the controllers must be enabled at each level for the cgroups below it
+        enableControllers(parent);
+        enableControllers(root);
+        Set<String> enabled = new HashSet<>();
+        try {
+            enabled.addAll(Arrays.asList(read(new File(root, "cgroup.subtree_control")).trim().split("\\s+")));
+        } catch (IOException e) {
+            // treat as none enabled
+        }
+        if (!enabled.containsAll(Arrays.asList(CONTROLLERS))) {
+            LOG.info("The cpu and memory controllers are not enabled for " + root + " so processes will run without resource limits");
+            return false;
+        }
+        cpusetSupported = enabled.contains(CPUSET_CONTROLLER);
+        LOG.info("Applying process resource limits using cgroups under " + root + (cpusetSupported ? " with cpusets" : ""));
+        return true;
+    }
+
+    protected boolean writeCpus(File dir, String cpuList) {
+        try {
+            write(new File(dir, "cpuset.cpus"), cpuList);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to confine cgroup " + dir + " to CPUs " + cpuList + ". " + e, e);
+            return false;
+        }
+    }
+
+    protected void enableControllers(File dir) {
+        for (String controller : CONTROLLERS) {
+            enableController(dir, controller);
+        }
+        enableController(dir, CPUSET_CONTROLLER);
+    }
+
+    protected void enableController(File dir, String controller) {
+        try {
+            write(new File(dir, "cgroup.subtree_control"), "+" + controller);
+        } catch (IOException e) {
+            LOG.debug("Could not enable the " + controller + " controller for " + dir + ". " + e);
+        }
+    }
+
+    protected static long readKey(File file, String key) {
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.US_ASCII);
+            for (String line : lines) {
+                if (line.startsWith(key + " ")) {
+                    return Long.parseLong(line.substring(key.length() + 1).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available
+        }
+        return 0;
+    }
+
+    protected static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+    }
+
+    protected static void write(File file, String value) throws IOException {
+        Files.write(file.toPath(), value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.Serializable;
+
+/**
+ * The throttling and memory counters of the cgroup of a managed process
+ */
+public class CgroupStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long periods;
+    private long throttledPeriods;
+    private long throttledMicros;
+    private long memoryCurrent;
+    private long oomEvents;
+    private long oomKills;
+
+    @Override
+    public String toString() {
+        return "CgroupStats{throttledPeriods=" + throttledPeriods + ", throttledMicros=" + throttledMicros
+                + ", memoryCurrent=" + memoryCurrent + ", oomKills=" + oomKills + '}';
+    }
+
+    /**
+     * Returns the number of CPU quota periods which have elapsed
+     */
+    public long getPeriods() {
+        return periods;
+    }
+
+    public void setPeriods(long periods) {
+        this.periods = periods;
+    }
+
+    /**
+     * Returns the number of CPU quota periods in which the processes were throttled
+     */
+    public long getThrottledPeriods() {
+        return throttledPeriods;
+    }
+
+    public void setThrottledPeriods(long throttledPeriods) {
+        this.throttledPeriods = throttledPeriods;
+    }
+
+    public long getThrottledMicros() {
+        return throttledMicros;
+    }
+
+    public void setThrottledMicros(long throttledMicros) {
+        this.throttledMicros = throttledMicros;
+    }
+
+    public long getMemoryCurrent() {
+        return memoryCurrent;
+    }
+
+    public void setMemoryCurrent(long memoryCurrent) {
+        this.memoryCurrent = memoryCurrent;
+    }
+
+    /**
+     * Returns the number of times the memory limit was reached and the OOM killer was considered
+     */
+    public long getOomEvents() {
+        return oomEvents;
+    }
+
+    public void setOomEvents(long oomEvents) {
+        this.oomEvents = oomEvents;
+    }
+
+    public long getOomKills() {
+        return oomKills;
+    }
+
+    public void setOomKills(long oomKills) {
+        this.oomKills = oomKills;
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.fabric8.jube.process.config.CpuSet;
+import io.fabric8.jube.process.config.ResourceLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dedicates whole CPUs to the processes whose CPU request and limit are the same whole number of cores, preferring
+ * CPUs from a single NUMA node so the process keeps its memory local.
+ * <p/>
+ * The lowest numbered CPUs are reserved for Jube and the processes which are not pinned; which share every CPU not
+ * dedicated to another process.
+ */
+public class CpuSetAllocator implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final transient Logger LOG = LoggerFactory.getLogger(CpuSetAllocator.class);
+    private static final String[] TASKSET_PATHS = {"/usr/bin/taskset", "/bin/taskset"};
+
+    private final CpuTopology topology;
+    private final SortedSet<Integer> reserved = new TreeSet<>();
+    private final Map<String, CpuSet> allocations = new TreeMap<>();
+
+    public CpuSetAllocator(CpuTopology topology, int reservedCpus) {
+        this.topology = topology;
+        for (SortedSet<Integer> cpus : topology.getNodes().values()) {
+            for (Integer cpu : cpus) {
+                if (reserved.size() < reservedCpus) {
+                    reserved.add(cpu);
+                }
+            }
+        }
+        LOG.info("Pinning processes which request whole CPUs using " + topology + " with reserved CPUs " + CpuSet.formatList(reserved));
+    }
+
+    @Override
+    public String toString() {
+        return "CpuSetAllocator(" + topology + ")";
+    }
+
+    /**
+     * Returns the number of CPUs to dedicate to a process with the given limits or zero if it should not be pinned
+     */
+    public static int getWholeCpus(ResourceLimits limits) {
+        if (limits == null) {
+            return 0;
+        }
+        long cpuMillis = limits.getCpuLimitMillis();
+        if (cpuMillis <= 0 || cpuMillis % 1000 != 0 || limits.getCpuRequestMillis() != cpuMillis) {
+            return 0;
+        }
+        return (int) (cpuMillis / 1000);
+    }
+
+    /**
+     * Allocates dedicated CPUs for the given process
+     *
+     * @return the CPUs or null if the process does not request whole CPUs or there are not enough free
+     */
+    public synchronized CpuSet allocate(String id, ResourceLimits limits) {
+        CpuSet answer = allocations.get(id);
+        if (answer != null) {
+            return answer;
+        }
+        int count = getWholeCpus(limits);
+        if (count <= 0) {
+            return null;
+        }
+        Map<Integer, List<Integer>> free = getFreeCpusByNode();
+
+        // lets use the node with the fewest free CPUs which can fit the process so larger processes can still fit
+        Integer bestNode = null;
+        for (Map.Entry<Integer, List<Integer>> entry : free.entrySet()) {
+            int size = entry.getValue().size();
+            if (size >= count && (bestNode == null || size < free.get(bestNode).size())) {
+                bestNode = entry.getKey();
+            }
+        }
+        List<Integer> cpus = new ArrayList<>();
+        List<Integer> nodes = new ArrayList<>();
+        if (bestNode != null) {
+            cpus.addAll(free.get(bestNode).subList(0, count));
+            nodes.add(bestNode);
+        } else {
+            // no single node can fit the process so spread it over the nodes with the most free CPUs
+            List<Map.Entry<Integer, List<Integer>>> entries = new ArrayList<>(free.entrySet());
+            Collections.sort(entries, new Comparator<Map.Entry<Integer, List<Integer>>>() {
+                @Override
+                public int compare(Map.Entry<Integer, List<Integer>> o1, Map.Entry<Integer, List<Integer>> o2) {
+                    return o2.getValue().size() - o1.getValue().size();
+                }
+            });
+            for (Map.Entry<Integer, List<Integer>> entry : entries) {
+                if (cpus.size() >= count) {
+                    break;
+                }
+                List<Integer> nodeCpus = entry.getValue();
+                if (!nodeCpus.isEmpty()) {
+                    cpus.addAll(nodeCpus.subList(0, Math.min(nodeCpus.size(), count - cpus.size())));
+                    nodes.add(entry.getKey());
+                }
+            }
+            if (cpus.size() < count) {
+                LOG.warn("Only " + cpus.size() + " free CPU(s) so cannot dedicate " + count + " to " + id + " which will share the CPUs");
+                return null;
+            }
+        }
+        answer = new CpuSet(cpus, nodes);
+        allocations.put(id, answer);
+        LOG.info("Dedicated CPUs " + answer.getCpuList() + " on NUMA node(s) " + answer.getNodeList() + " to " + id);
+        return answer;
+    }
+
+    /**
+     * Records an allocation which was made before this node restarted
+     */
+    public synchronized void restore(String id, CpuSet cpuSet) {
+        for (Map.Entry<String, CpuSet> entry : allocations.entrySet()) {
+            if (!Collections.disjoint(entry.getValue().getCpus(), cpuSet.getCpus())) {
+                LOG.warn("Ignoring CPUs " + cpuSet.getCpuList() + " of " + id + " which overlap those of " + entry.getKey());
+                return;
+            }
+        }
+        allocations.put(id, cpuSet);
+    }
+
+    /**
+     * Releases the CPUs dedicated to the given process
+     */
+    public synchronized CpuSet release(String id) {
+        CpuSet answer = allocations.remove(id);
+        if (answer != null) {
+            LOG.info("Released CPUs " + answer.getCpuList() + " of " + id);
+        }
+        return answer;
+    }
+
+    public synchronized CpuSet getAllocation(String id) {
+        return allocations.get(id);
+    }
+
+    public synchronized Map<String, CpuSet> getAllocations() {
+        return new TreeMap<>(allocations);
+    }
+
+    /**
+     * Returns the CPUs which are not dedicated to any process
+     */
+    public synchronized SortedSet<Integer> getSharedCpus() {
+        SortedSet<Integer> answer = new TreeSet<>();
+        for (SortedSet<Integer> cpus : topology.getNodes().values()) {
+            answer.addAll(cpus);
+        }
+        for (CpuSet cpuSet : allocations.values()) {
+            answer.removeAll(cpuSet.getCpus());
+        }
+        return answer;
+    }
+
+    public CpuTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns a command which runs the given command with its affinity set to the given CPUs using
+     * <code>taskset</code>; or the command itself if <code>taskset</code> is not installed
+     */
+    public static String[] wrapCommand(CpuSet cpuSet, String... command) {
+        for (String path : TASKSET_PATHS) {
+            if (new File(path).canExecute()) {
+                String[] answer = new String[command.length + 3];
+                answer[0] = path;
+                answer[1] = "-c";
+                answer[2] = cpuSet.getCpuList();
+                System.arraycopy(command, 0, answer, 3, command.length);
+                return answer;
+            }
+        }
+        LOG.warn("Cannot pin to CPUs " + cpuSet.getCpuList() + " as neither cpuset cgroups nor taskset are available");
+        return command;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected Map<Integer, List<Integer>> getFreeCpusByNode() {
+        SortedSet<Integer> used = new TreeSet<>(reserved);
+        for (CpuSet cpuSet : allocations.values()) {
+            used.addAll(cpuSet.getCpus());
+        }
+        Map<Integer, List<Integer>> answer = new TreeMap<>();
+        for (Map.Entry<Integer, SortedSet<Integer>> entry : topology.getNodes().entrySet()) {
+            List<Integer> cpus = new ArrayList<>();
+            for (Integer cpu : entry.getValue()) {
+                if (!used.contains(cpu)) {
+                    cpus.add(cpu);
+                }
+            }
+            answer.put(entry.getKey(), cpus);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.fabric8.jube.process.config.CpuSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The CPUs of each NUMA node of this host
+ */
+public class CpuTopology implements Serializable {
+    public static final String NODE_DIR = "/sys/devices/system/node";
+
+    private static final long serialVersionUID = 1L;
+    private static final transient Logger LOG = LoggerFactory.getLogger(CpuTopology.class);
+
+    private final SortedMap<Integer, SortedSet<Integer>> nodes;
+
+    public CpuTopology(Map<Integer, ? extends SortedSet<Integer>> nodes) {
+        SortedMap<Integer, SortedSet<Integer>> map = new TreeMap<>();
+        for (Map.Entry<Integer, ? extends SortedSet<Integer>> entry : nodes.entrySet()) {
+            map.put(entry.getKey(), Collections.unmodifiableSortedSet(new TreeSet<>(entry.getValue())));
+        }
+        this.nodes = Collections.unmodifiableSortedMap(map);
+    }
+
+    /**
+     * Loads the topology of this host
+     */
+    public static CpuTopology load() {
+        return load(new File(NODE_DIR));
+    }
+
+    /**
+     * Loads the topology from the <code>node*&#47;cpulist</code> files in the given directory; treating every available
+     * processor as a single node if they cannot be read
+     */
+    public static CpuTopology load(File nodeDir) {
+        SortedMap<Integer, SortedSet<Integer>> nodes = new TreeMap<>();
+        File[] files = nodeDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                File cpuList = new File(file, "cpulist");
+                if (name.matches("node\\d+") && cpuList.isFile()) {
+                    try {
+                        SortedSet<Integer> cpus = CpuSet.parseList(new String(Files.readAllBytes(cpuList.toPath()), StandardCharsets.US_ASCII));
+                        if (!cpus.isEmpty()) {
+                            nodes.put(Integer.parseInt(name.substring(4)), cpus);
+                        }
+                    } catch (IOException | NumberFormatException e) {
+                        LOG.warn("Failed to read " + cpuList + ". " + e);
+                    }
+                }
+            }
+        }
+        if (nodes.isEmpty()) {
+            SortedSet<Integer> cpus = new TreeSet<>();
+            for (int i = 0, size = Runtime.getRuntime().availableProcessors(); i < size; i++) {
+                cpus.add(i);
+            }
+            nodes.put(0, cpus);
+        }
+        return new CpuTopology(nodes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("CpuTopology(");
+        for (Map.Entry<Integer, SortedSet<Integer>> entry : nodes.entrySet()) {
+            if (buffer.length() > "CpuTopology(".length()) {
+                buffer.append(", ");
+            }
+            buffer.append("node").append(entry.getKey()).append('=').append(CpuSet.formatList(entry.getValue()));
+        }
+        return buffer.append(')').toString();
+    }
+
+    public SortedMap<Integer, SortedSet<Integer>> getNodes() {
+        return nodes;
+    }
+
+    public int getCpuCount() {
+        int answer = 0;
+        for (SortedSet<Integer> cpus : nodes.values()) {
+            answer += cpus.size();
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the NUMA node of the given CPU or -1 if it is not known
+     */
+    public int getNode(int cpu) {
+        for (Map.Entry<Integer, SortedSet<Integer>> entry : nodes.entrySet()) {
+            if (entry.getValue().contains(cpu)) {
+                return entry.getKey();
+            }
+        }
+        return -1;
+    }
+}
@@ -15,17 +15,16 @@
  */
 package io.fabric8.jube.process.support;
 
-import static java.util.concurrent.Executors.newFixedThreadPool;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executor;
 
 import com.google.common.base.Strings;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.fabric8.jube.process.ProcessController;
+import io.fabric8.jube.process.config.CpuSet;
 import io.fabric8.jube.process.config.ProcessConfig;
+import io.fabric8.jube.process.support.command.CommandExecutor;
 import io.fabric8.jube.process.support.command.CommandFailedException;
 import io.fabric8.jube.util.FilesHelper;
 import io.fabric8.utils.ExecParseUtils;
@@ -42,12 +41,6 @@ public class DefaultProcessController implements ProcessController {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultProcessController.class);
 
-    /**
-     * Number of threads used to execute the controller's tasks. We need at least two, because we execute process and
-     * consume its output concurrently.
-     */
-    private static final int THREADS_PER_CONTROLLER = 2;
-
     /**
      * Local identifier of the controlled process
      * (assigned by the {@link io.fabric8.jube.process.service.ProcessManagerService}).
@@ -57,16 +50,41 @@ public class DefaultProcessController implements ProcessController {
     private File rootDir;
     private final File baseDir;
     private final ProcessConfig config;
+    private final CgroupManager cgroups;
     private transient Executor executor;
+    private transient File cachedPidFile;
+    private transient long cachedPidFileModified;
+    private transient long cachedPidFileLength;
+    private transient Long cachedPid;
 
     /**
      * @param id identifier of the controlled process. Usually PID.
      */
     public DefaultProcessController(String id, ProcessConfig config, File rootDir, File baseDir) {
+        this(id, config, rootDir, baseDir, null);
+    }
+
+    /**
+     * @param id identifier of the controlled process. Usually PID.
+     * @param cgroups used to apply the resource limits of the process, or null if they should not be applied
+     */
+    public DefaultProcessController(String id, ProcessConfig config, File rootDir, File baseDir, CgroupManager cgroups) {
+        this(id, config, rootDir, baseDir, cgroups, null);
+    }
+
+    /**
+     * @param id identifier of the controlled process. Usually PID.
+     * @param cgroups used to apply the resource limits of the process, or null if they should not be applied
+     * @param executor the executor shared by the processes to run their commands, or null to use the
+     *                 {@link CommandExecutor#getDefault()} one
+     */
+    public DefaultProcessController(String id, ProcessConfig config, File rootDir, File baseDir, CgroupManager cgroups, Executor executor) {
         this.id = id;
+        this.executor = executor;
         this.config = config;
         this.rootDir = rootDir;
         this.baseDir = baseDir;
+        this.cgroups = cgroups;
     }
 
     @Override
@@ -90,6 +108,9 @@ public class DefaultProcessController implements ProcessController {
 
     @Override
     public synchronized int uninstall() {
+        if (cgroups != null) {
+            cgroups.removeCgroup(id);
+        }
         // we should uninstall from the root dir, so we uninstall it all
         String name = rootDir.getName();
 
@@ -110,7 +131,7 @@ public class DefaultProcessController implements ProcessController {
 
     @Override
     public int start() throws Exception {
-        return runConfigCommandValueOrLaunchScriptWith(config.getStartCommand(), "start");
+        return launch(config.getStartCommand(), "start");
     }
 
     @Override
@@ -147,7 +168,7 @@ public class DefaultProcessController implements ProcessController {
             }
             return answer;
         }
-        return runConfigCommandValueOrLaunchScriptWith(customCommand, "restart");
+        return launch(customCommand, "restart");
     }
 
     @Override
@@ -173,9 +194,13 @@ public class DefaultProcessController implements ProcessController {
         return baseDir;
     }
 
+    /**
+     * Returns the executor used to run the commands and pump their output; which is shared with the other processes
+     * so that we do not need threads per process
+     */
     public Executor getExecutor() {
         if (executor == null) {
-            executor = newFixedThreadPool(THREADS_PER_CONTROLLER, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-process-controller-%s").build());
+            executor = CommandExecutor.getDefault();
         }
         return executor;
     }
@@ -185,18 +210,54 @@ public class DefaultProcessController implements ProcessController {
         return config;
     }
 
-    public Long getPid() throws IOException {
-        Long answer = null;
+    @Override
+    public CgroupStats getCgroupStats() {
+        return cgroups != null ? cgroups.getStats(id) : null;
+    }
+
+    /**
+     * Returns the pid from the pid file; the pid file is only searched for and read again when it changes
+     */
+    public synchronized Long getPid() throws IOException {
+        File pidFile = cachedPidFile;
+        if (pidFile != null && pidFile.isFile() && pidFile.lastModified() == cachedPidFileModified && pidFile.length() == cachedPidFileLength) {
+            return cachedPid;
+        }
+        pidFile = findPidFile();
+        if (pidFile == null) {
+            cachedPidFile = null;
+            cachedPid = null;
+            return null;
+        }
+        long modified = pidFile.lastModified();
+        long length = pidFile.length();
+        Long answer = extractPidFromFile(pidFile);
+        cachedPidFile = pidFile;
+        cachedPidFileModified = modified;
+        cachedPidFileLength = length;
+        cachedPid = answer;
+        return answer;
+    }
+
+    public synchronized File getPidFile() throws IOException {
+        getPid();
+        return cachedPidFile;
+    }
+
+    /**
+     * Returns the pid file of the process or null if there is not one
+     */
+    protected File findPidFile() throws IOException {
         String pidFileName = config.getPidFile();
         if (pidFileName != null) {
             File file = new File(baseDir, pidFileName);
             if (file.exists() && file.isFile()) {
-                return extractPidFromFile(file);
+                return file;
             }
         }
         File pidFile = new File(baseDir, "var/process.pid");
         if (pidFile.exists()) {
-            return extractPidFromFile(pidFile);
+            return pidFile;
         }
 
         File pidDir = new File(baseDir, "var/run");
@@ -212,25 +273,20 @@ public class DefaultProcessController implements ProcessController {
             // lets try find the file /var/run/launcher.pid by default
             pidFile = new File(pidDir, script + ".pid");
             if (pidFile.exists()) {
-                return extractPidFromFile(pidFile);
+                return pidFile;
             }
 
             // otherwise lets just find a /var/run/*.pid file
-            if (answer == null) {
-                File[] files = pidDir.listFiles();
-                if (files != null) {
-                    for (File file : files) {
-                        if (file.getName().toLowerCase().endsWith(".pid")) {
-                            answer = extractPidFromFile(file);
-                            if (answer != null) {
-                                break;
-                            }
-                        }
+            File[] files = pidDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().toLowerCase().endsWith(".pid") && extractPidFromFile(file) != null) {
+                        return file;
                     }
                 }
             }
         }
-        return answer;
+        return null;
     }
 
     protected String getLaunchScript() {
@@ -268,6 +324,38 @@ public class DefaultProcessController implements ProcessController {
         }
     }
 
+    /**
+     * Starts the process with the command or launch script, inside the cgroup for its resource limits if it has any
+     * and pinned to its dedicated CPUs if it has been allocated some; otherwise confined to the shared CPUs
+     */
+    protected int launch(String command, String launchArgument) throws InterruptedException, IOException, CommandFailedException {
+        String[] arguments;
+        if (command != null) {
+            // TODO warning this doesn't handle quoted strings as a single argument
+            List<String> commandArgs = ExecParseUtils.splitToWhiteSpaceSeparatedTokens(command);
+            arguments = commandArgs.toArray(new String[commandArgs.size()]);
+        } else {
+            arguments = new String[]{getLaunchScript(), launchArgument};
+        }
+        if (arguments.length == 0) {
+            return 0;
+        }
+        File procsFile = cgroups != null ? cgroups.createCgroup(id, config.getLimits()) : null;
+        CpuSet cpuSet = config.getCpuSet();
+        if (cpuSet != null && (procsFile == null || !cgroups.setCpuSet(id, cpuSet))) {
+            // fall back to setting the affinity of the process
+            arguments = CpuSetAllocator.wrapCommand(cpuSet, arguments);
+        } else if (cpuSet == null && procsFile != null) {
+            // keep off the CPUs dedicated to other processes
+            cgroups.applySharedCpus(id);
+        }
+        if (procsFile != null) {
+            LOG.info("Starting " + this + " with limits " + config.getLimits() + (cpuSet != null ? " on CPUs " + cpuSet.getCpuList() : ""));
+            arguments = CgroupManager.wrapCommand(procsFile, arguments);
+        }
+        return config.runCommand(getExecutor(), baseDir, arguments);
+    }
+
     /**
      * Converts a space separated command line into a Command and executes it
      */
@@ -0,0 +1,180 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.utils.Processes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies listeners soon after a watched process exits.
+ * <p/>
+ * The processes we manage are usually daemonized by their launch scripts so they are not our child processes and we
+ * cannot wait on them; instead a single thread checks whether each watched pid still has an entry in <code>/proc</code>,
+ * which is a single stat call per process and needs no file reads or forked commands.
+ */
+public class ProcessExitWatcher {
+    public static final long DEFAULT_CHECK_INTERVAL = 250;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcessExitWatcher.class);
+
+    private final File procDir;
+    private final boolean procSupported;
+    private final ConcurrentMap<String, Long> watched = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<CountDownLatch, Long> waiters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Notified when a watched process exits
+     */
+    public interface Listener {
+        void processExited(String id, long pid);
+    }
+
+    public ProcessExitWatcher() {
+        this(new File("/proc"), DEFAULT_CHECK_INTERVAL);
+    }
+
+    public ProcessExitWatcher(File procDir, long checkInterval) {
+        this.procDir = procDir;
+        this.procSupported = procDir.isDirectory();
+        if (!procSupported) {
+            // checking without /proc means forking a command per process so lets do it less often
+            LOG.info("No " + procDir + " directory so checking for process exits every " + (checkInterval * 20) + " millis");
+            checkInterval *= 20;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jube-process-exit-watcher-%s").build());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checkProcesses();
+                } catch (Throwable e) {
+                    LOG.warn("Failed to check for exited processes. " + e, e);
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Watches the process with the given pid, replacing any process previously watched for the id
+     */
+    public void watch(String id, long pid) {
+        watched.put(id, pid);
+    }
+
+    public void unwatch(String id) {
+        watched.remove(id);
+    }
+
+    /**
+     * Returns the pid being watched for the given id or null if it is not being watched
+     */
+    public Long getWatchedPid(String id) {
+        return watched.get(id);
+    }
+
+    public int getWatchedCount() {
+        return watched.size();
+    }
+
+    /**
+     * Returns true if the process with the given pid is running
+     */
+    public boolean isAlive(long pid) {
+        if (procSupported) {
+            return new File(procDir, Long.toString(pid)).exists();
+        }
+        return Processes.isProcessAlive(pid);
+    }
+
+    /**
+     * Waits for the process with the given pid to exit
+     *
+     * @return true if the process exited or false if it was still running after the timeout
+     */
+    public boolean awaitExit(long pid, long timeoutMillis) throws InterruptedException {
+        if (!isAlive(pid)) {
+            return true;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        waiters.put(latch, pid);
+        try {
+            // lets check again in case it exited before we were registered
+            return !isAlive(pid) || latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            waiters.remove(latch);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void checkProcesses() {
+        for (Map.Entry<CountDownLatch, Long> entry : waiters.entrySet()) {
+            if (!isAlive(entry.getValue())) {
+                entry.getKey().countDown();
+            }
+        }
+        Map<String, Long> exited = new HashMap<>();
+        for (Map.Entry<String, Long> entry : watched.entrySet()) {
+            if (!isAlive(entry.getValue())) {
+                exited.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> entry : exited.entrySet()) {
+            String id = entry.getKey();
+            long pid = entry.getValue();
+            // only notify once and not if the id has been re-watched with a new process in the meantime
+            if (watched.remove(id, pid)) {
+                LOG.info("Process " + pid + " for " + id + " has exited");
+                for (Listener listener : listeners) {
+                    try {
+                        listener.processExited(id, pid);
+                    } catch (Exception e) {
+                        LOG.warn("Failed to notify " + listener + " of the exit of process " + pid + ". " + e, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import io.fabric8.jube.process.Installation;
+import io.fabric8.jube.process.config.ProcessConfig;
+
+/**
+ * Helper methods for reading the log files of managed processes using file channels so that the bytes can be
+ * transferred to the reader without copying them through the heap where the platform supports it
+ */
+public final class ProcessLogs {
+    /**
+     * How often to check for new output when following a log
+     */
+    public static final long FOLLOW_INTERVAL = 500;
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private ProcessLogs() {
+    }
+
+    /**
+     * Returns the log file of the given installation
+     */
+    public static File getLogFile(Installation installation) {
+        return new File(installation.getInstallDir(), ProcessConfig.LOG_FILE);
+    }
+
+    /**
+     * Writes the log file to the stream, starting at the given number of lines from the end or the beginning if it is
+     * negative. If following, new output is written as it is appended, moving on to the new file when the log is rolled
+     * over, until the process is uninstalled, the stream is closed or the thread is interrupted.
+     */
+    public static void stream(File logFile, int tailLines, boolean follow, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+        try {
+            Object fileKey = getFileKey(logFile);
+            long position = tailLines >= 0 ? findTailPosition(channel, tailLines) : 0;
+            position = transfer(channel, position, target);
+            while (follow) {
+                out.flush();
+                try {
+                    Thread.sleep(FOLLOW_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted following " + logFile);
+                }
+                position = transfer(channel, position, target);
+                if (!logFile.getParentFile().exists()) {
+                    // the process has been uninstalled
+                    break;
+                }
+                Object newFileKey = getFileKey(logFile);
+                if (newFileKey != null && !newFileKey.equals(fileKey)) {
+                    // the log has been rolled over so lets carry on with the new file
+                    channel.close();
+                    channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ);
+                    fileKey = newFileKey;
+                    position = transfer(channel, 0, target);
+                }
+            }
+            out.flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the position of the start of the last given number of lines of the file, ignoring any newline at the end
+     */
+    public static long findTailPosition(FileChannel channel, int lines) throws IOException {
+        long end = channel.size();
+        if (lines <= 0) {
+            return end;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        int found = 0;
+        long position = end;
+        while (position > 0) {
+            int length = (int) Math.min(BLOCK_SIZE, position);
+            position -= length;
+            buffer.clear();
+            buffer.limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    if (position + i == end - 1) {
+                        // the newline ending the last line
+                        continue;
+                    }
+                    if (++found == lines) {
+                        return position + i + 1;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Transfers the bytes of the file from the given position to its current end, returning the new position
+     */
+    public static long transfer(FileChannel channel, long position, WritableByteChannel target) throws IOException {
+        long end = channel.size();
+        while (position < end) {
+            long count = channel.transferTo(position, end - position, target);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the key which identifies the file, which changes when the log is rolled over, or null if it is not known
+     */
+    private static Object getFileKey(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.jube.process.ProcessMetrics;
+
+/**
+ * A view of the processes running on this machine read from <code>/proc</code>.
+ * <p/>
+ * Create one table per checking cycle and use it for all the processes being checked; the boot time and the
+ * <code>stat</code> of each process are then read at most once per cycle.
+ */
+public class ProcessTable {
+    /**
+     * The clock ticks per second used by the kernel to report process times; this is 100 on all mainstream Linux platforms
+     */
+    public static final long CLOCK_TICKS = 100;
+    /**
+     * The size of a memory page used by the kernel to report resident memory
+     */
+    public static final long PAGE_SIZE = 4096;
+
+    private static final ProcessInfo NOT_RUNNING = new ProcessInfo(-1, -1, -1, 'X', -1, 0, 0, 0);
+
+    private final File procDir;
+    private final boolean supported;
+    private final Map<Long, ProcessInfo> processes = new HashMap<>();
+    private long bootTime = -1;
+    private Map<Long, List<Long>> children;
+
+    public ProcessTable() {
+        this(new File("/proc"));
+    }
+
+    public ProcessTable(File procDir) {
+        this.procDir = procDir;
+        this.supported = new File(procDir, "stat").isFile();
+    }
+
+    /**
+     * Returns true if this machine has a <code>/proc</code> file system we can read
+     */
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Returns the process for the given pid or null if there is no such process
+     */
+    public synchronized ProcessInfo getProcess(long pid) {
+        ProcessInfo answer = processes.get(pid);
+        if (answer == null) {
+            answer = readProcess(pid);
+            processes.put(pid, answer != null ? answer : NOT_RUNNING);
+        }
+        return answer == NOT_RUNNING ? null : answer;
+    }
+
+    /**
+     * Returns the process of this JVM or null if it cannot be read
+     */
+    public ProcessInfo getSelf() {
+        return readProcess("self");
+    }
+
+    /**
+     * Returns true if the given pid is a running process, i.e. it exists and is not a zombie
+     */
+    public boolean isRunning(long pid) {
+        ProcessInfo process = getProcess(pid);
+        return process != null && !process.isZombie();
+    }
+
+    /**
+     * Returns the command line of the given process or an empty string if it could not be read
+     */
+    public String getCommandLine(long pid) {
+        try {
+            byte[] data = Files.readAllBytes(new File(procDir, pid + "/cmdline").toPath());
+            return new String(data, StandardCharsets.UTF_8).replace('\0', ' ').trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the given process and all of its descendants, or an empty list if the process is not running.
+     * <p/>
+     * The first call reads the <code>stat</code> of every process on the machine in a single pass of <code>/proc</code>
+     * to find the parent of each process
+     */
+    public synchronized List<ProcessInfo> getProcessTree(long pid) {
+        List<ProcessInfo> answer = new ArrayList<>();
+        ProcessInfo root = getProcess(pid);
+        if (root == null) {
+            return answer;
+        }
+        if (children == null) {
+            children = scanChildren();
+        }
+        answer.add(root);
+        // breadth first so that we never loop even if /proc changed under us
+        for (int i = 0; i < answer.size(); i++) {
+            List<Long> list = children.get(answer.get(i).getPid());
+            if (list != null) {
+                for (Long child : list) {
+                    ProcessInfo process = getProcess(child);
+                    if (process != null && !answer.contains(process)) {
+                        answer.add(process);
+                    }
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the resource usage of the given process and all of its descendants or null if the process is not running.
+     * The CPU percentage is not calculated as it needs a previous sample.
+     */
+    public ProcessMetrics getProcessTreeMetrics(long pid) {
+        List<ProcessInfo> processes = getProcessTree(pid);
+        if (processes.isEmpty()) {
+            return null;
+        }
+        ProcessMetrics answer = new ProcessMetrics();
+        answer.setPid(pid);
+        answer.setProcessCount(processes.size());
+        long cpuTicks = 0;
+        for (ProcessInfo process : processes) {
+            cpuTicks += process.getCpuTicks();
+            answer.setRssBytes(answer.getRssBytes() + process.getRssPages() * PAGE_SIZE);
+            answer.setThreads(answer.getThreads() + process.getThreads());
+            answer.setOpenFiles(answer.getOpenFiles() + getOpenFileCount(process.getPid()));
+            long[] io = getIoBytes(process.getPid());
+            answer.setReadBytes(answer.getReadBytes() + io[0]);
+            answer.setWriteBytes(answer.getWriteBytes() + io[1]);
+        }
+        answer.setCpuTime(cpuTicks * 1000 / CLOCK_TICKS);
+        return answer;
+    }
+
+    /**
+     * Returns the number of open file descriptors of the given process or 0 if they cannot be read
+     */
+    public int getOpenFileCount(long pid) {
+        String[] names = new File(procDir, pid + "/fd").list();
+        return names != null ? names.length : 0;
+    }
+
+    /**
+     * Returns the bytes the given process has read from and written to storage, or zeros if they cannot be read
+     */
+    public long[] getIoBytes(long pid) {
+        long[] answer = new long[2];
+        try {
+            for (String line : Files.readAllLines(new File(procDir, pid + "/io").toPath(), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("read_bytes:")) {
+                    answer[0] = Long.parseLong(line.substring(11).trim());
+                } else if (line.startsWith("write_bytes:")) {
+                    answer[1] = Long.parseLong(line.substring(12).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // we can only read the io of our own processes
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the time in millis the machine booted or 0 if it is not known
+     */
+    public synchronized long getBootTime() {
+        if (bootTime < 0) {
+            bootTime = 0;
+            try {
+                for (String line : Files.readAllLines(new File(procDir, "stat").toPath(), StandardCharsets.US_ASCII)) {
+                    if (line.startsWith("btime ")) {
+                        bootTime = Long.parseLong(line.substring(6).trim()) * 1000;
+                        break;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // leave it as unknown
+            }
+        }
+        return bootTime;
+    }
+
+    /**
+     * Returns the time in millis the given process started or 0 if it is not known
+     */
+    public long getStartTime(ProcessInfo process) {
+        long boot = getBootTime();
+        if (boot <= 0 || process.getStartTicks() < 0) {
+            return 0;
+        }
+        return boot + process.getStartTicks() * 1000 / CLOCK_TICKS;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected Map<Long, List<Long>> scanChildren() {
+        Map<Long, List<Long>> answer = new HashMap<>();
+        String[] names = procDir.list();
+        if (names == null) {
+            return answer;
+        }
+        for (String name : names) {
+            if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+                continue;
+            }
+            long pid;
+            try {
+                pid = Long.parseLong(name);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            ProcessInfo process = getProcess(pid);
+            if (process != null) {
+                List<Long> list = answer.get(process.getParentPid());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    answer.put(process.getParentPid(), list);
+                }
+                list.add(pid);
+            }
+        }
+        return answer;
+    }
+
+    protected ProcessInfo readProcess(long pid) {
+        return readProcess(Long.toString(pid));
+    }
+
+    protected ProcessInfo readProcess(String name) {
+        String text;
+        try {
+            text = new String(Files.readAllBytes(new File(procDir, name + "/stat").toPath()), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return null;
+        }
+        // the command name may contain spaces so lets start after its closing bracket
+        int idx = text.lastIndexOf(')');
+        if (idx < 0 || idx + 2 >= text.length()) {
+            return null;
+        }
+        String[] fields = text.substring(idx + 2).trim().split(" ");
+        if (fields.length < 22) {
+            return null;
+        }
+        try {
+            // pid, state, ppid, pgrp, utime, stime, num_threads, starttime and rss are fields 1, 3, 4, 5, 14, 15, 20, 22 and 24 of the stat file
+            long pid = Long.parseLong(text.substring(0, text.indexOf(' ')).trim());
+            char state = fields[0].charAt(0);
+            long ppid = Long.parseLong(fields[1]);
+            long pgrp = Long.parseLong(fields[2]);
+            long cpuTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+            int threads = Integer.parseInt(fields[17]);
+            long startTicks = Long.parseLong(fields[19]);
+            long rssPages = Long.parseLong(fields[21]);
+            return new ProcessInfo(pid, ppid, pgrp, state, startTicks, cpuTicks, threads, rssPages);
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The details of a single process
+     */
+    public static class ProcessInfo {
+        private final long pid;
+        private final long parentPid;
+        private final long processGroup;
+        private final char state;
+        private final long startTicks;
+        private final long cpuTicks;
+        private final int threads;
+        private final long rssPages;
+
+        public ProcessInfo(long pid, long parentPid, long processGroup, char state, long startTicks, long cpuTicks, int threads, long rssPages) {
+            this.pid = pid;
+            this.parentPid = parentPid;
+            this.processGroup = processGroup;
+            this.state = state;
+            this.startTicks = startTicks;
+            this.cpuTicks = cpuTicks;
+            this.threads = threads;
+            this.rssPages = rssPages;
+        }
+
+        @Override
+        public String toString() {
+            return "ProcessInfo{pid=" + pid + ", parentPid=" + parentPid + ", state=" + state + "}";
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        public long getParentPid() {
+            return parentPid;
+        }
+
+        public long getProcessGroup() {
+            return processGroup;
+        }
+
+        public char getState() {
+            return state;
+        }
+
+        /**
+         * Returns the time the process started in clock ticks since the machine booted
+         */
+        public long getStartTicks() {
+            return startTicks;
+        }
+
+        /**
+         * Returns the user and system CPU time used by the process in clock ticks
+         */
+        public long getCpuTicks() {
+            return cpuTicks;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Returns the resident memory of the process in pages
+         */
+        public long getRssPages() {
+            return rssPages;
+        }
+
+        /**
+         * Returns true if the process has exited but not been reaped by its parent yet
+         */
+        public boolean isZombie() {
+            return state == 'Z' || state == 'X' || state == 'x';
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fabric8.jube.process.Installation;
+import io.fabric8.jube.process.ProcessController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops a managed process by running its stop command and sending SIGTERM to its process group, then sends SIGKILL if
+ * it has not exited within the grace period.
+ * <p/>
+ * The whole process group is signalled so that any children started by the launch script exit too; unless the process
+ * is in the same group as Jube, in which case the process and its descendants are signalled instead.
+ */
+public class ProcessTerminator {
+    public static final long DEFAULT_GRACE_PERIOD = 30000;
+    /**
+     * How long to wait for a process to exit after it has been sent SIGKILL
+     */
+    public static final long KILL_TIMEOUT = 5000;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ProcessTerminator.class);
+
+    private final ProcessExitWatcher watcher;
+    private final long ownProcessGroup;
+    private final AtomicInteger killedCount = new AtomicInteger();
+
+    public ProcessTerminator(ProcessExitWatcher watcher) {
+        this.watcher = watcher;
+        ProcessTable.ProcessInfo self = new ProcessTable().getSelf();
+        this.ownProcessGroup = self != null ? self.getProcessGroup() : -1;
+    }
+
+    /**
+     * Stops the process of the given installation, waiting up to the grace period for it to exit before killing it
+     *
+     * @return true if the process is no longer running
+     */
+    public boolean terminate(Installation installation, long gracePeriod) throws InterruptedException {
+        String id = installation.getId();
+        ProcessController controller = installation.getController();
+        ProcessTable table = new ProcessTable();
+        Long pid = null;
+        try {
+            pid = installation.getActivePid(table);
+        } catch (IOException e) {
+            LOG.warn("Failed to find the pid of " + id + ". " + e);
+        }
+        if (pid == null) {
+            LOG.info("Process " + id + " is not running");
+            return true;
+        }
+        // lets find the processes to signal before any of them exit and their children are reparented
+        List<String> targets = getSignalTargets(table, pid);
+
+        LOG.info("Stopping process " + id + " with pid " + pid);
+        try {
+            controller.stop();
+        } catch (Exception e) {
+            LOG.warn("Error during stopping process " + id + ". This exception is ignored", e);
+        }
+        signal(id, "TERM", targets);
+        if (watcher.awaitExit(pid, gracePeriod)) {
+            return true;
+        }
+
+        LOG.warn("Process " + id + " did not stop within " + gracePeriod + " millis. Will now kill it.");
+        killedCount.incrementAndGet();
+        try {
+            controller.kill();
+        } catch (Exception e) {
+            LOG.warn("Error during killing process " + id + ". This exception is ignored", e);
+        }
+        signal(id, "KILL", targets);
+        boolean answer = watcher.awaitExit(pid, KILL_TIMEOUT);
+        if (!answer) {
+            LOG.warn("Process " + id + " with pid " + pid + " is still running after being killed");
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of processes which had to be killed as they did not stop within the grace period
+     */
+    public int getKilledCount() {
+        return killedCount.get();
+    }
+
+    public long getOwnProcessGroup() {
+        return ownProcessGroup;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns the <code>kill</code> arguments for the process group of the given process if it has its own group,
+     * otherwise the pids of the process and its descendants
+     */
+    protected List<String> getSignalTargets(ProcessTable table, long pid) {
+        List<String> answer = new ArrayList<>();
+        ProcessTable.ProcessInfo process = table.getProcess(pid);
+        if (process == null) {
+            answer.add(Long.toString(pid));
+            return answer;
+        }
+        long group = process.getProcessGroup();
+        if (group > 1 && ownProcessGroup > 0 && group != ownProcessGroup) {
+            answer.add("-" + group);
+        } else {
+            for (ProcessTable.ProcessInfo info : table.getProcessTree(pid)) {
+                answer.add(Long.toString(info.getPid()));
+            }
+        }
+        return answer;
+    }
+
+    protected void signal(String id, String signal, List<String> targets) {
+        List<String> command = new ArrayList<>();
+        command.add("kill");
+        command.add("-s");
+        command.add(signal);
+        command.add("--");
+        command.addAll(targets);
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            // the processes may have already exited so we ignore the exit code
+            process.waitFor();
+            process.getInputStream().close();
+        } catch (IOException e) {
+            LOG.warn("Failed to send SIG" + signal + " to " + targets + " of " + id + ". " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
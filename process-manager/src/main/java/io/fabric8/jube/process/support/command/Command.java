@@ -15,11 +15,9 @@
  */
 package io.fabric8.jube.process.support.command;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +29,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -46,18 +43,27 @@ public class Command {
     private static final ImmutableSet<Integer> DEFAULT_SUCCESSFUL_EXIT_CODES = ImmutableSet.of(0);
     private static final File DEFAULT_DIRECTORY = new File(".").getAbsoluteFile();
     private static final Duration DEFAULT_TIME_LIMIT = new Duration(365, TimeUnit.DAYS);
+    private static final long OUTPUT_WAIT_MILLIS = 1000;
 
     private final List<String> command;
     private final Set<Integer> successfulExitCodes;
     private final File directory;
     private final Map<String, String> environment;
     private final Duration timeLimit;
+    private final File logFile;
+    private final long maxLogFileSize;
+    private final int maxLogFiles;
 
     public Command(String... command) {
         this(ImmutableList.copyOf(Arrays.asList(command)), DEFAULT_SUCCESSFUL_EXIT_CODES, DEFAULT_DIRECTORY, ImmutableMap.<String, String>of(), DEFAULT_TIME_LIMIT);
     }
 
     public Command(List<String> command, Set<Integer> successfulExitCodes, File directory, Map<String, String> environment, Duration timeLimit) {
+        this(command, successfulExitCodes, directory, environment, timeLimit, null, RotatingLogFile.DEFAULT_MAX_FILE_SIZE, RotatingLogFile.DEFAULT_MAX_FILES);
+    }
+
+    public Command(List<String> command, Set<Integer> successfulExitCodes, File directory, Map<String, String> environment, Duration timeLimit,
+                   File logFile, long maxLogFileSize, int maxLogFiles) {
         Preconditions.checkNotNull(command, "command is null");
         Preconditions.checkArgument(!command.isEmpty(), "command is empty");
         Preconditions.checkNotNull(successfulExitCodes, "successfulExitCodes is null");
@@ -72,6 +78,9 @@ public class Command {
         this.directory = directory;
         this.environment = environment;
         this.timeLimit = timeLimit;
+        this.logFile = logFile;
+        this.maxLogFileSize = maxLogFileSize;
+        this.maxLogFiles = maxLogFiles;
     }
 
     public List<String> getCommand() {
@@ -86,7 +95,7 @@ public class Command {
     public Command addArgs(Iterable<String> args) {
         Preconditions.checkNotNull(args, "args is null");
         ImmutableList.Builder<String> command = ImmutableList.<String>builder().addAll(this.command).addAll(args);
-        return new Command(command.build(), successfulExitCodes, directory, environment, timeLimit);
+        return new Command(command.build(), successfulExitCodes, directory, environment, timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public Map<String, String> getEnvironment() {
@@ -97,13 +106,13 @@ public class Command {
         Preconditions.checkNotNull(name, "name is null");
         Preconditions.checkNotNull(value, "value is null");
         ImmutableMap.Builder<String, String> builder = ImmutableMap.<String, String>builder().putAll(this.environment).put(name, value);
-        return new Command(command, successfulExitCodes, directory, builder.build(), timeLimit);
+        return new Command(command, successfulExitCodes, directory, builder.build(), timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public Command addEnvironment(Map<String, String> environment) {
         Preconditions.checkNotNull(environment, "environment is null");
         ImmutableMap.Builder<String, String> builder = ImmutableMap.<String, String>builder().putAll(this.environment).putAll(environment);
-        return new Command(command, successfulExitCodes, directory, builder.build(), timeLimit);
+        return new Command(command, successfulExitCodes, directory, builder.build(), timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public Set<Integer> getSuccessfulExitCodes() {
@@ -118,7 +127,7 @@ public class Command {
     public Command setSuccessfulExitCodes(Set<Integer> successfulExitCodes) {
         Preconditions.checkNotNull(successfulExitCodes, "successfulExitCodes is null");
         Preconditions.checkArgument(!successfulExitCodes.isEmpty(), "successfulExitCodes is empty");
-        return new Command(command, successfulExitCodes, directory, environment, timeLimit);
+        return new Command(command, successfulExitCodes, directory, environment, timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public File getDirectory() {
@@ -132,7 +141,7 @@ public class Command {
 
     public Command setDirectory(File directory) {
         Preconditions.checkNotNull(directory, "directory is null");
-        return new Command(command, successfulExitCodes, directory, environment, timeLimit);
+        return new Command(command, successfulExitCodes, directory, environment, timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public Duration getTimeLimit() {
@@ -145,7 +154,33 @@ public class Command {
 
     public Command setTimeLimit(Duration timeLimit) {
         Preconditions.checkNotNull(timeLimit, "timeLimit is null");
-        return new Command(command, successfulExitCodes, directory, environment, timeLimit);
+        return new Command(command, successfulExitCodes, directory, environment, timeLimit, logFile, maxLogFileSize, maxLogFiles);
+    }
+
+    /**
+     * Returns the file the output is written to or null if it is written to the console
+     */
+    public File getLogFile() {
+        return logFile;
+    }
+
+    public long getMaxLogFileSize() {
+        return maxLogFileSize;
+    }
+
+    public int getMaxLogFiles() {
+        return maxLogFiles;
+    }
+
+    /**
+     * Writes the output to the given file rather than the console, rolling it over when it reaches the default size
+     */
+    public Command setLogFile(File logFile) {
+        return setLogFile(logFile, RotatingLogFile.DEFAULT_MAX_FILE_SIZE, RotatingLogFile.DEFAULT_MAX_FILES);
+    }
+
+    public Command setLogFile(File logFile, long maxLogFileSize, int maxLogFiles) {
+        return new Command(command, successfulExitCodes, directory, environment, timeLimit, logFile, maxLogFileSize, maxLogFiles);
     }
 
     public int execute(Executor executor)
@@ -219,6 +254,9 @@ public class Command {
         sb.append(", successfulExitCodes=").append(successfulExitCodes);
         sb.append(", directory=").append(directory);
         sb.append(", timeLimit=").append(timeLimit);
+        if (logFile != null) {
+            sb.append(", logFile=").append(logFile);
+        }
         sb.append('}');
         return sb.toString();
     }
@@ -263,7 +301,9 @@ public class Command {
             OutputProcessor outputProcessor = null;
             try {
                 // start the output processor
-                outputProcessor = new OutputProcessor(process, executor);
+                // the output is pumped on its own threads so that it never waits behind the commands
+                Executor outputExecutor = executor instanceof CommandExecutor ? ((CommandExecutor) executor).getOutputExecutor() : executor;
+                outputProcessor = new OutputProcessor(process, outputExecutor, command);
                 outputProcessor.start();
 
 
@@ -295,47 +335,62 @@ public class Command {
         System.out.println(out);
     }
 
+    /**
+     * Writes the output of the process to its log file, or the console if it has none, keeping only a bounded tail in
+     * memory to report if the command fails
+     */
     private static final class OutputProcessor {
         private final InputStream inputStream;
         private final Executor executor;
+        private final Command command;
+        private final OutputTail tail = new OutputTail();
         private Future<String> outputFuture;
 
-        private OutputProcessor(Process process, Executor executor) {
+        private OutputProcessor(Process process, Executor executor, Command command) {
             this.inputStream = process.getInputStream();
             this.executor = executor;
+            this.command = command;
         }
 
         public void start() {
             outputFuture = submit(executor, new Callable<String>() {
                 @Override
                 public String call() throws IOException {
-                    StringBuffer buffer = new StringBuffer();
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charsets.UTF_8));
+                    File logFile = command.getLogFile();
+                    RotatingLogFile log = logFile != null ? new RotatingLogFile(logFile, command.getMaxLogFileSize(), command.getMaxLogFiles()) : null;
                     try {
+                        byte[] buffer = new byte[8192];
                         while (true) {
-                            String line = reader.readLine();
-                            if (line == null) {
+                            int count = inputStream.read(buffer);
+                            if (count < 0) {
                                 break;
                             }
-                            buffer.append(line).append("\n");
-                            System.out.println(line);
+                            tail.write(buffer, 0, count);
+                            if (log != null) {
+                                log.write(buffer, 0, count);
+                            } else {
+                                System.out.write(buffer, 0, count);
+                                System.out.flush();
+                            }
                         }
-                        return buffer.toString();
+                        return tail.toString();
                     } finally {
-                        Closeables.closeQuietly(reader);
+                        Closeables.closeQuietly(inputStream);
+                        Closeables.closeQuietly(log);
                     }
                 }
             });
         }
 
         private String getOutput() {
-            while (outputFuture != null && !outputFuture.isCancelled()) {
+            if (outputFuture != null && !outputFuture.isCancelled()) {
                 try {
-                    return outputFuture.get();
+                    return outputFuture.get(OUTPUT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
                 } catch (Exception ignored) {
+                    // a child process may still hold the stream open so lets return what we have
                 }
             }
-            return null;
+            return tail.toString();
         }
 
         private void destroy() {
@@ -0,0 +1,229 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support.command;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Executor} shared by all the processes to run their commands and pump their output, so that the number of
+ * threads depends on how many commands are running at once rather than on how many processes are installed.
+ * <p/>
+ * On a JDK with virtual threads each task gets its own virtual thread. Otherwise the commands run on a pool of at most
+ * <code>maxThreads</code> daemon threads which exit when idle, with any further commands queued until a thread is
+ * free. The output of the commands is pumped by the separate {@link #getOutputExecutor()} so that a running command
+ * never waits for its pump to get a thread; when all of its threads are busy the output is read by the command's own
+ * thread before it waits for the process to exit.
+ */
+public class CommandExecutor implements Executor {
+    public static final int DEFAULT_MAX_THREADS = 64;
+    public static final long KEEP_ALIVE_MILLIS = 60000;
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(CommandExecutor.class);
+    private static CommandExecutor defaultExecutor;
+
+    private final String name;
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService outputExecutor;
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger peakActiveCount = new AtomicInteger();
+
+    public CommandExecutor(String name) {
+        this(name, DEFAULT_MAX_THREADS, true);
+    }
+
+    /**
+     * @param maxThreads the maximum number of threads if virtual threads are not used
+     * @param useVirtualThreads whether to use virtual threads if the JDK supports them
+     */
+    public CommandExecutor(String name, int maxThreads, boolean useVirtualThreads) {
+        this.name = name;
+        ExecutorService virtualThreads = useVirtualThreads ? createVirtualThreadExecutor(name) : null;
+        if (virtualThreads != null) {
+            this.executor = virtualThreads;
+            this.threadPool = null;
+            this.outputExecutor = virtualThreads;
+        } else {
+            int threads = Math.max(2, maxThreads);
+            this.threadPool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + "-%s").build());
+            this.threadPool.allowCoreThreadTimeOut(true);
+            this.executor = threadPool;
+            this.outputExecutor = new ThreadPoolExecutor(0, threads, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name + "-output-%s").build(), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        LOG.info("Using " + (isVirtualThreads() ? "virtual threads" : "at most " + threadPool.getMaximumPoolSize() + " threads") + " for " + name);
+    }
+
+    /**
+     * Returns the executor shared by the processes which were not given one
+     */
+    public static synchronized CommandExecutor getDefault() {
+        if (defaultExecutor == null) {
+            defaultExecutor = new CommandExecutor("jube-process");
+        }
+        return defaultExecutor;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandExecutor(" + name + ")";
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        submittedCount.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int active = activeCount.incrementAndGet();
+                int peak = peakActiveCount.get();
+                while (active > peak && !peakActiveCount.compareAndSet(peak, active)) {
+                    peak = peakActiveCount.get();
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    failedCount.incrementAndGet();
+                    throw e;
+                } finally {
+                    activeCount.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        outputExecutor.shutdown();
+    }
+
+    /**
+     * Returns the executor used to pump the output of the commands, which never queues a task behind the commands
+     */
+    public Executor getOutputExecutor() {
+        return outputExecutor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isVirtualThreads() {
+        return threadPool == null;
+    }
+
+    /**
+     * Returns the number of threads currently in the pool, or the number of running tasks when using virtual threads
+     */
+    public int getThreadCount() {
+        return threadPool != null ? threadPool.getPoolSize() : activeCount.get();
+    }
+
+    /**
+     * Returns the number of threads currently pumping output, or 0 when using virtual threads
+     */
+    public int getOutputThreadCount() {
+        return outputExecutor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) outputExecutor).getPoolSize() : 0;
+    }
+
+    public int getMaxThreads() {
+        return threadPool != null ? threadPool.getMaximumPoolSize() : -1;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getPeakActiveCount() {
+        return peakActiveCount.get();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a free thread
+     */
+    public int getQueuedCount() {
+        return threadPool != null ? threadPool.getQueue().size() : 0;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the statistics of the executor keyed by name
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("virtualThreads", isVirtualThreads());
+        answer.put("threads", getThreadCount());
+        answer.put("outputThreads", getOutputThreadCount());
+        answer.put("maxThreads", getMaxThreads());
+        answer.put("active", getActiveCount());
+        answer.put("peakActive", getPeakActiveCount());
+        answer.put("queued", getQueuedCount());
+        answer.put("submitted", getSubmittedCount());
+        answer.put("completed", getCompletedCount());
+        answer.put("failed", getFailedCount());
+        return answer;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * Creates an executor which starts a virtual thread per task, or returns null if the JDK does not support them
+     */
+    protected static ExecutorService createVirtualThreadExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Virtual threads are not available. " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support.command;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps the last bytes written so that the end of a command's output can be reported without keeping all of it
+ */
+public class OutputTail {
+    public static final int DEFAULT_SIZE = 16 * 1024;
+
+    private final byte[] buffer;
+    private int position;
+    private boolean wrapped;
+
+    public OutputTail() {
+        this(DEFAULT_SIZE);
+    }
+
+    public OutputTail(int size) {
+        this.buffer = new byte[size];
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) {
+        if (length >= buffer.length) {
+            System.arraycopy(data, offset + length - buffer.length, buffer, 0, buffer.length);
+            position = 0;
+            wrapped = true;
+            return;
+        }
+        int first = Math.min(length, buffer.length - position);
+        System.arraycopy(data, offset, buffer, position, first);
+        System.arraycopy(data, offset + first, buffer, 0, length - first);
+        if (position + length >= buffer.length) {
+            wrapped = true;
+        }
+        position = (position + length) % buffer.length;
+    }
+
+    /**
+     * Returns the tail of the output; if earlier output has been discarded the tail starts at the next whole line
+     */
+    @Override
+    public synchronized String toString() {
+        byte[] data;
+        if (wrapped) {
+            data = new byte[buffer.length];
+            System.arraycopy(buffer, position, data, 0, buffer.length - position);
+            System.arraycopy(buffer, 0, data, buffer.length - position, position);
+        } else {
+            data = new byte[position];
+            System.arraycopy(buffer, 0, data, 0, position);
+        }
+        int start = 0;
+        if (wrapped) {
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] == '\n') {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        return new String(data, start, data.length - start, StandardCharsets.UTF_8);
+    }
+}
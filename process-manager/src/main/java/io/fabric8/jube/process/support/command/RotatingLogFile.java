@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support.command;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.fabric8.utils.Closeables;
+
+/**
+ * Appends output to a log file which is rolled over to <code>name.1</code>, <code>name.2</code> and so on when it
+ * reaches its maximum size, keeping at most the given number of old files.
+ */
+public class RotatingLogFile implements Closeable {
+    public static final long DEFAULT_MAX_FILE_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    private final File file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long size;
+
+    public RotatingLogFile(File file, long maxFileSize, int maxFiles) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+    }
+
+    @Override
+    public String toString() {
+        return "RotatingLogFile(" + file + ")";
+    }
+
+    public synchronized void write(byte[] data, int offset, int length) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        if (size > 0 && size + length > maxFileSize) {
+            rotate();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        Closeables.closeQuietly(out);
+        out = null;
+        channel = null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the rolled over file with the given index, 1 being the most recent
+     */
+    public File getRolledFile(int index) {
+        return new File(file.getParentFile(), file.getName() + "." + index);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void open() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        out = new FileOutputStream(file, true);
+        channel = out.getChannel();
+        size = channel.size();
+    }
+
+    protected void rotate() throws IOException {
+        close();
+        File oldest = getRolledFile(maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Could not delete old log file " + oldest);
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File rolled = getRolledFile(i);
+            if (rolled.exists() && !rolled.renameTo(getRolledFile(i + 1))) {
+                throw new IOException("Could not rename log file " + rolled);
+            }
+        }
+        if (maxFiles > 0) {
+            if (file.exists() && !file.renameTo(getRolledFile(1))) {
+                throw new IOException("Could not rename log file " + file);
+            }
+        } else if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete log file " + file);
+        }
+        open();
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import io.fabric8.jube.process.config.CpuSet;
+import io.fabric8.jube.process.config.ResourceLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CgroupManagerTest extends Assert {
+
+    @Test
+    public void shouldConvertCpuRequestsToWeights() throws Exception {
+        assertEquals(1, CgroupManager.toCpuWeight(0));
+        assertEquals(39, CgroupManager.toCpuWeight(1000));
+        assertEquals(10000, CgroupManager.toCpuWeight(1000000));
+    }
+
+    @Test
+    public void shouldWrapCommandToJoinCgroup() throws Exception {
+        File procs = new File("/sys/fs/cgroup/jube/foo/cgroup.procs");
+        String[] command = CgroupManager.wrapCommand(procs, "./launcher", "start");
+        assertEquals(6, command.length);
+        assertEquals("sh", command[0]);
+        assertEquals(procs.getAbsolutePath(), command[3]);
+        assertEquals("./launcher", command[4]);
+        assertEquals("start", command[5]);
+    }
+
+    @Test
+    public void shouldNotLimitWhenCgroupsAreUnavailable() throws Exception {
+        CgroupManager disabled = new CgroupManager(null);
+        assertFalse(disabled.isSupported());
+        assertNull(disabled.createCgroup("foo", new ResourceLimits(500, 500, 1024 * 1024)));
+        assertNull(disabled.getStats("foo"));
+
+        CgroupManager missing = new CgroupManager(new File("target/no-such-cgroup-fs/jube"));
+        assertFalse(missing.isSupported());
+    }
+
+    @Test
+    public void shouldConfineUnpinnedCgroupsToSharedCpus() throws Exception {
+        File parent = new File(System.getProperty("basedir", "."), "target/test-data/" + getClass().getSimpleName() + "-" + System.nanoTime());
+        File root = new File(parent, "jube");
+        assertTrue(root.mkdirs());
+        CgroupManager.write(new File(parent, "cgroup.controllers"), "cpu memory cpuset");
+        CgroupManager.write(new File(root, "cgroup.subtree_control"), "cpu memory cpuset");
+        CgroupManager cgroups = new CgroupManager(root) {
+            @Override
+            protected void enableController(File dir, String controller) {
+                // the fake controllers are already enabled
+            }
+        };
+        assertTrue(cgroups.isCpusetSupported());
+        assertNull(cgroups.getSharedCpus());
+        assertNull("processes without limits need no cgroup until CPUs are dedicated", cgroups.createCgroup("shared", null));
+
+        assertNotNull(cgroups.createCgroup("pinned", new ResourceLimits(2000, 2000, 0)));
+        assertTrue(cgroups.setCpuSet("pinned", CpuSet.parse("2-3", "0")));
+        cgroups.setSharedCpus(new TreeSet<>(Arrays.asList(0, 1)), Collections.singleton("pinned"));
+        assertEquals("0-1", cgroups.getSharedCpus());
+
+        assertNotNull(cgroups.createCgroup("shared", null));
+        assertTrue(cgroups.applySharedCpus("shared"));
+        assertEquals("0-1", readCpus(cgroups, "shared"));
+
+        cgroups.setSharedCpus(new TreeSet<>(Arrays.asList(0, 1, 2, 3)), Collections.<String>emptySet());
+        assertEquals("0-3", readCpus(cgroups, "shared"));
+        assertEquals("0-3", readCpus(cgroups, "pinned"));
+    }
+
+    protected static String readCpus(CgroupManager cgroups, String id) throws Exception {
+        return new String(Files.readAllBytes(new File(cgroups.getCgroupDir(id), "cpuset.cpus").toPath()), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+import io.fabric8.jube.process.config.CpuSet;
+import io.fabric8.jube.process.config.ResourceLimits;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CpuSetAllocatorTest extends Assert {
+
+    /**
+     * Two NUMA nodes of 4 CPUs with CPU 0 reserved
+     */
+    protected CpuSetAllocator createAllocator() {
+        TreeMap<Integer, SortedSet<Integer>> nodes = new TreeMap<>();
+        nodes.put(0, CpuSet.parseList("0-3"));
+        nodes.put(1, CpuSet.parseList("4-7"));
+        return new CpuSetAllocator(new CpuTopology(nodes), 1);
+    }
+
+    protected ResourceLimits cpus(long millis) {
+        return new ResourceLimits(millis, millis, 0);
+    }
+
+    @Test
+    public void shouldParseAndFormatCpuLists() throws Exception {
+        assertEquals("[0, 1, 2, 3, 8, 10, 11]", CpuSet.parseList("0-3,8,10-11\n").toString());
+        assertEquals("0-3,8,10-11", CpuSet.formatList(CpuSet.parseList("0-3,8,10-11")));
+        assertEquals("", CpuSet.formatList(CpuSet.parseList("")));
+    }
+
+    @Test
+    public void shouldOnlyPinWholeCpus() throws Exception {
+        CpuSetAllocator allocator = createAllocator();
+        assertNull(allocator.allocate("a", null));
+        assertNull(allocator.allocate("a", cpus(500)));
+        assertNull(allocator.allocate("a", cpus(1500)));
+        assertNull(allocator.allocate("a", new ResourceLimits(2000, 1000, 0)));
+        assertTrue(allocator.getAllocations().isEmpty());
+    }
+
+    @Test
+    public void shouldPreferASingleNumaNode() throws Exception {
+        CpuSetAllocator allocator = createAllocator();
+
+        // node 0 has fewest free CPUs which fit
+        CpuSet a = allocator.allocate("a", cpus(2000));
+        assertEquals("1-2", a.getCpuList());
+        assertEquals("0", a.getNodeList());
+
+        // only node 1 can fit 3 CPUs
+        CpuSet b = allocator.allocate("b", cpus(3000));
+        assertEquals("4-6", b.getCpuList());
+        assertEquals("1", b.getNodeList());
+
+        assertSame(a, allocator.allocate("a", cpus(2000)));
+        assertEquals("0,3,7", CpuSet.formatList(allocator.getSharedCpus()));
+    }
+
+    @Test
+    public void shouldSpreadOverNodesWhenNoneFit() throws Exception {
+        CpuSetAllocator allocator = createAllocator();
+        CpuSet a = allocator.allocate("a", cpus(6000));
+        assertEquals("1-2,4-7", a.getCpuList());
+        assertEquals("0-1", a.getNodeList());
+
+        // the reserved CPU is never dedicated
+        assertNull(allocator.allocate("b", cpus(2000)));
+    }
+
+    @Test
+    public void shouldReleaseAndRestoreAllocations() throws Exception {
+        CpuSetAllocator allocator = createAllocator();
+        CpuSet a = allocator.allocate("a", cpus(3000));
+        assertEquals("1-3", a.getCpuList());
+        assertEquals(a, allocator.release("a"));
+        assertNull(allocator.getAllocation("a"));
+
+        allocator.restore("b", CpuSet.parse("4-5", "1"));
+        allocator.restore("c", CpuSet.parse("5-6", "1"));
+        assertNull("overlapping CPUs are ignored", allocator.getAllocation("c"));
+        assertEquals("6-7", allocator.allocate("d", cpus(2000)).getCpuList());
+    }
+
+    @Test
+    public void shouldLoadTopology() throws Exception {
+        File dir = new File("target/test-data/cpu-topology");
+        for (String node : new String[]{"node0", "node1"}) {
+            new File(dir, node).mkdirs();
+        }
+        Files.write(new File(dir, "node0/cpulist").toPath(), "0-3,8-11\n".getBytes("US-ASCII"));
+        Files.write(new File(dir, "node1/cpulist").toPath(), "4-7,12-15\n".getBytes("US-ASCII"));
+
+        CpuTopology topology = CpuTopology.load(dir);
+        assertEquals(16, topology.getCpuCount());
+        assertEquals(1, topology.getNode(12));
+        assertEquals(-1, topology.getNode(16));
+        assertEquals("CpuTopology(node0=0-3,8-11, node1=4-7,12-15)", topology.toString());
+
+        CpuTopology fallback = CpuTopology.load(new File("target/test-data/no-such-dir"));
+        assertEquals(Runtime.getRuntime().availableProcessors(), fallback.getCpuCount());
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessExitWatcherTest extends Assert {
+    private File procDir;
+    private ProcessExitWatcher watcher;
+
+    @Before
+    public void init() throws Exception {
+        procDir = new File("target/test-proc-" + System.currentTimeMillis());
+        assertTrue(procDir.mkdirs());
+        watcher = new ProcessExitWatcher(procDir, 10);
+    }
+
+    @After
+    public void cleanup() {
+        watcher.shutdown();
+    }
+
+    @Test
+    public void shouldNotifyOnceWhenProcessExits() throws Exception {
+        File pidDir = new File(procDir, "1234");
+        assertTrue(pidDir.mkdir());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicLong exitedPid = new AtomicLong();
+        watcher.addListener(new ProcessExitWatcher.Listener() {
+            @Override
+            public void processExited(String id, long pid) {
+                assertEquals("pod1", id);
+                exitedPid.set(pid);
+                latch.countDown();
+            }
+        });
+        watcher.watch("pod1", 1234);
+        assertTrue(watcher.isAlive(1234));
+        assertEquals(1, watcher.getWatchedCount());
+
+        assertTrue(pidDir.delete());
+        assertTrue("Should have been notified of the exit", latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1234, exitedPid.get());
+        assertEquals(0, watcher.getWatchedCount());
+        assertNull(watcher.getWatchedPid("pod1"));
+    }
+
+    @Test
+    public void shouldNotNotifyWhenUnwatched() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        watcher.addListener(new ProcessExitWatcher.Listener() {
+            @Override
+            public void processExited(String id, long pid) {
+                latch.countDown();
+            }
+        });
+        watcher.watch("pod1", 4321);
+        watcher.unwatch("pod1");
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldAwaitProcessExit() throws Exception {
+        final File pidDir = new File(procDir, "5678");
+        assertTrue(pidDir.mkdir());
+        assertFalse(watcher.awaitExit(5678, 100));
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                pidDir.delete();
+            }
+        }.start();
+        assertTrue(watcher.awaitExit(5678, 5000));
+        assertTrue("Already exited", watcher.awaitExit(5678, 0));
+    }
+}
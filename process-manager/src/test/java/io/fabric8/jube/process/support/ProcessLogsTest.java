@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessLogsTest extends Assert {
+    private File logFile;
+
+    @Before
+    public void init() throws Exception {
+        File dir = new File("target/test-process-logs-" + System.currentTimeMillis());
+        assertTrue(dir.mkdirs());
+        logFile = new File(dir, "process.log");
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 1; i <= 5000; i++) {
+            buffer.append("line ").append(i).append("\n");
+        }
+        Files.write(logFile.toPath(), buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldTailLastLines() throws Exception {
+        assertEquals("line 4998\nline 4999\nline 5000\n", stream(3));
+        assertEquals("", stream(0));
+        assertEquals(Files.size(logFile.toPath()), stream(10000).length());
+        assertTrue(stream(-1).startsWith("line 1\nline 2\n"));
+    }
+
+    @Test
+    public void shouldTailFileWithoutNewLineAtTheEnd() throws Exception {
+        Files.write(logFile.toPath(), "partial".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals("line 5000\npartial", stream(2));
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            assertEquals(channel.size() - "partial".length(), ProcessLogs.findTailPosition(channel, 1));
+        }
+    }
+
+    protected String stream(int lines) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProcessLogs.stream(logFile, lines, false, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
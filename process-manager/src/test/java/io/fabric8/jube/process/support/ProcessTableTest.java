@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import io.fabric8.jube.process.ProcessMetrics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProcessTableTest extends Assert {
+    private File procDir;
+
+    @Before
+    public void init() throws Exception {
+        procDir = new File("target/test-proc-table-" + System.currentTimeMillis());
+        assertTrue(procDir.mkdirs());
+        write(new File(procDir, "stat"), "cpu  1 2 3 4\nbtime 1400000000\nprocesses 100\n");
+    }
+
+    @Test
+    public void shouldReadRunningProcess() throws Exception {
+        writeProcess(1234, "(java main) S", 5000, "java\0-jar\0app.jar\0");
+        ProcessTable table = new ProcessTable(procDir);
+        assertTrue(table.isSupported());
+
+        ProcessTable.ProcessInfo process = table.getProcess(1234);
+        assertNotNull(process);
+        assertEquals('S', process.getState());
+        assertEquals(1, process.getParentPid());
+        assertEquals(1234, process.getProcessGroup());
+        assertEquals(5000, process.getStartTicks());
+        assertEquals("java -jar app.jar", table.getCommandLine(1234));
+        assertTrue(table.isRunning(1234));
+        assertEquals(1400000000000L + 50000L, table.getStartTime(process));
+    }
+
+    @Test
+    public void shouldNotTreatZombiesOrMissingProcessesAsRunning() throws Exception {
+        writeProcess(1234, "(java) Z", 5000, "");
+        ProcessTable table = new ProcessTable(procDir);
+        assertNotNull(table.getProcess(1234));
+        assertFalse(table.isRunning(1234));
+        assertNull(table.getProcess(4321));
+        assertFalse(table.isRunning(4321));
+    }
+
+    @Test
+    public void shouldAddUpTheMetricsOfChildProcesses() throws Exception {
+        writeProcess(100, "(launcher) S", 1, 5000, 300, 2, 10);
+        writeProcess(200, "(java) S", 100, 5001, 700, 30, 1000);
+        writeProcess(300, "(other) S", 1, 5002, 900, 5, 50);
+        write(new File(procDir, "200/io"), "rchar: 10\nwchar: 20\nread_bytes: 4096\nwrite_bytes: 8192\n");
+        assertTrue(new File(procDir, "200/fd/0").mkdirs());
+        assertTrue(new File(procDir, "200/fd/1").mkdirs());
+
+        ProcessTable table = new ProcessTable(procDir);
+        assertEquals(2, table.getProcessTree(100).size());
+
+        ProcessMetrics metrics = table.getProcessTreeMetrics(100);
+        assertNotNull(metrics);
+        assertEquals(100, metrics.getPid());
+        assertEquals(2, metrics.getProcessCount());
+        assertEquals(10000, metrics.getCpuTime());
+        assertEquals(32, metrics.getThreads());
+        assertEquals(1010 * ProcessTable.PAGE_SIZE, metrics.getRssBytes());
+        assertEquals(2, metrics.getOpenFiles());
+        assertEquals(4096, metrics.getReadBytes());
+        assertEquals(8192, metrics.getWriteBytes());
+        assertNull(table.getProcessTreeMetrics(4321));
+    }
+
+    protected void writeProcess(long pid, String nameAndState, long startTicks, String cmdline) throws IOException {
+        writeProcess(pid, nameAndState, 1, startTicks, 0, 0, 0);
+        write(new File(procDir, pid + "/cmdline"), cmdline);
+    }
+
+    protected void writeProcess(long pid, String nameAndState, long ppid, long startTicks, long cpuTicks, int threads, long rssPages) throws IOException {
+        File dir = new File(procDir, Long.toString(pid));
+        assertTrue(dir.mkdirs());
+        StringBuilder stat = new StringBuilder(pid + " " + nameAndState + " " + ppid);
+        // each process leads its own group then fields 6 to 13 are not used
+        stat.append(" ").append(pid);
+        for (int i = 6; i <= 13; i++) {
+            stat.append(" 0");
+        }
+        // utime and stime then fields 16 to 19 then the threads, itrealvalue, start time, vsize and rss
+        stat.append(" ").append(cpuTicks).append(" 0 0 0 0 0 ").append(threads).append(" 0 ").append(startTicks).append(" 0 ").append(rssPages).append("\n");
+        write(new File(dir, "stat"), stat.toString());
+    }
+
+    protected static void write(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support.command;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandExecutorTest {
+
+    protected CommandExecutor executor = new CommandExecutor("test-command", 2, false);
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldQueueTasksBeyondMaxThreads() throws Exception {
+        assertFalse(executor.isVirtualThreads());
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        assertEquals(2, executor.getThreadCount());
+        assertEquals(8, executor.getQueuedCount());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(10, executor.getSubmittedCount());
+        assertEquals(2, executor.getPeakActiveCount());
+        assertTrue(executor.getThreadCount() <= 2);
+    }
+
+    @Test
+    public void shouldNotQueueOutputBehindCommands() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertEquals(1, executor.getQueuedCount());
+        try {
+            // the output executor has its own threads
+            final CountDownLatch busy = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                executor.getOutputExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        busy.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            assertTrue(busy.await(10, TimeUnit.SECONDS));
+            // and when they are all busy the caller pumps the output itself
+            final Thread caller = Thread.currentThread();
+            final Thread[] ranOn = new Thread[1];
+            executor.getOutputExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    ranOn[0] = Thread.currentThread();
+                }
+            });
+            assertEquals(caller, ranOn[0]);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldCountFailedTasks() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+                throw new IllegalStateException("expected");
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && executor.getCompletedCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getCompletedCount());
+        assertEquals(1, executor.getFailedCount());
+        assertEquals(0, executor.getActiveCount());
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.jube.process.support.command;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RotatingLogFileTest extends Assert {
+    private File dir;
+
+    @Before
+    public void init() throws Exception {
+        dir = new File("target/test-logs-" + System.currentTimeMillis());
+        assertTrue(dir.mkdirs());
+    }
+
+    @Test
+    public void shouldRollOverWhenFull() throws Exception {
+        RotatingLogFile log = new RotatingLogFile(new File(dir, "process.log"), 10, 2);
+        for (String line : new String[]{"one\n", "two\n", "three\n", "four\n", "five\n", "six\n"}) {
+            byte[] data = line.getBytes(StandardCharsets.UTF_8);
+            log.write(data, 0, data.length);
+        }
+        log.close();
+
+        assertEquals("six\n", read(log.getFile()));
+        assertEquals("four\nfive\n", read(log.getRolledFile(1)));
+        assertEquals("three\n", read(log.getRolledFile(2)));
+        assertFalse("Only keeps 2 old files", log.getRolledFile(3).exists());
+    }
+
+    @Test
+    public void shouldAppendToExistingFile() throws Exception {
+        File file = new File(dir, "process.log");
+        Files.write(file.toPath(), "old\n".getBytes(StandardCharsets.UTF_8));
+        RotatingLogFile log = new RotatingLogFile(file, 1024, 2);
+        byte[] data = "new\n".getBytes(StandardCharsets.UTF_8);
+        log.write(data, 0, data.length);
+        log.close();
+        assertEquals("old\nnew\n", read(file));
+    }
+
+    @Test
+    public void shouldOnlyKeepTheTailOfTheOutput() throws Exception {
+        OutputTail tail = new OutputTail(16);
+        byte[] data = "line1\nline2\n".getBytes(StandardCharsets.UTF_8);
+        tail.write(data, 0, data.length);
+        assertEquals("line1\nline2\n", tail.toString());
+
+        data = "line3\nline4\n".getBytes(StandardCharsets.UTF_8);
+        tail.write(data, 0, data.length);
+        assertEquals("line3\nline4\n", tail.toString());
+
+        data = "a very long line which is longer than the tail\nend\n".getBytes(StandardCharsets.UTF_8);
+        tail.write(data, 0, data.length);
+        assertEquals("end\n", tail.toString());
+    }
+
+    protected static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}